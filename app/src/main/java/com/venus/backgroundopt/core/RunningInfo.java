@@ -30,7 +30,6 @@ import com.venus.backgroundopt.annotation.AndroidObject;
 import com.venus.backgroundopt.entity.AppInfo;
 import com.venus.backgroundopt.entity.FindAppResult;
 import com.venus.backgroundopt.entity.FindAppResultKt;
-import com.venus.backgroundopt.environment.hook.HookCommonProperties;
 import com.venus.backgroundopt.hook.base.IHook;
 import com.venus.backgroundopt.hook.handle.android.ActivityManagerServiceHookKt;
 import com.venus.backgroundopt.hook.handle.android.ProcessListHookKt;
@@ -41,24 +40,24 @@ import com.venus.backgroundopt.hook.handle.android.entity.PackageManagerService;
 import com.venus.backgroundopt.hook.handle.android.entity.ProcessList;
 import com.venus.backgroundopt.hook.handle.android.entity.ProcessRecord;
 import com.venus.backgroundopt.hook.handle.android.entity.ProcessRecord.AdjHandleActionType;
+import com.venus.backgroundopt.manager.application.ActivityEventDispatcher;
 import com.venus.backgroundopt.manager.application.DefaultApplicationManager;
 import com.venus.backgroundopt.manager.message.ModuleMessageManager;
 import com.venus.backgroundopt.manager.process.ProcessManager;
 import com.venus.backgroundopt.reference.PropertyChangeListener;
 import com.venus.backgroundopt.service.ProcessDaemonService;
-import com.venus.backgroundopt.utils.concurrent.ConcurrentUtilsKt;
+import com.venus.backgroundopt.utils.concurrent.ConcurrentIntObjectMap;
+import com.venus.backgroundopt.utils.concurrent.ConcurrentUserPackageMap;
 import com.venus.backgroundopt.utils.log.ILogger;
 
 import java.io.IOException;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
@@ -124,15 +123,10 @@ public class RunningInfo implements ILogger {
      **************************************************************************/
     /**
      * 每次打开app, 都会获取{@link android.content.pm.ApplicationInfo}。本集合用来缓存结果。<br>
-     * key: 主用户 -> packageName, 其他用户: userId:packageName<br>
-     * value: {@link FindAppResult}<br>
-     * 例:
-     * <pre>
-     *     1) (userId = 0, packageName=com.venus.aaa) -> (key): com.venus.aaa
-     *     2) (userId = 999, packageName=com.venus.aaa) -> (key): com.venus.aaa:999
-     * </pre>
+     * key: (userId, packageName)<br>
+     * value: {@link FindAppResult}
      */
-    public final Map<String, FindAppResult> findAppResultMap = new ConcurrentHashMap<>();
+    public final ConcurrentUserPackageMap<FindAppResult> findAppResultMap = new ConcurrentUserPackageMap<>();
 
     public boolean isImportantSystemApp(int userId, String packageName) {
         try {
@@ -145,36 +139,17 @@ public class RunningInfo implements ILogger {
 
     @NonNull
     public FindAppResult getFindAppResult(int userId, String packageName) {
-        return getFindAppResult(
-                getNormalAppKey(userId, packageName),
-                userId,
-                packageName
-        );
-    }
-
-    @NonNull
-    private FindAppResult getFindAppResult(String key, int userId, String packageName) {
+        FindAppResult findAppResult = findAppResultMap.get(userId, packageName);
+        if (findAppResult != null) {
+            return findAppResult;
+        }
         return findAppResultMap.computeIfAbsent(
-                key,
+                userId,
+                packageName,
                 k -> activityManagerService.getFindAppResult(userId, packageName)
         );
     }
 
-    /**
-     * 获取放进{@link #findAppResultMap}的key
-     *
-     * @param userId      用户id
-     * @param packageName 包名
-     * @return key
-     */
-    public String getNormalAppKey(int userId, String packageName) {
-        return getAppKey(userId, packageName);
-    }
-
-    private String getAppKey(int userId, String packageName) {
-        return userId == ActivityManagerService.MAIN_USER ? packageName : userId + ":" + packageName;
-    }
-
     /**
      * 移除给定key匹配的{@link FindAppResult}
      *
@@ -182,8 +157,7 @@ public class RunningInfo implements ILogger {
      * @param packageName 包名
      */
     public void removeRecordedFindAppResult(int userId, String packageName) {
-        String key = getNormalAppKey(userId, packageName);
-        findAppResultMap.remove(key);
+        findAppResultMap.remove(userId, packageName);
 
         if (BuildConfig.DEBUG) {
             getLogger().debug("移除匹配的app记录: userId: " + userId + ", 包名: " + packageName);
@@ -191,9 +165,7 @@ public class RunningInfo implements ILogger {
     }
 
     public void removeAllRecordedFindAppResult(String packageName) {
-        findAppResultMap.keySet().stream()
-                .filter(key -> key.contains(packageName))
-                .forEach(findAppResultMap::remove);
+        findAppResultMap.removePackage(packageName);
         if (BuildConfig.DEBUG) {
             getLogger().debug("移除所有匹配的app记录: 包名: " + packageName);
         }
@@ -206,10 +178,10 @@ public class RunningInfo implements ILogger {
      **************************************************************************/
     /**
      * 运行中的app
-     * <userId+packageName, AppInfo>
+     * <(userId, packageName), AppInfo>
      */
-    private final Map<String, AppInfo> runningApps = new ConcurrentHashMap<>();
-    private final Collection<AppInfo> runningAppsInfo = runningApps.values();
+    private final ConcurrentUserPackageMap<AppInfo> runningApps = new ConcurrentUserPackageMap<>();
+    private final Collection<AppInfo> runningAppsInfo = runningApps.getValues();
 
     @Deprecated
     public AppInfo getAppInfoFromRunningApps(int userId, String packageName) {
@@ -230,42 +202,59 @@ public class RunningInfo implements ILogger {
     }
 
     /**
-     * 获取运行中的app的标识符
-     *
-     * @param userId      目标{@link AppInfo}所属的用户id
-     * @param packageName 目标{@link AppInfo}所属的包名
-     * @return 从 {@link #runningApps}中获取{@link AppInfo}所需的标识符
+     * 运行中的app的uid索引, 与{@link #runningApps}同步维护<br>
+     * 共享uid(sharedUserId)的多个app会对应同一个uid。<br>
+     * uid的数量受已安装app的数量限制, 因此空集合不做移除
      */
-    @NonNull
-    public String getRunningAppIdentifier(int userId, String packageName) {
-        return getAppKey(userId, packageName);
+    private final ConcurrentIntObjectMap<Set<AppInfo>> runningAppsByUid = new ConcurrentIntObjectMap<>();
+
+    private void indexRunningAppByUid(@NonNull AppInfo appInfo) {
+        Set<AppInfo> appInfos = runningAppsByUid.computeIfAbsent(
+                appInfo.getUid(),
+                uid -> Collections.newSetFromMap(new ConcurrentHashMap<>(2))
+        );
+        appInfos.add(appInfo);
+    }
+
+    private void removeRunningAppUidIndex(@NonNull AppInfo appInfo) {
+        Set<AppInfo> appInfos = runningAppsByUid.get(appInfo.getUid());
+        if (appInfos != null) {
+            appInfos.remove(appInfo);
+        }
     }
 
     /**
-     * 根据uid获取正在运行的列表中的app信息<br>
-     * 计算运行中app的map的key需要userId + packageName。<br>
-     * 请使用: getRunningAppInfo(userId,packageName)
+     * 根据uid获取正在运行的app信息<br>
+     * 若多个app共享此uid, 返回其中任意一个。需要全部时请使用{@link #getRunningAppInfosByUid(int)}
      *
      * @param uid 要查询的uid(userId+uid)
      * @return 查询到的app信息
      */
-    // 在2024.2.18的commit, 即"ApplicationInfo的结果集"初次进版时, runningApps的value不会再有null
-    // 但为了保证后续兼容性, 仍然注解为Nullable
-    // @NonNull
-    @Deprecated
     @Nullable
     public AppInfo getRunningAppInfo(int uid) {
-        return runningApps.get(uid);
+        Set<AppInfo> appInfos = runningAppsByUid.get(uid);
+        if (appInfos == null) {
+            return null;
+        }
+        Iterator<AppInfo> iterator = appInfos.iterator();
+        return iterator.hasNext() ? iterator.next() : null;
     }
 
-    @Nullable
-    public AppInfo getRunningAppInfo(int userId, String packageName) {
-        return runningApps.get(getRunningAppIdentifier(userId, packageName));
+    /**
+     * 根据uid获取正在运行的所有app信息
+     *
+     * @param uid 要查询的uid(userId+uid)
+     * @return 查询到的app信息。没有则返回空集合
+     */
+    @NonNull
+    public Collection<AppInfo> getRunningAppInfosByUid(int uid) {
+        Set<AppInfo> appInfos = runningAppsByUid.get(uid);
+        return appInfos == null ? Collections.emptySet() : appInfos;
     }
 
     @Nullable
-    private AppInfo getRunningAppInfo(String key) {
-        return runningApps.get(key);
+    public AppInfo getRunningAppInfo(int userId, String packageName) {
+        return runningApps.get(userId, packageName);
     }
 
     /**
@@ -278,11 +267,15 @@ public class RunningInfo implements ILogger {
      */
     @NonNull
     public AppInfo computeRunningAppIfAbsent(int userId, String packageName, int uid) {
-        return runningApps.computeIfAbsent(getRunningAppIdentifier(userId, packageName), key -> {
+        AppInfo runningAppInfo = runningApps.get(userId, packageName);
+        if (runningAppInfo != null) {
+            return runningAppInfo;
+        }
+        return runningApps.computeIfAbsent(userId, packageName, key -> {
             if (BuildConfig.DEBUG) {
                 getLogger().debug("创建新App记录: " + packageName + ", uid: " + uid);
             }
-            return FindAppResultKt.getOrCreateAppInfo(getFindAppResult(userId, packageName), result -> {
+            AppInfo appInfo = FindAppResultKt.getOrCreateAppInfo(getFindAppResult(userId, packageName), result -> {
                 return AppInfo.newInstance(
                         uid,
                         userId,
@@ -291,6 +284,8 @@ public class RunningInfo implements ILogger {
                         this
                 );
             });
+            indexRunningAppByUid(appInfo);
+            return appInfo;
         });
     }
 
@@ -311,8 +306,10 @@ public class RunningInfo implements ILogger {
 
         try {
             // 从运行列表移除
-            AppInfo remove = runningApps.remove(getRunningAppIdentifier(appInfo.getUserId(), packageName));
+            AppInfo remove = runningApps.remove(appInfo.getUserId(), packageName);
             if (remove != null) {
+                removeRunningAppUidIndex(remove);
+
                 // 从待处理列表中移除
                 activeAppGroup.remove(appInfo);
                 idleAppGroup.remove(appInfo);
@@ -356,7 +353,8 @@ public class RunningInfo implements ILogger {
      * 运行的进程                                                                *
      *                                                                         *
      **************************************************************************/
-    private final Map<Integer, ProcessRecord> runningProcesses = new ConcurrentHashMap<>();
+    // pid -> ProcessRecord。setOomAdj等高频路径按pid查找, 因此不装箱
+    private final ConcurrentIntObjectMap<ProcessRecord> runningProcesses = new ConcurrentIntObjectMap<>();
 
     @Nullable
     public ProcessRecord getRunningProcess(int pid) {
@@ -365,7 +363,16 @@ public class RunningInfo implements ILogger {
 
     @NonNull
     public Collection<ProcessRecord> getRunningProcesses() {
-        return runningProcesses.values();
+        return runningProcesses.getValues();
+    }
+
+    /**
+     * 遍历所有运行中的进程。不产生额外对象
+     *
+     * @param action 对每个进程执行的操作
+     */
+    public void forEachRunningProcess(@NonNull Consumer<ProcessRecord> action) {
+        runningProcesses.forEachValue(action);
     }
 
     private void putIntoRunningProcesses(int pid, @NonNull ProcessRecord processRecord) {
@@ -402,7 +409,10 @@ public class RunningInfo implements ILogger {
             );
             return null;
         }, () -> {*/
-        computeProcessIfAbsent(pid, proc, userId, uid, packageName);
+        ProcessRecord processRecord = computeProcessIfAbsent(pid, proc, userId, uid, packageName);
+        processRecord.appInfo.addProcess(processRecord);
+        // 记录进程启动时间, 用于识别pid复用
+        processRecord.recordProcStartTimeIfAbsent();
             /*return null;
         });*/
     }
@@ -424,6 +434,11 @@ public class RunningInfo implements ILogger {
 
         // 移除进程记录
         removeRunningProcess(pid);
+        appInfo.removeProcess(processRecord);
+        // 丢弃尚未写入lmkd的adj, 防止写给已死亡或复用了pid的进程
+        processRecord.getPendingLmkdAdj().set(ProcessRecord.NO_PENDING_LMKD_ADJ);
+        // 取消等待中的内存压缩任务
+        processManager.cancelCompactProcess(processRecord);
         // 移除内存压缩文件流的缓存
         activityManagerService.getOomAdjuster().getCachedAppOptimizer().removeCompactOutputStreams(pid);
 
@@ -461,41 +476,74 @@ public class RunningInfo implements ILogger {
 
     private final Consumer<AppInfo> putIntoActiveAction = this::putIntoActiveAppGroup;
 
-    private final ExecutorService activityEventChangeExecutor = Executors.newFixedThreadPool(3);
+    private final ActivityEventDispatcher activityEventDispatcher = new ActivityEventDispatcher(new ActivityEventDispatcher.ActivityEventHandler() {
+        @Override
+        public void handle(int event, @Nullable ComponentName componentName, @NonNull AppInfo appInfo) {
+            if (componentName == null) {
+                appInfo.getActivityEventMailbox().getInitialStoppedPending().set(false);
+                // 投递后app已被其他事件设置了分组
+                if (appInfo.getAppGroupEnum() != AppGroupEnum.NONE) {
+                    return;
+                }
+            } else if (appInfo.getAppGroupEnum() == AppGroupEnum.DEAD || !hasApplicationInfo(appInfo)) {
+                // 事件投递后app可能已经死亡
+                return;
+            }
+            handleActivityEventChangeLocked(event, componentName, appInfo);
+        }
+
+        @Override
+        public void handleResumedThenStopped(@NonNull ComponentName componentName, @NonNull AppInfo appInfo) {
+            if (appInfo.getAppGroupEnum() == AppGroupEnum.DEAD || !hasApplicationInfo(appInfo)) {
+                return;
+            }
+            handleActivityResumedThenStoppedLocked(componentName, appInfo);
+        }
+    });
 
-    public ExecutorService getActivityEventChangeExecutor() {
-        return activityEventChangeExecutor;
+    public ActivityEventDispatcher getActivityEventDispatcher() {
+        return activityEventDispatcher;
     }
 
-    public void addActivityEventChangeAction(Runnable block) {
-        getActivityEventChangeExecutor().execute(block);
+    /**
+     * 是否能获取到app的{@link FindAppResult#getApplicationInfo()}<br>
+     * 首次获取需要查询系统, 因此只在{@link ActivityEventDispatcher}的处理线程中调用
+     */
+    private boolean hasApplicationInfo(@NonNull AppInfo appInfo) {
+        return getFindAppResult(appInfo.getUserId(), appInfo.getPackageName()).getApplicationInfo() != null;
     }
 
     /**
-     * 以异步的方式处理Activity改变事件
+     * 将Activity改变事件投递到app的邮箱中, 由{@link ActivityEventDispatcher}串行处理
      *
      * @param event         当前事件码
      * @param userId        用户id
      * @param componentName 组件
      */
     public void handleActivityEventChange(int event, int userId, @NonNull ComponentName componentName) {
-        addActivityEventChangeAction(() -> {
-            handleActivityEventChange(event, userId, componentName.getPackageName(), componentName);
-        });
+        handleActivityEventChange(event, userId, componentName.getPackageName(), componentName);
     }
 
+    /**
+     * 将事件投递到app的邮箱中, 由{@link ActivityEventDispatcher}串行处理<br>
+     * 调用方为hook线程, 因此这里只查询运行中的app; {@link FindAppResult}在处理线程中获取
+     */
     public void handleActivityEventChange(int event, int userId, @NonNull String packageName, @Nullable ComponentName componentName) {
-        String appKey = getAppKey(userId, packageName);
-        FindAppResult findAppResult = getFindAppResult(appKey, userId, packageName);
-        AppInfo appInfo;
-        if ((appInfo = getRunningAppInfo(appKey)) == null || findAppResult.getApplicationInfo() == null) {
+        AppInfo appInfo = getRunningAppInfo(userId, packageName);
+        if (appInfo == null) {
             return;
         }
 
-        ConcurrentUtilsKt.lock(appInfo, () -> {
-            handleActivityEventChangeLocked(event, componentName, appInfo);
-            return null;
-        });
+        activityEventDispatcher.post(appInfo, event, componentName);
+    }
+
+    /**
+     * 投递由setOomAdj触发的初始STOPPED事件(app启动后未曾有Activity事件)。同一app同时只会存在一个
+     */
+    public void postInitialActivityStopped(@NonNull AppInfo appInfo) {
+        if (appInfo.getActivityEventMailbox().getInitialStoppedPending().compareAndSet(false, true)) {
+            activityEventDispatcher.post(appInfo, ActivityManagerServiceHookKt.ACTIVITY_STOPPED, null);
+        }
     }
 
     /**
@@ -567,6 +615,28 @@ public class RunningInfo implements ILogger {
         }
     }
 
+    /**
+     * 处理合并后的同一组件的RESUMED -> STOPPED<br>
+     * 组件信息照常更新; 若app原本就处于后台且亮屏, 则不再经过活跃分组, 其余情况与依次处理两个事件相同
+     *
+     * @param componentName 组件
+     * @param appInfo       app
+     */
+    public void handleActivityResumedThenStoppedLocked(@NonNull ComponentName componentName, @NonNull AppInfo appInfo) {
+        if (appInfo.getAppGroupEnum() == AppGroupEnum.IDLE
+                && Objects.equals(componentName, appInfo.getComponentName())
+                && getPowerManager().isInteractive()) {
+            handleActuallyActivityEventChange(appInfo, () -> {
+                appInfo.activityActive(componentName);
+                updateAppSwitchState(componentName, appInfo);
+            }, throwable -> getLogger().error("ACTIVITY_RESUMED -> ACTIVITY_STOPPED处理出错", throwable));
+            return;
+        }
+
+        handleActivityEventChangeLocked(ActivityManagerServiceHookKt.ACTIVITY_RESUMED, componentName, appInfo);
+        handleActivityEventChangeLocked(ActivityManagerServiceHookKt.ACTIVITY_STOPPED, componentName, appInfo);
+    }
+
     private void handleActuallyActivityEventChange(@NonNull AppInfo appInfo, @NonNull Runnable action, @Nullable Consumer<Throwable> throwableAction) {
         /*Lock appInfoLock = appInfo.getLock();
         appInfoLock.lock();*/
@@ -632,11 +702,8 @@ public class RunningInfo implements ILogger {
             if (processRecord.getAdjHandleActionType() == AdjHandleActionType.CUSTOM_MAIN_PROCESS) {
                 ProcessListHookKt hookInstance = IHook.getHookInstance(ProcessListHookKt.class);
                 if (hookInstance != null) {
-                    hookInstance.handleSetOomAdjLocked(
-                            processRecord,
-                            ProcessList.FOREGROUND_APP_ADJ,
-                            HookCommonProperties.getGlobalOomScorePolicy().getValue()
-                    );
+                    // 切换事件由消息线程分发, 不能在此直接计算adj, 交由adj处理线程在appInfo的锁内执行
+                    hookInstance.postSetOomAdj(processRecord, ProcessList.FOREGROUND_APP_ADJ);
                 }
             }
         }
@@ -671,20 +738,11 @@ public class RunningInfo implements ILogger {
         if (hookInstance != null) {
             int adj = hookInstance.getOomAdjHandler().computeHighPrioritySubProcessAdj(0);
             //hookInstance.addAdjSetAction(() -> {
-            getRunningProcesses().stream()
-                    .filter(processRecord -> processRecord.appInfo == appInfo)
-                    .filter(processRecord -> !processRecord.getMainProcess())
-                    .filter(ProcessListHookKtKt::isHighPrioritySubProcess)
-                    .forEach(processRecord -> {
-                        hookInstance.addAdjComputeAndApplyAction(processRecord, () -> {
-                            ProcessList.writeLmkd(
-                                    processRecord.getPid(),
-                                    processRecord.getUid(),
-                                    adj
-                            );
-                            return null;
-                        });
-                    });
+            appInfo.getHighPrioritySubProcesses().forEach(processRecord -> {
+                if (ProcessListHookKtKt.isHighPrioritySubProcess(processRecord)) {
+                    hookInstance.applyFinalAdj(processRecord, adj);
+                }
+            });
             //});
         }
     }
@@ -720,7 +778,7 @@ public class RunningInfo implements ILogger {
     public void setActiveLaunchPackageName(String activeLaunchPackageName) {
         String curLaunchPackageName = this.activeLaunchPackageName;
         // 将原桌面的adj调节修改
-        runningApps.values().stream()
+        runningAppsInfo.stream()
                 .filter(appInfo -> Objects.equals(appInfo.getPackageName(), curLaunchPackageName))
                 .forEach(appInfo -> appInfo.adjHandleFunction = AppInfo.handleAdjDependOnAppOptimizePolicy);
         // 保存新桌面包名
@@ -791,7 +849,7 @@ public class RunningInfo implements ILogger {
 
     private PropertyChangeListener<String> generateDefaultApplicationChangeListener(String tag) {
         return (oldValue, newValue) -> {
-            runningApps.values().stream()
+            runningAppsInfo.stream()
                     // .filter(AppInfo::isImportSystemApp)
                     .filter(appInfo -> Objects.equals(appInfo.getPackageName(), oldValue) || Objects.equals(appInfo.getPackageName(), newValue))
                     .forEach(appInfo -> {
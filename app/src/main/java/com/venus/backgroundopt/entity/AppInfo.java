@@ -20,6 +20,7 @@ package com.venus.backgroundopt.entity;
 import static com.venus.backgroundopt.core.RunningInfo.AppGroupEnum;
 
 import android.content.ComponentName;
+import android.os.SystemClock;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
@@ -27,8 +28,10 @@ import androidx.annotation.Nullable;
 import com.venus.backgroundopt.BuildConfig;
 import com.venus.backgroundopt.core.RunningInfo;
 import com.venus.backgroundopt.environment.hook.HookCommonProperties;
+import com.venus.backgroundopt.hook.handle.android.ProcessListHookKtKt;
 import com.venus.backgroundopt.hook.handle.android.entity.ActivityManagerService;
 import com.venus.backgroundopt.hook.handle.android.entity.ProcessRecord;
+import com.venus.backgroundopt.manager.application.ActivityEventMailbox;
 import com.venus.backgroundopt.manager.application.DefaultApplicationManager;
 import com.venus.backgroundopt.utils.concurrent.lock.LockFlag;
 import com.venus.backgroundopt.utils.log.ILogger;
@@ -52,6 +55,7 @@ import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.BiFunction;
+import java.util.function.Consumer;
 
 /**
  * app信息
@@ -255,10 +259,12 @@ public class AppInfo implements ILogger, LockFlag {
 
         // 如果现在是永不处理
         if (this.adjHandleFunction == AppInfo.handleAdjNever) {
-            runningInfo.getRunningProcesses().stream()
-                    // 按包名匹配(处理应用分身情况)
-                    .filter(processRecord -> Objects.equals(processRecord.getPackageName(), packageName))
-                    .forEach(ProcessRecord::resetMaxAdj);
+            runningInfo.forEachRunningProcess(processRecord -> {
+                // 按包名匹配(处理应用分身情况)
+                if (Objects.equals(processRecord.getPackageName(), packageName)) {
+                    processRecord.resetMaxAdj();
+                }
+            });
         }
     }
 
@@ -271,10 +277,21 @@ public class AppInfo implements ILogger, LockFlag {
     @DontClearField
     private volatile AppGroupEnum appGroupEnum = AppGroupEnum.NONE;
 
+    // 最近一次进入IDLE分组的时间点(SystemClock.uptimeMillis())
+    @DontClearField
+    private volatile long idleSinceUptimeMillis = 0L;
+
     public void setAppGroupEnum(AppGroupEnum appGroupEnum) {
+        if (appGroupEnum == AppGroupEnum.IDLE && this.appGroupEnum != AppGroupEnum.IDLE) {
+            idleSinceUptimeMillis = SystemClock.uptimeMillis();
+        }
         this.appGroupEnum = appGroupEnum;
     }
 
+    public long getIdleSinceUptimeMillis() {
+        return idleSinceUptimeMillis;
+    }
+
     public AppGroupEnum getAppGroupEnum() {
         return appGroupEnum;
     }
@@ -457,13 +474,127 @@ public class AppInfo implements ILogger, LockFlag {
         }
     }
 
+    /* *************************************************************************
+     *                                                                         *
+     * app进程索引                                                               *
+     *                                                                         *
+     **************************************************************************/
+    // 可能为高优先级的子进程(见ProcessListHookKtKt#isHighPrioritySubProcessCandidate)
+    @DontClearField(reset = true)
+    private final Set<ProcessRecord> highPrioritySubProcesses = Collections.newSetFromMap(new ConcurrentHashMap<>(4));
+
+    // 普通子进程
+    @DontClearField(reset = true)
+    private final Set<ProcessRecord> normalSubProcesses = Collections.newSetFromMap(new ConcurrentHashMap<>(8));
+
+    // 进程在两个集合之间的增删与移动。读取不加锁
+    @DontClearField
+    private final Object processIndexLock = new Object();
+
+    /**
+     * 记录当前app的进程。主进程由{@link #mProcessRecord}记录, 这里只处理子进程
+     *
+     * @param processRecord 新建的进程
+     */
+    public void addProcess(@NonNull ProcessRecord processRecord) {
+        if (processRecord.getMainProcess()) {
+            return;
+        }
+        synchronized (processIndexLock) {
+            if (ProcessListHookKtKt.isHighPrioritySubProcessCandidate(processRecord)) {
+                highPrioritySubProcesses.add(processRecord);
+            } else {
+                normalSubProcesses.add(processRecord);
+            }
+        }
+    }
+
+    public void removeProcess(@NonNull ProcessRecord processRecord) {
+        synchronized (processIndexLock) {
+            if (!highPrioritySubProcesses.remove(processRecord)) {
+                normalSubProcesses.remove(processRecord);
+            }
+        }
+    }
+
+    /**
+     * 子进程的优先级相关属性改变时, 重新划分其所在的集合
+     * 只移动已记录的进程, 避免把已移除的进程重新放入。
+     * 移动需要先移除再放入, 因此与{@link #removeProcess(ProcessRecord)}在同一把锁内执行,
+     * 否则并发的移除可能落在两步之间, 进程随后又被放回
+     *
+     * @param processRecord 子进程
+     */
+    public void reindexProcess(@NonNull ProcessRecord processRecord) {
+        if (processRecord.getMainProcess()) {
+            return;
+        }
+        synchronized (processIndexLock) {
+            if (ProcessListHookKtKt.isHighPrioritySubProcessCandidate(processRecord)) {
+                if (normalSubProcesses.remove(processRecord)) {
+                    highPrioritySubProcesses.add(processRecord);
+                }
+            } else {
+                if (highPrioritySubProcesses.remove(processRecord)) {
+                    normalSubProcesses.add(processRecord);
+                }
+            }
+        }
+    }
+
+    /**
+     * 可能为高优先级的子进程。使用时仍需以{@link ProcessListHookKtKt#isHighPrioritySubProcess(ProcessRecord)}确认
+     */
+    @NonNull
+    public Collection<ProcessRecord> getHighPrioritySubProcesses() {
+        return highPrioritySubProcesses;
+    }
+
+    @NonNull
+    public Collection<ProcessRecord> getNormalSubProcesses() {
+        return normalSubProcesses;
+    }
+
+    public int getProcessCount() {
+        return (mProcessRecord == null ? 0 : 1) + highPrioritySubProcesses.size() + normalSubProcesses.size();
+    }
+
+    /**
+     * 遍历当前app的所有进程(主进程、高优先级子进程、普通子进程)
+     *
+     * @param action 对每个进程执行的操作
+     */
+    public void forEachProcess(@NonNull Consumer<ProcessRecord> action) {
+        ProcessRecord mainProcessRecord = mProcessRecord;
+        if (mainProcessRecord != null) {
+            action.accept(mainProcessRecord);
+        }
+        highPrioritySubProcesses.forEach(action);
+        normalSubProcesses.forEach(action);
+    }
+
+    /* *************************************************************************
+     *                                                                         *
+     * Activity事件邮箱                                                          *
+     *                                                                         *
+     **************************************************************************/
+    // Activity事件由RunningInfo的ActivityEventDispatcher串行处理, 不再需要持有类锁
+    @DontClearField
+    private final ActivityEventMailbox activityEventMailbox = new ActivityEventMailbox();
+
+    @NonNull
+    public ActivityEventMailbox getActivityEventMailbox() {
+        return activityEventMailbox;
+    }
+
     /* *************************************************************************
      *                                                                         *
      * 类锁                                                                     *
      *                                                                         *
      **************************************************************************/
+    // 仅setOomAdj的处理会竞争, 持有时间很短, 不需要公平锁
     @DontClearField
-    private final ReentrantLock lock = new ReentrantLock(true);
+    private final ReentrantLock lock = new ReentrantLock();
 
     @NonNull
     @Override
@@ -86,6 +86,40 @@ public interface PreferenceDefaultValue {
      **************************************************************************/
     boolean enableSimpleLmk = true;
 
+    /* *************************************************************************
+     *                                                                         *
+     * adj写入延迟(毫秒)                                                          *
+     *                                                                         *
+     **************************************************************************/
+    long protectiveAdjApplyDelayMillis = 0L;
+    long coalescedAdjApplyDelayMillis = 3000L;
+    long coalescedAdjApplyMinDelayMillis = 50L;
+
+    /* *************************************************************************
+     *                                                                         *
+     * 内存压缩                                                                  *
+     *                                                                         *
+     **************************************************************************/
+    long compactLowYieldThresholdMb = 8L;
+    long compactChannelCacheSize = 64L;
+
+    /* *************************************************************************
+     *                                                                         *
+     * 内存压力(PSI, avg10的百分比)                                                *
+     *                                                                         *
+     **************************************************************************/
+    long memoryPressureSomeHighPercent = 10L;
+    long memoryPressureFullHighPercent = 3L;
+    long memoryPressureSomeLowPercent = 1L;
+
+    /* *************************************************************************
+     *                                                                         *
+     * 交换区剩余空间(百分比)                                                       *
+     *                                                                         *
+     **************************************************************************/
+    long swapHeadroomLowPercent = 10L;
+    long swapHeadroomCriticalPercent = 5L;
+
     /* *************************************************************************
      *                                                                         *
      * 全局OOM                                                                  *
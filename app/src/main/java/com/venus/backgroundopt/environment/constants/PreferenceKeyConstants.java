@@ -37,4 +37,14 @@ public interface PreferenceKeyConstants {
     String DYNAMIC_THEME = "pref_key_dynamic_theme";
     String KEEP_MAIN_PROCESS_ALIVE_HAS_ACTIVITY = "pref_key_keep_main_process_alive_has_activity";
     String SECONDARY_MESSAGE_SENDER = "pref_key_secondary_message_sender";
+    String PROTECTIVE_ADJ_APPLY_DELAY = "pref_key_protective_adj_apply_delay";
+    String COALESCED_ADJ_APPLY_DELAY = "pref_key_coalesced_adj_apply_delay";
+    String COALESCED_ADJ_APPLY_MIN_DELAY = "pref_key_coalesced_adj_apply_min_delay";
+    String COMPACT_LOW_YIELD_THRESHOLD = "pref_key_compact_low_yield_threshold";
+    String COMPACT_CHANNEL_CACHE_SIZE = "pref_key_compact_channel_cache_size";
+    String MEMORY_PRESSURE_SOME_HIGH = "pref_key_memory_pressure_some_high";
+    String MEMORY_PRESSURE_FULL_HIGH = "pref_key_memory_pressure_full_high";
+    String MEMORY_PRESSURE_SOME_LOW = "pref_key_memory_pressure_some_low";
+    String SWAP_HEADROOM_LOW = "pref_key_swap_headroom_low";
+    String SWAP_HEADROOM_CRITICAL = "pref_key_swap_headroom_critical";
 }
\ No newline at end of file
@@ -21,19 +21,15 @@ import androidx.annotation.NonNull;
 
 import com.venus.backgroundopt.annotation.AndroidObject;
 import com.venus.backgroundopt.annotation.AndroidObjectField;
+import com.venus.backgroundopt.environment.hook.HookCommonProperties;
 import com.venus.backgroundopt.hook.constants.ClassConstants;
 import com.venus.backgroundopt.hook.constants.FieldConstants;
 import com.venus.backgroundopt.hook.constants.MethodConstants;
+import com.venus.backgroundopt.utils.ReclaimChannelCache;
 import com.venus.backgroundopt.utils.log.ILogger;
 
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
-import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 
 import de.robv.android.xposed.XposedHelpers;
 
@@ -210,73 +206,60 @@ public class CachedAppOptimizer implements ILogger, IAndroidEntity {
     }
 
     /**
-     * 缓存的内存压缩的文件流 <br>
+     * 缓存的内存压缩节点的文件通道 <br>
      * 进程的内存压缩不止一次执行, 缓存以提高性能 <br>
-     * 初次使用时创建, 进程移除时进行关闭。
+     * 初次使用时打开, 进程移除、缓存超出上限或写入出错时关闭。
      */
-    private final Map<Integer, FileOutputStream> compactOutputStreamMap = new ConcurrentHashMap<>();
+    private final ReclaimChannelCache reclaimChannelCache =
+            new ReclaimChannelCache((int) HookCommonProperties.INSTANCE.getCompactChannelCacheSize());
+
+    public ReclaimChannelCache getReclaimChannelCache() {
+        return reclaimChannelCache;
+    }
+
     /**
-     * 向内存压缩节点写入的值的字节流 <br>
-     * 以便在使用时不需要重复性的进行 字符->字节数组 的转换
+     * 向内存压缩节点写入的值 <br>
+     * 以只读的直接缓冲区保存, 写入时不需要重复性的进行 字符->字节数组 的转换与拷贝。按索引取出
      */
-    private final List<byte[]> compactActions = new ArrayList<>(2) {
-        /**
-         * 获取压缩行为的字节数组
-         * @param action 压缩行为的具体str
-         * @return 以UTF-8转换后的字节数组
-         */
-        private byte[] getActionBytes(String action) {
-            return action.getBytes(StandardCharsets.UTF_8);
-        }
-
-        {
-            // 使用的时候按照索引取出bytes[]
-            add(getActionBytes("all"));
-            add(getActionBytes("file"));
-        }
+    private final ByteBuffer[] compactActions = {
+            getActionBuffer("all"),
+            getActionBuffer("file"),
+            getActionBuffer("anon"),
     };
 
     /**
-     * 移除缓存的内存压缩文件流
-     * @param pid 缓存的文件流以pid为标识
+     * 获取压缩行为的缓冲区
+     * @param action 压缩行为的具体str
+     * @return 以UTF-8转换后的只读直接缓冲区
+     */
+    private static ByteBuffer getActionBuffer(String action) {
+        byte[] bytes = action.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+        buffer.put(bytes).flip();
+        return buffer.asReadOnlyBuffer();
+    }
+
+    /**
+     * 移除缓存的内存压缩文件通道
+     * @param pid 缓存的文件通道以pid为标识
      */
     public void removeCompactOutputStreams(int pid) {
-        FileOutputStream fos = compactOutputStreamMap.remove(pid);
-        if (fos != null) {
-            try {
-                fos.close();
-            } catch (IOException ignore) {
-            }
-        }
+        reclaimChannelCache.remove(pid);
     }
 
     /**
      * 强制内存压缩
      * @param pid   要压缩的进程的pid
-     * @param compactionFlags 压缩的标识({@link #COMPACT_ACTION_FULL})
+     * @param compactionFlags 压缩的标识({@link #COMPACT_ACTION_FULL}, {@link #COMPACT_ACTION_FILE}, {@link #COMPACT_ACTION_ANON})
+     * @param procStartTime 记录的进程启动时间。用于防止写入pid复用后的新进程, 0 = 不检查
      * @return 写入了节点 -> true
      */
-    public boolean compactProcessForce(int pid, int compactionFlags) {
-        FileOutputStream fos = compactOutputStreamMap.computeIfAbsent(pid, key -> {
-            try {
-                String path = "/proc/" + pid + "/reclaim";
-                return new FileOutputStream(path);
-            } catch (FileNotFoundException e) {
-                return null;
-            }
-        });
-        if (fos != null) {
-            try {
-                int index = switch (compactionFlags) {
-                    case COMPACT_ACTION_FILE -> 1;
-                    default -> 0;
-                };
-                byte[] actionBytes = compactActions.get(index);
-                fos.write(actionBytes);
-                return true;
-            } catch (Throwable ignore) {
-            }
-        }
-        return false;
+    public boolean compactProcessForce(int pid, int compactionFlags, long procStartTime) {
+        int index = switch (compactionFlags) {
+            case COMPACT_ACTION_FILE -> 1;
+            case COMPACT_ACTION_ANON -> 2;
+            default -> 0;
+        };
+        return reclaimChannelCache.write(pid, compactActions[index], procStartTime);
     }
 }
\ No newline at end of file
@@ -375,13 +375,19 @@ public class ProcessList implements ILogger {
      * @param pid 进程pid
      */
     public ProcessRecord getTargetProcessRecord(int pid) {
+        // 优先从已记录的进程中获取
+        ProcessRecord runningProcess = RunningInfo.getInstance().getRunningProcess(pid);
+        if (runningProcess != null) {
+            return runningProcess;
+        }
+
         ObjectReference<ProcessRecord> processRecord = new ObjectReference<>();
         List<?> procList = getProcList();
 
         procList.stream()
-                .filter(process -> Objects.equals(ProcessRecord.getPid(process), pid))
+                .filter(process -> ProcessRecord.getPid(process) == pid)
                 .findAny()
-                .ifPresent(process -> processRecord.set(new ProcessRecord(activityManagerService, processRecord)));
+                .ifPresent(process -> processRecord.set(new ProcessRecord(activityManagerService, process)));
 
         return processRecord.get();
     }
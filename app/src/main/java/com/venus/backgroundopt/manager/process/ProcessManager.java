@@ -22,7 +22,6 @@ import static com.venus.backgroundopt.core.RunningInfo.AppGroupEnum;
 import com.venus.backgroundopt.BuildConfig;
 import com.venus.backgroundopt.core.RunningInfo;
 import com.venus.backgroundopt.entity.AppInfo;
-import com.venus.backgroundopt.entity.base.BaseProcessInfoKt;
 import com.venus.backgroundopt.hook.handle.android.entity.ActivityManagerService;
 import com.venus.backgroundopt.hook.handle.android.entity.CachedAppOptimizer;
 import com.venus.backgroundopt.hook.handle.android.entity.Process;
@@ -31,8 +30,8 @@ import com.venus.backgroundopt.utils.log.ILogger;
 
 import org.jetbrains.annotations.Nullable;
 
+import java.util.List;
 import java.util.Set;
-import java.util.stream.Collectors;
 
 /**
  * @author XingC
@@ -65,13 +64,61 @@ public class ProcessManager implements ILogger {
     public ProcessManager(RunningInfo runningInfo) {
         this.runningInfo = runningInfo;
         ActivityManagerService activityManagerService = runningInfo.getActivityManagerService();
-        /*appCompactManager = new AppCompactManager(
-                activityManagerService.getOomAdjuster().getCachedAppOptimizer(),
-                runningInfo
-        );*/
+        maintenanceWindowCoordinator = new MaintenanceWindowCoordinator(
+                new BroadcastDeviceStateSource(activityManagerService::getContext));
         appCompactManager2 = new AppCompactManager2(activityManagerService.getOomAdjuster().getCachedAppOptimizer(),
-                runningInfo);
-        appMemoryTrimManager = new AppMemoryTrimManagerKt(runningInfo);
+                runningInfo, maintenanceWindowCoordinator);
+        trimEffectivenessTracker = new TrimEffectivenessTracker();
+        gcCoordinator = new GcCoordinator(trimEffectivenessTracker);
+        appMemoryTrimManager = new AppMemoryTrimManagerKt(runningInfo, maintenanceWindowCoordinator, gcCoordinator,
+                trimEffectivenessTracker);
+
+        memoryPressureMonitor = new MemoryPressureMonitor((level, sample) -> {
+            appCompactManager2.onMemoryPressure(level);
+            appMemoryTrimManager.onMemoryPressure(level);
+        });
+        memoryPressureMonitor.start();
+
+        swapHeadroomGuard = new SwapHeadroomGuard(level -> {
+            appCompactManager2.onSwapHeadroom(level);
+            appMemoryTrimManager.onSwapHeadroom(level);
+        });
+        swapHeadroomGuard.start();
+
+        maintenanceWindowCoordinator.start();
+    }
+
+    /* *************************************************************************
+     *                                                                         *
+     * 交换区剩余空间                                                             *
+     *                                                                         *
+     **************************************************************************/
+    private final SwapHeadroomGuard swapHeadroomGuard;
+
+    public SwapHeadroomGuard getSwapHeadroomGuard() {
+        return swapHeadroomGuard;
+    }
+
+    /* *************************************************************************
+     *                                                                         *
+     * 维护窗口                                                                  *
+     *                                                                         *
+     **************************************************************************/
+    private final MaintenanceWindowCoordinator maintenanceWindowCoordinator;
+
+    public MaintenanceWindowCoordinator getMaintenanceWindowCoordinator() {
+        return maintenanceWindowCoordinator;
+    }
+
+    /* *************************************************************************
+     *                                                                         *
+     * 内存压力                                                                  *
+     *                                                                         *
+     **************************************************************************/
+    private final MemoryPressureMonitor memoryPressureMonitor;
+
+    public MemoryPressureMonitor getMemoryPressureMonitor() {
+        return memoryPressureMonitor;
     }
 
     /* *************************************************************************
@@ -79,26 +126,28 @@ public class ProcessManager implements ILogger {
      * app压缩                                                                  *
      *                                                                         *
      **************************************************************************/
-    private AppCompactManager appCompactManager;
-    private AppCompactManager2 appCompactManager2;
+    private final AppCompactManager2 appCompactManager2;
 
-    public Set<ProcessRecord> getCompactProcessInfos() {
-        return appCompactManager.getCompactProcesses();
+    public AppCompactManager2 getAppCompactManager2() {
+        return appCompactManager2;
+    }
+
+    /**
+     * 压缩候选进程
+     */
+    public List<ProcessRecord> getCompactProcessInfos() {
+        return appCompactManager2.getCompactProcesses();
     }
 
     public void setAutoStopCompactTask(boolean enable) {
-        appCompactManager.setAutoStopCompactTask(enable);
+        appCompactManager2.setAutoStopCompactTask(enable);
     }
 
     /**
      * 添加压缩进程
      */
-    private void addCompactProcess(AppInfo appInfo) {
-        appCompactManager.addCompactProcess(appInfo);
-    }
-
     public void addCompactProcess(ProcessRecord processRecord) {
-        appCompactManager.addCompactProcess(processRecord);
+        appCompactManager2.addCompactProcess(processRecord);
     }
 
     /**
@@ -107,71 +156,52 @@ public class ProcessManager implements ILogger {
      * @param processRecord 进程记录
      */
     public void cancelCompactProcess(@Nullable ProcessRecord processRecord) {
-        appCompactManager.cancelCompactProcess(processRecord);
+        if (processRecord == null) {
+            return;
+        }
+        appCompactManager2.cancelCompactProcess(processRecord);
     }
 
-    private void cancelCompactProcess(AppInfo appInfo) {
-        appCompactManager.cancelCompactProcess(appInfo);
+    public void compactProcess(ProcessRecord processRecord, int lastOomScoreAdj, int curOomScoreAdj, int oomAdjustLevel) {
+        appCompactManager2.compactProcess(processRecord, lastOomScoreAdj, curOomScoreAdj, oomAdjustLevel);
     }
 
     public void compactApp(ProcessRecord processRecord) {
-        appCompactManager.compactApp(processRecord);
-    }
-
-    public void compactApp(int pid) {
-        appCompactManager.compactApp(pid);
-    }
-
-    public void compactProcess(ProcessRecord processRecord, int lastOomScoreAdj, int curOomScoreAdj, int oomAdjustLevel) {
-        appCompactManager2.compactProcess(processRecord, lastOomScoreAdj, curOomScoreAdj, oomAdjustLevel);
+        appCompactManager2.compactApp(processRecord);
     }
 
     /**
-     * 压缩app
+     * 压缩进程
      *
-     * @param pid           进程pid
-     * @param compactAction 压缩行为: {@link CachedAppOptimizer#COMPACT_ACTION_NONE}等
+     * @param processRecord 进程记录
+     * @param compactAction 压缩行为: {@link CachedAppOptimizer#COMPACT_ACTION_FILE}等
      */
-    public void compactApp(int pid, int compactAction) {
-        appCompactManager.compactApp(pid, compactAction);
+    public void compactApp(ProcessRecord processRecord, int compactAction) {
+        appCompactManager2.compactApp(processRecord, compactAction);
     }
 
     /**
-     * 部分压缩
+     * 压缩app的所有进程
      *
-     * @param pid 要压缩的pid
+     * @param appInfo       app
+     * @param compactAction 压缩行为: {@link CachedAppOptimizer#COMPACT_ACTION_FILE}等
      */
-    public void compactAppSome(int pid) {
-        appCompactManager.compactAppSome(pid);
+    public void compactApp(AppInfo appInfo, int compactAction) {
+        appCompactManager2.compactApp(appInfo, compactAction);
     }
 
+    /**
+     * 部分压缩
+     */
     public void compactAppSome(AppInfo appInfo) {
-        appCompactManager.compactAppSome(appInfo);
+        compactApp(appInfo, CachedAppOptimizer.COMPACT_ACTION_FILE);
     }
 
     /**
      * 全量压缩
-     *
-     * @param pid 要压缩的pid
      */
-    public int compactAppFull(int pid, int curAdj) {
-        return appCompactManager.compactAppFull(pid, curAdj);
-    }
-
-    public void compactAppFullNoCheck(int pid) {
-        appCompactManager.compactAppFullNoCheck(pid);
-    }
-
-//    public boolean compactAppFull(ProcessInfo processInfo) {
-//        return cachedAppOptimizer.compactApp(processInfo.getProcessRecord(), true, "Full");
-//    }
-
-    public int compactAppFull(ProcessRecord processRecord) {
-        return appCompactManager.compactAppFull(processRecord);
-    }
-
-    public void compactAppFullNoCheck(ProcessRecord processRecord) {
-        appCompactManager.compactAppFullNoCheck(processRecord);
+    public void compactAppFull(ProcessRecord processRecord) {
+        compactApp(processRecord, CachedAppOptimizer.COMPACT_ACTION_FULL);
     }
 
     /* *************************************************************************
@@ -181,6 +211,10 @@ public class ProcessManager implements ILogger {
      **************************************************************************/
     private final AppMemoryTrimManagerKt appMemoryTrimManager;
 
+    public AppMemoryTrimManagerKt getAppMemoryTrimManager() {
+        return appMemoryTrimManager;
+    }
+
     public void configureForegroundTrimCheckTask(boolean isEnable) {
         appMemoryTrimManager.setEnableForegroundTrim(isEnable);
     }
@@ -205,8 +239,25 @@ public class ProcessManager implements ILogger {
         appMemoryTrimManager.removeAllTask(appInfo.getmProcessRecord());
     }
 
+    /* *************************************************************************
+     *                                                                         *
+     * gc                                                                       *
+     *                                                                         *
+     **************************************************************************/
+    private final GcCoordinator gcCoordinator;
+
+    public GcCoordinator getGcCoordinator() {
+        return gcCoordinator;
+    }
+
+    private final TrimEffectivenessTracker trimEffectivenessTracker;
+
+    public TrimEffectivenessTracker getTrimEffectivenessTracker() {
+        return trimEffectivenessTracker;
+    }
+
     /**
-     * 处理gc
+     * 处理gc。经过{@link GcCoordinator}的限速与收益判断
      *
      * @param appInfo app信息
      */
@@ -219,7 +270,7 @@ public class ProcessManager implements ILogger {
 
             return;
         }
-        handleGCNoNullCheck(processRecord);
+        gcCoordinator.requestGc(processRecord);
     }
 
     public static boolean handleGC(ProcessRecord processRecord) {
@@ -230,6 +281,9 @@ public class ProcessManager implements ILogger {
         return handleGCNoNullCheck(processRecord);
     }
 
+    /**
+     * 直接发送信号, 不经过{@link GcCoordinator}
+     */
     public static boolean handleGCNoNullCheck(ProcessRecord processRecord) {
         // kill -10 pid
         try {
@@ -259,6 +313,8 @@ public class ProcessManager implements ILogger {
         /*ConcurrentUtilsKt.lock(appInfo, () -> {*/
         // 移除压缩任务
         // cancelCompactProcess(appInfo);
+        // 前台app启动期间推迟压缩
+        appCompactManager2.onForegroundAppLaunch();
         // 添加前台任务
         startForegroundAppTrimTask(appInfo.getmProcessRecord());
             /*return null;
@@ -291,16 +347,11 @@ public class ProcessManager implements ILogger {
         if (appInfo == null) {
             return;
         }
-        Set<Integer> processInfoPids = runningInfo.getRunningProcesses().stream()
-                .filter(processRecordKt -> processRecordKt.getAppInfo() == appInfo)
-                .map(BaseProcessInfoKt::getPid)
-                .collect(Collectors.toSet());
-
-        if (processInfoPids.isEmpty()) {
+        if (appInfo.getProcessCount() == 0) {
             return;
         }
 
-        processInfoPids.forEach(this::setPidToBackgroundProcessGroup);
+        appInfo.forEachProcess(processRecord -> setPidToBackgroundProcessGroup(processRecord.getPid()));
 
         if (BuildConfig.DEBUG) {
             getLogger().debug(appInfo.getPackageName() + " 进行进程组设置 >>> THREAD_GROUP_BACKGROUND");
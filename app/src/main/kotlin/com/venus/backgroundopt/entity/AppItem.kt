@@ -22,6 +22,7 @@ import android.graphics.drawable.Drawable
 import com.alibaba.fastjson2.annotation.JSONCreator
 import com.alibaba.fastjson2.annotation.JSONField
 import com.venus.backgroundopt.manager.process.AbstractAppOptimizeManager.AppOptimizeEnum
+import com.venus.backgroundopt.manager.process.CompactYieldHistory
 import com.venus.backgroundopt.manager.process.ProcessingResult
 import com.venus.backgroundopt.utils.message.MessageFlag
 
@@ -73,6 +74,9 @@ class AppItem @JSONCreator constructor() : MessageFlag {
     @JSONField(serialize = false)
     lateinit var lastProcessingResultMap: MutableMap<AppOptimizeEnum, ProcessingResult>
 
+    @JSONField(serialize = false)
+    var compactYieldHistory: CompactYieldHistory? = null
+
     // 是否是系统app
     @JSONField(serialize = false)
     var systemApp = false
@@ -18,6 +18,7 @@
 package com.venus.backgroundopt.entity.base
 
 import com.venus.backgroundopt.manager.process.AbstractAppOptimizeManager.AppOptimizeEnum
+import com.venus.backgroundopt.manager.process.CompactYieldHistory
 import com.venus.backgroundopt.manager.process.ProcessingResult
 import com.venus.backgroundopt.utils.message.MessageFlag
 import java.util.concurrent.ConcurrentHashMap
@@ -60,6 +61,10 @@ open class BaseProcessInfoKt(
     val lastProcessingResultMap =
         ConcurrentHashMap<AppOptimizeEnum, ProcessingResult>(AppOptimizeEnum.entries.size)
 
+    // 内存压缩收益。首次压缩后创建
+    @Volatile
+    var compactYieldHistory: CompactYieldHistory? = null
+
     // 是否是webview进程
     var webviewProcess = false
     var webviewProcessProbable = webviewProcess   /* 更宽泛的匹配条件 */
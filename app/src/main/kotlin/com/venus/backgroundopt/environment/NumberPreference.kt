@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) 2023 BackgroundOpt
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.venus.backgroundopt.environment
+
+import com.venus.backgroundopt.environment.constants.PreferenceKeyConstants
+
+/**
+ * 以字符串保存的整数配置项
+ *
+ * 设置界面按此校验输入, hook端读取到范围外的值(手动修改了配置文件等)时使用默认值
+ *
+ * @property unit 展示用的单位
+ *
+ * @author XingC
+ * @date 2026/10/18
+ */
+enum class NumberPreference(
+    val key: String,
+    val unit: String,
+    val min: Long,
+    val max: Long,
+    val defaultValue: Long,
+) {
+    PROTECTIVE_ADJ_APPLY_DELAY(
+        key = PreferenceKeyConstants.PROTECTIVE_ADJ_APPLY_DELAY,
+        unit = "ms",
+        min = 0L,
+        max = 10_000L,
+        defaultValue = PreferenceDefaultValue.protectiveAdjApplyDelayMillis
+    ),
+    COALESCED_ADJ_APPLY_DELAY(
+        key = PreferenceKeyConstants.COALESCED_ADJ_APPLY_DELAY,
+        unit = "ms",
+        min = 0L,
+        max = 60_000L,
+        defaultValue = PreferenceDefaultValue.coalescedAdjApplyDelayMillis
+    ),
+    COALESCED_ADJ_APPLY_MIN_DELAY(
+        key = PreferenceKeyConstants.COALESCED_ADJ_APPLY_MIN_DELAY,
+        unit = "ms",
+        min = 0L,
+        max = 60_000L,
+        defaultValue = PreferenceDefaultValue.coalescedAdjApplyMinDelayMillis
+    ),
+    COMPACT_LOW_YIELD_THRESHOLD(
+        key = PreferenceKeyConstants.COMPACT_LOW_YIELD_THRESHOLD,
+        unit = "MB",
+        min = 0L,
+        max = 1024L,
+        defaultValue = PreferenceDefaultValue.compactLowYieldThresholdMb
+    ),
+
+    // 每个通道占用一个文件描述符
+    COMPACT_CHANNEL_CACHE_SIZE(
+        key = PreferenceKeyConstants.COMPACT_CHANNEL_CACHE_SIZE,
+        unit = "个",
+        min = 1L,
+        max = 1024L,
+        defaultValue = PreferenceDefaultValue.compactChannelCacheSize
+    ),
+
+    // 高压力阈值为0时会一直处于高压力状态
+    MEMORY_PRESSURE_SOME_HIGH(
+        key = PreferenceKeyConstants.MEMORY_PRESSURE_SOME_HIGH,
+        unit = "%",
+        min = 1L,
+        max = 100L,
+        defaultValue = PreferenceDefaultValue.memoryPressureSomeHighPercent
+    ),
+    MEMORY_PRESSURE_FULL_HIGH(
+        key = PreferenceKeyConstants.MEMORY_PRESSURE_FULL_HIGH,
+        unit = "%",
+        min = 1L,
+        max = 100L,
+        defaultValue = PreferenceDefaultValue.memoryPressureFullHighPercent
+    ),
+    MEMORY_PRESSURE_SOME_LOW(
+        key = PreferenceKeyConstants.MEMORY_PRESSURE_SOME_LOW,
+        unit = "%",
+        min = 0L,
+        max = 100L,
+        defaultValue = PreferenceDefaultValue.memoryPressureSomeLowPercent
+    ),
+    SWAP_HEADROOM_LOW(
+        key = PreferenceKeyConstants.SWAP_HEADROOM_LOW,
+        unit = "%",
+        min = 0L,
+        max = 100L,
+        defaultValue = PreferenceDefaultValue.swapHeadroomLowPercent
+    ),
+    SWAP_HEADROOM_CRITICAL(
+        key = PreferenceKeyConstants.SWAP_HEADROOM_CRITICAL,
+        unit = "%",
+        min = 0L,
+        max = 100L,
+        defaultValue = PreferenceDefaultValue.swapHeadroomCriticalPercent
+    ),
+    ;
+
+    /**
+     * 解析输入
+     *
+     * @return 不是整数或超出范围 -> null
+     */
+    fun parse(value: String?): Long? = value?.trim()?.toLongOrNull()?.takeIf { it in min..max }
+
+    val rangeText: String get() = "${min}~${max}${unit}"
+}
@@ -20,6 +20,7 @@ package com.venus.backgroundopt.environment.hook
 import com.venus.backgroundopt.entity.preference.OomWorkModePref
 import com.venus.backgroundopt.entity.preference.SubProcessOomPolicy
 import com.venus.backgroundopt.environment.CommonProperties.subProcessDefaultUpgradeSet
+import com.venus.backgroundopt.environment.NumberPreference
 import com.venus.backgroundopt.environment.PreferenceDefaultValue
 import com.venus.backgroundopt.environment.constants.PreferenceKeyConstants
 import com.venus.backgroundopt.environment.constants.PreferenceNameConstants
@@ -260,13 +261,116 @@ object HookCommonProperties : ILogger {
      * @return Boolean 启用 -> true
      */
     @JvmStatic
-    private fun useSimpleLmk(isEnabled: Boolean): Boolean {
+    fun useSimpleLmk(isEnabled: Boolean): Boolean {
         return isEnabled && (
                 oomWorkModePref.oomMode == OomWorkModePref.MODE_BALANCE
                         || oomWorkModePref.oomMode == OomWorkModePref.MODE_BALANCE_PLUS
                 )
     }
 
+    /* *************************************************************************
+     *                                                                         *
+     * adj写入延迟                                                               *
+     *                                                                         *
+     **************************************************************************/
+    /**
+     * 读取以字符串保存的整数配置项。超出范围时使用默认值
+     */
+    private fun getNumberPreference(numberPreference: NumberPreference): Long {
+        return numberPreference.parse(
+            PreferencesUtil.getString(
+                path = PreferenceNameConstants.MAIN_SETTINGS,
+                key = numberPreference.key,
+                defaultValue = numberPreference.defaultValue.toString()
+            )
+        ) ?: numberPreference.defaultValue
+    }
+
+    // 保护性adj(降低adj)的写入延迟
+    val protectiveAdjApplyDelayMillis by lazy {
+        getNumberPreference(NumberPreference.PROTECTIVE_ADJ_APPLY_DELAY).also {
+            logger.info("保护性adj写入延迟: ${it}ms")
+        }
+    }
+
+    // 其余adj的合并写入延迟上限。实际延迟随进程adj变化频率自适应
+    val coalescedAdjApplyDelayMillis by lazy {
+        getNumberPreference(NumberPreference.COALESCED_ADJ_APPLY_DELAY).also {
+            logger.info("合并adj写入延迟上限: ${it}ms")
+        }
+    }
+
+    // 其余adj的合并写入延迟下限
+    val coalescedAdjApplyMinDelayMillis by lazy {
+        getNumberPreference(NumberPreference.COALESCED_ADJ_APPLY_MIN_DELAY).also {
+            logger.info("合并adj写入延迟下限: ${it}ms")
+        }
+    }
+
+    /* *************************************************************************
+     *                                                                         *
+     * 内存压缩                                                                  *
+     *                                                                         *
+     **************************************************************************/
+    // 单次压缩回收量低于此值(kB)时, 延长该进程的压缩节流时间
+    val compactLowYieldThresholdKb by lazy {
+        getNumberPreference(NumberPreference.COMPACT_LOW_YIELD_THRESHOLD).also {
+            logger.info("内存压缩低收益阈值: ${it}MB")
+        } * 1024
+    }
+
+    // 缓存的内存压缩节点文件通道的数量上限
+    val compactChannelCacheSize by lazy {
+        getNumberPreference(NumberPreference.COMPACT_CHANNEL_CACHE_SIZE).also {
+            logger.info("内存压缩文件通道缓存上限: $it")
+        }
+    }
+
+    /* *************************************************************************
+     *                                                                         *
+     * 内存压力(PSI)                                                             *
+     *                                                                         *
+     **************************************************************************/
+    // some avg10达到此百分比时视为高压力, 提前执行等待中的压缩与后台内存回收
+    val memoryPressureSomeHighPercent by lazy {
+        getNumberPreference(NumberPreference.MEMORY_PRESSURE_SOME_HIGH).also {
+            logger.info("内存压力(some)高阈值: ${it}%")
+        }
+    }
+
+    // full avg10达到此百分比时视为高压力
+    val memoryPressureFullHighPercent by lazy {
+        getNumberPreference(NumberPreference.MEMORY_PRESSURE_FULL_HIGH).also {
+            logger.info("内存压力(full)高阈值: ${it}%")
+        }
+    }
+
+    // some avg10低于此百分比时视为低压力, 推迟压缩与后台内存回收
+    val memoryPressureSomeLowPercent by lazy {
+        getNumberPreference(NumberPreference.MEMORY_PRESSURE_SOME_LOW).also {
+            logger.info("内存压力(some)低阈值: ${it}%")
+        }
+    }
+
+    /* *************************************************************************
+     *                                                                         *
+     * 交换区剩余空间                                                             *
+     *                                                                         *
+     **************************************************************************/
+    // 交换区剩余低于此百分比时, FULL压缩降级为FILE
+    val swapHeadroomLowPercent by lazy {
+        getNumberPreference(NumberPreference.SWAP_HEADROOM_LOW).also {
+            logger.info("交换区剩余低阈值: ${it}%")
+        }
+    }
+
+    // 交换区剩余低于此百分比时, 停止后台gc
+    val swapHeadroomCriticalPercent by lazy {
+        getNumberPreference(NumberPreference.SWAP_HEADROOM_CRITICAL).also {
+            logger.info("交换区剩余严重不足阈值: ${it}%")
+        }
+    }
+
     /* *************************************************************************
      *                                                                         *
      * 全局OOM                                                                  *
@@ -0,0 +1,369 @@
+/*
+ * Copyright (C) 2023 BackgroundOpt
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.venus.backgroundopt.hook.handle.android
+
+import com.venus.backgroundopt.core.RunningInfo.AppGroupEnum
+import com.venus.backgroundopt.entity.AppInfo
+import com.venus.backgroundopt.hook.handle.android.entity.ProcessRecord
+import com.venus.backgroundopt.hook.handle.android.entity.ProcessRecord.AdjHandleActionType
+
+/**
+ * adj决策策略
+ */
+fun interface AdjDecisionStrategy {
+    /**
+     * @param processRecord 目标进程
+     * @param adj 系统本次计算的adj
+     * @return 最终要写入lmkd的adj
+     */
+    fun decide(processRecord: ProcessRecord, adj: Int): Int
+}
+
+/**
+ * adj决策表
+ *
+ * 以(adj处理方式, app内存分组, 主/子进程, 是否高优先级, 是否用户空间adj, 主进程adj管理状态)为下标,
+ * 在构建时为每个组合编译出对应的[AdjDecisionStrategy]。设置adj时只需计算下标并执行策略。
+ *
+ * 构建时捕获了oom adj处理器、全局oom策略以及工作模式, 它们改变时需整体重建;
+ * 自定义主进程adj属于app级别的配置, 保存在[ProcessRecord]中, 由[ProcessRecord.resetAdjHandleType]刷新
+ *
+ * @author XingC
+ * @date 2026/10/18
+ */
+class AdjDecisionTable(
+    private val oomAdjHandler: OomScoreAdjHandler,
+    private val globalOomScoreAdjHandler: GlobalOomScoreAdjHandler,
+    private val customGlobalOomScore: Int,
+    private val isNegativeMode: Boolean,
+    // 普通子进程
+    private val subProcessStrategy: AdjDecisionStrategy,
+    // 高优先级进程所属app没有界面时
+    private val notHasActivityStrategy: AdjDecisionStrategy,
+) {
+    private val strategies = arrayOfNulls<AdjDecisionStrategy>(TABLE_SIZE)
+
+    init {
+        for (actionType in 0 until ACTION_TYPE_COUNT) {
+            for (appGroupEnum in appGroupEnums) {
+                for (mainProcess in booleans) {
+                    for (isHighPriorityProcess in booleans) {
+                        for (isUserSpaceAdj in booleans) {
+                            for (manageState in 0 until MANAGE_STATE_COUNT) {
+                                strategies[indexOf(
+                                    actionType = actionType,
+                                    appGroupEnum = appGroupEnum,
+                                    mainProcess = mainProcess,
+                                    isHighPriorityProcess = isHighPriorityProcess,
+                                    isUserSpaceAdj = isUserSpaceAdj,
+                                    manageState = manageState
+                                )] = compileStrategy(
+                                    actionType = actionType,
+                                    appGroupEnum = appGroupEnum,
+                                    mainProcess = mainProcess,
+                                    isHighPriorityProcess = isHighPriorityProcess,
+                                    isUserSpaceAdj = isUserSpaceAdj,
+                                    manageState = manageState
+                                )
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * 计算最终要写入lmkd的adj
+     */
+    fun decide(
+        processRecord: ProcessRecord,
+        adj: Int,
+        actionType: Int,
+        appGroupEnum: AppGroupEnum,
+        mainProcess: Boolean,
+        isHighPriorityProcess: Boolean,
+        manageState: Int,
+    ): Int {
+        // wakelock会以异或的方式标记在actionType上, 因此不会越界
+        if (actionType !in 0 until ACTION_TYPE_COUNT) {
+            return adj
+        }
+        return strategyOf(
+            actionType = actionType,
+            appGroupEnum = appGroupEnum,
+            mainProcess = mainProcess,
+            isHighPriorityProcess = isHighPriorityProcess,
+            isUserSpaceAdj = adj >= 0,
+            manageState = manageState
+        ).decide(processRecord, adj)
+    }
+
+    /**
+     * 获取指定组合编译出的策略
+     */
+    fun strategyOf(
+        actionType: Int,
+        appGroupEnum: AppGroupEnum,
+        mainProcess: Boolean,
+        isHighPriorityProcess: Boolean,
+        isUserSpaceAdj: Boolean,
+        manageState: Int,
+    ): AdjDecisionStrategy {
+        return strategies[indexOf(
+            actionType = actionType,
+            appGroupEnum = appGroupEnum,
+            mainProcess = mainProcess,
+            isHighPriorityProcess = isHighPriorityProcess,
+            isUserSpaceAdj = isUserSpaceAdj,
+            manageState = manageState
+        )]!!
+    }
+
+    /* *************************************************************************
+     *                                                                         *
+     * 策略编译                                                                  *
+     *                                                                         *
+     **************************************************************************/
+    private fun compileStrategy(
+        actionType: Int,
+        appGroupEnum: AppGroupEnum,
+        mainProcess: Boolean,
+        isHighPriorityProcess: Boolean,
+        isUserSpaceAdj: Boolean,
+        manageState: Int,
+    ): AdjDecisionStrategy {
+        return when (actionType) {
+            AdjHandleActionType.CUSTOM_MAIN_PROCESS -> compileCustomMainProcessStrategy(
+                appGroupEnum = appGroupEnum,
+                mainProcess = mainProcess,
+                isHighPriorityProcess = isHighPriorityProcess,
+                isUserSpaceAdj = isUserSpaceAdj,
+                manageState = manageState
+            )
+
+            AdjHandleActionType.GLOBAL_OOM_ADJ -> compileGlobalOomScoreStrategy(
+                appGroupEnum = appGroupEnum,
+                mainProcess = mainProcess,
+                isHighPriorityProcess = isHighPriorityProcess,
+                isUserSpaceAdj = isUserSpaceAdj,
+                manageState = manageState
+            )
+
+            AdjHandleActionType.OTHER -> compileOtherStrategy(
+                appGroupEnum = appGroupEnum,
+                mainProcess = mainProcess,
+                isHighPriorityProcess = isHighPriorityProcess,
+                isUserSpaceAdj = isUserSpaceAdj,
+                manageState = manageState
+            )
+
+            // DO_NOTHING以及持有wakelock的进程
+            else -> identityStrategy
+        }
+    }
+
+    private fun compileCustomMainProcessStrategy(
+        appGroupEnum: AppGroupEnum,
+        mainProcess: Boolean,
+        isHighPriorityProcess: Boolean,
+        isUserSpaceAdj: Boolean,
+        manageState: Int,
+    ): AdjDecisionStrategy {
+        // 没有配置当前分组所对应的adj时, 按照OTHER处理
+        val otherStrategy = compileOtherStrategy(
+            appGroupEnum = appGroupEnum,
+            mainProcess = mainProcess,
+            isHighPriorityProcess = isHighPriorityProcess,
+            isUserSpaceAdj = isUserSpaceAdj,
+            manageState = manageState
+        )
+        val customAdjStrategy = when (appGroupEnum) {
+            AppGroupEnum.ACTIVE -> wrapHighPriorityProcessStrategy(manageState) { processRecord, _ ->
+                processRecord.customMainProcessFgAdj
+            }
+
+            AppGroupEnum.IDLE -> wrapHighPriorityProcessStrategy(manageState) { processRecord, _ ->
+                processRecord.customMainProcessBgAdj
+            }
+
+            else -> return otherStrategy
+        }
+        val isFg = appGroupEnum == AppGroupEnum.ACTIVE
+
+        return AdjDecisionStrategy { processRecord, adj ->
+            val customAdj = if (isFg) {
+                processRecord.customMainProcessFgAdj
+            } else {
+                processRecord.customMainProcessBgAdj
+            }
+            if (customAdj == ProcessRecord.NO_CUSTOM_MAIN_PROCESS_ADJ) {
+                otherStrategy.decide(processRecord, adj)
+            } else {
+                customAdjStrategy.decide(processRecord, adj)
+            }
+        }
+    }
+
+    private fun compileGlobalOomScoreStrategy(
+        appGroupEnum: AppGroupEnum,
+        mainProcess: Boolean,
+        isHighPriorityProcess: Boolean,
+        isUserSpaceAdj: Boolean,
+        manageState: Int,
+    ): AdjDecisionStrategy {
+        if (globalOomScoreAdjHandler.isShouldHandle(
+                isUserSpaceAdj = isUserSpaceAdj,
+                isMainProcess = mainProcess,
+                isHighPriorityProcess = isHighPriorityProcess
+            )
+        ) {
+            val customGlobalOomScore = customGlobalOomScore
+            return wrapHighPriorityProcessStrategy(manageState) { _, _ ->
+                customGlobalOomScore
+            }
+        }
+        return compileOtherStrategy(
+            appGroupEnum = appGroupEnum,
+            mainProcess = mainProcess,
+            isHighPriorityProcess = isHighPriorityProcess,
+            isUserSpaceAdj = isUserSpaceAdj,
+            manageState = manageState
+        )
+    }
+
+    private fun compileOtherStrategy(
+        appGroupEnum: AppGroupEnum,
+        mainProcess: Boolean,
+        isHighPriorityProcess: Boolean,
+        isUserSpaceAdj: Boolean,
+        manageState: Int,
+    ): AdjDecisionStrategy {
+        if (!isUserSpaceAdj) {
+            return identityStrategy
+        }
+        // 普通子进程
+        if (!isHighPriorityProcess) {
+            return subProcessStrategy
+        }
+
+        return when {
+            appGroupEnum == AppGroupEnum.ACTIVE -> activeHighPriorityProcessStrategy
+            isNegativeMode -> identityStrategy
+            else -> {
+                val oomAdjHandler = oomAdjHandler
+                wrapHighPriorityProcessStrategy(manageState) { processRecord, adj ->
+                    oomAdjHandler.computeFinalAdj(
+                        oomScoreAdj = adj,
+                        processRecord = processRecord,
+                        appInfo = processRecord.appInfo,
+                        mainProcess = mainProcess
+                    )
+                }
+            }
+        }
+    }
+
+    /**
+     * 根据主进程adj管理状态包装高优先级进程的策略
+     *
+     * 只有需要管理时才会执行[strategy]
+     */
+    private fun wrapHighPriorityProcessStrategy(
+        manageState: Int,
+        strategy: AdjDecisionStrategy
+    ): AdjDecisionStrategy {
+        return when (manageState) {
+            MANAGE_STATE_MANAGED -> AdjDecisionStrategy { processRecord, adj ->
+                processRecord.checkAndSetDefaultMaxAdjIfNeed()
+                strategy.decide(processRecord, adj)
+            }
+
+            MANAGE_STATE_NEVER -> identityStrategy
+            else -> notHasActivityStrategy
+        }
+    }
+
+    companion object {
+        // AdjHandleActionType(含wakelock标记)的取值范围
+        const val ACTION_TYPE_COUNT = AdjHandleActionType.WAKE_LOCK shl 1
+
+        /**
+         * 主进程adj管理状态
+         */
+        // 需要管理
+        const val MANAGE_STATE_MANAGED = 0
+
+        // 仅在有界面时管理, 而当前没有界面
+        const val MANAGE_STATE_NOT_HAS_ACTIVITY = 1
+
+        // 永不管理
+        const val MANAGE_STATE_NEVER = 2
+        const val MANAGE_STATE_COUNT = 3
+
+        private val appGroupEnums = AppGroupEnum.entries
+        private val APP_GROUP_COUNT = appGroupEnums.size
+        private val booleans = booleanArrayOf(false, true)
+
+        internal val TABLE_SIZE = ACTION_TYPE_COUNT * APP_GROUP_COUNT * 2 * 2 * 2 * MANAGE_STATE_COUNT
+
+        internal val identityStrategy = AdjDecisionStrategy { _, adj -> adj }
+
+        private val activeHighPriorityProcessStrategy = AdjDecisionStrategy { processRecord, _ ->
+            processRecord.checkAndSetDefaultMaxAdjIfNeed()
+            ProcessRecord.DEFAULT_MAIN_ADJ
+        }
+
+        private fun Boolean.toIndex(): Int = if (this) 1 else 0
+
+        internal fun indexOf(
+            actionType: Int,
+            appGroupEnum: AppGroupEnum,
+            mainProcess: Boolean,
+            isHighPriorityProcess: Boolean,
+            isUserSpaceAdj: Boolean,
+            manageState: Int,
+        ): Int {
+            var index = actionType * APP_GROUP_COUNT + appGroupEnum.ordinal
+            index = (index shl 1) or mainProcess.toIndex()
+            index = (index shl 1) or isHighPriorityProcess.toIndex()
+            index = (index shl 1) or isUserSpaceAdj.toIndex()
+            return index * MANAGE_STATE_COUNT + manageState
+        }
+    }
+}
+
+/**
+ * 获取app的主进程adj管理状态
+ *
+ * 直接比较[AppInfo.adjHandleFunction], 而不是调用[AppInfo.shouldHandleAdj]
+ * (它会额外查一次app优化策略, 但内置的处理函数均不使用该策略)
+ */
+fun AppInfo.getAdjManageState(): Int {
+    return when (adjHandleFunction) {
+        AppInfo.handleAdjAlways -> AdjDecisionTable.MANAGE_STATE_MANAGED
+        AppInfo.handleAdjNever -> AdjDecisionTable.MANAGE_STATE_NEVER
+        AppInfo.handleAdjIfHasActivity -> if (hasActivity()) {
+            AdjDecisionTable.MANAGE_STATE_MANAGED
+        } else {
+            AdjDecisionTable.MANAGE_STATE_NOT_HAS_ACTIVITY
+        }
+
+        else -> AdjDecisionTable.MANAGE_STATE_NOT_HAS_ACTIVITY
+    }
+}
@@ -33,28 +33,16 @@ import com.venus.backgroundopt.hook.constants.MethodConstants
 import com.venus.backgroundopt.hook.handle.android.entity.ActivityManager
 import com.venus.backgroundopt.hook.handle.android.entity.ProcessList
 import com.venus.backgroundopt.hook.handle.android.entity.ProcessRecord
-import com.venus.backgroundopt.hook.handle.android.entity.ProcessRecord.AdjHandleActionType
+import com.venus.backgroundopt.manager.process.LmkdCommandBatcher
 import com.venus.backgroundopt.utils.clamp
 import com.venus.backgroundopt.utils.concurrent.lock
 import com.venus.backgroundopt.utils.getBooleanFieldValue
 import com.venus.backgroundopt.utils.getObjectFieldValue
-import com.venus.backgroundopt.utils.ifTrue
 import com.venus.backgroundopt.utils.log.logInfo
-import com.venus.backgroundopt.utils.message.handle.AppOptimizePolicyMessageHandler.AppOptimizePolicy
 import com.venus.backgroundopt.utils.message.handle.GlobalOomScoreEffectiveScopeEnum
 import com.venus.backgroundopt.utils.message.handle.GlobalOomScorePolicy
-import com.venus.backgroundopt.utils.message.handle.getCustomMainProcessBgAdj
-import com.venus.backgroundopt.utils.message.handle.getCustomMainProcessFgAdj
 import de.robv.android.xposed.XC_MethodHook.MethodHookParam
-import java.nio.ByteBuffer
-import java.util.concurrent.ConcurrentHashMap
 import java.util.concurrent.Executors
-import java.util.concurrent.ScheduledFuture
-import java.util.concurrent.ScheduledThreadPoolExecutor
-import java.util.concurrent.ThreadFactory
-import java.util.concurrent.TimeUnit
-import java.util.concurrent.atomic.AtomicInteger
-import java.util.function.BiFunction
 import kotlin.math.max
 import kotlin.math.min
 
@@ -126,29 +114,39 @@ class ProcessListHookKt(
      * oom adj处理器                                                            *
      *                                                                         *
      **************************************************************************/
-    val oomAdjHandler = when (HookCommonProperties.oomWorkModePref.oomMode) {
-        /*
-         * 严格模式所有adj始终为0
-         * (24.5.29)宽容模式在后续处理时, 并不会应用此oomAdjHandler的逻辑
-         */
-        OomWorkModePref.MODE_STRICT,
-        OomWorkModePref.MODE_NEGATIVE -> object : OomScoreAdjHandler() {
-            override fun computeFinalAdj(
-                oomScoreAdj: Int,
-                processRecord: ProcessRecord,
-                appInfo: AppInfo,
-                mainProcess: Boolean
-            ): Int = 0
-        }
+    /**
+     * 当前使用的oom adj处理器
+     *
+     * 处理器内部的查找表只在创建时生成一次。Simple Lmk的状态改变时, 生成新的处理器并整体替换
+     */
+    @Volatile
+    var oomAdjHandler: OomScoreAdjHandler = generateOomAdjHandler(useSimpleLmk())
+        private set
+
+    private fun generateOomAdjHandler(useSimpleLmk: Boolean): OomScoreAdjHandler =
+        when (HookCommonProperties.oomWorkModePref.oomMode) {
+            /*
+             * 严格模式所有adj始终为0
+             * (24.5.29)宽容模式在后续处理时, 并不会应用此oomAdjHandler的逻辑
+             */
+            OomWorkModePref.MODE_STRICT,
+            OomWorkModePref.MODE_NEGATIVE -> object : OomScoreAdjHandler() {
+                override fun computeFinalAdj(
+                    oomScoreAdj: Int,
+                    processRecord: ProcessRecord,
+                    appInfo: AppInfo,
+                    mainProcess: Boolean
+                ): Int = 0
+            }
 
-        else -> {
-            if (useSimpleLmk()) {
-                generateSimpleLmkAdjHandler()
-            } else {
-                generateStrictModeAdjHandler()
+            else -> {
+                if (useSimpleLmk) {
+                    generateSimpleLmkAdjHandler()
+                } else {
+                    generateStrictModeAdjHandler()
+                }
             }
-        }
-    }
+        }.buildAdjTables()
 
     private fun generateSimpleLmkAdjHandler(): OomScoreAdjHandler = object : OomScoreAdjHandler(
         highPrioritySubProcessAdjOffset = ProcessList.PERCEPTIBLE_RECENT_FOREGROUND_APP_ADJ,
@@ -162,15 +160,13 @@ class ProcessListHookKt(
             (minImportAppAdj + maxImportAppAdj) / 2.0
         ).toInt()
 
-        override fun computeImportAppAdj(oomScoreAdj: Int): Int {
-            return importAppOomScoreAdjMap.computeIfAbsent(oomScoreAdj) { _ ->
-                if (oomScoreAdj < ProcessList.VISIBLE_APP_ADJ) {
-                    minImportAppAdj
-                } else if (oomScoreAdj < ProcessList.CACHED_APP_MIN_ADJ) {
-                    importAppNormalAdj
-                } else {
-                    maxImportAppAdj
-                }
+        override fun computeImportAppAdjValue(oomScoreAdj: Int): Int {
+            return if (oomScoreAdj < ProcessList.VISIBLE_APP_ADJ) {
+                minImportAppAdj
+            } else if (oomScoreAdj < ProcessList.CACHED_APP_MIN_ADJ) {
+                importAppNormalAdj
+            } else {
+                maxImportAppAdj
             }
         }
     }
@@ -183,11 +179,11 @@ class ProcessListHookKt(
         minImportAppAdj = importAppMinAdj,
         maxImportAppAdj = normalMinAdj
     ) {
-        override fun computeAdj(oomScoreAdj: Int): Int {
+        override fun computeAdjValue(oomScoreAdj: Int): Int {
             return minAdj
         }
 
-        override fun computeImportAppAdj(oomScoreAdj: Int): Int {
+        override fun computeImportAppAdjValue(oomScoreAdj: Int): Int {
             return minImportAppAdj
         }
     }
@@ -240,18 +236,10 @@ class ProcessListHookKt(
                 "pid: ${pid}, adj: $curAdj"
     )
 
-    val oomScoreAdjMap = ConcurrentHashMap<Int, Int>(8)
-    val importSystemAppOomScoreAdjMap = ConcurrentHashMap<Int, Int>(8)
-
-    private fun computeOomScoreAdjValueUseSimpleLmk(
-        oomScoreAdj: Int
-    ): Int = oomScoreAdjMap.computeIfAbsent(oomScoreAdj) {
+    private val simpleLmkOomScoreAdjTable = AdjLookupTable { oomScoreAdj ->
         (oomScoreAdj / simpleLmkConvertDivisor).coerceAtLeast(normalAppAdjStartUseSimpleLmk)
     }
-
-    private fun getImportSystemAppOomScoreUseSimpleLmk(
-        oomScoreAdj: Int
-    ): Int = importSystemAppOomScoreAdjMap.computeIfAbsent(oomScoreAdj) { _ ->
+    private val simpleLmkImportSystemAppOomScoreAdjTable = AdjLookupTable { oomScoreAdj ->
         if (oomScoreAdj < ProcessList.VISIBLE_APP_ADJ) {
             importSystemAppAdjStartUseSimpleLmk
         } else if (oomScoreAdj < ProcessList.CACHED_APP_MIN_ADJ) {
@@ -261,66 +249,33 @@ class ProcessListHookKt(
         }
     }
 
+    private fun computeOomScoreAdjValueUseSimpleLmk(
+        oomScoreAdj: Int
+    ): Int = simpleLmkOomScoreAdjTable[oomScoreAdj]
+
+    private fun getImportSystemAppOomScoreUseSimpleLmk(
+        oomScoreAdj: Int
+    ): Int = simpleLmkImportSystemAppOomScoreAdjTable[oomScoreAdj]
+
     private fun getMainProcessOomScoreAdjNonNull(oomScoreAdj: Int?): Int =
         oomScoreAdj ?: ProcessRecord.DEFAULT_MAIN_ADJ
 
     private fun useSimpleLmk(): Boolean = HookCommonProperties.useSimpleLmk
 
-    /**
-     * 应用最终要被应用的adj
-     *
-     * 当不满足一些条件时, [block]不会被执行
-     */
-    private inline fun applyHighPriorityProcessFinalAdj(
-        processRecord: ProcessRecord,
-        curAdj: Int,
-        adjHandleFunction: BiFunction<AppInfo, AppOptimizePolicy, Boolean>,
-        shouldHandleAdj: Boolean,
-        block: (Int) -> Int
-    ): Int {
-        return when (adjHandleFunction) {
-            AppInfo.handleAdjIfHasActivity -> {
-                if (shouldHandleAdj) {
-                    processRecord.checkAndSetDefaultMaxAdjIfNeed()
-                    block(curAdj)
-                } else {
-                    computeHighPriorityProcessAdjNotHasActivity(curAdj)
-                }
-            }
-
-            AppInfo.handleAdjAlways -> {
-                processRecord.checkAndSetDefaultMaxAdjIfNeed()
-                block(curAdj)
-            }
-            AppInfo.handleAdjNever -> curAdj
-
-            else -> computeHighPriorityProcessAdjNotHasActivity(curAdj)
-        }
+    private val highPriorityProcessNotHasActivityAdjTable = AdjLookupTable { curAdj ->
+        max(min(curAdj, ProcessList.CACHED_APP_MAX_ADJ), ProcessRecord.SUB_PROC_ADJ)
     }
 
-    private val highPriorityProcessNotHasActivityAdjMap = ConcurrentHashMap<Int, Int>(4)
     private fun computeHighPriorityProcessAdjNotHasActivity(
         curAdj: Int
-    ): Int {
-        return highPriorityProcessNotHasActivityAdjMap.computeIfAbsent(curAdj) {_->
-            max(min(curAdj, ProcessList.CACHED_APP_MAX_ADJ), ProcessRecord.SUB_PROC_ADJ)
-        }
-    }
+    ): Int = highPriorityProcessNotHasActivityAdjTable[curAdj]
 
     /**
      * 全局oom分数处理器
      */
     @Volatile
-    private var globalOomScoreAdjHandler: GlobalOomScoreAdjHandler = run {
-        val globalOomScorePolicy = HookCommonProperties.globalOomScorePolicy
-        val adjHandler = getGlobalOomScoreAdjHandler(globalOomScorePolicy.value)
-
-        globalOomScorePolicy.addListener(GlobalOomScoreAdjHandler.PROPERTY_LISTENER_KEY) { _, newValue ->
-            globalOomScoreAdjHandler = getGlobalOomScoreAdjHandler(newValue)
-        }
-
-        adjHandler
-    }
+    private var globalOomScoreAdjHandler: GlobalOomScoreAdjHandler =
+        getGlobalOomScoreAdjHandler(HookCommonProperties.globalOomScorePolicy.value)
 
     private fun getGlobalOomScoreAdjHandler(
         globalOomScorePolicy: GlobalOomScorePolicy
@@ -336,64 +291,81 @@ class ProcessListHookKt(
         }
     }
 
+    /**
+     * adj决策表
+     *
+     * oom adj处理器、全局oom策略改变时整体重建
+     */
+    @Volatile
+    var adjDecisionTable: AdjDecisionTable = generateAdjDecisionTable()
+        private set
+
+    private fun generateAdjDecisionTable(): AdjDecisionTable = AdjDecisionTable(
+        oomAdjHandler = oomAdjHandler,
+        globalOomScoreAdjHandler = globalOomScoreAdjHandler,
+        customGlobalOomScore = HookCommonProperties.globalOomScorePolicy.value.customGlobalOomScore,
+        isNegativeMode = HookCommonProperties.oomWorkModePref.oomMode == OomWorkModePref.MODE_NEGATIVE,
+        subProcessStrategy = { processRecord, adj ->
+            computeSubprocessFinalOomScore(processRecord = processRecord, oomScoreAdj = adj)
+        },
+        notHasActivityStrategy = { _, adj -> computeHighPriorityProcessAdjNotHasActivity(adj) }
+    )
+
+    private fun rebuildAdjDecisionTable(tag: String) {
+        adjDecisionTable = generateAdjDecisionTable()
+        logger.info("重新生成adj决策表: [${tag}]")
+    }
+
     private val adjHandleActionPool = Executors.newFixedThreadPool(3)
     private fun addAdjHandleAction(block: () -> Unit) {
         adjHandleActionPool.execute(block)
     }
 
-    private class AdjComputeAndApplyActionPoolThreadFactory : ThreadFactory {
-        private val threadNumber = AtomicInteger(1)
-
-        override fun newThread(r: Runnable?): Thread = Thread(r, generateThreadName()).apply {
-            isDaemon.ifTrue {
-                setDaemon(false)
-            }
-            (priority != Thread.NORM_PRIORITY).ifTrue {
-                setPriority(Thread.NORM_PRIORITY)
-            }
-
-            threadLocalMap[this] = object : ThreadLocal<ByteBuffer>() {
-                override fun initialValue(): ByteBuffer = ProcessList.getByteBufferUsedToWriteLmkd()
-            }
-        }
-
-        private fun generateThreadName(): String {
-            return "${THREAD_FACTORY_NAME}-${THREAD_NAME}-${threadNumber.getAndIncrement()}"
-        }
-
-        companion object {
-            const val THREAD_FACTORY_NAME = "adjComputeAndApplyActionThreadFactory"
-            const val THREAD_NAME = "adjComputeAndApplyActionThread"
-
-            @JvmField
-            val threadLocalMap = ConcurrentHashMap<Thread, ThreadLocal<ByteBuffer>>(4, 1.5F)
-        }
-    }
-
-    private val adjComputeAndApplyActionPool = ScheduledThreadPoolExecutor(
-        3,
-        AdjComputeAndApplyActionPoolThreadFactory()
-    ).apply {
-        removeOnCancelPolicy = true
-    }
-    private val adjComputeAndApplyActionMap = ConcurrentHashMap<ProcessRecord, ScheduledFuture<*>>()
-
-    fun addAdjComputeAndApplyAction(processRecord: ProcessRecord, block: () -> Unit) {
-        adjComputeAndApplyActionMap.compute(processRecord) { _, lastScheduledFuture ->
-            // 合并5s内的adj设置操作
-            lastScheduledFuture?.cancel(true)
-            scheduleAdjSetAction {
-                adjComputeAndApplyActionMap.remove(processRecord)
-                block()
-            }
+    /**
+     * 所有adj都经由此处合并后写入lmkd
+     */
+    val lmkdCommandBatcher = LmkdCommandBatcher(
+        protectiveLaneDelayMillis = HookCommonProperties.protectiveAdjApplyDelayMillis,
+        coalescedLaneDelayMillis = HookCommonProperties.coalescedAdjApplyDelayMillis,
+        coalescedLaneMinDelayMillis = HookCommonProperties.coalescedAdjApplyMinDelayMillis,
+        isCurrentProcess = { processRecord ->
+            // 记录仍在运行列表中, 且pid未被复用(已记录启动时间时才会读取/proc)
+            runningInfo.getRunningProcess(processRecord.pid) === processRecord
+                    && processRecord.isSameProcessByStartTime()
         }
-    }
+    )
 
-    fun scheduleAdjSetAction(block: () -> Unit): ScheduledFuture<*> {
-        return adjComputeAndApplyActionPool.schedule(block, 3L, TimeUnit.SECONDS)
+    /**
+     * 提交最终要写入lmkd的adj
+     * 前台app、高优先级进程的adj降低时走保护通道尽快写入, 其余修改合并写入
+     *
+     * @param processRecord 目标进程
+     * @param adj 最终的adj
+     * @param isHighPriorityProcess 是否是高优先级进程
+     * @param appGroupEnum 进程所属app的分组
+     * @param requestNanos 系统发起本次adj设置的时间([System.nanoTime])
+     */
+    @JvmOverloads
+    fun applyFinalAdj(
+        processRecord: ProcessRecord,
+        adj: Int,
+        isHighPriorityProcess: Boolean = processRecord.isHighPriorityProcess(),
+        appGroupEnum: AppGroupEnum = processRecord.appInfo.appGroupEnum,
+        requestNanos: Long = System.nanoTime()
+    ) {
+        val lastWrittenAdj = processRecord.lastWrittenLmkdAdj
+        val isProtective = (appGroupEnum == AppGroupEnum.ACTIVE || isHighPriorityProcess)
+                && (lastWrittenAdj == ProcessRecord.NO_PENDING_LMKD_ADJ || adj < lastWrittenAdj)
+        lmkdCommandBatcher.submit(
+            processRecord = processRecord,
+            adj = adj,
+            lane = if (isProtective) LmkdCommandBatcher.Lane.PROTECTIVE else LmkdCommandBatcher.Lane.COALESCED,
+            requestNanos = requestNanos
+        )
     }
 
     private fun handleSetOomAdj(param: MethodHookParam) {
+        val requestNanos = System.nanoTime()
         val pid = param.args[0] as Int
         // 获取当前进程对象
         val process = runningInfo.getRunningProcess(pid) ?: return
@@ -421,6 +393,8 @@ class ProcessListHookKt(
                 }
 
                 else -> {
+                    // 交由系统写入lmkd, 本模块记录的上次写入值已不可信
+                    process.lastWrittenLmkdAdj = ProcessRecord.NO_PENDING_LMKD_ADJ
                     return
                 }
             }
@@ -432,11 +406,33 @@ class ProcessListHookKt(
                 handleSetOomAdjLocked(
                     process = process,
                     adj = adj,
-                    globalOomScorePolicy = globalOomScorePolicy,
                     pid = pid,
                     uid = uid,
                     appInfo = appInfo,
-                    appGroupEnum = appGroupEnum
+                    appGroupEnum = appGroupEnum,
+                    requestNanos = requestNanos
+                )
+            }
+        }
+    }
+
+    /**
+     * 在adj处理线程中, 持有appInfo的锁重新计算并设置进程的adj
+     * 用于模块主动触发的adj设置, 与系统的setOomAdj走同一条串行路径
+     *
+     * @param process 目标进程
+     * @param adj 要设置的adj
+     */
+    fun postSetOomAdj(process: ProcessRecord, adj: Int) {
+        val requestNanos = System.nanoTime()
+        addAdjHandleAction {
+            val appInfo = process.appInfo
+            appInfo.lock {
+                handleSetOomAdjLocked(
+                    process = process,
+                    adj = adj,
+                    appInfo = appInfo,
+                    requestNanos = requestNanos
                 )
             }
         }
@@ -446,12 +442,15 @@ class ProcessListHookKt(
     fun handleSetOomAdjLocked(
         process: ProcessRecord,
         adj: Int,
-        globalOomScorePolicy: GlobalOomScorePolicy,
         pid: Int = process.pid,
         uid: Int = process.uid,
         appInfo: AppInfo = process.appInfo,
-        appGroupEnum: AppGroupEnum = appInfo.appGroupEnum
+        appGroupEnum: AppGroupEnum = appInfo.appGroupEnum,
+        requestNanos: Long = System.nanoTime()
     ) {
+        // 记录adj变化频率, 用于计算合并写入的窗口
+        process.recordAdjChurn(requestNanos)
+
         val mainProcess = process.mainProcess
         val adjLastSet = process.oomAdjScore
         var oomAdjustLevel = OomAdjustLevel.NONE
@@ -467,33 +466,23 @@ class ProcessListHookKt(
         val isHighPriorityProcess = process.isHighPriorityProcess()/*.ifTrue {
             oomAdjustLevel = OomAdjustLevel.FIRST
         }*/
-        val isUserSpaceAdj = adjWillSet >= 0
-
-        val adjHandleFunction = appInfo.adjHandleFunction
-        val shouldHandleAdj = appInfo.shouldHandleAdj()
-        val adjHandleActionType = process.adjHandleActionType
-        addAdjComputeAndApplyAction(process) {
-            val finalApplyAdj: Int = autoApplyAdjHandleAction(
-                adjHandleActionType = adjHandleActionType,
-                adj = adj,
-                adjWillSet = adjWillSet,
-                isUserSpaceAdj = isUserSpaceAdj,
-                isNegativeMode = isNegativeMode,
-                isHighPriorityProcess = isHighPriorityProcess,
-                mainProcess = mainProcess,
-                process = process,
-                appGroupEnum = appGroupEnum,
-                adjHandleFunction = adjHandleFunction,
-                shouldHandleAdj = shouldHandleAdj,
-                globalOomScorePolicy = globalOomScorePolicy
-            )
-
-            applyFinalAdjUseCachedByteBuffer(
-                pid = pid,
-                uid = uid,
-                adj = finalApplyAdj
-            )
-        }
+
+        val finalApplyAdj = adjDecisionTable.decide(
+            processRecord = process,
+            adj = adjWillSet,
+            actionType = process.adjHandleActionType,
+            appGroupEnum = appGroupEnum,
+            mainProcess = mainProcess,
+            isHighPriorityProcess = isHighPriorityProcess,
+            manageState = appInfo.getAdjManageState()
+        )
+        applyFinalAdj(
+            processRecord = process,
+            adj = finalApplyAdj,
+            isHighPriorityProcess = isHighPriorityProcess,
+            appGroupEnum = appGroupEnum,
+            requestNanos = requestNanos
+        )
 
         // 记录本次系统计算的分数
         process.oomAdjScore = adjWillSet
@@ -506,11 +495,7 @@ class ProcessListHookKt(
         // 我们的目标是保活以及额外处理, 那么只需在①中将其放入running.runningApps, 在设置oom时就可以被管理。
         // 此时那些没有打开过页面的app就可以被设置内存分组, 相应的进行内存优化处理。
         if (appGroupEnum == AppGroupEnum.NONE && mainProcess) {
-            runningInfo.handleActivityEventChangeLocked(
-                ActivityManagerServiceHookKt.ACTIVITY_STOPPED,
-                null,
-                appInfo
-            )
+            runningInfo.postInitialActivityStopped(appInfo)
         }
 
         // 内存压缩
@@ -529,13 +514,24 @@ class ProcessListHookKt(
     object AdjHandleActionTypeListenerConstants {
         const val GLOBAL_ADJ = "ADJ_HANDLE_ACTION_TYPE_GLOBAL_ADJ_LISTENER_KEY"
         const val WEBVIEW_PROCESS_PROTECT = "ADJ_HANDLE_ACTION_TYPE_GLOBAL_ADJ_LISTENER_KEY"
+        const val SIMPLE_LMK = "OOM_ADJ_HANDLER_SIMPLE_LMK_LISTENER_KEY"
     }
 
     // 监听一些全局属性修改事件, 以调整进程的adj处理策略
     init {
+        HookCommonProperties.enableSimpleLmk.addListener(
+            AdjHandleActionTypeListenerConstants.SIMPLE_LMK
+        ) { _, isEnabled ->
+            oomAdjHandler = generateOomAdjHandler(HookCommonProperties.useSimpleLmk(isEnabled))
+            logger.info("重新生成oom adj处理器: [Simple Lmk切换]")
+            rebuildAdjDecisionTable("Simple Lmk切换")
+        }
+
         HookCommonProperties.globalOomScorePolicy.addListener(
             AdjHandleActionTypeListenerConstants.GLOBAL_ADJ
-        ) { _, _ ->
+        ) { _, newValue ->
+            globalOomScoreAdjHandler = getGlobalOomScoreAdjHandler(newValue)
+            rebuildAdjDecisionTable("全局OOM切换")
             printAdjHandleActionTypeLog("全局OOM切换")
             ProcessRecord.resetAdjHandleType()
         }
@@ -548,227 +544,6 @@ class ProcessListHookKt(
         }
     }
 
-    private fun applyFinalAdj(pid: Int, uid: Int, adj: Int) {
-        ProcessList.writeLmkd(pid, uid, adj)
-    }
-
-    private fun applyFinalAdjUseCachedByteBuffer(pid: Int, uid: Int, adj: Int) {
-        val threadLocal = AdjComputeAndApplyActionPoolThreadFactory.threadLocalMap[Thread.currentThread()]!!
-        val byteBuffer = threadLocal.get()!!
-        ProcessList.writeLmkd(byteBuffer, pid, uid, adj)
-        byteBuffer.clear()
-    }
-
-    private fun autoApplyAdjHandleAction(
-        adjHandleActionType: Int,
-        adj: Int,
-        adjWillSet: Int,
-        isUserSpaceAdj: Boolean,
-        isNegativeMode: Boolean,
-        isHighPriorityProcess: Boolean,
-        mainProcess: Boolean,
-        process: ProcessRecord,
-        appGroupEnum: AppGroupEnum,
-        adjHandleFunction: BiFunction<AppInfo, AppOptimizePolicy, Boolean>,
-        shouldHandleAdj: Boolean,
-        globalOomScorePolicy: GlobalOomScorePolicy,
-    ): Int {
-        return when (adjHandleActionType) {
-            AdjHandleActionType.CUSTOM_MAIN_PROCESS -> {
-                doCustomMainProcessAdj(
-                    adj = adj,
-                    adjWillSet = adjWillSet,
-                    isUserSpaceAdj = isUserSpaceAdj,
-                    isNegativeMode = isNegativeMode,
-                    processRecord = process,
-                    appGroupEnum = appGroupEnum,
-                    adjHandleFunction = adjHandleFunction,
-                    shouldHandleAdj = shouldHandleAdj,
-                    mainProcess = mainProcess,
-                    isHighPriorityProcess = isHighPriorityProcess
-                )
-            }
-
-            AdjHandleActionType.GLOBAL_OOM_ADJ -> {
-                doGlobalOomScoreAdj(
-                    globalOomScorePolicy = globalOomScorePolicy,
-                    adj = adj,
-                    adjWillSet = adjWillSet,
-                    isUserSpaceAdj = isUserSpaceAdj,
-                    isNegativeMode = isNegativeMode,
-                    processRecord = process,
-                    adjHandleFunction = adjHandleFunction,
-                    shouldHandleAdj = shouldHandleAdj,
-                    appGroupEnum = appGroupEnum,
-                    mainProcess = mainProcess,
-                    isHighPriorityProcess = isHighPriorityProcess
-                )
-            }
-
-            AdjHandleActionType.OTHER -> {
-                doOther(
-                    adj = adj,
-                    adjWillSet = adjWillSet,
-                    isUserSpaceAdj = isUserSpaceAdj,
-                    isNegativeMode = isNegativeMode,
-                    processRecord = process,
-                    adjHandleFunction = adjHandleFunction,
-                    shouldHandleAdj = shouldHandleAdj,
-                    appGroupEnum = appGroupEnum,
-                    mainProcess = mainProcess,
-                    isHighPriorityProcess = isHighPriorityProcess
-                )
-            }
-
-            else -> {
-                adjWillSet
-            }
-        }
-    }
-
-    private fun doCustomMainProcessAdj(
-        adj: Int,
-        adjWillSet: Int,
-        isUserSpaceAdj: Boolean,
-        isNegativeMode: Boolean,
-        processRecord: ProcessRecord,
-        appGroupEnum: AppGroupEnum,
-        adjHandleFunction: BiFunction<AppInfo, AppOptimizePolicy, Boolean>,
-        shouldHandleAdj: Boolean,
-        mainProcess: Boolean,
-        isHighPriorityProcess: Boolean
-    ): Int {
-        val appOptimizePolicy = HookCommonProperties.appOptimizePolicyMap[processRecord.packageName]
-        val possibleAdj = when (appGroupEnum) {
-            AppGroupEnum.ACTIVE -> appOptimizePolicy.getCustomMainProcessFgAdj()
-            AppGroupEnum.IDLE -> appOptimizePolicy.getCustomMainProcessBgAdj()
-            else -> null
-        } ?: run {
-            return doOther(
-                adj = adj,
-                adjWillSet = adjWillSet,
-                isUserSpaceAdj = isUserSpaceAdj,
-                isNegativeMode = isNegativeMode,
-                processRecord = processRecord,
-                appGroupEnum = appGroupEnum,
-                adjHandleFunction = adjHandleFunction,
-                shouldHandleAdj = shouldHandleAdj,
-                mainProcess = mainProcess,
-                isHighPriorityProcess = isHighPriorityProcess
-            )
-        }
-        return applyHighPriorityProcessFinalAdj(
-            processRecord = processRecord,
-            adjHandleFunction = adjHandleFunction,
-            curAdj = adjWillSet,
-            shouldHandleAdj = shouldHandleAdj
-        ) {
-            // process.clearProcessUnexpectedState()
-            possibleAdj
-        }
-    }
-
-    private fun doGlobalOomScoreAdj(
-        globalOomScorePolicy: GlobalOomScorePolicy,
-        adj: Int,
-        adjWillSet: Int,
-        isUserSpaceAdj: Boolean,
-        isNegativeMode: Boolean,
-        processRecord: ProcessRecord,
-        adjHandleFunction: BiFunction<AppInfo, AppOptimizePolicy, Boolean>,
-        shouldHandleAdj: Boolean,
-        appGroupEnum: AppGroupEnum = processRecord.appInfo.appGroupEnum,
-        mainProcess: Boolean = processRecord.mainProcess,
-        isHighPriorityProcess: Boolean = processRecord.isHighPriorityProcess(),
-    ): Int {
-        if (globalOomScoreAdjHandler.isShouldHandle(
-                isMainProcess = mainProcess,
-                isUserSpaceAdj = isUserSpaceAdj,
-                isHighPriorityProcess = isHighPriorityProcess
-            )
-        ) {
-            val finalApplyAdj = applyHighPriorityProcessFinalAdj(
-                processRecord = processRecord,
-                adjHandleFunction = adjHandleFunction,
-                curAdj = adjWillSet,
-                shouldHandleAdj = shouldHandleAdj
-            ) {
-                // process.clearProcessUnexpectedState()
-                globalOomScorePolicy.customGlobalOomScore
-            }
-
-            return finalApplyAdj
-        } else {
-            return doOther(
-                adj = adj,
-                adjWillSet = adjWillSet,
-                isUserSpaceAdj = isUserSpaceAdj,
-                isNegativeMode = isNegativeMode,
-                processRecord = processRecord,
-                appGroupEnum = appGroupEnum,
-                adjHandleFunction = adjHandleFunction,
-                shouldHandleAdj = shouldHandleAdj,
-                mainProcess = mainProcess,
-                isHighPriorityProcess = isHighPriorityProcess
-            )
-        }
-    }
-
-    private fun doOther(
-        adj: Int,
-        adjWillSet: Int,
-        isUserSpaceAdj: Boolean,
-        isNegativeMode: Boolean,
-        processRecord: ProcessRecord,
-        appGroupEnum: AppGroupEnum = processRecord.appInfo.appGroupEnum,
-        adjHandleFunction: BiFunction<AppInfo, AppOptimizePolicy, Boolean>,
-        shouldHandleAdj: Boolean,
-        appInfo: AppInfo = processRecord.appInfo,
-        mainProcess: Boolean = processRecord.mainProcess,
-        isHighPriorityProcess: Boolean = processRecord.isHighPriorityProcess(),
-    ): Int {
-        if (!isUserSpaceAdj) {
-            return adjWillSet
-        }
-
-        var finalApplyAdj: Int = adjWillSet
-        if (isHighPriorityProcess) {
-            when {
-                appGroupEnum == AppGroupEnum.ACTIVE -> {
-                    processRecord.checkAndSetDefaultMaxAdjIfNeed()
-                    finalApplyAdj = ProcessRecord.DEFAULT_MAIN_ADJ
-                }
-
-                isNegativeMode -> {
-                    // do nothing
-                }
-
-                else -> {
-                    finalApplyAdj = applyHighPriorityProcessFinalAdj(
-                        processRecord = processRecord,
-                        curAdj = adjWillSet,
-                        adjHandleFunction = adjHandleFunction,
-                        shouldHandleAdj = shouldHandleAdj
-                    ) {
-                        oomAdjHandler.computeFinalAdj(
-                            oomScoreAdj = adjWillSet,
-                            processRecord = processRecord,
-                            appInfo = appInfo,
-                            mainProcess = mainProcess
-                        )
-                    }
-                }
-            }
-        } else {    // 普通子进程
-            finalApplyAdj = computeSubprocessFinalOomScore(
-                processRecord = processRecord,
-                oomScoreAdj = adjWillSet
-            )
-        }
-
-        return finalApplyAdj
-    }
-
     /**
      * 在使用Simple Lmk的情况下, 计算最终adj
      * @param appInfo AppInfo
@@ -832,12 +607,13 @@ class ProcessListHookKt(
      * @param oomScoreAdj Int 当前系统计算的oom_score_adj
      * @return Int
      */
-    private fun computeImportSystemAppOomAdj(oomScoreAdj: Int): Int {
-        return importSystemAppOomScoreAdjMap.computeIfAbsent(oomScoreAdj) { _ ->
-            (oomScoreAdj / oomScoreAdjConvertDivisor) + minOomScoreAdj
-        }
+    private val importSystemAppOomScoreAdjTable = AdjLookupTable { oomScoreAdj ->
+        (oomScoreAdj / oomScoreAdjConvertDivisor) + minOomScoreAdj
     }
 
+    private fun computeImportSystemAppOomAdj(oomScoreAdj: Int): Int =
+        importSystemAppOomScoreAdjTable[oomScoreAdj]
+
     @Deprecated("ProcessRecordKt.getMDyingPid(proc)有时候为0")
     fun handleRemoveLruProcessLocked(param: MethodHookParam) {
         val proc = param.args[0]
@@ -963,8 +739,37 @@ class OomAdjustLevel {
     }
 }
 
+/**
+ * adj查找表
+ *
+ * 预先计算[ProcessList.NATIVE_ADJ]..[ProcessList.UNKNOWN_ADJ]范围内每个adj的映射结果,
+ * 查询时直接以数组下标取值。避免了装箱、哈希以及ConcurrentHashMap的探测。
+ * 超出该范围的adj(理论上不会出现)则直接计算
+ */
+class AdjLookupTable(private val adjMapper: AdjMapper) {
+    private val table = IntArray(TABLE_SIZE) { index ->
+        adjMapper.map(index + ProcessList.NATIVE_ADJ)
+    }
+
+    operator fun get(oomScoreAdj: Int): Int {
+        val index = oomScoreAdj - ProcessList.NATIVE_ADJ
+        return if (index in 0..<TABLE_SIZE) table[index] else adjMapper.map(oomScoreAdj)
+    }
+
+    fun interface AdjMapper {
+        fun map(oomScoreAdj: Int): Int
+    }
+
+    companion object {
+        const val TABLE_SIZE = ProcessList.UNKNOWN_ADJ - ProcessList.NATIVE_ADJ + 1
+    }
+}
+
 /**
  * oom_score_adj的处理器
+ *
+ * 计算结果保存在[AdjLookupTable]中。子类重写compute*Value方法来定义映射规则,
+ * 并在构造完成后调用[buildAdjTables]生成查找表
  */
 open class OomScoreAdjHandler {
     var maxAllowedOomScoreAdj = ProcessList.UNKNOWN_ADJ - 1
@@ -1004,6 +809,28 @@ open class OomScoreAdjHandler {
         this.importAppAdjConvertDivisor = importAppAdjConvertDivisor
     }
 
+    /* *************************************************************************
+     *                                                                         *
+     * 查找表                                                                    *
+     *                                                                         *
+     **************************************************************************/
+    private lateinit var adjTable: AdjLookupTable
+    private lateinit var highPrioritySubProcessAdjTable: AdjLookupTable
+    private lateinit var importAppAdjTable: AdjLookupTable
+
+    /**
+     * 生成查找表
+     *
+     * 子类的字段在父类构造方法执行时尚未初始化, 因此不能在构造方法中生成
+     * @return OomScoreAdjHandler 当前处理器
+     */
+    fun buildAdjTables(): OomScoreAdjHandler {
+        adjTable = AdjLookupTable(::computeAdjValue)
+        highPrioritySubProcessAdjTable = AdjLookupTable(::computeHighPrioritySubProcessAdjValue)
+        importAppAdjTable = AdjLookupTable(::computeImportAppAdjValue)
+        return this
+    }
+
     /* *************************************************************************
      *                                                                         *
      * 普通进程                                                                  *
@@ -1013,10 +840,10 @@ open class OomScoreAdjHandler {
     var maxAdj = minAdj
     var adjConvertDivisor = 1
 
-    open fun computeAdj(oomScoreAdj: Int): Int {
-        return oomScoreAdjMap.computeIfAbsent(oomScoreAdj) { _ ->
-            clamp(oomScoreAdj / adjConvertDivisor, minAdj, maxAdj)
-        }
+    fun computeAdj(oomScoreAdj: Int): Int = adjTable[oomScoreAdj]
+
+    protected open fun computeAdjValue(oomScoreAdj: Int): Int {
+        return clamp(oomScoreAdj / adjConvertDivisor, minAdj, maxAdj)
     }
 
     /**
@@ -1024,10 +851,11 @@ open class OomScoreAdjHandler {
      * @param oomScoreAdj Int 当前系统的adj
      * @return Int 计算后的子进程adj
      */
-    open fun computeHighPrioritySubProcessAdj(oomScoreAdj: Int): Int {
-        return subProcessOomScoreAdjMap.computeIfAbsent(oomScoreAdj) { _ ->
-            computeAdj(oomScoreAdj = oomScoreAdj) + highPrioritySubProcessAdjOffset
-        }
+    fun computeHighPrioritySubProcessAdj(oomScoreAdj: Int): Int =
+        highPrioritySubProcessAdjTable[oomScoreAdj]
+
+    protected open fun computeHighPrioritySubProcessAdjValue(oomScoreAdj: Int): Int {
+        return computeAdjValue(oomScoreAdj = oomScoreAdj) + highPrioritySubProcessAdjOffset
     }
 
     /* *************************************************************************
@@ -1039,10 +867,10 @@ open class OomScoreAdjHandler {
     var maxImportAppAdj = minAdj
     var importAppAdjConvertDivisor = 1
 
-    open fun computeImportAppAdj(oomScoreAdj: Int): Int {
-        return importAppOomScoreAdjMap.computeIfAbsent(oomScoreAdj) { _ ->
-            clamp(oomScoreAdj / importAppAdjConvertDivisor, minImportAppAdj, maxImportAppAdj)
-        }
+    fun computeImportAppAdj(oomScoreAdj: Int): Int = importAppAdjTable[oomScoreAdj]
+
+    protected open fun computeImportAppAdjValue(oomScoreAdj: Int): Int {
+        return clamp(oomScoreAdj / importAppAdjConvertDivisor, minImportAppAdj, maxImportAppAdj)
     }
 
     /* *************************************************************************
@@ -1085,12 +913,6 @@ open class OomScoreAdjHandler {
             computeHighPrioritySubProcessAdj(oomScoreAdj = oomScoreAdj)
         }
     }
-
-    companion object {
-        val oomScoreAdjMap = ConcurrentHashMap<Int, Int>(8)
-        val subProcessOomScoreAdjMap = ConcurrentHashMap<Int, Int>(8)
-        val importAppOomScoreAdjMap = ConcurrentHashMap<Int, Int>(8)
-    }
 }
 
 /**
@@ -1127,6 +949,19 @@ fun ProcessRecord.isHighPrioritySubProcess(): Boolean {
             || hasWakeLock()
 }
 
+/**
+ * 是否可能是高优先级子进程
+ * 只依赖配置、进程名以及wakelock, 用于[AppInfo]中的进程划分。
+ * webview进程是否有客户端界面会随时改变, 因此使用前仍需[isHighPrioritySubProcess]确认
+ * @receiver ProcessRecordKt
+ * @return Boolean 可能是 -> true
+ */
+fun ProcessRecord.isHighPrioritySubProcessCandidate(): Boolean {
+    return isUpgradeSubProcessLevel()
+            || (HookCommonProperties.enableWebviewProcessProtect.value && webviewProcessProbable)
+            || hasWakeLock()
+}
+
 fun ProcessRecord.isHighPrioritySubProcessByBasicProperty(): Boolean {
     return isUpgradeSubProcessLevel()
             || isNeedHandleWebviewProcess()
@@ -36,6 +36,8 @@ import com.venus.backgroundopt.hook.handle.android.entity.Process.PROC_NEWLINE_T
 import com.venus.backgroundopt.hook.handle.android.entity.Process.PROC_OUT_LONG
 import com.venus.backgroundopt.hook.handle.android.isHighPriorityProcessByBasicProperty
 import com.venus.backgroundopt.utils.PackageUtils
+import com.venus.backgroundopt.utils.ProcPidPaths
+import com.venus.backgroundopt.utils.ProcStatParser
 import com.venus.backgroundopt.utils.callMethod
 import com.venus.backgroundopt.utils.getBooleanFieldValue
 import com.venus.backgroundopt.utils.getIntFieldValue
@@ -45,6 +47,8 @@ import com.venus.backgroundopt.utils.ifTrue
 import com.venus.backgroundopt.utils.log.ILogger
 import com.venus.backgroundopt.utils.log.logDebug
 import com.venus.backgroundopt.utils.log.logInfo
+import com.venus.backgroundopt.utils.message.handle.getCustomMainProcessBgAdj
+import com.venus.backgroundopt.utils.message.handle.getCustomMainProcessFgAdj
 import com.venus.backgroundopt.utils.message.handle.isCustomMainProcessAdjValid
 import com.venus.backgroundopt.utils.nullableFilter
 import com.venus.backgroundopt.utils.runCatchThrowable
@@ -56,6 +60,7 @@ import java.util.concurrent.ConcurrentHashMap
 import java.util.concurrent.TimeUnit
 import java.util.concurrent.atomic.AtomicInteger
 import java.util.concurrent.atomic.AtomicLong
+import kotlin.math.exp
 
 /**
  * @author XingC
@@ -83,6 +88,15 @@ class ProcessRecord(
         // 高优先级子进程的最大adj
         var HIGH_PRIORITY_SUB_PROC_DEFAULT_MAX_ADJ = ProcessList.UNKNOWN_ADJ
 
+        // 没有待写入lmkd的adj / 尚未写入过lmkd
+        const val NO_PENDING_LMKD_ADJ = Int.MIN_VALUE
+
+        // 未配置自定义主进程adj
+        const val NO_CUSTOM_MAIN_PROCESS_ADJ = Int.MIN_VALUE
+
+        // adj变化频率的衰减时间常数(秒)
+        const val ADJ_CHURN_RATE_TIME_CONSTANT_SECONDS = 10.0
+
         // 是否设置默认最大adj
         var isNeedSetDefaultMaxAdj = false
 
@@ -273,7 +287,7 @@ class ProcessRecord(
         fun getCurAdjNative(pid: Int): Int {
             val longOut = LongArray(1)
             Process.readProcFile(
-                "/proc/${pid}/oom_score_adj",
+                ProcPidPaths.of(pid).oomScoreAdj,
                 LONG_FORMAT,
                 null,
                 longOut,
@@ -282,6 +296,15 @@ class ProcessRecord(
             return longOut[0].toInt()
         }
 
+        /**
+         * 获取进程的启动时间
+         *
+         * @param pid 要查询的进程的pid
+         * @return 自开机以来的时钟滴答数。读取失败 = 0
+         */
+        @JvmStatic
+        fun readProcStartTime(pid: Int): Long = ProcStatParser.readStartTime(pid)
+
         /**
          * 获取完整进程名
          *
@@ -478,6 +501,59 @@ class ProcessRecord(
     @JSONField(serialize = false)
     var recordMaxAdj = 0
 
+    // 等待写入lmkd的adj。由LmkdCommandBatcher维护
+    @JSONField(serialize = false)
+    val pendingLmkdAdj = AtomicInteger(NO_PENDING_LMKD_ADJ)
+
+    // 上一次写入lmkd的adj。由LmkdCommandBatcher维护
+    @Volatile
+    @JSONField(serialize = false)
+    var lastWrittenLmkdAdj = NO_PENDING_LMKD_ADJ
+
+    // 等待写入lmkd的adj所对应的最早一次系统调用时间(System.nanoTime)。0表示无
+    @JSONField(serialize = false)
+    val pendingLmkdRequestNanos = AtomicLong(0L)
+
+    // 当前进程正在排队的写入通道(LmkdCommandBatcher.Lane.flag的组合)
+    @JSONField(serialize = false)
+    val queuedLmkdLanes = AtomicInteger(0)
+
+    // 指数衰减的adj设置频率(次/秒)。截至lastAdjChurnNanos
+    @Volatile
+    private var adjChurnRate = 0.0
+
+    @Volatile
+    private var lastAdjChurnNanos = 0L
+
+    /**
+     * 记录一次adj设置, 并更新指数衰减的频率
+     * 调用方需保证同一进程不会被并发调用(在appInfo的锁内)
+     *
+     * @param nowNanos 当前时间([System.nanoTime])
+     * @return 更新后的频率(次/秒)
+     */
+    fun recordAdjChurn(nowNanos: Long): Double {
+        val rate = getAdjChurnRate(nowNanos) + 1.0 / ADJ_CHURN_RATE_TIME_CONSTANT_SECONDS
+        adjChurnRate = rate
+        lastAdjChurnNanos = nowNanos
+        return rate
+    }
+
+    /**
+     * 获取衰减到指定时间的adj设置频率
+     *
+     * @param nowNanos 当前时间([System.nanoTime])
+     * @return 频率(次/秒)
+     */
+    fun getAdjChurnRate(nowNanos: Long = System.nanoTime()): Double {
+        val lastNanos = lastAdjChurnNanos
+        if (lastNanos == 0L) {
+            return 0.0
+        }
+        val elapsedSeconds = (nowNanos - lastNanos).coerceAtLeast(0L) / 1_000_000_000.0
+        return adjChurnRate * exp(-elapsedSeconds / ADJ_CHURN_RATE_TIME_CONSTANT_SECONDS)
+    }
+
     /**
      * All about the state info of the optimizer when the process is cached.
      */
@@ -681,9 +757,39 @@ class ProcessRecord(
      * @return Long 正常获取的值 >= 0, 获取异常 = Long.MIN_VALUE
      */
     fun getCurRssInBytes(): Long {
-        return MemoryStatUtil.readMemoryStatFromFilesystem(uid, pid)?.rssInBytes ?: Long.MIN_VALUE
+        return (MemoryStatUtil.readMemoryStatFromFilesystem(uid, pid)?.rssInBytes ?: Long.MIN_VALUE).also {
+            if (it >= 0) {
+                lastSampledRssInBytes = it
+            }
+        }
+    }
+
+    // 进程的启动时间(见readProcStartTime)。用于识别pid复用。未记录时 = 0
+    @Volatile
+    @JSONField(serialize = false)
+    var procStartTime = 0L
+        private set
+
+    fun recordProcStartTimeIfAbsent() {
+        if (procStartTime == 0L) {
+            procStartTime = readProcStartTime(pid)
+        }
     }
 
+    /**
+     * pid是否仍属于当前进程。未记录启动时间时无法判断, 视为是
+     */
+    @JSONField(serialize = false)
+    fun isSameProcessByStartTime(): Boolean {
+        return ProcStatParser.isSameProcess(ProcPidPaths.of(pid).stat, procStartTime)
+    }
+
+    // 最近一次成功采样的资源占用。未采样时 = Long.MIN_VALUE
+    @Volatile
+    @JSONField(serialize = false)
+    var lastSampledRssInBytes: Long = Long.MIN_VALUE
+        private set
+
     /**
      * 是否需要应用内存调整
      *
@@ -715,9 +821,12 @@ class ProcessRecord(
         runningInfo.processManager.addCompactProcess(this)
     }
 
+    /**
+     * @param intervalScale 压缩间隔的倍率
+     */
     @JSONField(serialize = false)
-    fun isAllowedCompact(time: Long): Boolean {
-        return time - getLastCompactTime() > compactInterval
+    fun isAllowedCompact(time: Long, intervalScale: Double = 1.0): Boolean {
+        return time - getLastCompactTime() > compactInterval * intervalScale
     }
 
     @JvmName("getOomAdjScoreFromAtomicInteger")
@@ -789,6 +898,7 @@ class ProcessRecord(
         }*/
         // adjHandleActionType = (adjHandleActionType shl 4) or AdjHandleActionType.WAKE_LOCK
         adjHandleActionType = adjHandleActionType xor AdjHandleActionType.WAKE_LOCK
+        appInfo.reindexProcess(this)
     }
 
     fun decrementWakeLockCountAndChangeAdjHandleActionType() {
@@ -798,6 +908,7 @@ class ProcessRecord(
         }*/
         // adjHandleActionType = adjHandleActionType shr 4
         adjHandleActionType = adjHandleActionType xor AdjHandleActionType.WAKE_LOCK
+        appInfo.reindexProcess(this)
     }
 
     @JSONField(serialize = false)
@@ -834,12 +945,25 @@ class ProcessRecord(
 
     var adjHandleActionType: Int = AdjHandleActionType.OTHER
 
+    // 自定义的前台/后台主进程adj。在确定adj处理方式时从app优化策略中取出, 供adj决策表直接使用
+    @Volatile
+    @JSONField(serialize = false)
+    var customMainProcessFgAdj = NO_CUSTOM_MAIN_PROCESS_ADJ
+
+    @Volatile
+    @JSONField(serialize = false)
+    var customMainProcessBgAdj = NO_CUSTOM_MAIN_PROCESS_ADJ
+
     private fun initAdjHandleType() {
         // 高优先级进程
         if (isHighPriorityProcessByBasicProperty()) {
             // 是否配置自定义主进程
             val appOptimizePolicy = HookCommonProperties.appOptimizePolicyMap[packageName]
             appOptimizePolicy.isCustomMainProcessAdjValid().ifTrue {
+                customMainProcessFgAdj =
+                    appOptimizePolicy.getCustomMainProcessFgAdj() ?: NO_CUSTOM_MAIN_PROCESS_ADJ
+                customMainProcessBgAdj =
+                    appOptimizePolicy.getCustomMainProcessBgAdj() ?: NO_CUSTOM_MAIN_PROCESS_ADJ
                 adjHandleActionType = AdjHandleActionType.CUSTOM_MAIN_PROCESS
                 return
             }
@@ -855,6 +979,8 @@ class ProcessRecord(
 
     fun resetAdjHandleType() {
         initAdjHandleType()
+        // 子进程oom策略、webview保护的改变都会经由此处
+        appInfo.reindexProcess(this)
     }
 
     override fun equals(other: Any?): Boolean {
@@ -0,0 +1,212 @@
+/*
+ * Copyright (C) 2023 BackgroundOpt
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.venus.backgroundopt.manager.application
+
+import android.content.ComponentName
+import com.venus.backgroundopt.entity.AppInfo
+import com.venus.backgroundopt.hook.handle.android.ActivityManagerServiceHookKt
+import com.venus.backgroundopt.utils.LatencyHistogram
+import com.venus.backgroundopt.utils.log.ILogger
+import java.util.concurrent.ConcurrentLinkedQueue
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicBoolean
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Activity事件分发器
+ *
+ * 每个app拥有一个串行的邮箱([ActivityEventMailbox]), 所有app共享少量的处理线程:
+ * 1. 同一app的事件严格按照投递顺序处理, 且同一时刻最多只有一个线程在处理, 因此无需再对[AppInfo]加锁
+ * 2. 不同app之间互不阻塞
+ * 3. 处理RESUMED时, 若邮箱中紧随其后的是同一组件在[coalesceWindowMillis]内的STOPPED, 则二者合并处理,
+ * 避免app在活跃/后台分组间来回切换
+ *
+ * @author XingC
+ * @date 2026/10/18
+ */
+class ActivityEventDispatcher @JvmOverloads constructor(
+    private val handler: ActivityEventHandler,
+    threadCount: Int = DEFAULT_THREAD_COUNT,
+    coalesceWindowMillis: Long = DEFAULT_COALESCE_WINDOW_MILLIS
+) : ILogger {
+    interface ActivityEventHandler {
+        /**
+         * 处理单个事件
+         */
+        fun handle(event: Int, componentName: ComponentName?, appInfo: AppInfo)
+
+        /**
+         * 处理合并后的同一组件的RESUMED -> STOPPED
+         */
+        fun handleResumedThenStopped(componentName: ComponentName, appInfo: AppInfo)
+    }
+
+    private val executor: ExecutorService = Executors.newFixedThreadPool(threadCount)
+
+    private val coalesceWindowNanos = TimeUnit.MILLISECONDS.toNanos(coalesceWindowMillis)
+
+    /* *************************************************************************
+     *                                                                         *
+     * 统计                                                                     *
+     *                                                                         *
+     **************************************************************************/
+    // 所有邮箱中待处理的事件数
+    private val pendingEventCount = AtomicInteger(0)
+
+    val queueDepth: Int get() = pendingEventCount.get()
+
+    // 单个邮箱出现过的最大深度
+    @Volatile
+    var maxMailboxDepth = 0
+        private set
+
+    val postedCount = AtomicLong(0)
+    val handledCount = AtomicLong(0)
+    val coalescedCount = AtomicLong(0)
+    val failedCount = AtomicLong(0)
+
+    // 事件投递 -> 处理完成
+    val eventToHandledLatencyHistogram = LatencyHistogram()
+
+    /* *************************************************************************
+     *                                                                         *
+     * 投递                                                                     *
+     *                                                                         *
+     **************************************************************************/
+    fun post(appInfo: AppInfo, event: Int, componentName: ComponentName?) {
+        val mailbox = appInfo.activityEventMailbox
+        mailbox.queue.offer(ActivityEvent(event, componentName, System.nanoTime()))
+        postedCount.incrementAndGet()
+        pendingEventCount.incrementAndGet()
+        val depth = mailbox.depth.incrementAndGet()
+        if (depth > maxMailboxDepth) {
+            maxMailboxDepth = depth
+        }
+
+        if (mailbox.scheduled.compareAndSet(false, true)) {
+            executor.execute { drain(appInfo, mailbox) }
+        }
+    }
+
+    /* *************************************************************************
+     *                                                                         *
+     * 处理                                                                     *
+     *                                                                         *
+     **************************************************************************/
+    private fun drain(appInfo: AppInfo, mailbox: ActivityEventMailbox) {
+        var handled = 0
+        while (true) {
+            val activityEvent = mailbox.queue.poll()
+            if (activityEvent == null) {
+                mailbox.scheduled.set(false)
+                // 释放调度权后若有新事件到达, 而其投递者没能抢到调度权, 由当前线程继续处理
+                if (mailbox.queue.isEmpty() || !mailbox.scheduled.compareAndSet(false, true)) {
+                    return
+                }
+                continue
+            }
+            onEventPolled(mailbox)
+            dispatch(appInfo, mailbox, activityEvent)
+
+            // 单次最多处理的事件数。防止某个app长期占用线程, 剩余事件重新排队
+            if (++handled >= MAX_EVENTS_PER_DRAIN) {
+                executor.execute { drain(appInfo, mailbox) }
+                return
+            }
+        }
+    }
+
+    private fun onEventPolled(mailbox: ActivityEventMailbox) {
+        mailbox.depth.decrementAndGet()
+        pendingEventCount.decrementAndGet()
+    }
+
+    private fun dispatch(appInfo: AppInfo, mailbox: ActivityEventMailbox, activityEvent: ActivityEvent) {
+        val componentName = activityEvent.componentName
+        if (activityEvent.event == ActivityManagerServiceHookKt.ACTIVITY_RESUMED && componentName != null) {
+            // 只有当前线程会从邮箱中取出事件, 因此peek到的事件不会被其他线程取走
+            val next = mailbox.queue.peek()
+            if (next != null
+                && next.event == ActivityManagerServiceHookKt.ACTIVITY_STOPPED
+                && next.componentName == componentName
+                && next.enqueueNanos - activityEvent.enqueueNanos <= coalesceWindowNanos
+            ) {
+                mailbox.queue.poll()
+                onEventPolled(mailbox)
+                coalescedCount.incrementAndGet()
+                runHandler(activityEvent) {
+                    handler.handleResumedThenStopped(componentName, appInfo)
+                }
+                recordHandled(next)
+                return
+            }
+        }
+
+        runHandler(activityEvent) {
+            handler.handle(activityEvent.event, componentName, appInfo)
+        }
+    }
+
+    private inline fun runHandler(activityEvent: ActivityEvent, block: () -> Unit) {
+        try {
+            block()
+        } catch (t: Throwable) {
+            failedCount.incrementAndGet()
+            logger.error("Activity事件处理出错, event: ${activityEvent.event}", t)
+        }
+        recordHandled(activityEvent)
+    }
+
+    private fun recordHandled(activityEvent: ActivityEvent) {
+        handledCount.incrementAndGet()
+        eventToHandledLatencyHistogram.recordNanos(System.nanoTime() - activityEvent.enqueueNanos)
+    }
+
+    companion object {
+        const val DEFAULT_THREAD_COUNT = 2
+
+        // RESUMED -> STOPPED的合并窗口
+        const val DEFAULT_COALESCE_WINDOW_MILLIS = 5L
+
+        private const val MAX_EVENTS_PER_DRAIN = 16
+    }
+}
+
+/**
+ * app的Activity事件邮箱。由[ActivityEventDispatcher]串行处理
+ */
+class ActivityEventMailbox {
+    val queue = ConcurrentLinkedQueue<ActivityEvent>()
+
+    val depth = AtomicInteger(0)
+
+    // 是否已有线程在处理(或已提交处理)本邮箱
+    val scheduled = AtomicBoolean(false)
+
+    // setOomAdj触发的初始STOPPED事件是否已投递而尚未处理。防止同一app被重复投递
+    val initialStoppedPending = AtomicBoolean(false)
+}
+
+class ActivityEvent(
+    val event: Int,
+    val componentName: ComponentName?,
+    val enqueueNanos: Long
+)
@@ -26,16 +26,23 @@ import com.venus.backgroundopt.utils.log.ILogger
 import com.venus.backgroundopt.utils.log.logDebug
 import com.venus.backgroundopt.utils.log.logError
 import com.venus.backgroundopt.utils.log.logInfo
+import com.venus.backgroundopt.utils.log.logWarn
 import com.venus.backgroundopt.utils.message.Message
+import com.venus.backgroundopt.utils.message.MessageFrame
+import com.venus.backgroundopt.utils.message.MessageHandler
 import com.venus.backgroundopt.utils.message.NULL_FLAG
 import com.venus.backgroundopt.utils.message.registeredMessageHandler
 import com.venus.backgroundopt.utils.runCatchThrowable
 import de.robv.android.xposed.XC_MethodHook.MethodHookParam
-import java.io.ObjectInputStream
-import java.io.ObjectOutputStream
 import java.io.Serializable
 import java.net.InetAddress
-import java.net.ServerSocket
+import java.net.InetSocketAddress
+import java.nio.ByteBuffer
+import java.nio.channels.SelectionKey
+import java.nio.channels.Selector
+import java.nio.channels.ServerSocketChannel
+import java.nio.channels.SocketChannel
+import java.util.concurrent.ConcurrentLinkedQueue
 import java.util.concurrent.Executors
 
 /**
@@ -89,76 +96,123 @@ class DefaultModuleMessageHandler(
 
 /**
  * 使用Socket进行通信的消息处理器
+ *
+ * 每个ui进程保持一个长连接, 以[MessageFrame]传输。
+ * 由一个线程通过[Selector]负责所有连接的读写, 完整的请求帧交给[executor]处理, 响应写回同一连接(可乱序)。
+ * 同时存在的连接数不超过[MAX_CONNECTIONS], 超出的新连接直接关闭
+ *
+ * @param messageHandlers 按消息的key分发的处理器
  */
-class SocketModuleMessageHandler(
-    override val runningInfo: RunningInfo
+class SocketModuleMessageHandler @JvmOverloads constructor(
+    override val runningInfo: RunningInfo,
+    private val messageHandlers: Map<String, MessageHandler> = registeredMessageHandler
 ) : ModuleMessageHandler {
     private val executor = Executors.newFixedThreadPool(3)
-    private val socket: ServerSocket? = initSocket()
+    private val serverChannel: ServerSocketChannel? = initServerChannel()
     val port: Int
-        get() = if (socket != null && !socket.isClosed) {
-            socket.localPort
-        } else {
-            Int.MIN_VALUE
+        get() = serverChannel?.takeIf { it.isOpen }?.socket()?.localPort ?: Int.MIN_VALUE
+
+    private val methodHookParamConstructor by lazy {
+        MethodHookParam::class.java.getDeclaredConstructor().apply {
+            isAccessible = true
         }
+    }
 
-    private fun initSocket(): ServerSocket? {
-        var socket: ServerSocket? = null
+    private fun initServerChannel(): ServerSocketChannel? {
         var curPort = 11011
         val localHost = InetAddress.getLocalHost()
         do {
-            runCatchThrowable {
-                socket = ServerSocket(curPort, 50, localHost)
+            val channel = runCatchThrowable { ServerSocketChannel.open() } ?: return null
+            try {
+                channel.socket().bind(InetSocketAddress(localHost, curPort), 50)
+                return channel
+            } catch (t: Throwable) {
+                runCatchThrowable { channel.close() }
             }
             ++curPort
-        } while (socket == null && curPort <= 49152)
-        return socket
+        } while (curPort <= 49152)
+        return null
     }
 
+    /**
+     * 一个ui连接
+     */
+    private class Connection(val channel: SocketChannel) {
+        // 仅在selector线程中访问
+        var readBuffer: ByteBuffer = ByteBuffer.allocate(INITIAL_READ_BUFFER_BYTES)
+
+        val writeQueue = ConcurrentLinkedQueue<ByteBuffer>()
+    }
+
+    // 有待写响应的连接。由selector线程注册写事件
+    private val pendingWriteConnections = ConcurrentLinkedQueue<SelectionKey>()
+
+    // 当前的连接数。仅在selector线程中访问
+    private var connectionCount = 0
+
+    private lateinit var selector: Selector
+
     fun start() {
-        socket ?: run {
+        val serverChannel = serverChannel ?: run {
             logError("Socket建立失败")
             return
         }
-        logInfo("Socket建立成功。端口号: ${socket.localPort}")
-
-        executor.execute {
-            val methodHookParam = MethodHookParam::class.java.getDeclaredConstructor().apply {
-                isAccessible = true
-            }.newInstance()
-            while (true) {
-                val accept = socket.accept()
-                val objectInputStream = runCatchThrowable(catchBlock = { throwable ->
-                    logger.error("创建消息接收流时发生异常！", throwable)
-                    runCatchThrowable {
-                        accept.close()
+        selector = runCatchThrowable(catchBlock = { throwable ->
+            logger.error("Selector创建失败", throwable)
+            null
+        }) {
+            Selector.open()
+        } ?: return
+        serverChannel.configureBlocking(false)
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT)
+        logInfo("Socket建立成功。端口号: ${serverChannel.socket().localPort}")
+
+        Thread({ selectLoop() }, "ModuleMessageSelector").apply {
+            isDaemon = true
+            start()
+        }
+    }
+
+    private fun selectLoop() {
+        while (true) {
+            runCatchThrowable(catchBlock = { throwable ->
+                logger.error("Socket消息处理出错", throwable)
+            }) {
+                selector.select()
+                while (true) {
+                    val key = pendingWriteConnections.poll() ?: break
+                    if (key.isValid) {
+                        key.interestOps(SelectionKey.OP_READ or SelectionKey.OP_WRITE)
                     }
-                    null
-                }) {
-                    ObjectInputStream(accept.getInputStream())
-                } ?: continue
-
-                executor.execute {
-                    runCatchThrowable(finallyBlock = {
-                        runCatchThrowable {
-                            objectInputStream.close()
-                            accept.close()
+                }
+
+                val iterator = selector.selectedKeys().iterator()
+                while (iterator.hasNext()) {
+                    val key = iterator.next()
+                    iterator.remove()
+                    runCatchThrowable(catchBlock = { throwable ->
+                        // accept失败(如fd耗尽)时保留监听
+                        if (key.channel() !is SocketChannel) {
+                            logger.warn("Socket连接接受失败", throwable)
+                            return@runCatchThrowable
                         }
-                    }) {
-                        val message = objectInputStream.readObject() as Message
                         if (BuildConfig.DEBUG) {
-                            logDebug(
-                                logStr = "模块进程接收的数据为: $message"
-                            )
+                            logger.warn("Socket连接异常, 关闭", throwable)
+                        }
+                        closeConnection(key)
+                    }) {
+                        if (!key.isValid) {
+                            return@runCatchThrowable
                         }
-                        registeredMessageHandler[message.key]?.handle(
-                            runningInfo,
-                            methodHookParam,
-                            message.value.toString()
-                        )
-                        ObjectOutputStream(accept.getOutputStream()).use { objectOutputStream ->
-                            val result = methodHookParam.result as String?
-                            objectOutputStream.writeObject(result)
+                        if (key.isAcceptable) {
+                            accept(key)
+                            return@runCatchThrowable
+                        }
+                        if (key.isReadable) {
+                            read(key)
+                        }
+                        if (key.isValid && key.isWritable) {
+                            write(key)
                         }
                     }
                 }
@@ -166,7 +220,130 @@ class SocketModuleMessageHandler(
         }
     }
 
+    private fun accept(key: SelectionKey) {
+        val channel = (key.channel() as ServerSocketChannel).accept() ?: return
+        if (connectionCount >= MAX_CONNECTIONS) {
+            logWarn("Socket连接数已达上限(${MAX_CONNECTIONS}), 拒绝新连接")
+            runCatchThrowable { channel.close() }
+            return
+        }
+        try {
+            channel.configureBlocking(false)
+            channel.socket().tcpNoDelay = true
+            channel.register(selector, SelectionKey.OP_READ, Connection(channel))
+        } catch (t: Throwable) {
+            runCatchThrowable { channel.close() }
+            throw t
+        }
+        ++connectionCount
+    }
+
+    private fun closeConnection(key: SelectionKey) {
+        // 读到EOF与异常处理都可能关闭同一连接, 只计数一次
+        if (!key.isValid) {
+            return
+        }
+        key.cancel()
+        runCatchThrowable { key.channel().close() }
+        --connectionCount
+    }
+
+    private fun read(key: SelectionKey) {
+        val connection = key.attachment() as Connection
+        var buffer = connection.readBuffer
+        if (connection.channel.read(buffer) < 0) {
+            closeConnection(key)
+            return
+        }
+
+        // 未读完的帧(含长度字段)的总字节数。只读到部分长度字段时为0
+        var pendingFrameBytes = 0
+        buffer.flip()
+        while (buffer.remaining() >= MessageFrame.LENGTH_BYTES) {
+            buffer.mark()
+            val length = buffer.getInt()
+            MessageFrame.checkLength(length)
+            if (buffer.remaining() < length) {
+                buffer.reset()
+                pendingFrameBytes = MessageFrame.LENGTH_BYTES + length
+                break
+            }
+            val body = ByteArray(length)
+            buffer.get(body)
+            val frame = MessageFrame.decode(ByteBuffer.wrap(body))
+            executor.execute { handleFrame(key, connection, frame) }
+        }
+        buffer.compact()
+
+        val newCapacity = when {
+            // 未读完的帧大于缓冲区时, 按帧长度一次扩容
+            pendingFrameBytes > buffer.capacity() -> pendingFrameBytes
+            // 大帧读完后收缩回初始大小, 避免每个连接长期持有大缓冲区
+            buffer.capacity() > INITIAL_READ_BUFFER_BYTES && pendingFrameBytes <= INITIAL_READ_BUFFER_BYTES -> INITIAL_READ_BUFFER_BYTES
+            else -> return
+        }
+        val newBuffer = ByteBuffer.allocate(newCapacity)
+        buffer.flip()
+        newBuffer.put(buffer)
+        buffer = newBuffer
+        connection.readBuffer = buffer
+    }
+
+    private fun write(key: SelectionKey) {
+        val connection = key.attachment() as Connection
+        while (true) {
+            val buffer = connection.writeQueue.peek() ?: break
+            connection.channel.write(buffer)
+            if (buffer.hasRemaining()) {
+                // 发送缓冲区已满, 等待下一次可写
+                return
+            }
+            connection.writeQueue.poll()
+        }
+        // 此后新加入的响应会重新注册写事件
+        key.interestOps(SelectionKey.OP_READ)
+    }
+
+    private fun handleFrame(key: SelectionKey, connection: Connection, frame: MessageFrame) {
+        val result = runCatchThrowable(catchBlock = { throwable ->
+            logger.error("消息处理出错", throwable)
+            null
+        }) {
+            val message = JsonUtils.parseObject(frame.data!!, Message::class.java)
+            if (BuildConfig.DEBUG) {
+                logDebug(
+                    logStr = "模块进程接收的数据为: $message"
+                )
+            }
+            // 每个请求使用独立的param, 防止并发处理时结果互相覆盖
+            val methodHookParam = methodHookParamConstructor.newInstance()
+            messageHandlers[message.key]?.handle(
+                runningInfo,
+                methodHookParam,
+                message.value.toString()
+            )
+            methodHookParam.result as String?
+        }
+        if (!key.isValid) {
+            return
+        }
+        val response = runCatchThrowable(catchBlock = { throwable ->
+            logger.error("响应超过消息帧上限, 以null返回", throwable)
+            null
+        }) {
+            MessageFrame(frame.requestId, result).encode()
+        } ?: MessageFrame(frame.requestId, null).encode()
+        connection.writeQueue.offer(response)
+        pendingWriteConnections.offer(key)
+        selector.wakeup()
+    }
+
     companion object {
+        private const val INITIAL_READ_BUFFER_BYTES = 8 * 1024
+
+        // 通常只有ui进程的一个连接, 留出余量以容纳重连时尚未关闭的旧连接
+        private const val MAX_CONNECTIONS = 4
+
         @JvmStatic
         fun isPortValid(port: Int): Boolean {
             return port != Int.MIN_VALUE && port <= 65535
@@ -20,29 +20,44 @@ package com.venus.backgroundopt.manager.process
 import android.os.SystemClock
 import com.venus.backgroundopt.core.RunningInfo
 import com.venus.backgroundopt.core.RunningInfo.AppGroupEnum
+import com.venus.backgroundopt.entity.AppInfo
 import com.venus.backgroundopt.entity.preference.OomWorkModePref
 import com.venus.backgroundopt.environment.hook.HookCommonProperties
 import com.venus.backgroundopt.hook.handle.android.entity.CachedAppOptimizer
+import com.venus.backgroundopt.hook.handle.android.entity.MemoryStatUtil
 import com.venus.backgroundopt.hook.handle.android.entity.ProcessList
 import com.venus.backgroundopt.hook.handle.android.entity.ProcessRecord
 import com.venus.backgroundopt.hook.handle.android.entity.isValid
+import com.venus.backgroundopt.utils.ProcessMemorySnapshot
+import com.venus.backgroundopt.utils.ProcessMemoryUtils
+import com.venus.backgroundopt.utils.concurrent.ConcurrentIntObjectMap
 import com.venus.backgroundopt.utils.log.ILogger
 import com.venus.backgroundopt.utils.runCatchThrowable
-import java.util.concurrent.ConcurrentHashMap
 import java.util.concurrent.Executor
-import java.util.concurrent.ScheduledFuture
 import java.util.concurrent.ScheduledThreadPoolExecutor
 import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicLong
 
 /**
  * 应用内存压缩管理器
  *
+ * 所有内存压缩的唯一入口:
+ * 1. 进程adj变化时([compactProcess])延迟[COMPACT_TASK_DELAY]后按节流规则决定压缩方式
+ * 2. 新进程在app处于后台时创建([addCompactProcess]), 延迟后进行一次部分压缩
+ * 3. 手动压缩进程或整个app([compactApp])
+ *
+ * 实际写入统一交由[compactionScheduler]调度。
+ * 启用[autoStopCompactTask]时, 连续[MAX_CONSECUTIVE_FAILURES]次压缩失败的进程不再压缩。
+ * 亮屏且内存压力不高时, FULL压缩推迟到[MaintenanceWindowCoordinator]的维护窗口执行,
+ * 但推迟时长不超过[MAX_FULL_COMPACT_DEFER_MILLIS]
+ *
  * @author XingC
  * @date 2023/8/8
  */
 class AppCompactManager2(
     private val cachedAppOptimizer: CachedAppOptimizer,
-    private val runningInfo: RunningInfo
+    private val runningInfo: RunningInfo,
+    private val maintenanceWindowCoordinator: MaintenanceWindowCoordinator
 ) : AbstractAppOptimizeManager(AppOptimizeEnum.PROCESS_COMPACT), ILogger {
     // App压缩处理线程池
     private val executor = ScheduledThreadPoolExecutor(2).apply {
@@ -59,8 +74,198 @@ class AppCompactManager2(
         return ProcessCompactProcessingResult()
     }
 
-    private val compactProcessMap: MutableMap<ProcessRecord, ScheduledFuture<*>> =
-        ConcurrentHashMap()
+    // 全局压缩调度
+    val compactionScheduler = CompactionScheduler()
+
+    /**
+     * 前台app启动时推迟压缩
+     */
+    fun onForegroundAppLaunch() {
+        compactionScheduler.onForegroundAppLaunch()
+    }
+
+    // 等待中的压缩任务。任务执行、被新的任务替换或进程被移除时清除
+    private val pendingCompactTasks = PendingCompactTasks(
+        executor = executor,
+        delayMillis = /*cachedAppOptimizer.mFreezerDebounceTimeout*/ COMPACT_TASK_DELAY
+    )
+
+    val pendingCompactTaskCount: Int get() = pendingCompactTasks.size
+
+    // 因pid被复用而跳过的压缩次数
+    val pidReusedSkipCount = AtomicLong(0)
+
+    // 是否停止压缩连续失败的进程
+    @Volatile
+    var autoStopCompactTask = HookCommonProperties.getAutoStopCompactTaskPreferenceValue().also {
+        logger.info("连续压缩失败的进程自动停止压缩: $it")
+    }
+
+    // 因连续失败而跳过的压缩次数
+    val autoStoppedSkipCount = AtomicLong(0)
+
+    // 根据压缩后的重新缺页调整的app压缩激进程度
+    val compactAggressivenessManager = CompactAggressivenessManager(executor)
+
+    // 因压缩激进程度而由FULL降级为FILE的次数
+    val refaultDowngradeCount = AtomicLong(0)
+
+    // 按实际写入的压缩行为统计
+    val fullCompactCount = AtomicLong(0)
+    val anonCompactCount = AtomicLong(0)
+    val fileCompactCount = AtomicLong(0)
+
+    // 交换区将满或不存在, FULL降级为FILE的次数
+    val anonSkippedForSwapCount = AtomicLong(0)
+
+    // 由[SwapHeadroomGuard]更新
+    @Volatile
+    var swapHeadroomLevel = SwapHeadroomLevel.NORMAL
+        private set
+
+    fun onSwapHeadroom(level: SwapHeadroomLevel) {
+        swapHeadroomLevel = level
+    }
+
+    // 没有可回收的文件页而跳过的次数
+    val noFilePagesSkipCount = AtomicLong(0)
+
+    /* *************************************************************************
+     *                                                                         *
+     * 维护窗口                                                                  *
+     *                                                                         *
+     **************************************************************************/
+    /**
+     * 推迟到维护窗口的FULL压缩
+     *
+     * @param deferredSinceMillis 首次推迟的时间。窗口因亮屏而关闭时保留, 使推迟时长的上限仍然有效
+     */
+    private class DeferredFullCompact(val processRecord: ProcessRecord, val deferredSinceMillis: Long)
+
+    // <pid, 推迟的FULL压缩>
+    private val deferredFullCompactProcessMap = ConcurrentIntObjectMap<DeferredFullCompact>()
+
+    val deferredFullCompactProcessCount: Int get() = deferredFullCompactProcessMap.size
+
+    // 因亮屏而推迟的FULL压缩次数
+    val deferredFullCompactCount = AtomicLong(0)
+
+    // 推迟超过[MAX_FULL_COMPACT_DEFER_MILLIS]而不再等待维护窗口的FULL压缩次数
+    val overdueFullCompactCount = AtomicLong(0)
+
+    init {
+        maintenanceWindowCoordinator.addParticipant(::collectMaintenanceWork)
+        executor.scheduleWithFixedDelay({
+            runCatchThrowable(catchBlock = {
+                logger.error("提交推迟过久的FULL压缩出错", it)
+            }) {
+                submitOverdueFullCompacts()
+            }
+        }, OVERDUE_CHECK_INTERVAL_MILLIS, OVERDUE_CHECK_INTERVAL_MILLIS, TimeUnit.MILLISECONDS)
+    }
+
+    /**
+     * 亮屏期间只执行必要的压缩。内存压力高时不推迟
+     */
+    private fun shouldDeferFullCompact(): Boolean {
+        return maintenanceWindowCoordinator.isUserInteracting && memoryPressureLevel != MemoryPressureLevel.HIGH
+    }
+
+    /**
+     * 推迟的FULL压缩在窗口线程中按窗口的顺序直接执行([CompactionScheduler.runNow]), 亮屏后未执行的放回等待下次
+     */
+    private fun collectMaintenanceWork(works: MutableList<MaintenanceWork>) {
+        deferredFullCompactProcessMap.forEach { pid, deferred ->
+            if (!deferredFullCompactProcessMap.remove(pid, deferred)) {
+                return@forEach
+            }
+            val processRecord = deferred.processRecord
+            // 优先使用历史收益, 否则以最近采样的内存占用估计
+            val expectedYieldKb = processRecord.compactYieldHistory?.averageReclaimedKb?.takeIf { it > 0 }
+                ?: (processRecord.lastSampledRssInBytes / 1024).coerceAtLeast(0)
+            works.add(MaintenanceWork(
+                name = "FULL压缩: ${processRecord.processName}",
+                expectedYieldKb = expectedYieldKb,
+                onSkipped = {
+                    // 期间可能已有新的推迟或进程已被移除
+                    if (processRecord.isValid(runningInfo)) {
+                        deferredFullCompactProcessMap.putIfAbsent(pid, deferred)
+                    }
+                }
+            ) {
+                if (!isDeferredFullCompactStillNeeded(processRecord)) {
+                    return@MaintenanceWork
+                }
+                createCompactionJob(
+                    processRecord = processRecord,
+                    processingResult = getProcessCompactProcessingResult(processRecord),
+                    processCompactEnum = ProcessCompactEnum.FULL,
+                    compactAction = CachedAppOptimizer.COMPACT_ACTION_FULL
+                )?.let { job ->
+                    compactionScheduler.runNow(job)
+                }
+            })
+        }
+    }
+
+    private fun isDeferredFullCompactStillNeeded(processRecord: ProcessRecord): Boolean {
+        return processRecord.appInfo.appGroupEnum != AppGroupEnum.ACTIVE
+                && processRecord.isValid(runningInfo)
+                && isNecessaryToOptimizeProcess(processRecord)
+    }
+
+    /**
+     * 推迟过久(如一直亮屏)的FULL压缩不再等待维护窗口, 交由[compactionScheduler]调度
+     */
+    private fun submitOverdueFullCompacts() {
+        val now = SystemClock.uptimeMillis()
+        deferredFullCompactProcessMap.forEach { pid, deferred ->
+            if (now - deferred.deferredSinceMillis < MAX_FULL_COMPACT_DEFER_MILLIS
+                || !deferredFullCompactProcessMap.remove(pid, deferred)
+            ) {
+                return@forEach
+            }
+            val processRecord = deferred.processRecord
+            if (!isDeferredFullCompactStillNeeded(processRecord)) {
+                return@forEach
+            }
+            overdueFullCompactCount.incrementAndGet()
+            submitCompactionJob(
+                processRecord = processRecord,
+                processingResult = getProcessCompactProcessingResult(processRecord),
+                processCompactEnum = ProcessCompactEnum.FULL,
+                compactAction = CachedAppOptimizer.COMPACT_ACTION_FULL
+            )
+        }
+    }
+
+    /* *************************************************************************
+     *                                                                         *
+     * 内存压力                                                                  *
+     *                                                                         *
+     **************************************************************************/
+    @Volatile
+    var memoryPressureLevel = MemoryPressureLevel.NORMAL
+        private set
+
+    private val pullForwardLimiter = PullForwardLimiter()
+
+    // 因高内存压力而提前执行的压缩任务数
+    val pressurePullForwardCount = AtomicLong(0)
+
+    /**
+     * 内存压力变化。高压力时提前执行等待中的压缩任务; 低压力时延长任务延迟与节流时间
+     */
+    fun onMemoryPressure(level: MemoryPressureLevel) {
+        memoryPressureLevel = level
+        if (level != MemoryPressureLevel.HIGH) {
+            return
+        }
+        if (!pullForwardLimiter.tryAcquire()) {
+            return
+        }
+        pressurePullForwardCount.addAndGet(pendingCompactTasks.runAllNow().toLong())
+    }
 
     override fun isNecessaryToOptimizeProcess(processRecord: ProcessRecord): Boolean {
         return processRecord.oomAdjScore >= 0 && processRecord.appInfo.appGroupEnum != AppGroupEnum.ACTIVE
@@ -72,25 +277,152 @@ class AppCompactManager2(
         curOomScoreAdj: Int,
         oomAdjustLevel: Int
     ) {
-        if (processRecord.appInfo.appGroupEnum != RunningInfo.AppGroupEnum.IDLE) {
+        if (lastOomScoreAdj == curOomScoreAdj) {
             return
         }
-        if (lastOomScoreAdj == curOomScoreAdj) {
+        // adj发生了变化, 之前的任务已不适用
+        if (processRecord.appInfo.appGroupEnum != RunningInfo.AppGroupEnum.IDLE) {
+            cancelCompactProcess(processRecord)
             return
         }
 
-        compactProcessMap[processRecord] = executor.schedule({
+        schedulePendingCompactTask(
+            processRecord = processRecord,
+            /*cachedAppOptimizer.mFreezerDebounceTimeout*/
+            delayMillis = memoryPressureLevel.scale(COMPACT_TASK_DELAY)
+        ) {
+            compactProcessImpl(
+                processRecord = processRecord,
+                lastOomScoreAdj = lastOomScoreAdj,
+                curOomScoreAdj = curOomScoreAdj,
+                oomAdjustLevel = oomAdjustLevel,
+            )
+        }
+    }
+
+    /**
+     * 以延迟任务的方式处理进程的压缩。进程已有的等待中的任务(包括已提交到[compactionScheduler]的)将被替换
+     */
+    private fun schedulePendingCompactTask(
+        processRecord: ProcessRecord,
+        delayMillis: Long,
+        block: () -> Unit
+    ) {
+        compactionScheduler.cancel(processRecord)
+        processRecord.recordProcStartTimeIfAbsent()
+        pendingCompactTasks.schedule(pid = processRecord.pid, delayMillis = delayMillis) {
             runCatchThrowable(catchBlock = {
                 logger.error("压缩进程任务出错", it)
             }) {
-                compactProcessImpl(
-                    processRecord = processRecord,
-                    lastOomScoreAdj = lastOomScoreAdj,
-                    curOomScoreAdj = curOomScoreAdj,
-                    oomAdjustLevel = oomAdjustLevel,
-                )
+                block()
+            }
+        }
+    }
+
+    /* *************************************************************************
+     *                                                                         *
+     * 新进程与手动压缩                                                           *
+     *                                                                         *
+     **************************************************************************/
+    /**
+     * 进程创建时app已处于后台, 延迟[ADD_PROCESS_COMPACT_DELAY]后进行一次部分压缩
+     */
+    fun addCompactProcess(processRecord: ProcessRecord) {
+        schedulePendingCompactTask(processRecord, ADD_PROCESS_COMPACT_DELAY) {
+            if (processRecord.appInfo.appGroupEnum != AppGroupEnum.IDLE
+                || !processRecord.isValid(runningInfo)
+                || !isNecessaryToOptimizeProcess(processRecord)
+            ) {
+                return@schedulePendingCompactTask
             }
-        }, /*cachedAppOptimizer.mFreezerDebounceTimeout*/ COMPACT_TASK_DELAY, TimeUnit.MILLISECONDS)
+            submitCompactionJob(
+                processRecord = processRecord,
+                processingResult = getProcessCompactProcessingResult(processRecord),
+                processCompactEnum = ProcessCompactEnum.SOME,
+                compactAction = CachedAppOptimizer.COMPACT_ACTION_FILE
+            )
+        }
+    }
+
+    /**
+     * 立即压缩进程(不受节流限制, 但仍由[compactionScheduler]调度)
+     *
+     * @param compactAction 压缩行为: [CachedAppOptimizer.COMPACT_ACTION_FILE]等
+     */
+    @JvmOverloads
+    fun compactApp(processRecord: ProcessRecord, compactAction: Int = DEFAULT_COMPACT_ACTION) {
+        cancelCompactProcess(processRecord)
+        processRecord.recordProcStartTimeIfAbsent()
+        submitCompactionJob(
+            processRecord = processRecord,
+            processingResult = getProcessCompactProcessingResult(processRecord),
+            processCompactEnum = if (compactAction == CachedAppOptimizer.COMPACT_ACTION_FILE) {
+                ProcessCompactEnum.SOME
+            } else {
+                ProcessCompactEnum.FULL
+            },
+            compactAction = compactAction
+        )
+    }
+
+    /**
+     * 立即压缩app的所有进程
+     */
+    @JvmOverloads
+    fun compactApp(appInfo: AppInfo, compactAction: Int = DEFAULT_COMPACT_ACTION) {
+        appInfo.forEachProcess { processRecord -> compactApp(processRecord, compactAction) }
+    }
+
+    /**
+     * 压缩候选进程: 所有处于后台(或未分组)的app的进程
+     */
+    fun getCompactProcesses(): List<ProcessRecord> {
+        return runningInfo.runningProcesses.asSequence()
+            .filterNotNull()
+            .filter { processRecord ->
+                val appGroupEnum = processRecord.appInfo.appGroupEnum
+                appGroupEnum == AppGroupEnum.IDLE || appGroupEnum == AppGroupEnum.NONE
+            }
+            .toList()
+    }
+
+    /**
+     * 等待延迟执行、排队中、执行中以及最近完成的压缩任务
+     */
+    fun getCompactionJobsSnapshot(): CompactionJobsSnapshot {
+        val now = SystemClock.uptimeMillis()
+        val pending = ArrayList<CompactionJobInfo>(pendingCompactTasks.size)
+        pendingCompactTasks.forEachPending { pid, remainingMillis ->
+            // 进程移除时会取消其任务, 找不到的只可能是正在移除的进程
+            val processRecord = runningInfo.getRunningProcess(pid) ?: return@forEachPending
+            pending.add(CompactionJobInfo.create(processRecord, CompactionJobInfo.STATE_PENDING).apply {
+                submitUptimeMillis = now + remainingMillis
+            })
+        }
+        pending.sortBy { it.submitUptimeMillis }
+        return compactionScheduler.snapshot().apply {
+            this.pending = pending
+        }
+    }
+
+    private fun getProcessCompactProcessingResult(processRecord: ProcessRecord): ProcessCompactProcessingResult {
+        return processRecord.initLastProcessingResultIfAbsent(
+            appOptimizeEnum = appOptimizeEnum,
+            processingResultSupplier = ::getProcessingResultIfAbsent
+        ) as ProcessCompactProcessingResult
+    }
+
+    /**
+     * 取消进程等待中的压缩任务(包括已提交到[compactionScheduler]而未执行的)
+     */
+    fun cancelCompactProcess(processRecord: ProcessRecord) {
+        pendingCompactTasks.cancel(processRecord.pid)
+        compactionScheduler.cancel(processRecord)
+        deferredFullCompactProcessMap[pid]?.let { deferred ->
+            if (deferred.processRecord === processRecord) {
+                deferredFullCompactProcessMap.remove(pid, deferred)
+            }
+        }
     }
 
     private fun compactProcessImpl(
@@ -111,12 +443,8 @@ class AppCompactManager2(
 
         // 是否进行了压缩
         var doCompact = false
-        var processCompactResultCode = ProcessCompactResultCode.doNothing
         var processCompactEnum = ProcessCompactEnum.NONE
-        val processingResult = processRecord.initLastProcessingResultIfAbsent(
-            appOptimizeEnum = appOptimizeEnum,
-            processingResultSupplier = ::getProcessingResultIfAbsent
-        ) as ProcessCompactProcessingResult
+        val processingResult = getProcessCompactProcessingResult(processRecord)
         val currentTimeMillis = SystemClock.uptimeMillis()
         val lastProcessCompatEnum = processingResult.processCompactEnum
         var compactAction = Int.MIN_VALUE
@@ -131,9 +459,15 @@ class AppCompactManager2(
             }
         } else {*/
         val timeDifference = currentTimeMillis - processingResult.lastProcessingTime
+        // 节流时间随进程的压缩收益、app的压缩激进程度与系统内存压力自适应
+        val aggressivenessLevel = compactAggressivenessManager.getLevel(processRecord.packageName)
+        val throttleScale = (processRecord.compactYieldHistory?.throttleScale ?: 1.0) *
+                aggressivenessLevel.throttleScale *
+                memoryPressureLevel.throttleScale
+        val isThrottled = { throttle: Long -> timeDifference < (throttle * throttleScale).toLong() }
         if (ProcessList.PERCEPTIBLE_APP_ADJ in lastOomScoreAdj..curOomScoreAdj && curOomScoreAdj <= ProcessList.SERVICE_B_ADJ) {
-            if ((lastProcessCompatEnum == ProcessCompactEnum.SOME && timeDifference < cachedAppOptimizer.mCompactThrottleSomeSome)
-                || (lastProcessCompatEnum == ProcessCompactEnum.FULL && timeDifference < cachedAppOptimizer.mCompactThrottleSomeFull)
+            if ((lastProcessCompatEnum == ProcessCompactEnum.SOME && isThrottled(cachedAppOptimizer.mCompactThrottleSomeSome))
+                || (lastProcessCompatEnum == ProcessCompactEnum.FULL && isThrottled(cachedAppOptimizer.mCompactThrottleSomeFull))
             ) {
                 // do nothing
             } else {
@@ -143,11 +477,12 @@ class AppCompactManager2(
             }
         } else if (ProcessList.CACHED_APP_MIN_ADJ in lastOomScoreAdj..curOomScoreAdj
             || processRecord.isAllowedCompact(
-                time = currentTimeMillis
+                time = currentTimeMillis,
+                intervalScale = throttleScale
             )/*.also { compactBecauseProcAllow = it }*/
         ) {
-            if ((lastProcessCompatEnum == ProcessCompactEnum.SOME && timeDifference < cachedAppOptimizer.mCompactThrottleFullSome)
-                || (lastProcessCompatEnum == ProcessCompactEnum.FULL && timeDifference < cachedAppOptimizer.mCompactThrottleFullFull)
+            if ((lastProcessCompatEnum == ProcessCompactEnum.SOME && isThrottled(cachedAppOptimizer.mCompactThrottleFullSome))
+                || (lastProcessCompatEnum == ProcessCompactEnum.FULL && isThrottled(cachedAppOptimizer.mCompactThrottleFullFull))
             ) {
                 // do nothing
             } else {
@@ -161,6 +496,23 @@ class AppCompactManager2(
         }
         // }
 
+        // 压缩后大量重新缺页的app只压缩文件页
+        if (compactAction == CachedAppOptimizer.COMPACT_ACTION_FULL && aggressivenessLevel.downgradeFull) {
+            compactAction = CachedAppOptimizer.COMPACT_ACTION_FILE
+            refaultDowngradeCount.incrementAndGet()
+        }
+
+        if (compactAction == CachedAppOptimizer.COMPACT_ACTION_FULL && shouldDeferFullCompact()) {
+            val pid = processRecord.pid
+            val deferred = deferredFullCompactProcessMap[pid]
+            if (deferred?.processRecord !== processRecord) {
+                // 保留已有推迟的开始时间
+                deferredFullCompactProcessMap.put(pid, DeferredFullCompact(processRecord, SystemClock.uptimeMillis()))
+                deferredFullCompactCount.incrementAndGet()
+            }
+            return
+        }
+
         if (doCompact) {
             // 检查进程是否需要进行优化
             if (!isNecessaryToOptimizeProcess(processRecord)) {
@@ -174,12 +526,12 @@ class AppCompactManager2(
                 return
             }
 
-            processCompactResultCode =
-                compactProcess(pid = processRecord.pid, compactAction = compactAction)
-            updateProcessLastProcessingResult(processRecord = processRecord) {
-                processingResult.lastProcessingCode = processCompactResultCode
-                processingResult.processCompactEnum = processCompactEnum
-            }
+            submitCompactionJob(
+                processRecord = processRecord,
+                processingResult = processingResult,
+                processCompactEnum = processCompactEnum,
+                compactAction = compactAction
+            )
         }
 
         /*if (BuildConfig.DEBUG) {
@@ -208,11 +560,209 @@ class AppCompactManager2(
         }*/
     }
 
+    /**
+     * 将压缩写入交由[compactionScheduler]统一调度
+     */
+    private fun submitCompactionJob(
+        processRecord: ProcessRecord,
+        processingResult: ProcessCompactProcessingResult,
+        processCompactEnum: ProcessCompactEnum,
+        compactAction: Int
+    ) {
+        createCompactionJob(
+            processRecord = processRecord,
+            processingResult = processingResult,
+            processCompactEnum = processCompactEnum,
+            compactAction = compactAction
+        )?.let { job ->
+            compactionScheduler.submit(job)
+        }
+    }
+
+    /**
+     * @return 连续失败的进程不再压缩 -> null
+     */
+    private fun createCompactionJob(
+        processRecord: ProcessRecord,
+        processingResult: ProcessCompactProcessingResult,
+        processCompactEnum: ProcessCompactEnum,
+        compactAction: Int
+    ): CompactionJob? {
+        val rssInBytes = processRecord.lastSampledRssInBytes.takeIf { it >= 0 }
+            ?: processRecord.getCurRssInBytes()
+        val estimatedBytes = if (rssInBytes >= 0) rssInBytes else UNKNOWN_RSS_ESTIMATED_BYTES
+        // 连续失败的进程不再压缩
+        if (autoStopCompactTask && processingResult.consecutiveFailureCount >= MAX_CONSECUTIVE_FAILURES) {
+            autoStoppedSkipCount.incrementAndGet()
+            return null
+        }
+        lateinit var job: CompactionJob
+        val action = Runnable {
+            // 排队期间app可能回到前台或进程已死亡
+            if (processRecord.appInfo.appGroupEnum == AppGroupEnum.ACTIVE || !processRecord.isValid(runningInfo)) {
+                return@Runnable
+            }
+            // pid已被其他进程复用
+            if (!processRecord.isSameProcessByStartTime()) {
+                pidReusedSkipCount.incrementAndGet()
+                return@Runnable
+            }
+            val before = ProcessMemoryUtils.readProcessMemory(processRecord.pid)
+            val finalCompactAction = chooseCompactAction(compactAction, before)
+            if (finalCompactAction == CachedAppOptimizer.COMPACT_ACTION_NONE) {
+                return@Runnable
+            }
+            job.compactAction = finalCompactAction
+            val processCompactResultCode =
+                compactProcess(
+                    pid = processRecord.pid,
+                    compactAction = finalCompactAction,
+                    procStartTime = processRecord.procStartTime
+                )
+            job.resultCode = processCompactResultCode
+            updateProcessLastProcessingResult(processRecord = processRecord) {
+                processingResult.lastProcessingCode = processCompactResultCode
+                processingResult.processCompactEnum = processCompactEnum
+            }
+            if (processCompactResultCode == ProcessCompactResultCode.success) {
+                processingResult.consecutiveFailureCount = 0
+            } else if (++processingResult.consecutiveFailureCount == MAX_CONSECUTIVE_FAILURES && autoStopCompactTask) {
+                logger.warn("${processRecord.packageName}(pid: ${processRecord.pid})连续${MAX_CONSECUTIVE_FAILURES}次压缩失败, 停止压缩该进程")
+            }
+            if (processCompactResultCode == ProcessCompactResultCode.success) {
+                processRecord.setLastCompactTime(SystemClock.uptimeMillis())
+                val reclaimedKb = recordCompactYield(processRecord, processCompactEnum, finalCompactAction, before)
+                scheduleRefaultCheck(processRecord, reclaimedKb)
+            }
+        }
+        job = CompactionJob(
+            processRecord = processRecord,
+            processCompactEnum = processCompactEnum,
+            estimatedBytes = estimatedBytes,
+            priority = CompactionScheduler.computePriority(
+                rssInBytes = estimatedBytes,
+                idleSinceMillis = processRecord.appInfo.idleSinceUptimeMillis,
+                processCompactEnum = processCompactEnum
+            ),
+            action = action
+        )
+        return job
+    }
+
+    /**
+     * 根据压缩前进程的匿名页/文件页构成以及系统交换区的余量, 确定实际写入的压缩行为
+     *
+     * 1. FULL: 交换区将满或不存在时, 匿名页无处可去, 降级为FILE; 匿名页或文件页占比超过[DOMINANT_PAGE_RATIO]时只压缩该部分
+     * 2. FILE: 没有文件页时跳过
+     *
+     * @param before 压缩前的内存快照。为null时不做调整
+     * @return [CachedAppOptimizer.COMPACT_ACTION_NONE] -> 不需要压缩
+     */
+    private fun chooseCompactAction(compactAction: Int, before: ProcessMemorySnapshot?): Int {
+        val anonKb = before?.anonKb ?: -1L
+        val fileKb = before?.fileKb ?: -1L
+        val finalCompactAction = when (compactAction) {
+            CachedAppOptimizer.COMPACT_ACTION_FULL -> {
+                if (swapHeadroomLevel.downgradeFull) {
+                    anonSkippedForSwapCount.incrementAndGet()
+                    CachedAppOptimizer.COMPACT_ACTION_FILE
+                } else if (anonKb < 0 || fileKb < 0 || anonKb + fileKb == 0L) {
+                    CachedAppOptimizer.COMPACT_ACTION_FULL
+                } else if (anonKb >= (anonKb + fileKb) * DOMINANT_PAGE_RATIO) {
+                    CachedAppOptimizer.COMPACT_ACTION_ANON
+                } else if (fileKb >= (anonKb + fileKb) * DOMINANT_PAGE_RATIO) {
+                    CachedAppOptimizer.COMPACT_ACTION_FILE
+                } else {
+                    CachedAppOptimizer.COMPACT_ACTION_FULL
+                }
+            }
+
+            else -> compactAction
+        }
+
+        if (finalCompactAction == CachedAppOptimizer.COMPACT_ACTION_FILE && fileKb == 0L) {
+            noFilePagesSkipCount.incrementAndGet()
+            return CachedAppOptimizer.COMPACT_ACTION_NONE
+        }
+        when (finalCompactAction) {
+            CachedAppOptimizer.COMPACT_ACTION_FULL -> fullCompactCount.incrementAndGet()
+            CachedAppOptimizer.COMPACT_ACTION_ANON -> anonCompactCount.incrementAndGet()
+            CachedAppOptimizer.COMPACT_ACTION_FILE -> fileCompactCount.incrementAndGet()
+        }
+        return finalCompactAction
+    }
+
+    /**
+     * 记录本次压缩的收益, 并据此调整进程的节流倍率
+     *
+     * @return 回收量(kB)。未知 -> -1
+     */
+    private fun recordCompactYield(
+        processRecord: ProcessRecord,
+        processCompactEnum: ProcessCompactEnum,
+        compactAction: Int,
+        before: ProcessMemorySnapshot?
+    ): Long {
+        before ?: return -1L
+        val after = ProcessMemoryUtils.readProcessMemory(processRecord.pid) ?: return -1L
+        val history = processRecord.compactYieldHistory
+            ?: CompactYieldHistory().also { processRecord.compactYieldHistory = it }
+        val record = CompactYieldRecord.create(processCompactEnum, compactAction, before, after)
+        history.record(
+            record = record,
+            lowYieldThresholdKb = HookCommonProperties.compactLowYieldThresholdKb
+        )
+        return record.reclaimedKb
+    }
+
+    /**
+     * 在[CompactAggressivenessManager.REFAULT_WINDOW_MILLIS]后检查进程的主缺页增量, 据此调整app的压缩激进程度
+     */
+    private fun scheduleRefaultCheck(processRecord: ProcessRecord, reclaimedKb: Long) {
+        val baseline = readMajorFaults(processRecord)
+        if (baseline < 0) {
+            return
+        }
+        executor.schedule({
+            runCatchThrowable(catchBlock = {
+                logger.error("检查压缩后的主缺页出错", it)
+            }) {
+                // 回到前台后的缺页无法区分是否由压缩导致
+                if (processRecord.appInfo.appGroupEnum == AppGroupEnum.ACTIVE
+                    || !processRecord.isValid(runningInfo)
+                    || !processRecord.isSameProcessByStartTime()
+                ) {
+                    return@runCatchThrowable
+                }
+                val current = readMajorFaults(processRecord)
+                if (current < baseline) {
+                    return@runCatchThrowable
+                }
+                compactAggressivenessManager.record(
+                    packageName = processRecord.packageName,
+                    majorFaults = current - baseline,
+                    reclaimedKb = reclaimedKb
+                )
+            }
+        }, CompactAggressivenessManager.REFAULT_WINDOW_MILLIS, TimeUnit.MILLISECONDS)
+    }
+
+    /**
+     * @return 读取失败 -> -1
+     */
+    private fun readMajorFaults(processRecord: ProcessRecord): Long {
+        return MemoryStatUtil.readMemoryStatFromFilesystem(processRecord.uid, processRecord.pid)
+            ?.pgmajfault
+            ?.takeIf { it >= 0 }
+            ?: -1L
+    }
+
     private fun compactProcess(
         pid: Int,
         compactAction: Int,
+        procStartTime: Long,
     ): Int {
-        return if (cachedAppOptimizer.compactProcessForce(pid, compactAction)) {
+        return if (cachedAppOptimizer.compactProcessForce(pid, compactAction, procStartTime)) {
             ProcessCompactResultCode.success
         } else {
             ProcessCompactResultCode.problem
@@ -221,11 +771,35 @@ class AppCompactManager2(
 
     companion object {
         const val COMPACT_TASK_DELAY = 10L * 1000
+
+        // 新进程的首次压缩延迟
+        const val ADD_PROCESS_COMPACT_DELAY = 30L * 1000
+
+        // 手动压缩的默认行为
+        const val DEFAULT_COMPACT_ACTION = CachedAppOptimizer.COMPACT_ACTION_FULL
+
+        // 启用autoStopCompactTask时, 连续失败达到此次数的进程不再压缩
+        const val MAX_CONSECUTIVE_FAILURES = 3
+
+        // 无法获取RSS时, 按此值扣除压缩预算
+        const val UNKNOWN_RSS_ESTIMATED_BYTES = 32L * 1024 * 1024
+
+        // 匿名页或文件页占比达到此值时只压缩该部分
+        const val DOMINANT_PAGE_RATIO = 0.8
+
+        // 亮屏期间FULL压缩的最长推迟时间
+        const val MAX_FULL_COMPACT_DEFER_MILLIS = 30L * 60 * 1000
+
+        // 检查推迟过久的FULL压缩的间隔
+        const val OVERDUE_CHECK_INTERVAL_MILLIS = 5L * 60 * 1000
     }
 }
 
 class ProcessCompactProcessingResult : ProcessingResult() {
     var processCompactEnum = ProcessCompactEnum.NONE
+
+    // 连续压缩失败的次数
+    var consecutiveFailureCount = 0
 }
 
 enum class ProcessCompactEnum {
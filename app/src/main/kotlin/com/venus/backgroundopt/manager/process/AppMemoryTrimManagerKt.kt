@@ -17,50 +17,90 @@
                     
  package com.venus.backgroundopt.manager.process
 
+import android.os.SystemClock
 import com.venus.backgroundopt.BuildConfig
 import com.venus.backgroundopt.core.RunningInfo
-import com.venus.backgroundopt.environment.PreferenceDefaultValue
 import com.venus.backgroundopt.environment.hook.HookCommonProperties
 import com.venus.backgroundopt.hook.handle.android.entity.ComponentCallbacks2
 import com.venus.backgroundopt.hook.handle.android.entity.ProcessRecord
 import com.venus.backgroundopt.hook.handle.android.entity.correctProcessPid
 import com.venus.backgroundopt.hook.handle.android.entity.isValid
+import com.venus.backgroundopt.utils.concurrent.HierarchicalTimingWheel
 import com.venus.backgroundopt.utils.log.ILogger
 import com.venus.backgroundopt.utils.message.handle.AppOptimizePolicyMessageHandler.AppOptimizePolicy
 import com.venus.backgroundopt.utils.runCatchThrowable
 import java.util.Collections
 import java.util.concurrent.ConcurrentHashMap
 import java.util.concurrent.Executor
-import java.util.concurrent.ScheduledFuture
 import java.util.concurrent.ScheduledThreadPoolExecutor
 import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicLong
 
 /**
  * 应用内存清理管理器
  *
+ * 每个进程拥有一个计时器, 放在[HierarchicalTimingWheel]中:
+ * 1. 到期时间按包名与pid加上确定的偏移, 使同时进入前/后台的app错开执行
+ * 2. 每个tick最多执行[MAX_TRIMS_PER_TICK]个, 其余顺延
+ * 3. 进程在前后台间切换时只重新调度计时器
+ *
+ * 亮屏且内存压力不高时, 后台任务(内存回收与gc)推迟到[MaintenanceWindowCoordinator]的维护窗口执行,
+ * 但推迟时长不超过[maxInteractiveDeferMillis]
+ *
+ * 后台回收等级按[TrimLadderStep]随进程处于后台的时长逐级升高, 回到前台后重置
+ *
  * @author XingC
  * @date 2023/8/3
  */
 class AppMemoryTrimManagerKt(
-    private val runningInfo: RunningInfo
+    private val runningInfo: RunningInfo,
+    private val maintenanceWindowCoordinator: MaintenanceWindowCoordinator,
+    private val gcCoordinator: GcCoordinator,
+    private val trimEffectivenessTracker: TrimEffectivenessTracker
 ) : AbstractAppOptimizeManager(AppOptimizeEnum.PROCESS_MEM_TRIM), ILogger {
     companion object {
         // 前台
-        const val foregroundInitialDelay = 1L
         const val foregroundDelay = 10L
         val foregroundTimeUnit = TimeUnit.MINUTES
         const val foregroundTrimManagerName = "ForegroundAppMemoryTrimManager"
 
         // 后台
-        const val backgroundInitialDelay = 2L  // 初始时间相比前台任务延后2个单位时间
         const val backgroundDelay = 10L
         val backgroundTimeUnit = TimeUnit.MINUTES
-        const val backgroundTrimLevel = PreferenceDefaultValue.backgroundProcMemTrimLevel
         const val backgroundTrimManagerName = "BackgroundAppMemoryTrimManager"
 
         // 初次进入后台
         const val backgroundFirstTrimDelay = 30L
         val backgroundFirstTrimTimeUnit = TimeUnit.SECONDS
+
+        // 亮屏期间后台任务的最长推迟时间
+        val maxInteractiveDeferMillis = backgroundTimeUnit.toMillis(backgroundDelay) * 3
+
+        // 维护窗口中跳过在此时长内执行过后台任务(或刚进入后台)的进程
+        val maintenanceMinIntervalMillis = backgroundTimeUnit.toMillis(backgroundDelay) / 2
+
+        // 时间轮
+        const val TICK_MILLIS = 1000L
+        const val MAX_TRIMS_PER_TICK = 2
+
+        // 各进程的执行时间在[间隔, 间隔 * (1 + JITTER_RATIO))内错开
+        const val JITTER_RATIO = 0.25
+
+        // 高内存压力时, 后台任务提前到此时长内错开执行
+        const val PULL_FORWARD_SPREAD_MILLIS = 30L * 1000
+
+        /**
+         * 由包名与pid确定的[0, 1)之间的相位, 使同时进入后台的app错开执行
+         */
+        fun jitterFractionOf(packageName: String, pid: Int): Double {
+            var h = packageName.hashCode() * 31 + pid
+            h *= -0x61c88647
+            h = h xor (h ushr 16)
+            return (h.toLong() and 0xFFFFFFFFL).toDouble() / (1L shl 32)
+        }
+
+        // trim的测量结束后, 再间隔此时长发送gc
+        const val GC_AFTER_TRIM_GAP_MILLIS = 1000L
     }
 
     var enableForegroundTrim = HookCommonProperties.isEnableForegroundProcTrimMem()
@@ -70,12 +110,6 @@ class AppMemoryTrimManagerKt(
             configureForegroundTrimCheckTask(value)
         }
 
-    @Volatile
-    private var isForegroundTaskRunning = false
-
-    @Volatile
-    var foregroundTaskScheduledFuture: ScheduledFuture<*>? = null
-
     // 线程池
     // 23.9.14: 仅分配一个线程, 防止前后台任务同时进行造成可能的掉帧
     private val executor = ScheduledThreadPoolExecutor(1).apply {
@@ -90,8 +124,58 @@ class AppMemoryTrimManagerKt(
     val backgroundTasks: MutableSet<ProcessRecord> =
         Collections.newSetFromMap(ConcurrentHashMap())
 
+    /* *************************************************************************
+     *                                                                         *
+     * 时间轮                                                                    *
+     *                                                                         *
+     **************************************************************************/
+    /**
+     * 进程的回收计时器。进程在前后台间切换时只在时间轮中重新调度, 不重新创建
+     */
+    private class TrimTimer(val processRecord: ProcessRecord) {
+        val entry = HierarchicalTimingWheel.Entry(this)
+
+        @Volatile
+        var foreground = false
+
+        // 上一次执行后台任务(或进入后台)的时间
+        @Volatile
+        var lastBackgroundRunMillis = 0L
+
+        // 进入后台的时间
+        @Volatile
+        var idleSinceMillis = 0L
+
+        // 当前所处的回收阶梯。null: 尚未执行过后台回收
+        @Volatile
+        var ladderStep: TrimLadderStep? = null
+
+        val jitterFraction: Double = jitterFractionOf(processRecord.packageName, processRecord.pid)
+    }
+
+    private val trimTimerMap = ConcurrentHashMap<ProcessRecord, TrimTimer>()
+
+    private val timingWheel = HierarchicalTimingWheel<TrimTimer>(TICK_MILLIS, SystemClock.uptimeMillis())
+
+    // 仅在[executor]中使用
+    private val expiredTimers = ArrayList<TrimTimer>(MAX_TRIMS_PER_TICK)
+
+    val scheduledTimerCount: Int get() = timingWheel.size
+    val readyTimerCount: Int get() = timingWheel.readyCount
+
+    // 就绪队列出现过的最大长度
+    @Volatile
+    var maxReadyTimerCount = 0
+        private set
+
+    val executedTimerCount = AtomicLong(0)
+
+    // 到期数量超过[MAX_TRIMS_PER_TICK]而顺延的tick数
+    val capHitTickCount = AtomicLong(0)
+
     init {
         init()
+        maintenanceWindowCoordinator.addParticipant(::collectMaintenanceWork)
     }
 
     override fun getExecutor(): Executor = executor
@@ -102,55 +186,235 @@ class AppMemoryTrimManagerKt(
     private fun init() {
         // 前台任务
         enableForegroundTrim = HookCommonProperties.isEnableForegroundProcTrimMem()
-        if (!enableForegroundTrim && foregroundTaskScheduledFuture == null) {
+        if (!enableForegroundTrim) {
             logger.info("禁用: 前台进程内存回收")
         }
 
         // 后台任务
-        if (HookCommonProperties.isEnableBackgroundProcTrimMem()) {
-            executor.scheduleWithFixedDelay({
-                backgroundTasks.forEach {
-                    executeBackgroundTask(it)
-                }
-            }, backgroundInitialDelay, backgroundDelay, backgroundTimeUnit)
-        } else {
+        if (!HookCommonProperties.isEnableBackgroundProcTrimMem()) {
             logger.info("禁用: 后台进程内存回收")
         }
+
+        executor.scheduleWithFixedDelay({
+            runCatchThrowable(catchBlock = {
+                logger.error("内存回收时间轮推进出错", it)
+            }) {
+                tick()
+            }
+        }, TICK_MILLIS, TICK_MILLIS, TimeUnit.MILLISECONDS)
     }
 
-    private fun configureForegroundTrimCheckTask(isEnable: Boolean) {
-        foregroundTaskScheduledFuture?.let { scheduledFuture ->
-            if (!isEnable) {
-                if (!isForegroundTaskRunning) {
-                    scheduledFuture.cancel(true)
-                    foregroundTaskScheduledFuture = null
-                    logger.info("禁用: 前台进程内存回收")
-                } else {
-                    logger.info("禁用: 前台进程内存回收(等待当前任务执行完毕)")
+    private fun tick() {
+        val now = SystemClock.uptimeMillis()
+        expiredTimers.clear()
+        timingWheel.advance(now, MAX_TRIMS_PER_TICK, expiredTimers)
+        val readyCount = timingWheel.readyCount
+        if (readyCount > 0) {
+            capHitTickCount.incrementAndGet()
+            if (readyCount > maxReadyTimerCount) {
+                maxReadyTimerCount = readyCount
+            }
+        }
+        expiredTimers.forEach { timer ->
+            executedTimerCount.incrementAndGet()
+            if (timer.foreground) {
+                runForegroundTimer(timer)
+            } else {
+                runBackgroundTimer(timer, now)
+            }
+        }
+        expiredTimers.clear()
+    }
+
+    private fun foregroundIntervalMillis(): Long = foregroundTimeUnit.toMillis(foregroundDelay)
+
+    /**
+     * 低内存压力时拉长执行间隔
+     */
+    private fun backgroundIntervalMillis(): Long {
+        return memoryPressureLevel.scale(backgroundTimeUnit.toMillis(backgroundDelay))
+    }
+
+    /**
+     * 在[intervalMillis]后加上[TrimTimer.jitterFraction]对应的偏移执行
+     */
+    private fun scheduleTimer(timer: TrimTimer, intervalMillis: Long) {
+        timingWheel.schedule(timer.entry, timerDeadlineMillis(timer, intervalMillis))
+    }
+
+    /**
+     * 同[scheduleTimer], 但计时器已在时间轮中时不做改变
+     */
+    private fun scheduleTimerIfAbsent(timer: TrimTimer, intervalMillis: Long) {
+        timingWheel.scheduleIfAbsent(timer.entry, timerDeadlineMillis(timer, intervalMillis))
+    }
+
+    private fun timerDeadlineMillis(timer: TrimTimer, intervalMillis: Long): Long {
+        val jitterMillis = (intervalMillis * JITTER_RATIO * timer.jitterFraction).toLong()
+        return SystemClock.uptimeMillis() + intervalMillis + jitterMillis
+    }
+
+    private fun getTrimTimer(processRecord: ProcessRecord): TrimTimer {
+        return trimTimerMap.computeIfAbsent(processRecord) { TrimTimer(it) }
+    }
+
+    /**
+     * 进程已不在任何任务列表中时, 丢弃计时器
+     */
+    private fun dropTimerIfIdle(timer: TrimTimer): Boolean {
+        val processRecord = timer.processRecord
+        if (foregroundTasks.contains(processRecord) || backgroundTasks.contains(processRecord)) {
+            return false
+        }
+        timingWheel.cancel(timer.entry)
+        trimTimerMap.remove(processRecord, timer)
+        return true
+    }
+
+    private fun runForegroundTimer(timer: TrimTimer) {
+        val processRecord = timer.processRecord
+        if (!enableForegroundTrim || !foregroundTasks.contains(processRecord)) {
+            dropTimerIfIdle(timer)
+            return
+        }
+        executeForegroundTask(processRecord)
+        if (!dropTimerIfIdle(timer) && timer.foreground && enableForegroundTrim) {
+            scheduleTimer(timer, foregroundIntervalMillis())
+        }
+    }
+
+    private fun runBackgroundTimer(timer: TrimTimer, now: Long) {
+        val processRecord = timer.processRecord
+        if (!HookCommonProperties.isEnableBackgroundProcTrimMem() || !backgroundTasks.contains(processRecord)) {
+            dropTimerIfIdle(timer)
+            return
+        }
+        if (shouldDeferBackgroundTasks(now - timer.lastBackgroundRunMillis)) {
+            interactiveDeferredRunCount.incrementAndGet()
+        } else {
+            timer.lastBackgroundRunMillis = now
+            executeBackgroundTask(timer)
+        }
+        if (!dropTimerIfIdle(timer) && !timer.foreground) {
+            scheduleTimer(timer, backgroundIntervalMillis())
+        }
+    }
+
+    /* *************************************************************************
+     *                                                                         *
+     * 内存压力                                                                  *
+     *                                                                         *
+     **************************************************************************/
+    @Volatile
+    private var memoryPressureLevel = MemoryPressureLevel.NORMAL
+
+    private val pullForwardLimiter = PullForwardLimiter()
+
+    /**
+     * 内存压力变化。高压力时将后台任务提前到[PULL_FORWARD_SPREAD_MILLIS]内错开执行
+     * (间隔不少于[MemoryPressureMonitor.PULL_FORWARD_MIN_INTERVAL_MILLIS])
+     */
+    fun onMemoryPressure(level: MemoryPressureLevel) {
+        memoryPressureLevel = level
+        if (level != MemoryPressureLevel.HIGH || !HookCommonProperties.isEnableBackgroundProcTrimMem()) {
+            return
+        }
+        if (!pullForwardLimiter.tryAcquire()) {
+            return
+        }
+        val now = SystemClock.uptimeMillis()
+        backgroundTasks.forEach { processRecord ->
+            trimTimerMap[processRecord]?.let { timer ->
+                if (!timer.foreground) {
+                    timingWheel.schedule(
+                        timer.entry,
+                        now + (PULL_FORWARD_SPREAD_MILLIS * timer.jitterFraction).toLong()
+                    )
                 }
             }
-        } ?: run {
-            if (isEnable) {
-                /*
-                     23.9.18: 前台任务并没有严格的单独提交ScheduledFuture, 而是加入到统一检查组,
-                        这意味着某些情况下, 个别前台甚至不会被执行(前台那么积极干嘛)
-                 */
-                foregroundTaskScheduledFuture = executor.scheduleWithFixedDelay({
-                    isForegroundTaskRunning = true
-                    foregroundTasks.forEach {
-                        executeForegroundTask(it)
-                    }
-                    isForegroundTaskRunning = false
-                    if (!enableForegroundTrim) {
-                        foregroundTaskScheduledFuture?.let {
-                            it.cancel(true)
-                            foregroundTaskScheduledFuture = null
-                            logger.info("禁用: 前台进程内存回收")
-                        }
-                    }
-                }, foregroundInitialDelay, foregroundDelay, foregroundTimeUnit)
-                logger.info("启用: 前台进程内存回收。回收等级为: ${HookCommonProperties.getForegroundProcTrimMemLevelUiName()}")
+        }
+    }
+
+    /* *************************************************************************
+     *                                                                         *
+     * 维护窗口                                                                  *
+     *                                                                         *
+     **************************************************************************/
+    // 因亮屏而推迟的后台任务次数
+    val interactiveDeferredRunCount = AtomicLong(0)
+
+    // 维护窗口中因刚执行过而跳过的后台任务次数
+    val maintenanceRecentSkipCount = AtomicLong(0)
+
+    private fun shouldDeferBackgroundTasks(sinceLastRun: Long): Boolean {
+        return maintenanceWindowCoordinator.isUserInteracting
+                && memoryPressureLevel != MemoryPressureLevel.HIGH
+                && sinceLastRun < maxInteractiveDeferMillis
+    }
+
+    /**
+     * 后台任务投递到[executor]执行并等待完成, 与时间轮的执行保持串行, 同时保证窗口的执行顺序。
+     * 未执行的任务不需要交还: 计时器仍在时间轮中, 到期后照常执行
+     */
+    private fun collectMaintenanceWork(works: MutableList<MaintenanceWork>) {
+        if (!HookCommonProperties.isEnableBackgroundProcTrimMem()) {
+            return
+        }
+        backgroundTasks.forEach { processRecord ->
+            val expectedYieldKb = (processRecord.lastSampledRssInBytes / 1024).coerceAtLeast(0)
+            works.add(MaintenanceWork("后台回收: ${processRecord.processName}", expectedYieldKb) {
+                executor.submit {
+                    runMaintenanceBackgroundTask(processRecord)
+                }.get()
+            })
+        }
+    }
+
+    private fun runMaintenanceBackgroundTask(processRecord: ProcessRecord) {
+        val timer = trimTimerMap[processRecord] ?: return
+        if (timer.foreground) {
+            return
+        }
+        val now = SystemClock.uptimeMillis()
+        if (now - timer.lastBackgroundRunMillis < maintenanceMinIntervalMillis) {
+            maintenanceRecentSkipCount.incrementAndGet()
+            return
+        }
+        timer.lastBackgroundRunMillis = now
+        executeBackgroundTask(timer)
+        // 顺延下一次定时执行
+        if (!dropTimerIfIdle(timer) && !timer.foreground) {
+            scheduleTimer(timer, backgroundIntervalMillis())
+        }
+    }
+
+    /* *************************************************************************
+     *                                                                         *
+     * 交换区剩余空间                                                             *
+     *                                                                         *
+     **************************************************************************/
+    @Volatile
+    private var swapHeadroomLevel = SwapHeadroomLevel.NORMAL
+
+    // 因交换区将满而跳过的gc次数
+    val swapGcSkipCount = AtomicLong(0)
+
+    fun onSwapHeadroom(level: SwapHeadroomLevel) {
+        swapHeadroomLevel = level
+    }
+
+    private fun configureForegroundTrimCheckTask(isEnable: Boolean) {
+        // 禁用时, 已调度的计时器到期后自行丢弃
+        if (isEnable) {
+            foregroundTasks.forEach { processRecord ->
+                val timer = getTrimTimer(processRecord)
+                if (timer.foreground) {
+                    scheduleTimerIfAbsent(timer, foregroundIntervalMillis())
+                }
             }
+            logger.info("启用: 前台进程内存回收。回收等级为: ${HookCommonProperties.getForegroundProcTrimMemLevelUiName()}")
+        } else {
+            logger.info("禁用: 前台进程内存回收")
         }
     }
 
@@ -175,6 +439,15 @@ class AppMemoryTrimManagerKt(
         removeBackgroundTask(processRecord)
 
         val add = foregroundTasks.add(processRecord)
+        getTrimTimer(processRecord).let { timer ->
+            timer.foreground = true
+            timer.ladderStep = null
+            if (enableForegroundTrim) {
+                scheduleTimer(timer, foregroundIntervalMillis())
+            } else {
+                timingWheel.cancel(timer.entry)
+            }
+        }
         if (BuildConfig.DEBUG) {
             if (add) {
                 logger.debug(
@@ -224,6 +497,17 @@ class AppMemoryTrimManagerKt(
         addBackgroundFirstTrimTask(processRecord)
 
         val add = backgroundTasks.add(processRecord)
+        getTrimTimer(processRecord).let { timer ->
+            val now = SystemClock.uptimeMillis()
+            // 重复添加时不重置阶梯
+            if (add || timer.foreground) {
+                timer.idleSinceMillis = now
+                timer.ladderStep = null
+            }
+            timer.foreground = false
+            timer.lastBackgroundRunMillis = now
+            scheduleTimer(timer, backgroundIntervalMillis())
+        }
 
         if (BuildConfig.DEBUG) {
             if (add) {
@@ -260,7 +544,14 @@ class AppMemoryTrimManagerKt(
         addBackgroundFirstTask(processRecord = processRecord) {
             runCatchThrowable {
                 // UI资源的清理
-                processRecord.scheduleTrimMemory(ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN)
+                if (scheduleTrimMemory(processRecord, ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN)) {
+                    trimTimerMap[processRecord]?.let { timer ->
+                        if (!timer.foreground && timer.ladderStep == null) {
+                            timer.ladderStep = TrimLadderStep.UI_HIDDEN
+                        }
+                    }
+                    recordTrimLevel(processRecord, ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN)
+                }
 
                 if (BuildConfig.DEBUG) {
                     logger.info("packageName: ${processRecord.packageName}, processName: ${processRecord.processName}, userId: ${processRecord.userId}, 执行TrimMemoryTask(${ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN})成功")
@@ -283,6 +574,9 @@ class AppMemoryTrimManagerKt(
             foregroundTasks.remove(processRecord)
             backgroundTasks.remove(processRecord)
             backgroundFirstTaskMap.remove(processRecord)
+            trimTimerMap.remove(processRecord)?.let { timer ->
+                timingWheel.cancel(timer.entry)
+            }
             if (BuildConfig.DEBUG) {
                 logger.debug("foregroundTasks元素个数: ${foregroundTasks.size}, backgroundTasks元素个数: ${backgroundTasks.size}")
             }
@@ -349,37 +643,30 @@ class AppMemoryTrimManagerKt(
     /**
      * 执行后台任务
      *
-     * @param processRecord 进程记录器
+     * @param timer 进程的回收计时器
      */
-    private fun executeBackgroundTask(processRecord: ProcessRecord) {
+    private fun executeBackgroundTask(timer: TrimTimer) {
+        val processRecord = timer.processRecord
         executeTaskImpl(
             backgroundTrimManagerName,
             backgroundTasks,
             processRecord
         ) { appOptimizePolicy ->
             appOptimizePolicy?.let { policy ->
-                if (policy.enableBackgroundTrimMem != false) {
-                    trimMemory(
-                        backgroundTrimManagerName,
+                val trimmed = policy.enableBackgroundTrimMem != false && trimMemoryByLadder(timer)
+                if (policy.enableBackgroundGc != false) {
+                    // 在trim的测量结束后再发送, 两者的回收量互不干扰
+                    gc(
                         processRecord,
-                        backgroundTrimLevel,
-                        backgroundTasks
+                        if (trimmed) trimEffectivenessTracker.settleMillis + GC_AFTER_TRIM_GAP_MILLIS else 0L
                     )
                 }
-                if (policy.enableBackgroundGc != false) {
-                    gc(processRecord)
-                }
                 return@executeTaskImpl
             }
             /*
                 默认执行的操作
              */
-            trimMemory(
-                backgroundTrimManagerName,
-                processRecord,
-                backgroundTrimLevel,
-                backgroundTasks
-            )
+            trimMemoryByLadder(timer)
             // debug_632 版本开始默认不执行
             // gc(processRecordKt)
         }
@@ -416,17 +703,41 @@ class AppMemoryTrimManagerKt(
      * 任务的具体实现                                                             *
      *                                                                         *
      **************************************************************************/
+    /**
+     * 按进程处于后台的时长与当前的内存状况选择回收等级
+     *
+     * @return 是否已发送
+     */
+    private fun trimMemoryByLadder(timer: TrimTimer): Boolean {
+        val step = TrimLadderStep.next(
+            current = timer.ladderStep,
+            idleMillis = SystemClock.uptimeMillis() - timer.idleSinceMillis,
+            memoryPressureLevel = memoryPressureLevel,
+            swapHeadroomLevel = swapHeadroomLevel
+        )
+        if (!trimMemory(backgroundTrimManagerName, timer.processRecord, step.trimLevel, backgroundTasks)) {
+            return false
+        }
+        if (!timer.foreground) {
+            timer.ladderStep = step
+        }
+        return true
+    }
+
+    /**
+     * @return 是否执行成功
+     */
     private fun trimMemory(
         trimManagerName: String,
         processRecord: ProcessRecord,
         trimLevel: Int,
         list: MutableSet<ProcessRecord>
-    ) {
+    ): Boolean {
         val result = run {
             if (backgroundFirstTaskMap.contains(processRecord)) {
                 null
             } else {
-                processRecord.scheduleTrimMemory(trimLevel)
+                scheduleTrimMemory(processRecord, trimLevel)
             }
         }
 
@@ -440,6 +751,7 @@ class AppMemoryTrimManagerKt(
                 }执行TrimMemoryTask(${trimLevel}): 已有任务正在等待执行(初次进入后台的回收)"
             )
         } else if (result) {
+            recordTrimLevel(processRecord, trimLevel)
             if (BuildConfig.DEBUG) {
                 logger.debug(
                     "${
@@ -463,10 +775,50 @@ class AppMemoryTrimManagerKt(
                 }执行TrimMemoryTask(${trimLevel}) 失败或未执行"
             )
         }
+        return result == true
+    }
+
+    /**
+     * 发送trim, 并交给[TrimEffectivenessTracker]记录效果
+     */
+    private fun scheduleTrimMemory(processRecord: ProcessRecord, trimLevel: Int): Boolean {
+        val memoryBefore = trimEffectivenessTracker.sampleBefore(processRecord, trimLevel)
+        val startNanos = System.nanoTime()
+        val result = processRecord.scheduleTrimMemory(trimLevel)
+        trimEffectivenessTracker.recordTrim(
+            processRecord,
+            trimLevel,
+            result,
+            System.nanoTime() - startNanos,
+            memoryBefore
+        )
+        return result
+    }
+
+    /**
+     * 只记录等级。[ProcessingResult.lastProcessingCode]的取值属于压缩, 不在此处设置
+     */
+    private fun recordTrimLevel(processRecord: ProcessRecord, trimLevel: Int) {
+        updateProcessLastProcessingResult(processRecord) {
+            it.trimLevel = trimLevel
+        }
+    }
+
+    private fun gc(processRecord: ProcessRecord, delayMillis: Long) {
+        // 交换区将满时gc会造成大量换入换出
+        if (swapHeadroomLevel.suppressGc) {
+            swapGcSkipCount.incrementAndGet()
+            return
+        }
+        // 限速与收益判断由GcCoordinator负责。延迟发送的结果在回调中处理
+        val result = gcCoordinator.requestGc(processRecord, delayMillis) { delayedResult ->
+            removeBackgroundTaskIfGcFailed(processRecord, delayedResult)
+        }
+        removeBackgroundTaskIfGcFailed(processRecord, result)
     }
 
-    private fun gc(processRecord: ProcessRecord) {
-        if (!ProcessManager.handleGC(processRecord)) {
+    private fun removeBackgroundTaskIfGcFailed(processRecord: ProcessRecord, result: GcCoordinator.GcResult) {
+        if (result == GcCoordinator.GcResult.FAILED) {
             backgroundTasks.remove(processRecord)
         }
     }
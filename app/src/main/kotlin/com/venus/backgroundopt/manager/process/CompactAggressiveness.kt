@@ -0,0 +1,242 @@
+/*
+ * Copyright (C) 2023 BackgroundOpt
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.venus.backgroundopt.manager.process
+
+import android.system.Os
+import android.system.OsConstants
+import android.util.AtomicFile
+import com.alibaba.fastjson2.JSON
+import com.alibaba.fastjson2.annotation.JSONField
+import com.venus.backgroundopt.utils.log.ILogger
+import com.venus.backgroundopt.utils.message.MessageFlag
+import java.io.File
+import java.io.FileOutputStream
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ScheduledExecutorService
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicBoolean
+
+/**
+ * app的内存压缩激进程度
+ *
+ * @property code 持久化的值
+ * @property throttleScale 压缩节流时间的倍率
+ * @property downgradeFull FULL压缩是否降级为FILE
+ */
+enum class CompactAggressivenessLevel(
+    val code: Int,
+    val uiText: String,
+    val throttleScale: Double,
+    val downgradeFull: Boolean
+) {
+    POSTPONE(-2, "推迟", 4.0, true),
+    CONSERVATIVE(-1, "保守", 1.0, true),
+    NORMAL(0, "默认", 1.0, false),
+    AGGRESSIVE(1, "积极", 0.5, false);
+
+    companion object {
+        @JvmStatic
+        fun fromCode(code: Int): CompactAggressivenessLevel {
+            return entries.firstOrNull { it.code == code } ?: NORMAL
+        }
+    }
+}
+
+/**
+ * app的压缩激进程度及其依据
+ */
+class AppCompactAggressiveness : MessageFlag {
+    var packageName: String = ""
+    var levelCode = CompactAggressivenessLevel.NORMAL.code
+
+    // 压缩后大量重新缺页的次数
+    var heavyRefaultCount = 0L
+
+    // 压缩后几乎没有重新缺页的次数
+    var cleanCount = 0L
+
+    // 最近一次检查到的主缺页数
+    var lastMajorFaults = 0L
+
+    // 连续无重新缺页的次数。不持久化
+    @JSONField(serialize = false, deserialize = false)
+    var cleanStreak = 0
+
+    @get:JSONField(serialize = false)
+    val level: CompactAggressivenessLevel
+        get() = CompactAggressivenessLevel.fromCode(levelCode)
+
+    /**
+     * 持久化的字段的副本
+     */
+    fun copy(): AppCompactAggressiveness {
+        val copy = AppCompactAggressiveness()
+        copy.packageName = packageName
+        copy.levelCode = levelCode
+        copy.heavyRefaultCount = heavyRefaultCount
+        copy.cleanCount = cleanCount
+        copy.lastMajorFaults = lastMajorFaults
+        return copy
+    }
+
+    @JSONField(serialize = false)
+    fun getUiText(): String = "${level.uiText}(重新缺页: ${heavyRefaultCount}, 无缺页: ${cleanCount})"
+}
+
+/**
+ * 根据压缩后的主缺页(pgmajfault)调整每个app的压缩激进程度, 并持久化到[file]
+ *
+ * 压缩后[REFAULT_WINDOW_MILLIS]内的主缺页量:
+ * 1. 达到回收量的[HEAVY_REFAULT_RATIO](且不少于[MIN_HEAVY_REFAULT_KB]): 回收了app马上要用的内存, 等级-1
+ * 2. 不超过[CLEAN_MAX_MAJOR_FAULTS]: 连续[CLEAN_STREAK_TO_UPGRADE]次后等级+1
+ *
+ * 等级变化后延迟[SAVE_DELAY_MILLIS]写入文件, 期间的多次变化合并写入
+ *
+ * @author XingC
+ * @date 2026/10/18
+ */
+class CompactAggressivenessManager(
+    private val executor: ScheduledExecutorService,
+    private val file: File = File(DEFAULT_FILE_PATH)
+) : ILogger {
+    private val aggressivenessMap = ConcurrentHashMap<String, AppCompactAggressiveness>()
+
+    private val savePending = AtomicBoolean(false)
+
+    init {
+        load()
+    }
+
+    fun getLevel(packageName: String): CompactAggressivenessLevel {
+        return aggressivenessMap[packageName]?.level ?: CompactAggressivenessLevel.NORMAL
+    }
+
+    fun get(packageName: String): AppCompactAggressiveness? = aggressivenessMap[packageName]
+
+    /**
+     * 记录一次压缩后的主缺页情况
+     *
+     * @param majorFaults 压缩后[REFAULT_WINDOW_MILLIS]内的主缺页数
+     * @param reclaimedKb 本次压缩的回收量。未知时 <= 0
+     */
+    fun record(packageName: String, majorFaults: Long, reclaimedKb: Long) {
+        val aggressiveness = aggressivenessMap.computeIfAbsent(packageName) {
+            AppCompactAggressiveness().apply { this.packageName = packageName }
+        }
+        val refaultKb = majorFaults * pageSizeKb
+        val changed = synchronized(aggressiveness) {
+            val oldLevelCode = aggressiveness.levelCode
+            aggressiveness.lastMajorFaults = majorFaults
+            if (refaultKb >= (reclaimedKb * HEAVY_REFAULT_RATIO).toLong().coerceAtLeast(MIN_HEAVY_REFAULT_KB)) {
+                aggressiveness.heavyRefaultCount++
+                aggressiveness.cleanStreak = 0
+                aggressiveness.levelCode = (oldLevelCode - 1).coerceAtLeast(CompactAggressivenessLevel.POSTPONE.code)
+            } else if (majorFaults <= CLEAN_MAX_MAJOR_FAULTS) {
+                aggressiveness.cleanCount++
+                if (++aggressiveness.cleanStreak >= CLEAN_STREAK_TO_UPGRADE) {
+                    aggressiveness.cleanStreak = 0
+                    aggressiveness.levelCode =
+                        (oldLevelCode + 1).coerceAtMost(CompactAggressivenessLevel.AGGRESSIVE.code)
+                }
+            } else {
+                aggressiveness.cleanStreak = 0
+            }
+            aggressiveness.levelCode != oldLevelCode
+        }
+        if (changed) {
+            logger.info("${packageName}的压缩激进程度: ${aggressiveness.level.uiText}(主缺页: ${majorFaults}, 回收: ${reclaimedKb}kB)")
+            scheduleSave()
+        }
+    }
+
+    /* *************************************************************************
+     *                                                                         *
+     * 持久化                                                                   *
+     *                                                                         *
+     **************************************************************************/
+    private fun load() {
+        try {
+            if (!file.exists()) {
+                return
+            }
+            val text = String(AtomicFile(file).readFully(), Charsets.UTF_8)
+            JSON.parseArray(text, AppCompactAggressiveness::class.java)?.forEach { aggressiveness ->
+                aggressivenessMap[aggressiveness.packageName] = aggressiveness
+            }
+            logger.info("已读取${aggressivenessMap.size}个app的压缩激进程度")
+        } catch (t: Throwable) {
+            logger.error("读取压缩激进程度失败", t)
+        }
+    }
+
+    private fun scheduleSave() {
+        if (savePending.compareAndSet(false, true)) {
+            executor.schedule({
+                savePending.set(false)
+                save()
+            }, SAVE_DELAY_MILLIS, TimeUnit.MILLISECONDS)
+        }
+    }
+
+    private fun save() {
+        // 只保存偏离默认值的app。在与record()相同的锁内取得副本, 序列化时不会读到修改了一半的数据
+        val list = aggressivenessMap.values.mapNotNull { aggressiveness ->
+            synchronized(aggressiveness) {
+                if (aggressiveness.levelCode != CompactAggressivenessLevel.NORMAL.code) {
+                    aggressiveness.copy()
+                } else {
+                    null
+                }
+            }
+        }
+        val atomicFile = AtomicFile(file)
+        var fos: FileOutputStream? = null
+        try {
+            file.parentFile?.mkdirs()
+            fos = atomicFile.startWrite()
+            fos.write(JSON.toJSONString(list).toByteArray(Charsets.UTF_8))
+            atomicFile.finishWrite(fos)
+        } catch (t: Throwable) {
+            fos?.let { atomicFile.failWrite(it) }
+            logger.error("保存压缩激进程度失败", t)
+        }
+    }
+
+    companion object {
+        const val DEFAULT_FILE_PATH = "/data/system/BackgroundOpt/compact_aggressiveness.json"
+
+        // 压缩后观察主缺页的时长
+        const val REFAULT_WINDOW_MILLIS = 60L * 1000
+
+        const val HEAVY_REFAULT_RATIO = 0.25
+        const val MIN_HEAVY_REFAULT_KB = 1024L
+        const val CLEAN_MAX_MAJOR_FAULTS = 16L
+        const val CLEAN_STREAK_TO_UPGRADE = 3
+
+        // 内存页大小。部分设备为16kB
+        private val pageSizeKb: Long by lazy {
+            runCatching { Os.sysconf(OsConstants._SC_PAGESIZE) / 1024 }
+                .getOrNull()
+                ?.takeIf { it > 0 }
+                ?: DEFAULT_PAGE_SIZE_KB
+        }
+
+        private const val DEFAULT_PAGE_SIZE_KB = 4L
+        private const val SAVE_DELAY_MILLIS = 30L * 1000
+    }
+}
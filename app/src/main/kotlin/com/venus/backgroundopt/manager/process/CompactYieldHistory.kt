@@ -0,0 +1,142 @@
+/*
+ * Copyright (C) 2023 BackgroundOpt
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.venus.backgroundopt.manager.process
+
+import com.alibaba.fastjson2.annotation.JSONField
+import com.venus.backgroundopt.utils.ProcessMemorySnapshot
+import com.venus.backgroundopt.utils.message.MessageFlag
+
+/**
+ * 进程的内存压缩收益记录
+ *
+ * 每次压缩后记录回收量, 并据此调整压缩节流的倍率([throttleScale]):
+ * 1. 回收量低于阈值: 退避等级+1, 节流时间翻倍
+ * 2. 连续[HIGH_YIELD_STREAK]次回收量达到阈值的[HIGH_YIELD_MULTIPLE]倍: 退避等级-1, 更早地再次压缩
+ * 3. 其余情况: 退避等级向0回归
+ *
+ * 写入仅发生在压缩线程, 读取(序列化到ui)可能在其他线程。[records]每次整体替换, 读取时无需加锁
+ *
+ * @author XingC
+ * @date 2026/10/18
+ */
+class CompactYieldHistory : MessageFlag {
+    // 最近的记录, 新的在前
+    @Volatile
+    var records: List<CompactYieldRecord> = emptyList()
+
+    @Volatile
+    var compactCount = 0L
+
+    // 累计回收(kB)
+    @Volatile
+    var totalReclaimedKb = 0L
+
+    @Volatile
+    var backoffLevel = 0
+
+    @get:JSONField(serialize = false)
+    val throttleScale: Double
+        get() = Math.scalb(1.0, backoffLevel)
+
+    @get:JSONField(serialize = false)
+    val averageReclaimedKb: Long
+        get() = if (compactCount == 0L) 0L else totalReclaimedKb / compactCount
+
+    // 连续高收益的次数
+    @JSONField(serialize = false)
+    private var highYieldStreak = 0
+
+    @Synchronized
+    fun record(record: CompactYieldRecord, lowYieldThresholdKb: Long) {
+        records = ArrayList<CompactYieldRecord>(MAX_RECORD_COUNT).apply {
+            add(record)
+            records.asSequence().take(MAX_RECORD_COUNT - 1).forEach(::add)
+        }
+        compactCount++
+        totalReclaimedKb += record.reclaimedKb
+
+        val reclaimedKb = record.reclaimedKb
+        if (reclaimedKb < lowYieldThresholdKb) {
+            highYieldStreak = 0
+            backoffLevel = (backoffLevel + 1).coerceAtMost(MAX_BACKOFF_LEVEL)
+        } else if (reclaimedKb >= lowYieldThresholdKb * HIGH_YIELD_MULTIPLE) {
+            if (++highYieldStreak >= HIGH_YIELD_STREAK) {
+                highYieldStreak = 0
+                backoffLevel = (backoffLevel - 1).coerceAtLeast(MIN_BACKOFF_LEVEL)
+            }
+        } else {
+            highYieldStreak = 0
+            if (backoffLevel > 0) {
+                backoffLevel--
+            } else if (backoffLevel < 0) {
+                backoffLevel++
+            }
+        }
+    }
+
+    companion object {
+        const val MAX_RECORD_COUNT = 8
+
+        // 节流时间最多放大到 2^5 = 32倍
+        const val MAX_BACKOFF_LEVEL = 5
+
+        // 节流时间最多缩短到 1/4
+        const val MIN_BACKOFF_LEVEL = -2
+
+        const val HIGH_YIELD_MULTIPLE = 4
+        const val HIGH_YIELD_STREAK = 2
+    }
+}
+
+/**
+ * 单次压缩的收益
+ */
+class CompactYieldRecord : MessageFlag {
+    // System.currentTimeMillis()
+    var time = 0L
+    var processCompactEnum = ProcessCompactEnum.NONE
+
+    // 实际写入的压缩行为: CachedAppOptimizer.COMPACT_ACTION_*
+    var compactAction = 0
+    var before: ProcessMemorySnapshot? = null
+    var after: ProcessMemorySnapshot? = null
+
+    // 回收量(kB)。以RSS的减少量计
+    var reclaimedKb = 0L
+
+    // 交换区增长量(kB)
+    var swapDeltaKb = 0L
+
+    companion object {
+        @JvmStatic
+        fun create(
+            processCompactEnum: ProcessCompactEnum,
+            compactAction: Int,
+            before: ProcessMemorySnapshot,
+            after: ProcessMemorySnapshot
+        ): CompactYieldRecord = CompactYieldRecord().apply {
+            time = System.currentTimeMillis()
+            this.processCompactEnum = processCompactEnum
+            this.compactAction = compactAction
+            this.before = before
+            this.after = after
+            reclaimedKb = (before.rssKb - after.rssKb).coerceAtLeast(0L)
+            swapDeltaKb = if (before.swapKb >= 0 && after.swapKb >= 0) after.swapKb - before.swapKb else 0L
+        }
+    }
+}
@@ -0,0 +1,434 @@
+/*
+ * Copyright (C) 2023 BackgroundOpt
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.venus.backgroundopt.manager.process
+
+import android.os.SystemClock
+import com.venus.backgroundopt.hook.handle.android.entity.ProcessRecord
+import com.venus.backgroundopt.utils.LatencyHistogram
+import com.venus.backgroundopt.utils.concurrent.ConcurrentIntObjectMap
+import com.venus.backgroundopt.utils.log.ILogger
+import com.venus.backgroundopt.utils.message.MessageFlag
+import java.util.PriorityQueue
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.locks.ReentrantLock
+import kotlin.concurrent.thread
+import kotlin.concurrent.withLock
+
+/**
+ * 全局内存压缩调度器
+ *
+ * 所有进程的压缩写入都经由此处, 避免大量app同时进入后台(息屏、退出游戏等)时压缩集中执行, 与前台争抢IO和CPU:
+ * 1. 同时执行的任务数不超过[maxConcurrentJobs]
+ * 2. 以令牌桶限制每秒压缩的字节数([bytesPerSecond])。任务的开销为进程最近一次采样的RSS, 单个任务的开销不超过桶容量
+ * 3. 等待中的任务按[CompactionJob.priority]排序: RSS越大、进入后台越久越优先; FULL优先于SOME
+ * 4. 前台app启动时([onForegroundAppLaunch]), 在[launchDeferMillis]内暂停派发
+ *
+ * 派发由单独的线程完成, 压缩在工作线程中执行。排队、执行中以及最近完成的任务可通过[snapshot]查询。
+ * 已自行决定执行顺序的调用方(维护窗口)可通过[runNow]绕过排队, 在调用线程中直接执行
+ *
+ * @author XingC
+ * @date 2026/10/18
+ */
+class CompactionScheduler(
+    val maxConcurrentJobs: Int = DEFAULT_MAX_CONCURRENT_JOBS,
+    val bytesPerSecond: Long = DEFAULT_BYTES_PER_SECOND,
+    private val launchDeferMillis: Long = DEFAULT_LAUNCH_DEFER_MILLIS
+) : ILogger {
+    private val lock = ReentrantLock()
+    private val condition = lock.newCondition()
+
+    private val queue = PriorityQueue<CompactionJob>(
+        16,
+        compareByDescending<CompactionJob> { it.priority }.thenBy { it.sequence }
+    )
+
+    // 排队中的任务<pid, 任务>。用于无锁判断进程是否有任务排队
+    private val queuedJobs = ConcurrentIntObjectMap<CompactionJob>()
+
+    private val workerExecutor = Executors.newFixedThreadPool(maxConcurrentJobs)
+
+    // 以下字段仅在锁内修改
+    private var sequence = 0L
+    private val runningJobs = ArrayList<CompactionJob>(maxConcurrentJobs)
+
+    // 最近完成的任务, 新的在前
+    private val completedJobs = ArrayDeque<CompactionJob>(MAX_COMPLETED_HISTORY)
+    private var availableBytes = bytesPerSecond
+    private var lastRefillMillis = SystemClock.uptimeMillis()
+    private var deferUntilMillis = 0L
+
+    /* *************************************************************************
+     *                                                                         *
+     * 统计                                                                     *
+     *                                                                         *
+     **************************************************************************/
+    val queueDepth: Int get() = lock.withLock { queue.size }
+
+    @Volatile
+    var maxQueueDepth = 0
+        private set
+
+    val runningJobCount: Int get() = lock.withLock { runningJobs.size }
+
+    val availableBudgetBytes: Long get() = lock.withLock { refill(SystemClock.uptimeMillis()); availableBytes }
+
+    val submittedCount = AtomicLong(0)
+    val completedCount = AtomicLong(0)
+    val failedCount = AtomicLong(0)
+    val cancelledCount = AtomicLong(0)
+
+    // 因前台app启动而推迟的任务数。同一任务只计一次
+    val launchDeferCount = AtomicLong(0)
+
+    // 已派发任务的预估字节数
+    val dispatchedBytes = AtomicLong(0)
+
+    // 单个任务的执行耗时
+    val jobWallTimeHistogram = LatencyHistogram()
+
+    // 提交 -> 开始执行
+    val queueWaitHistogram = LatencyHistogram()
+
+    init {
+        thread(name = "BackgroundOpt-CompactionScheduler", isDaemon = true) {
+            dispatchLoop()
+        }
+    }
+
+    /* *************************************************************************
+     *                                                                         *
+     * 提交                                                                     *
+     *                                                                         *
+     **************************************************************************/
+    /**
+     * 提交任务。同一进程排队中的旧任务将被替换
+     */
+    fun submit(job: CompactionJob) {
+        submittedCount.incrementAndGet()
+        job.submitNanos = System.nanoTime()
+        job.submitUptimeMillis = SystemClock.uptimeMillis()
+        lock.withLock {
+            queuedJobs.put(job.processRecord.pid, job)?.let { queue.remove(it) }
+            job.sequence = sequence++
+            queue.offer(job)
+            if (queue.size > maxQueueDepth) {
+                maxQueueDepth = queue.size
+            }
+            condition.signalAll()
+        }
+    }
+
+    /**
+     * 移除进程排队中的任务。已开始执行的任务不受影响
+     */
+    fun cancel(processRecord: ProcessRecord) {
+        val job = queuedJobs[processRecord.pid] ?: return
+        lock.withLock {
+            if (queuedJobs.remove(processRecord.pid, job)) {
+                queue.remove(job)
+                cancelledCount.incrementAndGet()
+            }
+        }
+    }
+
+    /**
+     * 在调用线程中立即执行任务, 不经过排队、令牌桶与启动推迟, 返回时任务已完成。
+     * 同一进程排队中的任务将被本任务取代
+     */
+    fun runNow(job: CompactionJob) {
+        submittedCount.incrementAndGet()
+        job.submitNanos = System.nanoTime()
+        job.submitUptimeMillis = SystemClock.uptimeMillis()
+        lock.withLock {
+            queuedJobs.remove(job.processRecord.pid)?.let { queued ->
+                queue.remove(queued)
+                cancelledCount.incrementAndGet()
+            }
+            runningJobs.add(job)
+        }
+        runJob(job)
+    }
+
+    /**
+     * 前台app正在启动, 推迟派发
+     */
+    fun onForegroundAppLaunch() {
+        lock.withLock {
+            deferUntilMillis = SystemClock.uptimeMillis() + launchDeferMillis
+        }
+    }
+
+    /* *************************************************************************
+     *                                                                         *
+     * 派发                                                                     *
+     *                                                                         *
+     **************************************************************************/
+    private fun dispatchLoop() {
+        while (true) {
+            try {
+                val job = awaitNextJob()
+                workerExecutor.execute { runJob(job) }
+            } catch (t: Throwable) {
+                logger.error("压缩调度出错", t)
+            }
+        }
+    }
+
+    private fun awaitNextJob(): CompactionJob {
+        lock.withLock {
+            while (true) {
+                val job = queue.peek()
+                if (job == null) {
+                    condition.await()
+                    continue
+                }
+
+                val now = SystemClock.uptimeMillis()
+                if (now < deferUntilMillis) {
+                    if (!job.launchDeferred) {
+                        job.launchDeferred = true
+                        launchDeferCount.incrementAndGet()
+                    }
+                    condition.await(deferUntilMillis - now, TimeUnit.MILLISECONDS)
+                    continue
+                }
+
+                if (runningJobs.size >= maxConcurrentJobs) {
+                    condition.await()
+                    continue
+                }
+
+                refill(now)
+                val cost = job.estimatedBytes.coerceIn(0L, bytesPerSecond)
+                if (availableBytes < cost) {
+                    val waitMillis = (cost - availableBytes) * 1000L / bytesPerSecond + 1
+                    condition.await(waitMillis, TimeUnit.MILLISECONDS)
+                    continue
+                }
+
+                availableBytes -= cost
+                runningJobs.add(job)
+                queue.poll()
+                queuedJobs.remove(job.processRecord.pid, job)
+                dispatchedBytes.addAndGet(cost)
+                return job
+            }
+        }
+    }
+
+    private fun refill(now: Long) {
+        val elapsed = now - lastRefillMillis
+        if (elapsed <= 0) {
+            return
+        }
+        lastRefillMillis = now
+        availableBytes = (availableBytes + elapsed * bytesPerSecond / 1000L).coerceAtMost(bytesPerSecond)
+    }
+
+    private fun runJob(job: CompactionJob) {
+        val startNanos = System.nanoTime()
+        job.startUptimeMillis = SystemClock.uptimeMillis()
+        queueWaitHistogram.recordNanos(startNanos - job.submitNanos)
+        try {
+            job.action.run()
+            completedCount.incrementAndGet()
+        } catch (t: Throwable) {
+            job.resultCode = ProcessCompactResultCode.problem
+            failedCount.incrementAndGet()
+            logger.error("压缩任务执行出错", t)
+        } finally {
+            jobWallTimeHistogram.recordNanos(System.nanoTime() - startNanos)
+            job.endUptimeMillis = SystemClock.uptimeMillis()
+            lock.withLock {
+                runningJobs.remove(job)
+                if (completedJobs.size >= MAX_COMPLETED_HISTORY) {
+                    completedJobs.removeLast()
+                }
+                completedJobs.addFirst(job)
+                condition.signalAll()
+            }
+        }
+    }
+
+    /* *************************************************************************
+     *                                                                         *
+     * 快照                                                                     *
+     *                                                                         *
+     **************************************************************************/
+    /**
+     * 排队中(按派发顺序)、执行中以及最近完成的任务
+     */
+    fun snapshot(): CompactionJobsSnapshot {
+        return lock.withLock {
+            CompactionJobsSnapshot().apply {
+                queued = queue.sortedWith(queue.comparator()).map { CompactionJobInfo.create(it, CompactionJobInfo.STATE_QUEUED) }
+                running = runningJobs.map { CompactionJobInfo.create(it, CompactionJobInfo.STATE_RUNNING) }
+                completed = completedJobs.map { CompactionJobInfo.create(it, CompactionJobInfo.STATE_COMPLETED) }
+            }
+        }
+    }
+
+    companion object {
+        const val DEFAULT_MAX_CONCURRENT_JOBS = 2
+
+        // 64MB/s
+        const val DEFAULT_BYTES_PER_SECOND = 64L * 1024 * 1024
+
+        const val DEFAULT_LAUNCH_DEFER_MILLIS = 2000L
+
+        // 保留的已完成任务数
+        const val MAX_COMPLETED_HISTORY = 32
+
+        // 进入后台每1分钟, 等价于1MB的RSS
+        private const val IDLE_MINUTE_WEIGHT_MB = 1.0
+
+        // FULL压缩额外的优先级(MB)
+        private const val FULL_COMPACT_BONUS_MB = 64.0
+
+        /**
+         * 计算任务优先级
+         *
+         * 优先级 = RSS(MB) + 后台时长(分钟) * [IDLE_MINUTE_WEIGHT_MB] + FULL加成。
+         * 后台时长在提交时计算, 排队期间不再更新; 未记录进入后台的时间点时不加成
+         *
+         * @param rssInBytes 最近一次采样的RSS
+         * @param idleSinceMillis 进入后台的时间点([SystemClock.uptimeMillis])。0 = 未记录
+         * @param nowMillis 当前时间([SystemClock.uptimeMillis])
+         */
+        @JvmOverloads
+        fun computePriority(
+            rssInBytes: Long,
+            idleSinceMillis: Long,
+            processCompactEnum: ProcessCompactEnum,
+            nowMillis: Long = SystemClock.uptimeMillis()
+        ): Double {
+            val rssMb = rssInBytes.coerceAtLeast(0L) / (1024.0 * 1024.0)
+            val idleBonus = if (idleSinceMillis <= 0L) {
+                0.0
+            } else {
+                (nowMillis - idleSinceMillis).coerceAtLeast(0L) / 60_000.0 * IDLE_MINUTE_WEIGHT_MB
+            }
+            val fullBonus = if (processCompactEnum == ProcessCompactEnum.FULL) FULL_COMPACT_BONUS_MB else 0.0
+            return rssMb + idleBonus + fullBonus
+        }
+    }
+}
+
+/**
+ * 压缩任务
+ *
+ * @property estimatedBytes 预估的压缩字节数, 用于扣除预算
+ * @property priority 见[CompactionScheduler.computePriority]
+ * @property action 实际的压缩操作
+ */
+class CompactionJob(
+    val processRecord: ProcessRecord,
+    val processCompactEnum: ProcessCompactEnum,
+    val estimatedBytes: Long,
+    val priority: Double,
+    val action: Runnable
+) {
+    internal var sequence = 0L
+    internal var submitNanos = 0L
+
+    // 是否已被计入launchDeferCount。仅在调度器的锁内访问
+    internal var launchDeferred = false
+    // SystemClock.uptimeMillis()。0 = 尚未发生
+    @Volatile
+    var submitUptimeMillis = 0L
+        internal set
+
+    @Volatile
+    var startUptimeMillis = 0L
+        internal set
+
+    @Volatile
+    var endUptimeMillis = 0L
+        internal set
+
+    // 实际写入的压缩行为(CachedAppOptimizer.COMPACT_ACTION_*)。由[action]设置
+    @Volatile
+    var compactAction = 0
+
+    // 见[ProcessCompactResultCode]。由[action]设置
+    @Volatile
+    var resultCode = ProcessCompactResultCode.doNothing
+}
+
+/**
+ * 压缩任务的快照
+ */
+class CompactionJobsSnapshot : MessageFlag {
+    // 等待延迟执行(尚未提交到调度器)
+    var pending: List<CompactionJobInfo> = emptyList()
+    var queued: List<CompactionJobInfo> = emptyList()
+    var running: List<CompactionJobInfo> = emptyList()
+    var completed: List<CompactionJobInfo> = emptyList()
+}
+
+class CompactionJobInfo : MessageFlag {
+    var pid = 0
+    var uid = 0
+    var packageName: String? = null
+    var processName: String? = null
+    var state = STATE_PENDING
+    var processCompactEnum = ProcessCompactEnum.NONE
+    var compactAction = 0
+    var estimatedBytes = 0L
+    var priority = 0.0
+
+    // SystemClock.uptimeMillis()。pending状态下为预计执行的时间
+    var submitUptimeMillis = 0L
+    var startUptimeMillis = 0L
+    var endUptimeMillis = 0L
+    var resultCode = ProcessCompactResultCode.doNothing
+
+    companion object {
+        const val STATE_PENDING = "pending"
+        const val STATE_QUEUED = "queued"
+        const val STATE_RUNNING = "running"
+        const val STATE_COMPLETED = "completed"
+
+        @JvmStatic
+        fun create(processRecord: ProcessRecord, state: String): CompactionJobInfo {
+            return CompactionJobInfo().apply {
+                pid = processRecord.pid
+                uid = processRecord.uid
+                packageName = processRecord.packageName
+                processName = processRecord.processName
+                this.state = state
+            }
+        }
+
+        @JvmStatic
+        fun create(job: CompactionJob, state: String): CompactionJobInfo {
+            return create(job.processRecord, state).apply {
+                processCompactEnum = job.processCompactEnum
+                compactAction = job.compactAction
+                estimatedBytes = job.estimatedBytes
+                priority = job.priority
+                submitUptimeMillis = job.submitUptimeMillis
+                startUptimeMillis = job.startUptimeMillis
+                endUptimeMillis = job.endUptimeMillis
+                resultCode = job.resultCode
+            }
+        }
+    }
+}
@@ -0,0 +1,294 @@
+/*
+ * Copyright (C) 2023 BackgroundOpt
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.venus.backgroundopt.manager.process
+
+import android.os.SystemClock
+import com.venus.backgroundopt.hook.handle.android.entity.ProcessRecord
+import com.venus.backgroundopt.utils.ProcessMemorySnapshot
+import com.venus.backgroundopt.utils.ProcessMemoryUtils
+import com.venus.backgroundopt.utils.concurrent.commonScheduledExecutor
+import com.venus.backgroundopt.utils.log.ILogger
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ScheduledExecutorService
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * 后台gc(SIGNAL_10)的协调器
+ *
+ * 1. 全局令牌桶: 每分钟最多发送[signalsPerMinute]次, 超出的请求直接跳过(下一轮回收时再尝试)
+ * 2. 发送前读取rss, [MEASURE_DELAY_MILLIS]后再次读取, 两者之差作为本次gc的回收量, 并汇报给[trimEffectivenessTracker]。
+ * 刚发送过trim的进程可延迟发送([requestGc]的delayMillis), 使两者的测量区间不重叠
+ * 3. app最近[HISTORY_SIZE]次gc的回收量都低于[MIN_RECLAIM_KB]时, 停止对其gc [DISABLE_MILLIS],
+ * 到期后重新观察
+ *
+ * @author XingC
+ * @date 2026/10/18
+ */
+class GcCoordinator @JvmOverloads constructor(
+    private val trimEffectivenessTracker: TrimEffectivenessTracker,
+    private val signalsPerMinute: Int = DEFAULT_SIGNALS_PER_MINUTE,
+    private val executor: ScheduledExecutorService = commonScheduledExecutor
+) : ILogger {
+    enum class GcResult {
+        // 已发送信号
+        SIGNALED,
+
+        // 超出全局速率
+        RATE_LIMITED,
+
+        // app的gc收益过低, 已停止
+        DISABLED,
+
+        // 该进程上一次gc尚未测量完成
+        MEASURING,
+
+        // 将在延迟后发送
+        DELAYED,
+
+        // 发送信号失败
+        FAILED,
+    }
+
+    /**
+     * app最近几次gc的回收量
+     */
+    private class AppGcHistory {
+        val reclaimedKbs = LongArray(HISTORY_SIZE)
+        var count = 0
+        var nextIndex = 0
+
+        // 停止gc的截止时间(uptimeMillis)。0: 未停止
+        var disabledUntilMillis = 0L
+
+        fun record(reclaimedKb: Long) {
+            reclaimedKbs[nextIndex] = reclaimedKb
+            nextIndex = (nextIndex + 1) % HISTORY_SIZE
+            if (count < HISTORY_SIZE) {
+                count++
+            }
+        }
+
+        fun isIneffective(): Boolean {
+            return count >= HISTORY_SIZE && reclaimedKbs.all { it < MIN_RECLAIM_KB }
+        }
+
+        fun reset() {
+            count = 0
+            nextIndex = 0
+        }
+    }
+
+    private val appGcHistoryMap = ConcurrentHashMap<String, AppGcHistory>()
+
+    // 正在测量的进程
+    private val measuringProcesses: MutableSet<ProcessRecord> = ConcurrentHashMap.newKeySet()
+
+    /* *************************************************************************
+     *                                                                         *
+     * 令牌桶                                                                   *
+     *                                                                         *
+     **************************************************************************/
+    private var tokens = signalsPerMinute.toDouble()
+    private var lastRefillMillis = SystemClock.uptimeMillis()
+
+    @Synchronized
+    private fun tryAcquireToken(): Boolean {
+        val now = SystemClock.uptimeMillis()
+        tokens = (tokens + (now - lastRefillMillis) * signalsPerMinute / 60_000.0)
+            .coerceAtMost(signalsPerMinute.toDouble())
+        lastRefillMillis = now
+        if (tokens < 1.0) {
+            return false
+        }
+        tokens -= 1.0
+        return true
+    }
+
+    /* *************************************************************************
+     *                                                                         *
+     * 统计                                                                     *
+     *                                                                         *
+     **************************************************************************/
+    val signaledCount = AtomicLong(0)
+    val rateLimitedCount = AtomicLong(0)
+    val disabledSkipCount = AtomicLong(0)
+    val failedCount = AtomicLong(0)
+    val measuredCount = AtomicLong(0)
+    val reclaimedKb = AtomicLong(0)
+
+    // 因刚发送过trim而延迟发送的次数
+    val delayedCount = AtomicLong(0)
+
+    // 因收益过低而停止gc的次数
+    val autoDisableCount = AtomicLong(0)
+
+    val disabledAppCount: Int
+        get() {
+            val now = SystemClock.uptimeMillis()
+            return appGcHistoryMap.values.count { history ->
+                synchronized(history) { history.disabledUntilMillis > now }
+            }
+        }
+
+    /* *************************************************************************
+     *                                                                         *
+     * gc                                                                       *
+     *                                                                         *
+     **************************************************************************/
+    /**
+     * 请求对进程执行gc
+     *
+     * @param delayMillis 延迟发送的时间。期间该进程视为正在测量, 不接受新的请求
+     * @param onDelayedResult 延迟发送时, 在[executor]中以实际发送的结果回调
+     * @return 只有[GcResult.FAILED]表示进程可能已不存在
+     */
+    @JvmOverloads
+    fun requestGc(
+        processRecord: ProcessRecord,
+        delayMillis: Long = 0L,
+        onDelayedResult: ((GcResult) -> Unit)? = null
+    ): GcResult {
+        val history = appGcHistoryMap.computeIfAbsent(processRecord.packageName) { AppGcHistory() }
+        val disabled = synchronized(history) {
+            val disabledUntilMillis = history.disabledUntilMillis
+            if (disabledUntilMillis == 0L) {
+                false
+            } else if (SystemClock.uptimeMillis() < disabledUntilMillis) {
+                true
+            } else {
+                // 到期后重新观察
+                history.disabledUntilMillis = 0L
+                history.reset()
+                false
+            }
+        }
+        if (disabled) {
+            disabledSkipCount.incrementAndGet()
+            return GcResult.DISABLED
+        }
+        if (!measuringProcesses.add(processRecord)) {
+            return GcResult.MEASURING
+        }
+        if (delayMillis > 0) {
+            delayedCount.incrementAndGet()
+            executor.schedule({
+                try {
+                    // 延迟期间pid可能已被复用
+                    val result = if (processRecord.isSameProcessByStartTime()) {
+                        signal(processRecord, history)
+                    } else {
+                        measuringProcesses.remove(processRecord)
+                        GcResult.FAILED
+                    }
+                    onDelayedResult?.invoke(result)
+                } catch (t: Throwable) {
+                    measuringProcesses.remove(processRecord)
+                    logger.error("${processRecord.packageName}: 延迟的gc发送出错", t)
+                }
+            }, delayMillis, TimeUnit.MILLISECONDS)
+            return GcResult.DELAYED
+        }
+        return signal(processRecord, history)
+    }
+
+    /**
+     * 发送信号并安排测量。调用前需已将进程加入[measuringProcesses]
+     */
+    private fun signal(processRecord: ProcessRecord, history: AppGcHistory): GcResult {
+        if (!tryAcquireToken()) {
+            measuringProcesses.remove(processRecord)
+            rateLimitedCount.incrementAndGet()
+            return GcResult.RATE_LIMITED
+        }
+
+        val memoryBefore = ProcessMemoryUtils.readProcessMemory(processRecord.pid)
+        val startNanos = System.nanoTime()
+        val signaled = ProcessManager.handleGCNoNullCheck(processRecord)
+        trimEffectivenessTracker.recordSent(
+            processRecord.packageName,
+            TrimEffectivenessTracker.GC_LEVEL,
+            signaled,
+            System.nanoTime() - startNanos
+        )
+        if (!signaled) {
+            measuringProcesses.remove(processRecord)
+            failedCount.incrementAndGet()
+            return GcResult.FAILED
+        }
+        signaledCount.incrementAndGet()
+
+        if (memoryBefore == null) {
+            measuringProcesses.remove(processRecord)
+        } else {
+            executor.schedule({
+                try {
+                    measure(processRecord, history, memoryBefore)
+                } catch (t: Throwable) {
+                    logger.error("${processRecord.packageName}: gc回收量测量出错", t)
+                } finally {
+                    measuringProcesses.remove(processRecord)
+                }
+            }, MEASURE_DELAY_MILLIS, TimeUnit.MILLISECONDS)
+        }
+        return GcResult.SIGNALED
+    }
+
+    private fun measure(processRecord: ProcessRecord, history: AppGcHistory, memoryBefore: ProcessMemorySnapshot) {
+        // pid已被复用时, 读到的是其他进程的rss
+        if (!processRecord.isSameProcessByStartTime()) {
+            return
+        }
+        val memoryAfter = ProcessMemoryUtils.readProcessMemory(processRecord.pid) ?: return
+        val reclaimed = (memoryBefore.rssKb - memoryAfter.rssKb).coerceAtLeast(0)
+        trimEffectivenessTracker.recordMeasured(
+            processRecord.packageName,
+            TrimEffectivenessTracker.GC_LEVEL,
+            memoryBefore,
+            memoryAfter
+        )
+        measuredCount.incrementAndGet()
+        reclaimedKb.addAndGet(reclaimed)
+
+        val disabled = synchronized(history) {
+            history.record(reclaimed)
+            if (history.isIneffective()) {
+                history.disabledUntilMillis = SystemClock.uptimeMillis() + DISABLE_MILLIS
+                true
+            } else {
+                false
+            }
+        }
+        if (disabled) {
+            autoDisableCount.incrementAndGet()
+            logger.info("${processRecord.packageName}: 最近${HISTORY_SIZE}次gc的回收量均低于${MIN_RECLAIM_KB}kB, 暂停gc")
+        }
+    }
+
+    companion object {
+        const val DEFAULT_SIGNALS_PER_MINUTE = 12
+
+        // gc通常在1~3秒内完成
+        const val MEASURE_DELAY_MILLIS = 5L * 1000
+
+        const val HISTORY_SIZE = 5
+        const val MIN_RECLAIM_KB = 1024L
+
+        const val DISABLE_MILLIS = 6L * 60 * 60 * 1000
+    }
+}
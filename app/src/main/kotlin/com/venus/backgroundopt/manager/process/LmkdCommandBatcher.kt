@@ -0,0 +1,430 @@
+/*
+ * Copyright (C) 2023 BackgroundOpt
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.venus.backgroundopt.manager.process
+
+import com.venus.backgroundopt.BuildConfig
+import com.venus.backgroundopt.environment.PreferenceDefaultValue
+import com.venus.backgroundopt.hook.handle.android.entity.ProcessList
+import com.venus.backgroundopt.hook.handle.android.entity.ProcessRecord
+import com.venus.backgroundopt.utils.LatencyHistogram
+import com.venus.backgroundopt.utils.clamp
+import com.venus.backgroundopt.utils.log.ILogger
+import com.venus.backgroundopt.utils.runCatchThrowable
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.locks.ReentrantLock
+import kotlin.concurrent.withLock
+import kotlin.math.min
+
+/**
+ * lmkd命令合并写入器
+ *
+ * 所有对lmkd的adj写入都由唯一的写入线程完成:
+ * 1. 提交时, 将adj记录到[ProcessRecord.pendingLmkdAdj]。若该进程已在对应通道中排队, 则直接覆盖(只保留最新值), 否则将进程按到期时间放入该通道的队列
+ * 2. 保护通道使用固定延迟; 合并通道的延迟由进程的adj变化频率([ProcessRecord.getAdjChurnRate])决定, 频繁变化的进程合并窗口更宽, 稳定的进程几乎立即写入
+ * 3. 进程到期后才会被写入, 期间的多次提交会被合并
+ * 4. 若待写入的adj与该进程上一次写入lmkd的adj相同, 则跳过本次写入
+ * 5. 进程在等待期间被移除或pid已被复用([isCurrentProcess]不成立)时, 丢弃其命令
+ *
+ * 写入线程只持有一个[java.nio.ByteBuffer], 每次写入后clear复用。
+ *
+ * @author XingC
+ * @date 2026/10/18
+ */
+class LmkdCommandBatcher(
+    protectiveLaneDelayMillis: Long = Lane.PROTECTIVE.defaultDelayMillis,
+    coalescedLaneDelayMillis: Long = Lane.COALESCED.defaultDelayMillis,
+    coalescedLaneMinDelayMillis: Long = PreferenceDefaultValue.coalescedAdjApplyMinDelayMillis,
+    /**
+     * 进程记录是否仍代表该pid当前的进程
+     */
+    private val isCurrentProcess: (ProcessRecord) -> Boolean = { true }
+) : ILogger {
+    /**
+     * 写入通道
+     *
+     * @property defaultDelayMillis 默认延迟(毫秒)
+     */
+    enum class Lane(val defaultDelayMillis: Long) {
+        // 保护性(降低adj)的修改。前台app、高优先级进程
+        PROTECTIVE(PreferenceDefaultValue.protectiveAdjApplyDelayMillis),
+
+        // 其余修改。合并一段时间内的多次设置。延迟为自适应窗口的上限
+        COALESCED(PreferenceDefaultValue.coalescedAdjApplyDelayMillis),
+        ;
+
+        val flag = 1 shl ordinal
+    }
+
+    private val lock = ReentrantLock()
+    private val condition = lock.newCondition()
+
+    private val laneQueues = Array(Lane.entries.size) { LaneQueue() }
+    private val laneDelayNanos = LongArray(Lane.entries.size).apply {
+        this[Lane.PROTECTIVE.ordinal] = TimeUnit.MILLISECONDS.toNanos(protectiveLaneDelayMillis)
+        this[Lane.COALESCED.ordinal] = TimeUnit.MILLISECONDS.toNanos(coalescedLaneDelayMillis)
+    }
+
+    // 合并通道自适应窗口的下限
+    private var coalescedLaneMinDelayNanos = TimeUnit.MILLISECONDS.toNanos(coalescedLaneMinDelayMillis)
+
+    // 仅由写入线程访问
+    private val byteBuffer = ProcessList.getByteBufferUsedToWriteLmkd()
+    private var drainBuffer = arrayOfNulls<ProcessRecord>(INITIAL_CAPACITY)
+    private var drainLaneBuffer = IntArray(INITIAL_CAPACITY)
+
+    /* *************************************************************************
+     *                                                                         *
+     * 统计                                                                     *
+     *                                                                         *
+     **************************************************************************/
+    // 写入前被覆盖的命令数
+    val dedupeHitCount = AtomicLong(0)
+
+    // 与上次写入值相同而被跳过的命令数
+    val skippedWriteCount = AtomicLong(0)
+
+    // 进程已被移除或pid已被复用而丢弃的命令数
+    val staleDiscardCount = AtomicLong(0)
+
+    // 实际写入lmkd的次数
+    val writeCount = AtomicLong(0)
+
+    // 各通道实际写入lmkd的次数
+    val laneWriteCounts = Array(Lane.entries.size) { AtomicLong(0) }
+
+    // 从系统调用setOomAdj到写入lmkd的延迟
+    val setOomAdjToWriteLatencyHistogram = LatencyHistogram()
+
+    // 当前队列深度
+    @Volatile
+    var queueDepth = 0
+        private set
+
+    // 出现过的最大队列深度
+    @Volatile
+    var maxQueueDepth = 0
+        private set
+
+    private val writerThread = Thread(::writeLoop, THREAD_NAME).apply {
+        isDaemon = false
+        priority = Thread.NORM_PRIORITY
+        start()
+    }
+
+    fun getLaneDelayMillis(lane: Lane): Long {
+        return lock.withLock {
+            TimeUnit.NANOSECONDS.toMillis(laneDelayNanos[lane.ordinal])
+        }
+    }
+
+    fun setLaneDelayMillis(lane: Lane, delayMillis: Long) {
+        lock.withLock {
+            laneDelayNanos[lane.ordinal] = TimeUnit.MILLISECONDS.toNanos(delayMillis.coerceAtLeast(0L))
+        }
+    }
+
+    fun getCoalescedLaneMinDelayMillis(): Long {
+        return lock.withLock {
+            TimeUnit.NANOSECONDS.toMillis(coalescedLaneMinDelayNanos)
+        }
+    }
+
+    fun setCoalescedLaneMinDelayMillis(delayMillis: Long) {
+        lock.withLock {
+            coalescedLaneMinDelayNanos = TimeUnit.MILLISECONDS.toNanos(delayMillis.coerceAtLeast(0L))
+        }
+    }
+
+    /**
+     * 计算进程在指定通道中的延迟
+     *
+     * @param processRecord 目标进程
+     * @param lane 写入通道
+     * @param nowNanos 当前时间([System.nanoTime])
+     * @return 延迟(纳秒)
+     */
+    fun computeDelayNanos(processRecord: ProcessRecord, lane: Lane, nowNanos: Long): Long {
+        return lock.withLock {
+            computeDelayNanosLocked(processRecord, lane, nowNanos)
+        }
+    }
+
+    private fun computeDelayNanosLocked(processRecord: ProcessRecord, lane: Lane, nowNanos: Long): Long {
+        val maxDelayNanos = laneDelayNanos[lane.ordinal]
+        if (lane != Lane.COALESCED) {
+            return maxDelayNanos
+        }
+        // 每秒变化1次 -> 1s的窗口
+        val windowNanos = (processRecord.getAdjChurnRate(nowNanos) * ADAPTIVE_WINDOW_NANOS_PER_HZ).toLong()
+        return clamp(windowNanos, min(coalescedLaneMinDelayNanos, maxDelayNanos), maxDelayNanos)
+    }
+
+    /**
+     * 提交要写入lmkd的adj
+     *
+     * @param processRecord 目标进程
+     * @param adj 要写入的adj
+     * @param lane 写入通道
+     * @param requestNanos 系统发起本次adj设置的时间([System.nanoTime])
+     */
+    fun submit(
+        processRecord: ProcessRecord,
+        adj: Int,
+        lane: Lane,
+        requestNanos: Long = System.nanoTime()
+    ) {
+        // 合并的多次提交以最早的一次为准, 写入后由写入线程清零
+        processRecord.pendingLmkdRequestNanos.compareAndSet(0L, requestNanos)
+        if (processRecord.pendingLmkdAdj.getAndSet(adj) != ProcessRecord.NO_PENDING_LMKD_ADJ) {
+            // 上一条命令尚未写入就被覆盖
+            dedupeHitCount.incrementAndGet()
+        }
+
+        // 已在该通道中排队, 写入线程取出时会读到最新值
+        if (!markQueued(processRecord.queuedLmkdLanes, lane.flag)) {
+            return
+        }
+
+        lock.withLock {
+            val now = System.nanoTime()
+            val laneQueue = laneQueues[lane.ordinal]
+            val dueNanos = now + computeDelayNanosLocked(processRecord, lane, now)
+            if (laneQueue.enqueue(processRecord, dueNanos)) {
+                // 通道队首发生变化, 唤醒写入线程重新计算等待时间
+                condition.signal()
+            }
+            updateQueueDepthLocked(1)
+        }
+    }
+
+    private fun markQueued(queuedLanes: AtomicInteger, flag: Int): Boolean {
+        while (true) {
+            val queued = queuedLanes.get()
+            if ((queued and flag) != 0) {
+                return false
+            }
+            if (queuedLanes.compareAndSet(queued, queued or flag)) {
+                return true
+            }
+        }
+    }
+
+    private fun unmarkQueued(queuedLanes: AtomicInteger, flag: Int) {
+        while (true) {
+            val queued = queuedLanes.get()
+            if (queuedLanes.compareAndSet(queued, queued and flag.inv())) {
+                return
+            }
+        }
+    }
+
+    private fun updateQueueDepthLocked(delta: Int) {
+        val depth = queueDepth + delta
+        queueDepth = depth
+        if (depth > maxQueueDepth) {
+            maxQueueDepth = depth
+        }
+    }
+
+    /**
+     * 等待直到至少有一个进程到期, 并将所有到期的进程转移到[drainBuffer]
+     *
+     * @return 取出的进程数
+     */
+    private fun awaitAndDrain(): Int {
+        lock.withLock {
+            while (true) {
+                if (queueDepth == 0) {
+                    condition.await()
+                    continue
+                }
+
+                val now = System.nanoTime()
+                var waitNanos = Long.MAX_VALUE
+                for (laneIndex in laneQueues.indices) {
+                    val laneQueue = laneQueues[laneIndex]
+                    if (laneQueue.size == 0) {
+                        continue
+                    }
+                    val remaining = laneQueue.headDueNanos() - now
+                    if (remaining < waitNanos) {
+                        waitNanos = remaining
+                    }
+                }
+                if (waitNanos > 0) {
+                    condition.awaitNanos(waitNanos)
+                    continue
+                }
+
+                return drainDueLocked(now)
+            }
+        }
+    }
+
+    private fun drainDueLocked(now: Long): Int {
+        var count = 0
+        for (laneIndex in laneQueues.indices) {
+            val laneQueue = laneQueues[laneIndex]
+            while (laneQueue.size > 0 && laneQueue.headDueNanos() - now <= 0) {
+                if (count == drainBuffer.size) {
+                    drainBuffer = drainBuffer.copyOf(count shl 1)
+                    drainLaneBuffer = drainLaneBuffer.copyOf(count shl 1)
+                }
+                drainBuffer[count] = laneQueue.dequeue()
+                drainLaneBuffer[count] = laneIndex
+                count++
+            }
+        }
+        updateQueueDepthLocked(-count)
+        return count
+    }
+
+    private fun writeLoop() {
+        while (true) {
+            runCatchThrowable(catchBlock = { throwable ->
+                logger.error("lmkd命令写入出错", throwable)
+            }) {
+                val count = awaitAndDrain()
+                for (i in 0 until count) {
+                    val processRecord = drainBuffer[i]!!
+                    drainBuffer[i] = null
+                    write(processRecord, Lane.entries[drainLaneBuffer[i]])
+                }
+            }
+        }
+    }
+
+    private fun write(processRecord: ProcessRecord, lane: Lane) {
+        // 先清除排队标记再取值, 保证之后的提交一定能重新入队
+        unmarkQueued(processRecord.queuedLmkdLanes, lane.flag)
+        val adj = processRecord.pendingLmkdAdj.getAndSet(ProcessRecord.NO_PENDING_LMKD_ADJ)
+        if (adj == ProcessRecord.NO_PENDING_LMKD_ADJ) {
+            // 已经通过其他通道写入
+            return
+        }
+        // 与adj一同取走。为0说明与提交并发, 放弃本次采样
+        val requestNanos = processRecord.pendingLmkdRequestNanos.getAndSet(0L)
+        if (!isCurrentProcess(processRecord)) {
+            staleDiscardCount.incrementAndGet()
+            return
+        }
+        if (adj == processRecord.lastWrittenLmkdAdj) {
+            skippedWriteCount.incrementAndGet()
+            return
+        }
+
+        val succeed = try {
+            ProcessList.writeLmkd(byteBuffer, processRecord.pid, processRecord.uid, adj)
+        } finally {
+            byteBuffer.clear()
+        }
+        if (!succeed) {
+            // 写入失败时不记录, 下次相同的adj仍会尝试写入
+            processRecord.lastWrittenLmkdAdj = ProcessRecord.NO_PENDING_LMKD_ADJ
+            return
+        }
+        processRecord.lastWrittenLmkdAdj = adj
+        writeCount.incrementAndGet()
+        laneWriteCounts[lane.ordinal].incrementAndGet()
+        if (requestNanos != 0L) {
+            setOomAdjToWriteLatencyHistogram.recordNanos(System.nanoTime() - requestNanos)
+        }
+
+        if (BuildConfig.DEBUG) {
+            logger.debug("pid: ${processRecord.pid} >>> 写入lmkd, adj: ${adj}, 通道: ${lane}")
+        }
+    }
+
+    /**
+     * 单个通道的等待队列
+     * 以到期时间为键的二叉最小堆。每个进程在同一通道中至多出现一次
+     */
+    private class LaneQueue {
+        private var records = arrayOfNulls<ProcessRecord>(INITIAL_CAPACITY)
+        private var dueNanos = LongArray(INITIAL_CAPACITY)
+        var size = 0
+            private set
+
+        /**
+         * 入队
+         *
+         * @return 队首是否发生变化
+         */
+        fun enqueue(processRecord: ProcessRecord, due: Long): Boolean {
+            if (size == records.size) {
+                records = records.copyOf(size shl 1)
+                dueNanos = dueNanos.copyOf(size shl 1)
+            }
+            var index = size++
+            while (index > 0) {
+                val parent = (index - 1) ushr 1
+                if (dueNanos[parent] - due <= 0) {
+                    break
+                }
+                records[index] = records[parent]
+                dueNanos[index] = dueNanos[parent]
+                index = parent
+            }
+            records[index] = processRecord
+            dueNanos[index] = due
+            return index == 0
+        }
+
+        fun headDueNanos(): Long = dueNanos[0]
+
+        fun dequeue(): ProcessRecord {
+            val processRecord = records[0]!!
+            val lastIndex = --size
+            val lastRecord = records[lastIndex]
+            val lastDue = dueNanos[lastIndex]
+            records[lastIndex] = null
+
+            if (lastIndex > 0) {
+                var index = 0
+                while (true) {
+                    var child = (index shl 1) + 1
+                    if (child >= lastIndex) {
+                        break
+                    }
+                    if (child + 1 < lastIndex && dueNanos[child + 1] - dueNanos[child] < 0) {
+                        child++
+                    }
+                    if (lastDue - dueNanos[child] <= 0) {
+                        break
+                    }
+                    records[index] = records[child]
+                    dueNanos[index] = dueNanos[child]
+                    index = child
+                }
+                records[index] = lastRecord
+                dueNanos[index] = lastDue
+            }
+            return processRecord
+        }
+    }
+
+    companion object {
+        const val THREAD_NAME = "lmkdCommandBatcherThread"
+
+        const val INITIAL_CAPACITY = 256
+
+        const val ADAPTIVE_WINDOW_NANOS_PER_HZ = 1_000_000_000.0
+    }
+}
@@ -0,0 +1,308 @@
+/*
+ * Copyright (C) 2023 BackgroundOpt
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.venus.backgroundopt.manager.process
+
+import android.content.BroadcastReceiver
+import android.content.Context
+import android.content.Intent
+import android.content.IntentFilter
+import android.os.BatteryManager
+import android.os.PowerManager
+import android.os.SystemClock
+import com.venus.backgroundopt.utils.concurrent.commonScheduledExecutor
+import com.venus.backgroundopt.utils.concurrent.commonThreadPoolExecutor
+import com.venus.backgroundopt.utils.log.ILogger
+import com.venus.backgroundopt.utils.runCatchThrowable
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.Executor
+import java.util.concurrent.ScheduledExecutorService
+import java.util.concurrent.ScheduledFuture
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * 维护窗口协调器
+ *
+ * 熄屏一段时间([SCREEN_OFF_SETTLE_MILLIS], 充电时为[CHARGING_SETTLE_MILLIS])后开启维护窗口:
+ * 收集各[MaintenanceParticipant]推迟的工作(FULL压缩、后台内存回收、gc), 按预期收益从高到低在窗口线程中逐个执行,
+ * 每项工作返回时即已完成(需要在其他线程执行的, 由工作自行等待)。
+ * 亮屏时窗口立即关闭, 未执行的工作通过[MaintenanceWork.onSkipped]交还, 留待下次。
+ *
+ * 亮屏期间各模块通过[isUserInteracting]只执行必要的工作。
+ * 收到[deviceStateSource]的首次通知前视为非交互状态, 即不推迟任何工作; 获取状态失败时也保持如此
+ *
+ * 窗口的定时使用[scheduledExecutor], 窗口本身(可能持续较久)在[windowExecutor]中执行
+ *
+ * @author XingC
+ * @date 2026/10/18
+ */
+class MaintenanceWindowCoordinator @JvmOverloads constructor(
+    private val deviceStateSource: DeviceStateSource,
+    private val screenOffSettleMillis: Long = SCREEN_OFF_SETTLE_MILLIS,
+    private val chargingSettleMillis: Long = CHARGING_SETTLE_MILLIS,
+    private val scheduledExecutor: ScheduledExecutorService = commonScheduledExecutor,
+    private val windowExecutor: Executor = commonThreadPoolExecutor
+) : DeviceStateListener, ILogger {
+
+    private val participants = CopyOnWriteArrayList<MaintenanceParticipant>()
+
+    @Volatile
+    var isUserInteracting = false
+        private set
+
+    // 是否已收到过状态。仅在同步块内访问
+    private var stateReported = false
+
+    @Volatile
+    var isCharging = false
+        private set
+
+    @Volatile
+    private var windowFuture: ScheduledFuture<*>? = null
+
+    @Volatile
+    private var lastWindowMillis = 0L
+
+    /* *************************************************************************
+     *                                                                         *
+     * 统计                                                                     *
+     *                                                                         *
+     **************************************************************************/
+    val windowCount = AtomicLong(0)
+    val workCount = AtomicLong(0)
+
+    // 因亮屏而中断的窗口数
+    val abortedWindowCount = AtomicLong(0)
+
+    @Volatile
+    var lastWindowWorkCount = 0
+        private set
+
+    @Volatile
+    var lastWindowDurationMillis = 0L
+        private set
+
+    fun addParticipant(participant: MaintenanceParticipant) {
+        participants.add(participant)
+    }
+
+    fun start() {
+        deviceStateSource.start(this)
+    }
+
+    /**
+     * 状态直接在回调线程更新, 使正在执行的窗口能及时看到亮屏
+     */
+    @Synchronized
+    override fun onDeviceStateChanged(interactive: Boolean, charging: Boolean) {
+        val wasInteractive = isUserInteracting || !stateReported
+        val wasCharging = isCharging
+        stateReported = true
+        isUserInteracting = interactive
+        isCharging = charging
+
+        if (interactive) {
+            windowFuture?.let {
+                it.cancel(false)
+                windowFuture = null
+            }
+            return
+        }
+        if (wasInteractive) {
+            // 刚熄屏(或首次得知处于熄屏状态)
+            scheduleWindow()
+        } else if (charging && !wasCharging && windowFuture == null
+            && SystemClock.uptimeMillis() - lastWindowMillis >= MIN_WINDOW_INTERVAL_MILLIS
+        ) {
+            // 熄屏期间接上电源, 且距离上次窗口已足够久
+            scheduleWindow()
+        }
+    }
+
+    private fun scheduleWindow() {
+        windowFuture?.cancel(false)
+        val delay = if (isCharging) chargingSettleMillis else screenOffSettleMillis
+        windowFuture = scheduledExecutor.schedule({
+            windowExecutor.execute(::runWindow)
+        }, delay, TimeUnit.MILLISECONDS)
+    }
+
+    private fun runWindow() {
+        synchronized(this) {
+            windowFuture = null
+            if (isUserInteracting) {
+                return
+            }
+        }
+        val startMillis = SystemClock.uptimeMillis()
+        lastWindowMillis = startMillis
+        windowCount.incrementAndGet()
+
+        val works = ArrayList<MaintenanceWork>()
+        participants.forEach { participant ->
+            runCatchThrowable(catchBlock = {
+                logger.error("收集维护工作出错", it)
+            }) {
+                participant.collectMaintenanceWork(works)
+            }
+        }
+        works.sortByDescending { it.expectedYieldKb }
+
+        var count = 0
+        for (work in works) {
+            if (isUserInteracting) {
+                break
+            }
+            runCatchThrowable(catchBlock = {
+                logger.error("维护工作[${work.name}]执行出错", it)
+            }) {
+                work.action.run()
+            }
+            count++
+        }
+        if (count < works.size) {
+            abortedWindowCount.incrementAndGet()
+            for (i in count until works.size) {
+                works[i].onSkipped?.let { onSkipped ->
+                    runCatchThrowable(catchBlock = {
+                        logger.error("维护工作[${works[i].name}]交还出错", it)
+                    }) {
+                        onSkipped.run()
+                    }
+                }
+            }
+        }
+        workCount.addAndGet(count.toLong())
+        lastWindowWorkCount = count
+        lastWindowDurationMillis = SystemClock.uptimeMillis() - startMillis
+        logger.info("维护窗口: 执行${count}/${works.size}项, 耗时${lastWindowDurationMillis}ms")
+    }
+
+    companion object {
+        const val SCREEN_OFF_SETTLE_MILLIS = 60L * 1000
+        const val CHARGING_SETTLE_MILLIS = 10L * 1000
+
+        // 同一次熄屏内, 两次窗口的最小间隔
+        const val MIN_WINDOW_INTERVAL_MILLIS = 10L * 60 * 1000
+    }
+}
+
+/**
+ * 推迟到维护窗口执行的工作
+ *
+ * @property expectedYieldKb 预期收益。窗口内按此从高到低执行
+ * @property onSkipped 窗口因亮屏而关闭, 本工作未执行时调用
+ * @property action 在窗口线程中同步执行
+ */
+class MaintenanceWork(
+    val name: String,
+    val expectedYieldKb: Long,
+    val onSkipped: Runnable? = null,
+    val action: Runnable
+)
+
+fun interface MaintenanceParticipant {
+    /**
+     * 在维护窗口开启时调用, 将推迟的工作放入[works]
+     */
+    fun collectMaintenanceWork(works: MutableList<MaintenanceWork>)
+}
+
+fun interface DeviceStateListener {
+    fun onDeviceStateChanged(interactive: Boolean, charging: Boolean)
+}
+
+/**
+ * 亮/熄屏与充电状态的来源
+ */
+interface DeviceStateSource {
+    fun start(listener: DeviceStateListener)
+}
+
+/**
+ * 通过系统广播获取亮/熄屏与充电状态
+ *
+ * 获取AMS时系统服务尚未就绪, 注册失败则每隔[RETRY_DELAY_MILLIS]重试
+ */
+class BroadcastDeviceStateSource @JvmOverloads constructor(
+    private val contextProvider: () -> Context?,
+    private val executor: ScheduledExecutorService = commonScheduledExecutor
+) : DeviceStateSource, ILogger {
+
+    // 注册时以PowerManager.isInteractive初始化
+    @Volatile
+    private var interactive = false
+
+    @Volatile
+    private var charging = false
+
+    override fun start(listener: DeviceStateListener) {
+        executor.execute { register(listener, 0) }
+    }
+
+    private fun register(listener: DeviceStateListener, retryCount: Int) {
+        val context: Context
+        try {
+            context = contextProvider()!!
+            // 先确定初始的亮/熄屏状态, 使注册后立即到达的广播不会带着默认值通知
+            interactive = context.getSystemService(PowerManager::class.java)!!.isInteractive
+            val receiver = object : BroadcastReceiver() {
+                override fun onReceive(context: Context?, intent: Intent?) {
+                    when (intent?.action) {
+                        Intent.ACTION_SCREEN_ON -> interactive = true
+                        Intent.ACTION_SCREEN_OFF -> interactive = false
+                        Intent.ACTION_POWER_CONNECTED -> charging = true
+                        Intent.ACTION_POWER_DISCONNECTED -> charging = false
+                        else -> return
+                    }
+                    listener.onDeviceStateChanged(interactive, charging)
+                }
+            }
+            val filter = IntentFilter().apply {
+                addAction(Intent.ACTION_SCREEN_ON)
+                addAction(Intent.ACTION_SCREEN_OFF)
+                addAction(Intent.ACTION_POWER_CONNECTED)
+                addAction(Intent.ACTION_POWER_DISCONNECTED)
+            }
+            context.registerReceiver(receiver, filter)
+        } catch (t: Throwable) {
+            if (retryCount >= MAX_RETRY_COUNT) {
+                logger.error("维护窗口: 监听亮/熄屏与充电状态失败", t)
+                return
+            }
+            executor.schedule({
+                register(listener, retryCount + 1)
+            }, RETRY_DELAY_MILLIS, TimeUnit.MILLISECONDS)
+            return
+        }
+        logger.info("维护窗口: 已监听亮/熄屏与充电状态")
+
+        // 初始状态。充电状态读取失败时视为未充电, 等待广播更新
+        runCatchThrowable {
+            charging = context.registerReceiver(null, IntentFilter(Intent.ACTION_BATTERY_CHANGED))
+                ?.getIntExtra(BatteryManager.EXTRA_PLUGGED, 0)
+                ?.let { it != 0 } ?: false
+        }
+        listener.onDeviceStateChanged(interactive, charging)
+    }
+
+    companion object {
+        const val RETRY_DELAY_MILLIS = 30L * 1000
+        const val MAX_RETRY_COUNT = 20
+    }
+}
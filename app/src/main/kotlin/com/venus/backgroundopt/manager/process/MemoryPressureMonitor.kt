@@ -0,0 +1,306 @@
+/*
+ * Copyright (C) 2023 BackgroundOpt
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.venus.backgroundopt.manager.process
+
+import android.os.SystemClock
+import android.system.ErrnoException
+import android.system.Os
+import android.system.OsConstants
+import android.system.StructPollfd
+import com.venus.backgroundopt.environment.hook.HookCommonProperties
+import com.venus.backgroundopt.utils.PressureStallParser
+import com.venus.backgroundopt.utils.ProcKbFieldParser
+import com.venus.backgroundopt.utils.concurrent.commonScheduledExecutor
+import com.venus.backgroundopt.utils.log.ILogger
+import com.venus.backgroundopt.utils.message.MessageFlag
+import java.io.File
+import java.util.concurrent.ScheduledExecutorService
+import java.util.concurrent.ScheduledFuture
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicBoolean
+import java.util.concurrent.atomic.AtomicLong
+import kotlin.concurrent.thread
+
+/**
+ * 内存压力(PSI)监视器
+ *
+ * 读取/proc/pressure/memory, 根据some/full的avg10划分压力等级([MemoryPressureLevel]), 并通知[listener]:
+ * 1. 优先向该文件写入触发器("some <stall_us> <window_us>"), 在单独的线程中poll()等待内核通知;
+ * poll()超时时主动采样一次, 以便发现压力的回落
+ * 2. 触发器注册失败(内核不支持、权限不足)或失效后, 回退为在[executor]中每隔[sampleIntervalMillis]采样一次,
+ * 此时不再占用单独的线程
+ *
+ * 等级变化时, 以及处于[MemoryPressureLevel.HIGH]时的每次采样都会通知[listener]。接收方自行限制执行频率
+ *
+ * @param pressureFilePath 压力文件。可指向任意格式相同的普通文件(此时应关闭[triggerEnabled])
+ * @param clock 采样时间([MemoryPressureSample.uptimeMillis])的来源
+ *
+ * @author XingC
+ * @date 2026/10/18
+ */
+class MemoryPressureMonitor @JvmOverloads constructor(
+    private val listener: MemoryPressureListener,
+    private val someHighPercent: Double = HookCommonProperties.memoryPressureSomeHighPercent.toDouble(),
+    private val fullHighPercent: Double = HookCommonProperties.memoryPressureFullHighPercent.toDouble(),
+    private val someLowPercent: Double = HookCommonProperties.memoryPressureSomeLowPercent.toDouble(),
+    private val pressureFilePath: String = DEFAULT_PRESSURE_FILE_PATH,
+    private val triggerEnabled: Boolean = pressureFilePath == DEFAULT_PRESSURE_FILE_PATH,
+    private val sampleIntervalMillis: Long = DEFAULT_SAMPLE_INTERVAL_MILLIS,
+    private val clock: () -> Long = SystemClock::uptimeMillis,
+    private val executor: ScheduledExecutorService = commonScheduledExecutor
+) : ILogger {
+    fun interface MemoryPressureListener {
+        fun onMemoryPressure(level: MemoryPressureLevel, sample: MemoryPressureSample)
+    }
+
+    private val started = AtomicBoolean(false)
+
+    @Volatile
+    private var stopped = false
+
+    @Volatile
+    private var samplingFuture: ScheduledFuture<*>? = null
+
+    @Volatile
+    var level = MemoryPressureLevel.NORMAL
+        private set
+
+    @Volatile
+    var lastSample: MemoryPressureSample? = null
+        private set
+
+    // 当前是否以触发器的方式工作
+    @Volatile
+    var isTriggerMode = false
+        private set
+
+    val triggerEventCount = AtomicLong(0)
+    val sampleCount = AtomicLong(0)
+
+    // 同一时间只在触发器线程或[executor]中的一处使用
+    private val parseBuffers = ProcKbFieldParser.ParseBuffers(PSI_BUFFER_SIZE)
+
+    fun start() {
+        if (!started.compareAndSet(false, true)) {
+            return
+        }
+        if (!File(pressureFilePath).exists()) {
+            logger.warn("内核不支持PSI(${pressureFilePath}不存在), 内存压力监视已禁用")
+            return
+        }
+        if (!triggerEnabled) {
+            startSampling()
+            return
+        }
+        // poll()会一直阻塞, 需要单独的线程
+        thread(name = "BackgroundOpt-MemoryPressureMonitor", isDaemon = true) {
+            try {
+                pollTrigger()
+            } catch (t: Throwable) {
+                logger.warn("PSI触发器不可用, 改为每${sampleIntervalMillis}ms采样一次", t)
+            }
+            startSampling()
+        }
+    }
+
+    /**
+     * 停止采样。触发器线程在下一次poll()返回后退出
+     */
+    fun stop() {
+        stopped = true
+        samplingFuture?.cancel(false)
+    }
+
+    /* *************************************************************************
+     *                                                                         *
+     * 触发器                                                                   *
+     *                                                                         *
+     **************************************************************************/
+    private fun pollTrigger() {
+        val fd = Os.open(pressureFilePath, OsConstants.O_RDWR or OsConstants.O_NONBLOCK, 0)
+        try {
+            // 窗口内stall时长达到some高阈值对应的比例时触发。内核要求以'\0'结尾
+            val stallUs = (TRIGGER_WINDOW_US * someHighPercent / 100).toLong()
+                .coerceIn(MIN_TRIGGER_STALL_US, TRIGGER_WINDOW_US)
+            val trigger = "some $stallUs $TRIGGER_WINDOW_US\u0000".toByteArray(Charsets.US_ASCII)
+            Os.write(fd, trigger, 0, trigger.size)
+            isTriggerMode = true
+            logger.info("PSI触发器已注册: some ${stallUs}us / ${TRIGGER_WINDOW_US}us")
+
+            val pollFds = arrayOf(StructPollfd().apply {
+                this.fd = fd
+                events = OsConstants.POLLPRI.toShort()
+            })
+            while (!stopped) {
+                pollFds[0].revents = 0
+                val readyCount = try {
+                    Os.poll(pollFds, sampleIntervalMillis.toInt())
+                } catch (e: ErrnoException) {
+                    if (e.errno == OsConstants.EINTR) {
+                        continue
+                    }
+                    throw e
+                }
+                val revents = pollFds[0].revents.toInt()
+                if (revents and OsConstants.POLLERR != 0) {
+                    // cgroup被移除等情况下触发器失效
+                    throw IllegalStateException("PSI触发器失效")
+                }
+                val triggered = readyCount > 0 && revents and OsConstants.POLLPRI != 0
+                if (triggered) {
+                    triggerEventCount.incrementAndGet()
+                }
+                sample(triggered)
+            }
+        } finally {
+            isTriggerMode = false
+            runCatching { Os.close(fd) }
+        }
+    }
+
+    /* *************************************************************************
+     *                                                                         *
+     * 采样                                                                     *
+     *                                                                         *
+     **************************************************************************/
+    private fun startSampling() {
+        val future = executor.scheduleWithFixedDelay({
+            try {
+                sample(triggered = false)
+            } catch (t: Throwable) {
+                logger.error("内存压力采样出错", t)
+            }
+        }, 0, sampleIntervalMillis, TimeUnit.MILLISECONDS)
+        samplingFuture = future
+        // 与stop()并发时, 保证不会留下未取消的采样
+        if (stopped) {
+            future.cancel(false)
+        }
+    }
+
+    internal fun sample(triggered: Boolean) {
+        val sample = readSample() ?: return
+        sampleCount.incrementAndGet()
+        lastSample = sample
+
+        val newLevel = when {
+            triggered
+                    || sample.someAvg10 >= someHighPercent
+                    || sample.fullAvg10 >= fullHighPercent -> MemoryPressureLevel.HIGH
+
+            sample.someAvg10 < someLowPercent -> MemoryPressureLevel.LOW
+            else -> MemoryPressureLevel.NORMAL
+        }
+        val oldLevel = level
+        level = newLevel
+        if (newLevel != oldLevel) {
+            logger.info("内存压力: $oldLevel -> $newLevel(some avg10=${sample.someAvg10}, full avg10=${sample.fullAvg10})")
+        }
+        if (newLevel != oldLevel || newLevel == MemoryPressureLevel.HIGH) {
+            try {
+                listener.onMemoryPressure(newLevel, sample)
+            } catch (t: Throwable) {
+                logger.error("内存压力回调出错", t)
+            }
+        }
+    }
+
+    private fun readSample(): MemoryPressureSample? {
+        val values = parseBuffers.longs
+        if (!PressureStallParser.parse(pressureFilePath, values, parseBuffers)) {
+            return null
+        }
+        return MemoryPressureSample().apply {
+            someAvg10 = values[PressureStallParser.SOME_AVG10] / 100.0
+            someAvg60 = values[PressureStallParser.SOME_AVG60] / 100.0
+            fullAvg10 = values[PressureStallParser.FULL_AVG10] / 100.0
+            fullAvg60 = values[PressureStallParser.FULL_AVG60] / 100.0
+            uptimeMillis = clock()
+        }
+    }
+
+    companion object {
+        const val DEFAULT_PRESSURE_FILE_PATH = "/proc/pressure/memory"
+
+        const val DEFAULT_SAMPLE_INTERVAL_MILLIS = 5000L
+
+        // 触发器的统计窗口: 1s
+        private const val TRIGGER_WINDOW_US = 1_000_000L
+
+        private const val MIN_TRIGGER_STALL_US = 10_000L
+
+        // PSI文件只有两行
+        private const val PSI_BUFFER_SIZE = 256
+
+        // 接收方两次提前执行之间的最小间隔
+        const val PULL_FORWARD_MIN_INTERVAL_MILLIS = 60_000L
+    }
+}
+
+/**
+ * 内存压力等级
+ *
+ * @property throttleScale 压缩与后台内存回收的间隔倍率
+ */
+enum class MemoryPressureLevel(val throttleScale: Double) {
+    LOW(2.0),
+    NORMAL(1.0),
+    HIGH(0.5),
+    ;
+
+    fun scale(millis: Long): Long = (millis * throttleScale).toLong()
+}
+
+/**
+ * 限制高压力时提前执行的频率: 两次提前执行之间至少间隔[minIntervalMillis]
+ */
+class PullForwardLimiter @JvmOverloads constructor(
+    private val minIntervalMillis: Long = MemoryPressureMonitor.PULL_FORWARD_MIN_INTERVAL_MILLIS,
+    private val clock: () -> Long = SystemClock::uptimeMillis
+) {
+    private val lastMillis = AtomicLong(NEVER)
+
+    /**
+     * @return 本次是否可以提前执行
+     */
+    fun tryAcquire(): Boolean {
+        val now = clock()
+        val last = lastMillis.get()
+        if (last != NEVER && now - last < minIntervalMillis) {
+            return false
+        }
+        return lastMillis.compareAndSet(last, now)
+    }
+
+    private companion object {
+        const val NEVER = Long.MIN_VALUE
+    }
+}
+
+/**
+ * 一次PSI采样(百分比)
+ */
+class MemoryPressureSample : MessageFlag {
+    var someAvg10 = 0.0
+    var someAvg60 = 0.0
+    var fullAvg10 = 0.0
+    var fullAvg60 = 0.0
+
+    // SystemClock.uptimeMillis()
+    var uptimeMillis = 0L
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright (C) 2023 BackgroundOpt
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.venus.backgroundopt.manager.process
+
+import com.venus.backgroundopt.utils.concurrent.ConcurrentIntObjectMap
+import java.util.concurrent.ScheduledExecutorService
+import java.util.concurrent.ScheduledFuture
+import java.util.concurrent.TimeUnit
+
+/**
+ * 以pid为key的延迟任务表
+ *
+ * - 同一pid只保留最新提交的任务, 提交时取消旧任务
+ * - 任务执行前(按身份)将自己移出表, 已不在表中的任务不会执行
+ * - 进程被移除时取消并移出表
+ *
+ * 因此表中只会留下尚未执行的任务, 所有进程被移除后表为空
+ *
+ * @author XingC
+ * @date 2026/10/18
+ */
+class PendingCompactTasks(
+    private val executor: ScheduledExecutorService,
+    private val delayMillis: Long
+) {
+    private val tasks = ConcurrentIntObjectMap<Task>()
+
+    val size: Int get() = tasks.size
+
+    /**
+     * 提交pid的延迟任务, 并取消其之前的任务
+     */
+    fun schedule(pid: Int, block: Runnable) = schedule(pid, delayMillis, block)
+
+    /**
+     * 以指定的延迟提交pid的任务, 并取消其之前的任务
+     */
+    fun schedule(pid: Int, delayMillis: Long, block: Runnable) {
+        val task = Task(pid, block)
+        // 先放入表中再提交: 任务执行时一定能找到自己, 不会在表中留下已执行的任务
+        tasks.put(pid, task)?.cancel()
+        task.future = executor.schedule(task, delayMillis, TimeUnit.MILLISECONDS)
+    }
+
+    /**
+     * 立即执行所有尚未开始的任务
+     *
+     * @return 提前执行的任务数
+     */
+    fun runAllNow(): Int {
+        var count = 0
+        tasks.forEachValue { task ->
+            // 取消成功说明任务尚未开始执行
+            if (task.future?.cancel(false) == true) {
+                count++
+                executor.execute(task)
+            }
+        }
+        return count
+    }
+
+    /**
+     * 遍历等待中的任务。弱一致性: 遍历期间提交或执行的任务可能不可见
+     *
+     * @param action (pid, 距离执行的剩余时间(ms))
+     */
+    fun forEachPending(action: (Int, Long) -> Unit) {
+        tasks.forEach { pid, task ->
+            task.future?.let { future -> action(pid, future.getDelay(TimeUnit.MILLISECONDS)) }
+        }
+    }
+
+    /**
+     * 取消pid等待中的任务
+     */
+    fun cancel(pid: Int) {
+        // 多数调用时并没有等待中的任务, 先以无锁的方式判断
+        tasks[pid]?.let { task ->
+            if (tasks.remove(pid, task)) {
+                task.cancel()
+            }
+        }
+    }
+
+    private inner class Task(
+        private val pid: Int,
+        private val block: Runnable
+    ) : Runnable {
+        @Volatile
+        var future: ScheduledFuture<*>? = null
+
+        override fun run() {
+            // 已被取消或替换
+            if (!tasks.remove(pid, this)) {
+                return
+            }
+            block.run()
+        }
+
+        fun cancel() {
+            future?.cancel(false)
+        }
+    }
+}
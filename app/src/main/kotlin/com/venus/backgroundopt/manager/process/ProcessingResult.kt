@@ -29,4 +29,7 @@ open class ProcessingResult : MessageFlag {
 
     // 上次执行结果
     var lastProcessingCode: Int = 0
+
+    // 上次使用的回收等级。用于[AbstractAppOptimizeManager.AppOptimizeEnum.PROCESS_MEM_TRIM]
+    var trimLevel: Int = 0
 }
\ No newline at end of file
@@ -0,0 +1,183 @@
+/*
+ * Copyright (C) 2023 BackgroundOpt
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.venus.backgroundopt.manager.process
+
+import com.venus.backgroundopt.environment.hook.HookCommonProperties
+import com.venus.backgroundopt.utils.ProcessMemoryUtils
+import com.venus.backgroundopt.utils.concurrent.commonScheduledExecutor
+import com.venus.backgroundopt.utils.log.ILogger
+import com.venus.backgroundopt.utils.message.MessageFlag
+import java.io.File
+import java.util.concurrent.ScheduledExecutorService
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicBoolean
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * 交换区(zram)剩余空间守卫
+ *
+ * 每隔[sampleIntervalMillis]读取/proc/meminfo与[zramMmStatPath], 剩余空间取两者中较小的比例:
+ * 1. SwapFree / SwapTotal
+ * 2. zram设置了mem_limit时, (mem_limit - mem_used_total) / mem_limit
+ *
+ * 据此划分等级([SwapHeadroomLevel]), 等级变化时通知[listener]
+ *
+ * @param zramMmStatPath zram统计文件。不存在时只根据/proc/meminfo判断
+ *
+ * @author XingC
+ * @date 2026/10/18
+ */
+class SwapHeadroomGuard @JvmOverloads constructor(
+    private val listener: SwapHeadroomListener,
+    private val lowPercent: Double = HookCommonProperties.swapHeadroomLowPercent.toDouble(),
+    private val criticalPercent: Double = HookCommonProperties.swapHeadroomCriticalPercent.toDouble(),
+    private val zramMmStatPath: String = DEFAULT_ZRAM_MM_STAT_PATH,
+    private val sampleIntervalMillis: Long = DEFAULT_SAMPLE_INTERVAL_MILLIS,
+    private val executor: ScheduledExecutorService = commonScheduledExecutor
+) : ILogger {
+    fun interface SwapHeadroomListener {
+        fun onSwapHeadroom(level: SwapHeadroomLevel)
+    }
+
+    private val started = AtomicBoolean(false)
+
+    @Volatile
+    var level = SwapHeadroomLevel.NORMAL
+        private set
+
+    @Volatile
+    var lastSample: SwapHeadroomSample? = null
+        private set
+
+    val sampleCount = AtomicLong(0)
+
+    fun start() {
+        if (!started.compareAndSet(false, true)) {
+            return
+        }
+        executor.scheduleWithFixedDelay({
+            try {
+                sample()
+            } catch (t: Throwable) {
+                logger.error("交换区采样出错", t)
+            }
+        }, 0, sampleIntervalMillis, TimeUnit.MILLISECONDS)
+        logger.info("交换区剩余空间守卫: 低于${lowPercent}%降级FULL压缩, 低于${criticalPercent}%停止后台gc")
+    }
+
+    private fun sample() {
+        val swap = ProcessMemoryUtils.readSystemSwap() ?: return
+        sampleCount.incrementAndGet()
+        val sample = SwapHeadroomSample().apply {
+            swapTotalKb = swap.totalKb
+            swapFreeKb = swap.freeKb
+            readZramMmStat(this)
+            headroomPercent = computeHeadroomPercent()
+        }
+        lastSample = sample
+
+        val newLevel = when {
+            sample.swapTotalKb <= 0 -> SwapHeadroomLevel.NO_SWAP
+            sample.headroomPercent < criticalPercent -> SwapHeadroomLevel.CRITICAL
+            sample.headroomPercent < lowPercent -> SwapHeadroomLevel.LOW
+            else -> SwapHeadroomLevel.NORMAL
+        }
+        if (newLevel != level) {
+            level = newLevel
+            logger.info("交换区剩余: ${"%.1f".format(sample.headroomPercent)}%, 等级: ${newLevel.name}")
+            listener.onSwapHeadroom(newLevel)
+        }
+    }
+
+    /**
+     * mm_stat为一行以空白分隔的数字:
+     * orig_data_size compr_data_size mem_used_total mem_limit mem_used_max same_pages pages_compacted ...
+     */
+    private fun readZramMmStat(sample: SwapHeadroomSample) {
+        val file = File(zramMmStatPath)
+        if (!file.exists()) {
+            return
+        }
+        val fields = try {
+            file.readText().trim().split(WHITESPACE_REGEX)
+        } catch (t: Throwable) {
+            return
+        }
+        if (fields.size < 4) {
+            return
+        }
+        sample.zramOrigDataBytes = fields[0].toLongOrNull() ?: -1L
+        sample.zramComprDataBytes = fields[1].toLongOrNull() ?: -1L
+        sample.zramMemUsedBytes = fields[2].toLongOrNull() ?: -1L
+        sample.zramMemLimitBytes = fields[3].toLongOrNull() ?: -1L
+    }
+
+    companion object {
+        const val DEFAULT_ZRAM_MM_STAT_PATH = "/sys/block/zram0/mm_stat"
+        const val DEFAULT_SAMPLE_INTERVAL_MILLIS = 10L * 1000
+
+        private val WHITESPACE_REGEX = Regex("\\s+")
+    }
+}
+
+/**
+ * 交换区剩余空间等级
+ *
+ * @property downgradeFull FULL压缩是否降级为FILE
+ * @property suppressGc 是否停止后台gc。gc会访问已换出的页面, 交换区将满时造成大量换入换出
+ */
+enum class SwapHeadroomLevel(val downgradeFull: Boolean, val suppressGc: Boolean) {
+    NORMAL(false, false),
+    LOW(true, false),
+    CRITICAL(true, true),
+
+    // 没有交换区, 匿名页无处可去
+    NO_SWAP(true, false),
+}
+
+/**
+ * 交换区采样。未知的值 = -1
+ */
+class SwapHeadroomSample : MessageFlag {
+    var swapTotalKb = -1L
+    var swapFreeKb = -1L
+    var zramOrigDataBytes = -1L
+    var zramComprDataBytes = -1L
+    var zramMemUsedBytes = -1L
+    var zramMemLimitBytes = -1L
+    var headroomPercent = 0.0
+
+    // zram压缩率(原始大小 / 压缩后大小)
+    val zramCompressionRatio: Double
+        get() = if (zramComprDataBytes > 0 && zramOrigDataBytes >= 0) {
+            zramOrigDataBytes.toDouble() / zramComprDataBytes
+        } else {
+            0.0
+        }
+
+    fun computeHeadroomPercent(): Double {
+        var percent = if (swapTotalKb > 0) swapFreeKb * 100.0 / swapTotalKb else 0.0
+        if (zramMemLimitBytes > 0 && zramMemUsedBytes >= 0) {
+            percent = minOf(
+                percent,
+                (zramMemLimitBytes - zramMemUsedBytes).coerceAtLeast(0L) * 100.0 / zramMemLimitBytes
+            )
+        }
+        return percent
+    }
+}
@@ -0,0 +1,318 @@
+/*
+ * Copyright (C) 2023 BackgroundOpt
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.venus.backgroundopt.manager.process
+
+import android.os.SystemClock
+import com.venus.backgroundopt.hook.handle.android.entity.ProcessRecord
+import com.venus.backgroundopt.utils.LatencyHistogram
+import com.venus.backgroundopt.utils.LatencyHistogramSnapshot
+import com.venus.backgroundopt.utils.ProcessMemorySnapshot
+import com.venus.backgroundopt.utils.ProcessMemoryUtils
+import com.venus.backgroundopt.utils.concurrent.commonScheduledExecutor
+import com.venus.backgroundopt.utils.log.ILogger
+import com.venus.backgroundopt.utils.message.MessageFlag
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ScheduledExecutorService
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.atomic.AtomicLongArray
+
+/**
+ * 内存回收(trim)与gc的效果统计
+ *
+ * 每次发送trim/gc时记录等级、调用耗时与是否失败; 成功发送的trim在[settleMillis]后再次读取进程内存,
+ * 以rss的减少量作为回收量, 同时记录进程交换区的变化量(gc由[GcCoordinator]测量后汇报)。
+ * 每次测量需读取两次smaps_rollup, 因此每个app、等级只有前[MEASURE_ALL_FIRST_COUNT]次全部测量,
+ * 之后每[MEASURE_SAMPLE_INTERVAL]次测量一次([sampleBefore])。
+ * 回收量同时按[RECLAIMED_BUCKET_LOWER_BOUNDS_KB]划分的区间计数, 以观察分布
+ *
+ * 按app、等级汇总, 最多保留[MAX_APP_COUNT]个app, 超出时移除最久没有事件的app
+ *
+ * @author XingC
+ * @date 2026/10/18
+ */
+class TrimEffectivenessTracker @JvmOverloads constructor(
+    val settleMillis: Long = DEFAULT_SETTLE_MILLIS,
+    private val executor: ScheduledExecutorService = commonScheduledExecutor
+) : ILogger {
+    /**
+     * 单个等级的统计
+     */
+    private class LevelStats(val trimLevel: Int) {
+        val sentCount = AtomicLong(0)
+        val failedCount = AtomicLong(0)
+        val measuredCount = AtomicLong(0)
+        val reclaimedKb = AtomicLong(0)
+        val swapDeltaKb = AtomicLong(0)
+
+        // 回收量低于[INEFFECTIVE_RECLAIM_KB]的次数
+        val ineffectiveCount = AtomicLong(0)
+        val callLatencyHistogram = LatencyHistogram(LATENCY_BUCKET_COUNT)
+
+        // 各回收量区间的次数
+        val reclaimedHistogram = AtomicLongArray(RECLAIMED_BUCKET_LOWER_BOUNDS_KB.size)
+
+        // 发送前请求测量的次数。用于决定是否抽样测量
+        val measureRequestCount = AtomicLong(0)
+
+        fun snapshot(): TrimLevelEffectiveness {
+            return TrimLevelEffectiveness().also { snapshot ->
+                snapshot.trimLevel = trimLevel
+                snapshot.sentCount = sentCount.get()
+                snapshot.failedCount = failedCount.get()
+                snapshot.measuredCount = measuredCount.get()
+                snapshot.reclaimedKb = reclaimedKb.get()
+                snapshot.swapDeltaKb = swapDeltaKb.get()
+                snapshot.ineffectiveCount = ineffectiveCount.get()
+                snapshot.callLatency = callLatencyHistogram.snapshot()
+                snapshot.reclaimedBucketLowerBoundsKb = RECLAIMED_BUCKET_LOWER_BOUNDS_KB
+                snapshot.reclaimedBucketCounts = LongArray(reclaimedHistogram.length()) { reclaimedHistogram.get(it) }
+            }
+        }
+    }
+
+    private class AppStats(val packageName: String) {
+        val levelStatsMap = ConcurrentHashMap<Int, LevelStats>(4)
+
+        @Volatile
+        var lastEventUptimeMillis = SystemClock.uptimeMillis()
+
+        fun getLevelStats(trimLevel: Int): LevelStats {
+            lastEventUptimeMillis = SystemClock.uptimeMillis()
+            return levelStatsMap.computeIfAbsent(trimLevel) { LevelStats(it) }
+        }
+    }
+
+    private val appStatsMap = ConcurrentHashMap<String, AppStats>()
+
+    val measureFailedCount = AtomicLong(0)
+
+    // 因抽样而未测量的次数
+    val unsampledCount = AtomicLong(0)
+
+    private fun getAppStats(packageName: String): AppStats {
+        appStatsMap[packageName]?.let { return it }
+        val appStats = appStatsMap.computeIfAbsent(packageName) { AppStats(it) }
+        if (appStatsMap.size > MAX_APP_COUNT) {
+            evictOldest()
+        }
+        return appStats
+    }
+
+    private fun evictOldest() {
+        appStatsMap.values.minByOrNull { it.lastEventUptimeMillis }?.let { oldest ->
+            appStatsMap.remove(oldest.packageName, oldest)
+        }
+    }
+
+    /* *************************************************************************
+     *                                                                         *
+     * 记录                                                                     *
+     *                                                                         *
+     **************************************************************************/
+    /**
+     * 读取发送前的进程内存。未被抽中或读取失败时返回null, 此次不测量回收量
+     */
+    fun sampleBefore(processRecord: ProcessRecord, trimLevel: Int): ProcessMemorySnapshot? {
+        val requestCount = getAppStats(processRecord.packageName)
+            .getLevelStats(trimLevel)
+            .measureRequestCount
+            .getAndIncrement()
+        if (!shouldMeasure(requestCount)) {
+            unsampledCount.incrementAndGet()
+            return null
+        }
+        return ProcessMemoryUtils.readProcessMemory(processRecord.pid)
+    }
+
+    /**
+     * 记录一次trim, 成功时在[settleMillis]后测量回收量
+     *
+     * @param memoryBefore [sampleBefore]的结果
+     * @param callLatencyNanos scheduleTrimMemory的调用耗时
+     */
+    fun recordTrim(
+        processRecord: ProcessRecord,
+        trimLevel: Int,
+        success: Boolean,
+        callLatencyNanos: Long,
+        memoryBefore: ProcessMemorySnapshot?
+    ) {
+        recordSent(processRecord.packageName, trimLevel, success, callLatencyNanos)
+        if (!success || memoryBefore == null) {
+            return
+        }
+        executor.schedule({
+            try {
+                // pid已被复用时, 读到的是其他进程的内存
+                if (processRecord.isSameProcessByStartTime()) {
+                    ProcessMemoryUtils.readProcessMemory(processRecord.pid)?.let { memoryAfter ->
+                        recordMeasured(processRecord.packageName, trimLevel, memoryBefore, memoryAfter)
+                    } ?: measureFailedCount.incrementAndGet()
+                }
+            } catch (t: Throwable) {
+                measureFailedCount.incrementAndGet()
+                logger.error("${processRecord.packageName}: trim回收量测量出错", t)
+            }
+        }, settleMillis, TimeUnit.MILLISECONDS)
+    }
+
+    fun recordSent(packageName: String, trimLevel: Int, success: Boolean, callLatencyNanos: Long) {
+        val levelStats = getAppStats(packageName).getLevelStats(trimLevel)
+        levelStats.sentCount.incrementAndGet()
+        if (success) {
+            levelStats.callLatencyHistogram.recordNanos(callLatencyNanos)
+        } else {
+            levelStats.failedCount.incrementAndGet()
+        }
+    }
+
+    fun recordMeasured(
+        packageName: String,
+        trimLevel: Int,
+        memoryBefore: ProcessMemorySnapshot,
+        memoryAfter: ProcessMemorySnapshot
+    ) {
+        val levelStats = getAppStats(packageName).getLevelStats(trimLevel)
+        val reclaimed = (memoryBefore.rssKb - memoryAfter.rssKb).coerceAtLeast(0)
+        levelStats.measuredCount.incrementAndGet()
+        levelStats.reclaimedKb.addAndGet(reclaimed)
+        if (memoryBefore.swapKb >= 0 && memoryAfter.swapKb >= 0) {
+            levelStats.swapDeltaKb.addAndGet(memoryAfter.swapKb - memoryBefore.swapKb)
+        }
+        if (reclaimed < INEFFECTIVE_RECLAIM_KB) {
+            levelStats.ineffectiveCount.incrementAndGet()
+        }
+        levelStats.reclaimedHistogram.incrementAndGet(reclaimedBucketIndex(reclaimed))
+    }
+
+    /* *************************************************************************
+     *                                                                         *
+     * 查询                                                                     *
+     *                                                                         *
+     **************************************************************************/
+    /**
+     * 按最近事件时间倒序
+     */
+    fun snapshot(): List<AppTrimEffectiveness> {
+        return appStatsMap.values
+            .sortedByDescending { it.lastEventUptimeMillis }
+            .map { appStats ->
+                AppTrimEffectiveness().also { snapshot ->
+                    snapshot.packageName = appStats.packageName
+                    snapshot.lastEventUptimeMillis = appStats.lastEventUptimeMillis
+                    snapshot.levels = appStats.levelStatsMap.values
+                        .sortedBy { it.trimLevel }
+                        .map { it.snapshot() }
+                    snapshot.unresponsive = isUnresponsive(snapshot.levels)
+                }
+            }
+    }
+
+    /**
+     * 已测量足够次数, 且绝大多数trim(不含gc)都没有回收到内存
+     */
+    private fun isUnresponsive(levels: List<TrimLevelEffectiveness>): Boolean {
+        var measuredCount = 0L
+        var ineffectiveCount = 0L
+        levels.forEach { level ->
+            if (level.trimLevel != GC_LEVEL) {
+                measuredCount += level.measuredCount
+                ineffectiveCount += level.ineffectiveCount
+            }
+        }
+        return measuredCount >= UNRESPONSIVE_MIN_MEASURED_COUNT
+                && ineffectiveCount >= measuredCount * UNRESPONSIVE_RATIO
+    }
+
+    companion object {
+        // gc在统计中使用的等级
+        const val GC_LEVEL = -1
+
+        const val DEFAULT_SETTLE_MILLIS = 5L * 1000
+
+        const val MAX_APP_COUNT = 256
+
+        // 最后一个桶的下界为 2^7 ms。scheduleTrimMemory是oneway调用, 通常远小于此值
+        private const val LATENCY_BUCKET_COUNT = 8
+
+        const val INEFFECTIVE_RECLAIM_KB = 512L
+
+        const val UNRESPONSIVE_MIN_MEASURED_COUNT = 5L
+        const val UNRESPONSIVE_RATIO = 0.8
+
+        // 足以判断是否对trim没有反应
+        const val MEASURE_ALL_FIRST_COUNT = UNRESPONSIVE_MIN_MEASURED_COUNT
+        const val MEASURE_SAMPLE_INTERVAL = 4L
+
+        // 回收量区间的下界: 0, 512kB, 1MB, 2MB ... 64MB
+        @JvmField
+        val RECLAIMED_BUCKET_LOWER_BOUNDS_KB = LongArray(9) { if (it == 0) 0L else INEFFECTIVE_RECLAIM_KB shl (it - 1) }
+
+        /**
+         * @param requestCount 该app、等级此前请求测量的次数
+         */
+        @JvmStatic
+        fun shouldMeasure(requestCount: Long): Boolean {
+            return requestCount < MEASURE_ALL_FIRST_COUNT
+                    || (requestCount - MEASURE_ALL_FIRST_COUNT) % MEASURE_SAMPLE_INTERVAL == 0L
+        }
+
+        @JvmStatic
+        fun reclaimedBucketIndex(reclaimedKb: Long): Int {
+            val bounds = RECLAIMED_BUCKET_LOWER_BOUNDS_KB
+            var index = bounds.size - 1
+            while (index > 0 && reclaimedKb < bounds[index]) {
+                index--
+            }
+            return index
+        }
+    }
+}
+
+/**
+ * app的trim/gc效果
+ */
+class AppTrimEffectiveness : MessageFlag {
+    var packageName: String = ""
+    var lastEventUptimeMillis = 0L
+    var levels: List<TrimLevelEffectiveness> = emptyList()
+
+    // 对trim几乎没有反应
+    var unresponsive = false
+}
+
+/**
+ * 单个等级的trim/gc效果(单位: kB)
+ *
+ * @see TrimEffectivenessTracker.GC_LEVEL
+ */
+class TrimLevelEffectiveness : MessageFlag {
+    var trimLevel = 0
+    var sentCount = 0L
+    var failedCount = 0L
+    var measuredCount = 0L
+    var reclaimedKb = 0L
+    var swapDeltaKb = 0L
+    var ineffectiveCount = 0L
+    var callLatency: LatencyHistogramSnapshot? = null
+
+    // 回收量分布: 各区间的下界与次数
+    var reclaimedBucketLowerBoundsKb: LongArray = LongArray(0)
+    var reclaimedBucketCounts: LongArray = LongArray(0)
+}
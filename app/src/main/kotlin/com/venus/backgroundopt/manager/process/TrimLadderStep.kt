@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2023 BackgroundOpt
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.venus.backgroundopt.manager.process
+
+import com.venus.backgroundopt.hook.handle.android.entity.ComponentCallbacks2
+import com.venus.backgroundopt.utils.message.handle.ForegroundProcTrimMemLevelEnum
+
+/**
+ * 后台进程的内存回收阶梯
+ *
+ * 随app处于后台([com.venus.backgroundopt.core.RunningInfo.AppGroupEnum.IDLE])的时长逐级升高回收等级,
+ * 系统内存紧张时额外升高一级, 内存宽裕时降低一级。app回到前台后重新从[UI_HIDDEN]开始
+ *
+ * @property minIdleMillis 处于后台至少多久才使用该等级
+ *
+ * @author XingC
+ * @date 2026/10/18
+ */
+enum class TrimLadderStep(
+    val uiName: String,
+    val trimLevel: Int,
+    val minIdleMillis: Long
+) {
+    UI_HIDDEN("UI不可见", ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN, 0L),
+    BACKGROUND("后台", ComponentCallbacks2.TRIM_MEMORY_BACKGROUND, 10L * 60 * 1000),
+    MODERATE("后台中部", ComponentCallbacks2.TRIM_MEMORY_MODERATE, 30L * 60 * 1000),
+    COMPLETE("即将被清理", ComponentCallbacks2.TRIM_MEMORY_COMPLETE, 2L * 60 * 60 * 1000);
+
+    companion object {
+        /**
+         * 计算下一级
+         *
+         * @param current 当前所处的阶梯。处于后台期间只升不降
+         * @param idleMillis 处于后台的时长
+         */
+        @JvmStatic
+        fun next(
+            current: TrimLadderStep?,
+            idleMillis: Long,
+            memoryPressureLevel: MemoryPressureLevel,
+            swapHeadroomLevel: SwapHeadroomLevel
+        ): TrimLadderStep {
+            var ordinal = entries.last { idleMillis >= it.minIdleMillis }.ordinal
+            if (memoryPressureLevel == MemoryPressureLevel.HIGH || swapHeadroomLevel == SwapHeadroomLevel.CRITICAL) {
+                ordinal++
+            } else if (memoryPressureLevel == MemoryPressureLevel.LOW) {
+                ordinal--
+            }
+            ordinal = ordinal.coerceIn(0, entries.size - 1)
+            current?.let { ordinal = maxOf(ordinal, it.ordinal) }
+            return entries[ordinal]
+        }
+
+        /**
+         * 回收等级的显示文字。包括前台使用的等级
+         */
+        @JvmStatic
+        fun getUiText(trimLevel: Int): String {
+            val uiName = entries.firstOrNull { it.trimLevel == trimLevel }?.uiName
+                ?: ForegroundProcTrimMemLevelEnum.entries.firstOrNull { it.level == trimLevel }?.uiName
+                ?: return trimLevel.toString()
+            return "${uiName}(${trimLevel})"
+        }
+    }
+}
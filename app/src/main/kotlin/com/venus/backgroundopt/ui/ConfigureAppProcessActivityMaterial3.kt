@@ -110,6 +110,9 @@ class ConfigureAppProcessActivityMaterial3 : BaseActivityMaterial3() {
             findViewById<TextView>(R.id.configureAppProcessVersionCodeText)?.let {
                 it.text = appItem.longVersionCode.toString()
             }
+            findViewById<TextView>(R.id.configureAppProcessCompactAggressivenessText)?.let {
+                it.text = appOptimizePolicy.compactAggressivenessUiText
+            }
 
             fun initAppMemoryOptimizeRadioGroup(
                 radioGroupId: Int,
@@ -78,6 +78,7 @@ class MainActivityMaterial3 : BaseActivityMaterial3(), ILogger {
             findViewById<TextView>(R.id.mainActivityModuleActiveText)?.setText(R.string.moduleActive)
             // 获取要展示的信息
             var socketPort: Int? = null
+            var socketProtocolVersion = 0
             var socketPortText: TextView? = null
             IMessageSender.sendDefault<HomePageModuleInfoMessage>(
                 context = this,
@@ -92,10 +93,12 @@ class MainActivityMaterial3 : BaseActivityMaterial3(), ILogger {
                 )
 
                 socketPort = homePageModuleInfoMessage.socketPort
+                socketProtocolVersion = homePageModuleInfoMessage.socketProtocolVersion
             }
             messageSender.init(
                 context = this,
                 socketPort = socketPort,
+                socketProtocolVersion = socketProtocolVersion,
                 socketPortText = socketPortText
             )
         }
@@ -18,10 +18,12 @@
 package com.venus.backgroundopt.ui
 
 import android.os.Bundle
+import android.text.InputType
 import androidx.preference.EditTextPreference
 import androidx.preference.ListPreference
 import androidx.preference.Preference
 import androidx.preference.SwitchPreference
+import com.venus.backgroundopt.environment.NumberPreference
 import com.venus.backgroundopt.environment.constants.PreferenceKeyConstants
 import com.venus.backgroundopt.ui.base.BasePreferenceFragment
 import com.venus.backgroundopt.utils.UiUtils
@@ -89,6 +91,26 @@ class SettingsPreferenceFragment : BasePreferenceFragment<SettingsActivity>() {
             messageKey = MessageKeyConstants.enableSimpleLmk
         )
 
+        // adj写入延迟
+        initNumberEditTextPreferenceActiveAfterRestart(NumberPreference.PROTECTIVE_ADJ_APPLY_DELAY)
+        initNumberEditTextPreferenceActiveAfterRestart(NumberPreference.COALESCED_ADJ_APPLY_DELAY)
+        initNumberEditTextPreferenceActiveAfterRestart(NumberPreference.COALESCED_ADJ_APPLY_MIN_DELAY)
+
+        // 内存压缩低收益阈值
+        initNumberEditTextPreferenceActiveAfterRestart(NumberPreference.COMPACT_LOW_YIELD_THRESHOLD)
+
+        // 内存压缩文件通道缓存上限
+        initNumberEditTextPreferenceActiveAfterRestart(NumberPreference.COMPACT_CHANNEL_CACHE_SIZE)
+
+        // 内存压力阈值
+        initNumberEditTextPreferenceActiveAfterRestart(NumberPreference.MEMORY_PRESSURE_SOME_HIGH)
+        initNumberEditTextPreferenceActiveAfterRestart(NumberPreference.MEMORY_PRESSURE_FULL_HIGH)
+        initNumberEditTextPreferenceActiveAfterRestart(NumberPreference.MEMORY_PRESSURE_SOME_LOW)
+
+        // 交换区剩余空间阈值
+        initNumberEditTextPreferenceActiveAfterRestart(NumberPreference.SWAP_HEADROOM_LOW)
+        initNumberEditTextPreferenceActiveAfterRestart(NumberPreference.SWAP_HEADROOM_CRITICAL)
+
         /*
             全局OOM
          */
@@ -198,6 +220,38 @@ class SettingsPreferenceFragment : BasePreferenceFragment<SettingsActivity>() {
         }
     }
 
+    /**
+     * 初始化整数类型、修改需要重启才能生效的[EditTextPreference]
+     * @param numberPreference NumberPreference 配置项及其单位、取值范围
+     */
+    private fun initNumberEditTextPreferenceActiveAfterRestart(
+        numberPreference: NumberPreference,
+    ) {
+        findPreference<EditTextPreference>(numberPreference.key)?.apply {
+            setOnBindEditTextListener { editText ->
+                editText.inputType = InputType.TYPE_CLASS_NUMBER
+                editText.hint = numberPreference.rangeText
+            }
+            setOnPreferenceChangeListener { _, newValue ->
+                val isValid = numberPreference.parse(newValue as? String) != null
+                UiUtils.createDialog(
+                    requireActivity(),
+                    text = if (isValid) {
+                        "更改此配置需要重启生效"
+                    } else {
+                        "参数值不合法, 取值范围: ${numberPreference.rangeText}"
+                    },
+                    cancelable = isValid,
+                    enablePositiveBtn = true,
+                    positiveBlock = { dialogInterface, _ ->
+                        dialogInterface.dismiss()
+                    }
+                ).show()
+                isValid
+            }
+        }
+    }
+
     private fun initSwitchPreferenceChangeListener(
         switchPreference: SwitchPreference?,
         messageKey: String,
@@ -24,9 +24,12 @@ import android.widget.LinearLayout
 import android.widget.TextView
 import com.venus.backgroundopt.R
 import com.venus.backgroundopt.entity.AppItem
+import com.venus.backgroundopt.entity.base.BaseProcessInfoKt
 import com.venus.backgroundopt.manager.process.AbstractAppOptimizeManager.AppOptimizeEnum
+import com.venus.backgroundopt.manager.process.CompactYieldHistory
 import com.venus.backgroundopt.manager.process.ProcessCompactResultCode
 import com.venus.backgroundopt.ui.base.ShowInfoFromAppItemViewHolder
+import kotlin.math.abs
 
 /**
  * @author XingC
@@ -101,15 +104,58 @@ class ShowAppCompactListAdapter(
         } ?: run {
             textView.text = ""
         }
+
+        // 压缩收益
+        appItem.compactYieldHistory?.takeIf { it.compactCount > 0 }?.let { history ->
+            viewHolder.appItemCompactYieldLayout.visibility = View.VISIBLE
+            viewHolder.appItemCompactYieldText.text = getCompactYieldText(history)
+        } ?: run {
+            viewHolder.appItemCompactYieldLayout.visibility = View.GONE
+        }
     }
 
+    /**
+     * 最近一次回收量(交换区增长量) | 最近几次的回收量 | 平均回收量 | 退避等级
+     */
+    private fun getCompactYieldText(history: CompactYieldHistory): String {
+        val records = history.records
+        val last = records.firstOrNull()
+        return buildString {
+            last?.let { record ->
+                append(getKbUiText(record.reclaimedKb))
+                if (record.swapDeltaKb != 0L) {
+                    append("(swap ")
+                    append(if (record.swapDeltaKb > 0) '+' else '-')
+                    append(getKbUiText(abs(record.swapDeltaKb)))
+                    append(')')
+                }
+            }
+            if (records.size > 1) {
+                append(" | ")
+                records.asSequence().drop(1).joinTo(this, separator = ",") { record ->
+                    getKbUiText(record.reclaimedKb)
+                }
+            }
+            append(" | avg ")
+            append(getKbUiText(history.averageReclaimedKb))
+            append(" | x")
+            append(history.throttleScale)
+        }
+    }
+
+    private fun getKbUiText(kb: Long): String = BaseProcessInfoKt.getRssUiText(kb * 1024)
+
     class ShowAppCompactListViewHolder(itemView: View) :
         ShowProcessInfoFromAppItemViewHolder(itemView) {
         var appItemLastProcessingResultText: TextView
+        var appItemCompactYieldLayout: LinearLayout
+        var appItemCompactYieldText: TextView
 
         init {
             appItemLastProcessingResultText =
                 itemView.findViewById(R.id.appItemLastProcessingResultText)
+            appItemCompactYieldLayout = itemView.findViewById(R.id.appItemCompactYieldLayout)
+            appItemCompactYieldText = itemView.findViewById(R.id.appItemCompactYieldText)
         }
     }
 }
\ No newline at end of file
@@ -25,6 +25,8 @@ import android.widget.TextView
 import com.venus.backgroundopt.R
 import com.venus.backgroundopt.entity.AppItem
 import com.venus.backgroundopt.environment.PreferenceDefaultValue
+import com.venus.backgroundopt.manager.process.AbstractAppOptimizeManager.AppOptimizeEnum
+import com.venus.backgroundopt.manager.process.TrimLadderStep
 import com.venus.backgroundopt.ui.base.ShowInfoFromAppItemViewHolder
 import com.venus.backgroundopt.utils.message.handle.BackgroundTasksMessageHandler
 
@@ -125,6 +127,16 @@ class ShowBackgroundTasksAdapter(
             viewHolder.appItemBackgroundGcText,
             enablePolicyBackgroundGc
         )
+
+        // 上一次的回收等级
+        appItem.lastProcessingResultMap[AppOptimizeEnum.PROCESS_MEM_TRIM]
+            ?.takeIf { it.trimLevel > 0 }
+            ?.let { processingResult ->
+                viewHolder.appItemTrimLevelLayout.visibility = View.VISIBLE
+                viewHolder.appItemTrimLevelText.text = TrimLadderStep.getUiText(processingResult.trimLevel)
+            } ?: run {
+            viewHolder.appItemTrimLevelLayout.visibility = View.GONE
+        }
     }
 
     private fun setAppOptimizePolicyTextVisible(textView: TextView, isVisible: Boolean) {
@@ -142,12 +154,18 @@ class ShowBackgroundTasksAdapter(
         val appItemBackgroundTrimMemText: TextView
         val appItemBackgroundGcText: TextView
 
+        val appItemTrimLevelLayout: LinearLayout
+        val appItemTrimLevelText: TextView
+
         init {
             appItemTipText1 = itemView.findViewById(R.id.processName)
 
             appItemForegroundTrimMemText = itemView.findViewById(R.id.appItemForegroundTrimMemText)
             appItemBackgroundTrimMemText = itemView.findViewById(R.id.appItemBackgroundTrimMemText)
             appItemBackgroundGcText = itemView.findViewById(R.id.appItemBackgroundGcText)
+
+            appItemTrimLevelLayout = itemView.findViewById(R.id.appItemTrimLevelLayout)
+            appItemTrimLevelText = itemView.findViewById(R.id.appItemTrimLevelText)
         }
     }
 }
\ No newline at end of file
@@ -159,6 +159,12 @@ abstract class ShowProcessInfoFromAppItemAdapter(
                             )?.text = appItem.oomAdjScore.toString()
                             // 设置当前adj
                             findViewById<TextView>(R.id.curAdjText)?.text = appItem.curAdj.toString()
+                            // 设置adj变化频率
+                            findViewById<TextView>(R.id.adjChurnRateText)?.text =
+                                "%.2f/s (%dms)".format(
+                                    processRunningInfo.adjChurnRate,
+                                    processRunningInfo.adjApplyWindowMillis
+                                )
                         },
                         titleStr = "进程信息",
                         enablePositiveBtn = true
@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) 2023 BackgroundOpt
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.venus.backgroundopt.utils
+
+import com.venus.backgroundopt.utils.message.IMessage
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.atomic.AtomicLongArray
+
+/**
+ * 延迟直方图
+ *
+ * 以毫秒为单位, 按2的幂划分桶: [0, 1), [1, 2), [2, 4) ... 最后一个桶收纳所有更大的值。
+ * 记录时只做原子自增, 不产生额外的对象。
+ *
+ * @author XingC
+ * @date 2026/10/18
+ */
+class LatencyHistogram(
+    private val bucketCount: Int = DEFAULT_BUCKET_COUNT
+) {
+    private val buckets = AtomicLongArray(bucketCount)
+    private val count = AtomicLong(0)
+    private val sumMillis = AtomicLong(0)
+    private val maxMillis = AtomicLong(0)
+
+    fun recordNanos(latencyNanos: Long) {
+        recordMillis(latencyNanos / 1_000_000L)
+    }
+
+    fun recordMillis(latencyMillis: Long) {
+        val millis = if (latencyMillis < 0) 0 else latencyMillis
+        buckets.incrementAndGet(bucketIndex(millis))
+        count.incrementAndGet()
+        sumMillis.addAndGet(millis)
+
+        var curMax = maxMillis.get()
+        while (millis > curMax && !maxMillis.compareAndSet(curMax, millis)) {
+            curMax = maxMillis.get()
+        }
+    }
+
+    private fun bucketIndex(millis: Long): Int {
+        // 0 -> 0, 1 -> 1, [2, 4) -> 2 ...
+        val index = 64 - java.lang.Long.numberOfLeadingZeros(millis)
+        return if (index < bucketCount) index else bucketCount - 1
+    }
+
+    /**
+     * 估算分位数。返回值为该分位数所在桶的上界
+     *
+     * @param percentile (0, 100]
+     */
+    fun percentileMillis(percentile: Double): Long {
+        val total = count.get()
+        if (total == 0L) {
+            return 0L
+        }
+        val target = kotlin.math.ceil(total * percentile / 100.0).toLong()
+        var accumulated = 0L
+        for (i in 0 until bucketCount) {
+            accumulated += buckets.get(i)
+            if (accumulated >= target) {
+                return bucketUpperBoundMillis(i)
+            }
+        }
+        return maxMillis.get()
+    }
+
+    private fun bucketUpperBoundMillis(index: Int): Long {
+        return if (index == bucketCount - 1) maxMillis.get() else 1L shl index
+    }
+
+    fun snapshot(): LatencyHistogramSnapshot {
+        return LatencyHistogramSnapshot().also { snapshot ->
+            snapshot.bucketUpperBoundsMillis = LongArray(bucketCount) { bucketUpperBoundMillis(it) }
+            snapshot.bucketCounts = LongArray(bucketCount) { buckets.get(it) }
+            snapshot.count = count.get()
+            snapshot.meanMillis = if (snapshot.count == 0L) 0.0 else sumMillis.get().toDouble() / snapshot.count
+            snapshot.maxMillis = maxMillis.get()
+            snapshot.p50Millis = percentileMillis(50.0)
+            snapshot.p99Millis = percentileMillis(99.0)
+        }
+    }
+
+    fun reset() {
+        for (i in 0 until bucketCount) {
+            buckets.set(i, 0)
+        }
+        count.set(0)
+        sumMillis.set(0)
+        maxMillis.set(0)
+    }
+
+    companion object {
+        // 最后一个桶的下界为 2^15 ms, 约32s
+        const val DEFAULT_BUCKET_COUNT = 17
+    }
+}
+
+class LatencyHistogramSnapshot : IMessage {
+    var bucketUpperBoundsMillis: LongArray = LongArray(0)
+    var bucketCounts: LongArray = LongArray(0)
+    var count = 0L
+    var meanMillis = 0.0
+    var maxMillis = 0L
+    var p50Millis = 0L
+    var p99Millis = 0L
+}
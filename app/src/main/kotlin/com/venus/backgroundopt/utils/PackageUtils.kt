@@ -123,6 +123,7 @@ object PackageUtils {
                         curAdj = baseProcessInfo.curAdj
                         rssInBytes = baseProcessInfo.rssInBytes
                         lastProcessingResultMap = baseProcessInfo.lastProcessingResultMap
+                        compactYieldHistory = baseProcessInfo.compactYieldHistory
                     }
                 }
             }
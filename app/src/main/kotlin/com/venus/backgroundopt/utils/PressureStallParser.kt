@@ -0,0 +1,202 @@
+/*
+ * Copyright (C) 2023 BackgroundOpt
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.venus.backgroundopt.utils
+
+import java.io.FileInputStream
+
+/**
+ * /proc/pressure/下PSI文件的解析
+ *
+ * 格式:
+ * ```
+ * some avg10=0.00 avg60=0.00 avg300=0.00 total=0
+ * full avg10=0.00 avg60=0.00 avg300=0.00 total=0
+ * ```
+ * 与[ProcKbFieldParser]相同, 以字节为单位处理并复用调用方提供的缓冲区。
+ * 内核以两位小数输出平均值, 因此结果以百分之一为单位保存为整数
+ *
+ * @author XingC
+ * @date 2026/10/18
+ */
+object PressureStallParser {
+    // 结果下标
+    const val SOME_AVG10 = 0
+    const val SOME_AVG60 = 1
+    const val FULL_AVG10 = 2
+    const val FULL_AVG60 = 3
+    const val FIELD_COUNT = 4
+
+    private const val STATE_LINE_START = 0
+    private const val STATE_KEY = 1
+    private const val STATE_VALUE = 2
+    private const val STATE_SKIP = 3
+
+    private val SOME = "some".toByteArray(Charsets.US_ASCII)
+    private val FULL = "full".toByteArray(Charsets.US_ASCII)
+    private val AVG10 = "avg10".toByteArray(Charsets.US_ASCII)
+    private val AVG60 = "avg60".toByteArray(Charsets.US_ASCII)
+
+    // '\n'
+    private const val NEW_LINE: Byte = 10
+    // ' '
+    private const val SPACE: Byte = 32
+    // '='
+    private const val EQUALS: Byte = 61
+    // '.'
+    private const val DOT: Byte = 46
+    // '0'
+    private const val DIGIT_0: Byte = 48
+    // '9'
+    private const val DIGIT_9: Byte = 57
+
+    /**
+     * 解析文件
+     *
+     * @param out 长度至少为[FIELD_COUNT], 单位为0.01%。未出现的字段(如旧内核没有full行) = 0
+     * @return 读取成功 -> true
+     */
+    fun parse(path: String, out: LongArray, buffers: ProcKbFieldParser.ParseBuffers): Boolean {
+        val buffer = buffers.bytes
+        var length = 0
+        try {
+            FileInputStream(path).use { input ->
+                while (length < buffer.size) {
+                    val count = input.read(buffer, length, buffer.size - length)
+                    if (count < 0) {
+                        break
+                    }
+                    length += count
+                }
+            }
+        } catch (t: Throwable) {
+            return false
+        }
+        parse(buffer, length, out, buffers.keyBytes)
+        return true
+    }
+
+    /**
+     * 解析文件内容
+     *
+     * @param keyBuffer 存放字段名的缓冲区
+     */
+    fun parse(bytes: ByteArray, length: Int, out: LongArray, keyBuffer: ByteArray) {
+        out.fill(0L, 0, FIELD_COUNT)
+        var state = STATE_LINE_START
+        var keyLength = 0
+        // 当前行的结果下标偏移(some = 0, full = 2)。-1 = 不需要的行
+        var lineOffset = -1
+        var field = -1
+        var value = 0L
+        var fractionDigits = -1
+
+        var i = 0
+        while (i <= length) {
+            // 在末尾补一个换行, 处理最后一行没有换行符的情况
+            val b = if (i < length) bytes[i] else NEW_LINE
+            i++
+            when (state) {
+                STATE_LINE_START, STATE_KEY -> {
+                    when (b) {
+                        NEW_LINE -> {
+                            state = STATE_LINE_START
+                            keyLength = 0
+                        }
+
+                        SPACE -> {
+                            if (state == STATE_LINE_START) {
+                                lineOffset = when {
+                                    matches(keyBuffer, keyLength, SOME) -> SOME_AVG10
+                                    matches(keyBuffer, keyLength, FULL) -> FULL_AVG10
+                                    else -> -1
+                                }
+                                state = if (lineOffset >= 0) STATE_KEY else STATE_SKIP
+                            }
+                            keyLength = 0
+                        }
+
+                        EQUALS -> {
+                            field = when {
+                                state != STATE_KEY -> -1
+                                matches(keyBuffer, keyLength, AVG10) -> lineOffset
+                                matches(keyBuffer, keyLength, AVG60) -> lineOffset + 1
+                                else -> -1
+                            }
+                            value = 0L
+                            fractionDigits = -1
+                            state = STATE_VALUE
+                            keyLength = 0
+                        }
+
+                        else -> {
+                            if (keyLength < keyBuffer.size) {
+                                keyBuffer[keyLength++] = b
+                            } else {
+                                state = STATE_SKIP
+                            }
+                        }
+                    }
+                }
+
+                STATE_VALUE -> {
+                    if (b >= DIGIT_0 && b <= DIGIT_9) {
+                        // 只保留两位小数
+                        if (fractionDigits < 2) {
+                            value = value * 10 + (b - DIGIT_0)
+                            if (fractionDigits >= 0) {
+                                fractionDigits++
+                            }
+                        }
+                    } else if (b == DOT && fractionDigits < 0) {
+                        fractionDigits = 0
+                    } else {
+                        if (field >= 0) {
+                            var scaled = value
+                            for (n in fractionDigits.coerceAtLeast(0) until 2) {
+                                scaled *= 10
+                            }
+                            out[field] = scaled
+                        }
+                        field = -1
+                        state = if (b == NEW_LINE) STATE_LINE_START else STATE_KEY
+                        keyLength = 0
+                    }
+                }
+
+                else -> {
+                    if (b == NEW_LINE) {
+                        state = STATE_LINE_START
+                        keyLength = 0
+                    }
+                }
+            }
+        }
+    }
+
+    private fun matches(keyBuffer: ByteArray, keyLength: Int, key: ByteArray): Boolean {
+        if (keyLength != key.size) {
+            return false
+        }
+        for (i in 0 until keyLength) {
+            if (keyBuffer[i] != key[i]) {
+                return false
+            }
+        }
+        return true
+    }
+}
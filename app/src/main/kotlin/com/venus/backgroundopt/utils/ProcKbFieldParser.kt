@@ -0,0 +1,185 @@
+/*
+ * Copyright (C) 2023 BackgroundOpt
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.venus.backgroundopt.utils
+
+import java.io.FileInputStream
+
+/**
+ * /proc下"Key:    1234 kB"格式文件的流式解析器
+ *
+ * 适用于smaps_rollup、smaps、status、meminfo等文件:
+ * 1. 以字节为单位逐个处理, 不按行创建String
+ * 2. 读取缓冲区与key缓冲区由调用方提供([ParseBuffers]), 可在同一线程内重复使用
+ * 3. 同一个key出现多次时(如smaps中每个映射区都有Rss)累加
+ *
+ * smaps中映射区的首行(地址范围等)在遇到冒号前就超出了key缓冲区或无法匹配, 会被整行跳过。
+ *
+ * @param keys 要提取的字段名(不含冒号)
+ *
+ * @author XingC
+ * @date 2026/10/18
+ */
+class ProcKbFieldParser(vararg keys: String) {
+    private val keyBytes: Array<ByteArray> = Array(keys.size) { keys[it].toByteArray(Charsets.US_ASCII) }
+
+    val fieldCount: Int get() = keyBytes.size
+
+    /**
+     * 解析文件
+     *
+     * @param out 与keys一一对应的结果(单位与文件一致, 一般为kB)。未出现的字段 = -1
+     * @return 读取成功 -> true
+     */
+    fun parse(path: String, out: LongArray, buffers: ParseBuffers): Boolean {
+        out.fill(-1L, 0, keyBytes.size)
+        val buffer = buffers.bytes
+        val keyBuffer = buffers.keyBytes
+
+        var state = STATE_KEY
+        var keyLength = 0
+        var field = -1
+        var value = 0L
+        var hasDigit = false
+
+        try {
+            FileInputStream(path).use { input ->
+                while (true) {
+                    val count = input.read(buffer)
+                    if (count < 0) {
+                        break
+                    }
+                    for (i in 0 until count) {
+                        val b = buffer[i]
+                        when (state) {
+                            STATE_KEY -> {
+                                if (b == COLON) {
+                                    field = matchKey(keyBuffer, keyLength)
+                                    state = if (field >= 0) STATE_VALUE else STATE_SKIP
+                                } else if (b == NEW_LINE) {
+                                    keyLength = 0
+                                } else if (keyLength < keyBuffer.size) {
+                                    keyBuffer[keyLength++] = b
+                                } else {
+                                    state = STATE_SKIP
+                                }
+                            }
+
+                            STATE_VALUE -> {
+                                if (b >= DIGIT_0 && b <= DIGIT_9) {
+                                    value = value * 10 + (b - DIGIT_0)
+                                    hasDigit = true
+                                } else if (b == NEW_LINE) {
+                                    if (hasDigit) {
+                                        commit(out, field, value)
+                                    }
+                                    state = STATE_KEY
+                                    keyLength = 0
+                                    value = 0L
+                                    hasDigit = false
+                                } else if (hasDigit || (b != SPACE && b != TAB)) {
+                                    // 数值结束(或遇到非数值内容), 丢弃本行剩余部分
+                                    if (hasDigit) {
+                                        commit(out, field, value)
+                                    }
+                                    state = STATE_SKIP
+                                }
+                            }
+
+                            else -> {
+                                if (b == NEW_LINE) {
+                                    state = STATE_KEY
+                                    keyLength = 0
+                                    value = 0L
+                                    hasDigit = false
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+        } catch (t: Throwable) {
+            return false
+        }
+        // 最后一行没有换行符
+        if (state == STATE_VALUE && hasDigit) {
+            commit(out, field, value)
+        }
+        return true
+    }
+
+    private fun commit(out: LongArray, field: Int, value: Long) {
+        val old = out[field]
+        out[field] = if (old >= 0) old + value else value
+    }
+
+    private fun matchKey(keyBuffer: ByteArray, keyLength: Int): Int {
+        for (index in keyBytes.indices) {
+            val key = keyBytes[index]
+            if (key.size != keyLength) {
+                continue
+            }
+            var matched = true
+            for (i in 0 until keyLength) {
+                if (key[i] != keyBuffer[i]) {
+                    matched = false
+                    break
+                }
+            }
+            if (matched) {
+                return index
+            }
+        }
+        return -1
+    }
+
+    /**
+     * 解析所需的缓冲区。非线程安全, 每个线程持有一份
+     */
+    class ParseBuffers(bufferSize: Int = DEFAULT_BUFFER_SIZE) {
+        val bytes = ByteArray(bufferSize)
+
+        // /proc下的字段名都很短, 超出的一定不是要提取的字段
+        val keyBytes = ByteArray(MAX_KEY_LENGTH)
+
+        // 供调用方存放结果
+        val longs = LongArray(MAX_FIELD_COUNT)
+    }
+
+    companion object {
+        const val DEFAULT_BUFFER_SIZE = 8192
+        const val MAX_KEY_LENGTH = 32
+        const val MAX_FIELD_COUNT = 16
+
+        private const val STATE_KEY = 0
+        private const val STATE_VALUE = 1
+        private const val STATE_SKIP = 2
+
+        // ':'
+        private const val COLON: Byte = 58
+        // '\n'
+        private const val NEW_LINE: Byte = 10
+        // ' '
+        private const val SPACE: Byte = 32
+        // '\t'
+        private const val TAB: Byte = 9
+        // '0'
+        private const val DIGIT_0: Byte = 48
+        // '9'
+        private const val DIGIT_9: Byte = 57
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright (C) 2023 BackgroundOpt
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.venus.backgroundopt.utils
+
+import java.util.concurrent.atomic.AtomicReferenceArray
+
+/**
+ * /proc/<pid>/下常用文件的路径
+ *
+ * 采样、压缩等会对同一进程反复读写这些文件, 缓存路径以避免每次拼接字符串。
+ * 缓存按pid直接映射到固定大小的槽位, 冲突时直接替换, 因此不需要随进程移除而清理
+ *
+ * @author XingC
+ * @date 2026/10/18
+ */
+class ProcPidPaths private constructor(
+    val pid: Int,
+    dir: String = "/proc/${pid}/"
+) {
+    val stat = dir + "stat"
+    val status = dir + "status"
+    val smaps = dir + "smaps"
+    val smapsRollup = dir + "smaps_rollup"
+    val oomScoreAdj = dir + "oom_score_adj"
+    val reclaim = dir + "reclaim"
+
+    companion object {
+        // 2的幂。大于一般的存活进程数
+        private const val CACHE_SIZE = 1024
+
+        private val cache = AtomicReferenceArray<ProcPidPaths>(CACHE_SIZE)
+
+        @JvmStatic
+        fun of(pid: Int): ProcPidPaths {
+            val index = pid and (CACHE_SIZE - 1)
+            cache.get(index)?.let { paths ->
+                if (paths.pid == pid) {
+                    return paths
+                }
+            }
+            return ProcPidPaths(pid).also { cache.set(index, it) }
+        }
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright (C) 2023 BackgroundOpt
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.venus.backgroundopt.utils
+
+import java.io.FileInputStream
+
+/**
+ * /proc/<pid>/stat的解析
+ *
+ * 进程名(第2项)由括号包裹, 且本身可能包含空格和括号, 因此以最后一个')'为界, 之后的字段以空格分隔。
+ * 每个线程复用同一个读取缓冲区, 不创建String
+ *
+ * @author XingC
+ * @date 2026/10/18
+ */
+object ProcStatParser {
+    // 进程启动时间(starttime), 自开机以来的时钟滴答数
+    const val FIELD_START_TIME = 22
+
+    // 第1~22项足以放下, 之后的字段不需要
+    private const val BUFFER_SIZE = 1024
+
+    // ')'
+    private const val RIGHT_PAREN: Byte = 41
+    // ' '
+    private const val SPACE: Byte = 32
+    // '\n'
+    private const val NEW_LINE: Byte = 10
+    // '0'
+    private const val DIGIT_0: Byte = 48
+    // '9'
+    private const val DIGIT_9: Byte = 57
+
+    private val buffers = ThreadLocal.withInitial { ByteArray(BUFFER_SIZE) }
+
+    /**
+     * 读取进程的启动时间
+     *
+     * @return 自开机以来的时钟滴答数。读取失败 = 0
+     */
+    @JvmStatic
+    fun readStartTime(pid: Int): Long = readStartTime(ProcPidPaths.of(pid).stat)
+
+    @JvmStatic
+    fun readStartTime(path: String): Long = readField(path, FIELD_START_TIME)
+
+    /**
+     * 以启动时间判断pid是否仍属于记录时的进程
+     *
+     * @param recordedStartTime 记录的启动时间。0 = 未记录, 无法判断, 视为是
+     * @return 进程已退出(读取失败)或pid已被复用 -> false
+     */
+    @JvmStatic
+    fun isSameProcess(path: String, recordedStartTime: Long): Boolean {
+        if (recordedStartTime == 0L) {
+            return true
+        }
+        return readStartTime(path) == recordedStartTime
+    }
+
+    /**
+     * 读取stat文件中的第[field]项数值(从1开始计数, 与proc(5)一致, 需位于进程名之后)
+     *
+     * @return 读取失败或该项不是非负整数 = 0
+     */
+    @JvmStatic
+    fun readField(path: String, field: Int): Long {
+        val buffer = buffers.get()!!
+        var length = 0
+        try {
+            FileInputStream(path).use { input ->
+                while (length < buffer.size) {
+                    val count = input.read(buffer, length, buffer.size - length)
+                    if (count < 0) {
+                        break
+                    }
+                    length += count
+                }
+            }
+        } catch (t: Throwable) {
+            return 0L
+        }
+        return parseField(buffer, length, field)
+    }
+
+    /**
+     * 从stat文件的内容中解析第[field]项数值
+     *
+     * @return 格式不符 = 0
+     */
+    @JvmStatic
+    fun parseField(bytes: ByteArray, length: Int, field: Int): Long {
+        var index = length - 1
+        while (index >= 0 && bytes[index] != RIGHT_PAREN) {
+            index--
+        }
+        if (index < 0 || field <= 2) {
+            return 0L
+        }
+
+        // ')'之后是" 第3项 第4项 ..."
+        var currentField = 2
+        index++
+        while (index < length) {
+            if (bytes[index] == SPACE) {
+                currentField++
+                index++
+                continue
+            }
+            if (currentField == field) {
+                var value = 0L
+                var hasDigit = false
+                while (index < length) {
+                    val b = bytes[index]
+                    if (b < DIGIT_0 || b > DIGIT_9) {
+                        break
+                    }
+                    value = value * 10 + (b - DIGIT_0)
+                    hasDigit = true
+                    index++
+                }
+                val terminated = index == length || bytes[index] == SPACE || bytes[index] == NEW_LINE
+                return if (hasDigit && terminated) value else 0L
+            }
+            // 跳过当前字段
+            while (index < length && bytes[index] != SPACE) {
+                index++
+            }
+        }
+        return 0L
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) 2023 BackgroundOpt
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.venus.backgroundopt.utils
+
+import android.os.SystemClock
+import com.venus.backgroundopt.utils.message.MessageFlag
+
+/**
+ * 进程内存信息读取
+ *
+ * 优先读取/proc/<pid>/smaps_rollup, 不存在时累加/proc/<pid>/smaps, 都不可用时回退到/proc/<pid>/status(无PSS)。
+ * 解析由[ProcKbFieldParser]完成, 每个线程复用同一份缓冲区
+ *
+ * @author XingC
+ * @date 2026/10/18
+ */
+object ProcessMemoryUtils {
+    private const val SMAPS_RSS = 0
+    private const val SMAPS_PSS = 1
+    private const val SMAPS_ANON = 2
+    private const val SMAPS_SWAP = 3
+    private const val SMAPS_SWAP_PSS = 4
+    private val smapsParser = ProcKbFieldParser("Rss", "Pss", "Anonymous", "Swap", "SwapPss")
+
+    private const val STATUS_RSS = 0
+    private const val STATUS_ANON = 1
+    private const val STATUS_FILE = 2
+    private const val STATUS_SWAP = 3
+    private val statusParser = ProcKbFieldParser("VmRSS", "RssAnon", "RssFile", "VmSwap")
+
+    private const val MEMINFO_SWAP_TOTAL = 0
+    private const val MEMINFO_SWAP_FREE = 1
+    private val meminfoParser = ProcKbFieldParser("SwapTotal", "SwapFree")
+
+    private val parseBuffers = ThreadLocal.withInitial { ProcKbFieldParser.ParseBuffers() }
+
+    /**
+     * 读取进程当前的内存占用
+     *
+     * @return 进程不存在或读取失败 -> null
+     */
+    @JvmStatic
+    fun readProcessMemory(pid: Int): ProcessMemorySnapshot? {
+        val buffers = parseBuffers.get()!!
+        val values = buffers.longs
+        val paths = ProcPidPaths.of(pid)
+        if (smapsParser.parse(paths.smapsRollup, values, buffers) && values[SMAPS_RSS] >= 0
+            || smapsParser.parse(paths.smaps, values, buffers) && values[SMAPS_RSS] >= 0
+        ) {
+            return ProcessMemorySnapshot().apply {
+                rssKb = values[SMAPS_RSS]
+                pssKb = values[SMAPS_PSS]
+                anonKb = values[SMAPS_ANON]
+                // smaps中没有单独的文件页统计, 以Rss - Anonymous近似(包含共享内存)
+                fileKb = if (anonKb >= 0) (rssKb - anonKb).coerceAtLeast(0L) else -1L
+                swapKb = values[SMAPS_SWAP]
+                swapPssKb = values[SMAPS_SWAP_PSS]
+            }
+        }
+
+        if (statusParser.parse(paths.status, values, buffers) && values[STATUS_RSS] >= 0) {
+            return ProcessMemorySnapshot().apply {
+                rssKb = values[STATUS_RSS]
+                anonKb = values[STATUS_ANON]
+                fileKb = values[STATUS_FILE]
+                swapKb = values[STATUS_SWAP]
+            }
+        }
+        return null
+    }
+
+    /* *************************************************************************
+     *                                                                         *
+     * 系统交换区                                                                *
+     *                                                                         *
+     **************************************************************************/
+    // 两次读取/proc/meminfo的最小间隔
+    private const val SYSTEM_SWAP_SAMPLE_INTERVAL_MILLIS = 1000L
+
+    @Volatile
+    private var systemSwapSnapshot: SystemSwapSnapshot? = null
+
+    /**
+     * 读取系统交换区(zram)的使用情况。[SYSTEM_SWAP_SAMPLE_INTERVAL_MILLIS]内复用上一次的结果
+     *
+     * @return 读取失败 -> null
+     */
+    @JvmStatic
+    fun readSystemSwap(): SystemSwapSnapshot? {
+        val now = SystemClock.uptimeMillis()
+        systemSwapSnapshot?.let { snapshot ->
+            if (now - snapshot.sampleUptimeMillis < SYSTEM_SWAP_SAMPLE_INTERVAL_MILLIS) {
+                return snapshot
+            }
+        }
+
+        val buffers = parseBuffers.get()!!
+        val values = buffers.longs
+        if (!meminfoParser.parse("/proc/meminfo", values, buffers) || values[MEMINFO_SWAP_TOTAL] < 0) {
+            return null
+        }
+        return SystemSwapSnapshot(
+            totalKb = values[MEMINFO_SWAP_TOTAL],
+            freeKb = values[MEMINFO_SWAP_FREE].coerceAtLeast(0L),
+            sampleUptimeMillis = now
+        ).also { systemSwapSnapshot = it }
+    }
+}
+
+/**
+ * 进程内存占用快照(单位: kB)。未知的值 = -1
+ */
+class ProcessMemorySnapshot : MessageFlag {
+    var rssKb = -1L
+    var pssKb = -1L
+    var anonKb = -1L
+    var fileKb = -1L
+    var swapKb = -1L
+    var swapPssKb = -1L
+}
+
+/**
+ * 系统交换区快照(单位: kB)
+ */
+class SystemSwapSnapshot(
+    val totalKb: Long,
+    val freeKb: Long,
+    val sampleUptimeMillis: Long
+) {
+    /**
+     * 剩余比例。没有交换区时 = 0
+     */
+    val freeRatio: Double
+        get() = if (totalKb <= 0) 0.0 else freeKb.toDouble() / totalKb
+}
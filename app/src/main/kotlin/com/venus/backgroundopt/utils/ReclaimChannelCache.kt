@@ -0,0 +1,271 @@
+/*
+ * Copyright (C) 2023 BackgroundOpt
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.venus.backgroundopt.utils
+
+import com.venus.backgroundopt.utils.log.ILogger
+import java.io.File
+import java.io.FileOutputStream
+import java.nio.ByteBuffer
+import java.nio.channels.ClosedChannelException
+import java.nio.channels.FileChannel
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.locks.ReentrantLock
+import kotlin.concurrent.withLock
+
+/**
+ * 进程内存回收节点(/proc/<pid>/reclaim)的文件通道缓存
+ *
+ * 进程的内存压缩不止一次执行, 缓存通道以避免重复打开。缓存是有界的LRU:
+ * 1. 超出[maxSize]时淘汰最久未使用的通道
+ * 2. 进程被移除时([remove])淘汰
+ * 3. 写入出错(ESRCH、ENOENT等, 一般为进程已死亡)时淘汰, 且不重新打开
+ *
+ * 通道带有引用计数: 缓存自身持有一个引用, 每次写入期间再持有一个。淘汰只释放缓存的引用,
+ * 通道在最后一个写入结束后才关闭, 因此淘汰不会关闭其他线程正在写入的通道。
+ *
+ * 通道与打开时进程的启动时间绑定。启动时间不一致(pid被复用)的通道不会被使用;
+ * 打开新通道后也会再次确认启动时间, 确保通道属于调用方记录的进程。
+ *
+ * 因此即使漏掉了进程的移除, 缓存中的通道也不超过[maxSize]; 此外只有正在写入的通道可能已被淘汰但尚未关闭。
+ * 仅在查找/插入/移除时加锁, 打开与写入(即回收本身, 可能较慢)在锁外进行
+ *
+ * @param reclaimPathOf pid -> 回收节点的路径
+ * @param isSameProcess (pid, 记录的启动时间) -> pid是否仍属于该进程。启动时间为0时视为是
+ *
+ * @author XingC
+ * @date 2026/10/18
+ */
+class ReclaimChannelCache @JvmOverloads constructor(
+    val maxSize: Int = DEFAULT_MAX_SIZE,
+    private val reclaimPathOf: (Int) -> String = { pid -> ProcPidPaths.of(pid).reclaim },
+    private val isSameProcess: (Int, Long) -> Boolean = { pid, startTime ->
+        ProcStatParser.isSameProcess(ProcPidPaths.of(pid).stat, startTime)
+    }
+) : ILogger {
+    private val lock = ReentrantLock()
+
+    // 访问顺序的LinkedHashMap。仅在锁内访问
+    private val entries = object : LinkedHashMap<Int, Entry>(16, 0.75f, true) {
+        override fun removeEldestEntry(eldest: MutableMap.MutableEntry<Int, Entry>): Boolean {
+            if (size <= maxSize) {
+                return false
+            }
+            evictedCount.incrementAndGet()
+            eldest.value.evict()
+            return true
+        }
+    }
+
+    /**
+     * @param startTime 打开时调用方记录的进程启动时间。0 = 未记录
+     */
+    private inner class Entry(val startTime: Long, val channel: FileChannel) {
+        // 缓存持有的引用(1) + 正在写入的线程数。降为0时关闭通道
+        private val refCount = AtomicInteger(1)
+
+        // 已从缓存中移除。仅在锁内修改
+        var evicted = false
+            private set
+
+        /**
+         * 仅在锁内调用。未被淘汰的条目至少有缓存持有的引用, 因此一定成功
+         */
+        fun retain() {
+            refCount.incrementAndGet()
+        }
+
+        fun release() {
+            if (refCount.decrementAndGet() == 0) {
+                close(channel)
+            }
+        }
+
+        /**
+         * 仅在锁内调用
+         */
+        fun evict() {
+            if (!evicted) {
+                evicted = true
+                release()
+            }
+        }
+    }
+
+    /* *************************************************************************
+     *                                                                         *
+     * 统计                                                                     *
+     *                                                                         *
+     **************************************************************************/
+    val openChannelCount: Int get() = lock.withLock { entries.size }
+
+    @Volatile
+    var maxOpenChannelCount = 0
+        private set
+
+    val openedCount = AtomicLong(0)
+    val closedCount = AtomicLong(0)
+    val evictedCount = AtomicLong(0)
+    val openFailedCount = AtomicLong(0)
+    val writeErrorCount = AtomicLong(0)
+
+    // 因pid已被复用而放弃的打开或缓存的通道
+    val staleCount = AtomicLong(0)
+
+    /* *************************************************************************
+     *                                                                         *
+     * 写入                                                                     *
+     *                                                                         *
+     **************************************************************************/
+    /**
+     * 向进程的回收节点写入[payload]。[payload]本身的position不会改变, 可在多个线程间共享
+     *
+     * @param startTime 调用方记录的进程启动时间。0 = 未记录, 不检查pid复用
+     * @return 写入成功 -> true
+     */
+    @JvmOverloads
+    fun write(pid: Int, payload: ByteBuffer, startTime: Long = 0L): Boolean {
+        for (attempt in 0 until MAX_WRITE_ATTEMPTS) {
+            val entry = acquire(pid, startTime) ?: return false
+            try {
+                val buffer = payload.duplicate()
+                while (buffer.hasRemaining()) {
+                    entry.channel.write(buffer)
+                }
+                return true
+            } catch (e: ClosedChannelException) {
+                // 持有引用期间通道不会因淘汰而关闭。仅作防御: 只有被本缓存淘汰关闭时才重试,
+                // 重新打开前acquire()会再次确认启动时间
+                writeErrorCount.incrementAndGet()
+                if (!isEvicted(entry)) {
+                    invalidate(pid, entry)
+                    return false
+                }
+            } catch (t: Throwable) {
+                // 进程已死亡(ESRCH/ENOENT)等。不重新打开
+                writeErrorCount.incrementAndGet()
+                invalidate(pid, entry)
+                return false
+            } finally {
+                entry.release()
+            }
+        }
+        return false
+    }
+
+    /**
+     * @return 持有一个引用的条目, 使用后需[Entry.release]。打开失败或pid已被复用 -> null
+     */
+    private fun acquire(pid: Int, startTime: Long): Entry? {
+        lock.withLock {
+            entries[pid]?.let { entry ->
+                if (isSameStartTime(entry.startTime, startTime)) {
+                    entry.retain()
+                    return entry
+                }
+                // 缓存的是先前使用该pid的进程的通道
+                staleCount.incrementAndGet()
+                entries.remove(pid)
+                entry.evict()
+            }
+        }
+
+        val channel = try {
+            FileOutputStream(reclaimPathOf(pid)).channel
+        } catch (t: Throwable) {
+            openFailedCount.incrementAndGet()
+            return null
+        }
+        openedCount.incrementAndGet()
+        // 打开之后确认: 若此时启动时间仍一致, 则打开的一定是记录的进程
+        if (!isSameProcess(pid, startTime)) {
+            staleCount.incrementAndGet()
+            close(channel)
+            return null
+        }
+
+        lock.withLock {
+            entries[pid]?.let { entry ->
+                // 其他线程已打开
+                if (isSameStartTime(entry.startTime, startTime)) {
+                    entry.retain()
+                    close(channel)
+                    return entry
+                }
+                entries.remove(pid)
+                entry.evict()
+            }
+            val entry = Entry(startTime, channel)
+            entry.retain()
+            entries[pid] = entry
+            if (entries.size > maxOpenChannelCount) {
+                maxOpenChannelCount = entries.size
+            }
+            return entry
+        }
+    }
+
+    private fun isSameStartTime(cached: Long, expected: Long): Boolean {
+        return cached == 0L || expected == 0L || cached == expected
+    }
+
+    private fun isEvicted(entry: Entry): Boolean = lock.withLock { entry.evicted }
+
+    /**
+     * 仅当pid当前对应的仍是[entry]时才移除, 防止误删其他线程刚打开的通道
+     */
+    private fun invalidate(pid: Int, entry: Entry) {
+        lock.withLock {
+            if (entries[pid] === entry) {
+                entries.remove(pid)
+                entry.evict()
+            }
+        }
+    }
+
+    /**
+     * 移除进程的通道。正在写入时, 写入结束后关闭
+     */
+    fun remove(pid: Int) {
+        lock.withLock {
+            entries.remove(pid)?.evict()
+        }
+    }
+
+    private fun close(channel: FileChannel) {
+        try {
+            channel.close()
+            closedCount.incrementAndGet()
+        } catch (ignore: Throwable) {
+        }
+    }
+
+    companion object {
+        const val DEFAULT_MAX_SIZE = 64
+
+        private const val MAX_WRITE_ATTEMPTS = 2
+
+        /**
+         * 当前进程(system_server)打开的fd总数
+         *
+         * @return 读取失败 -> -1
+         */
+        @JvmStatic
+        fun readProcessFdCount(): Int = File("/proc/self/fd").list()?.size ?: -1
+    }
+}
@@ -0,0 +1,387 @@
+/*
+ * Copyright (C) 2023 BackgroundOpt
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.venus.backgroundopt.utils.concurrent
+
+import java.util.concurrent.atomic.AtomicIntegerArray
+import java.util.concurrent.atomic.AtomicReferenceArray
+import java.util.concurrent.locks.ReentrantLock
+import java.util.function.Consumer
+import java.util.function.IntFunction
+import kotlin.concurrent.withLock
+
+/**
+ * 以int为key的线程安全Map。主要用于以pid为key的场景
+ *
+ * - key不装箱, 使用开放寻址(线性探测)保存在[AtomicIntegerArray]中
+ * - 按key分段加锁写入; 读取不加锁, 每次查找只读取一次段的当前表, 并以volatile语义读取槽位
+ * - 遍历直接访问底层数组, 不产生额外对象
+ *
+ * [Int.MIN_VALUE]作为空槽位的标记, 不能作为key。
+ * 同一个表中槽位的key一旦写入就不再改变, 删除时只清空value(墓碑), 因此读到的value总是属于该槽位的key。
+ * 墓碑过多或容量不足时, 在段锁内生成新表并整体替换
+ *
+ * @author XingC
+ * @date 2026/10/18
+ */
+class ConcurrentIntObjectMap<V : Any> @JvmOverloads constructor(
+    expectedSize: Int = DEFAULT_EXPECTED_SIZE
+) {
+    private val segments = Array(SEGMENT_COUNT) {
+        Segment<V>(tableSizeFor(expectedSize / SEGMENT_COUNT))
+    }
+
+    private fun segmentFor(hash: Int): Segment<V> = segments[hash and SEGMENT_MASK]
+
+    operator fun get(key: Int): V? {
+        val hash = spread(key)
+        return segmentFor(hash).get(key, hash ushr SEGMENT_SHIFT)
+    }
+
+    fun containsKey(key: Int): Boolean = get(key) != null
+
+    /**
+     * @return 之前的value
+     */
+    fun put(key: Int, value: V): V? {
+        checkKey(key)
+        val hash = spread(key)
+        return segmentFor(hash).put(key, hash ushr SEGMENT_SHIFT, value, onlyIfAbsent = false)
+    }
+
+    fun putIfAbsent(key: Int, value: V): V? {
+        checkKey(key)
+        val hash = spread(key)
+        return segmentFor(hash).put(key, hash ushr SEGMENT_SHIFT, value, onlyIfAbsent = true)
+    }
+
+    /**
+     * 不存在时计算并放入。[mappingFunction]在段锁内执行, 返回null则不放入
+     */
+    fun computeIfAbsent(key: Int, mappingFunction: IntFunction<out V?>): V? {
+        checkKey(key)
+        val hash = spread(key)
+        val segment = segmentFor(hash)
+        val h = hash ushr SEGMENT_SHIFT
+        segment.get(key, h)?.let { return it }
+        return segment.computeIfAbsent(key, h, mappingFunction)
+    }
+
+    /**
+     * @return 被移除的value
+     */
+    fun remove(key: Int): V? {
+        val hash = spread(key)
+        return segmentFor(hash).remove(key, hash ushr SEGMENT_SHIFT, null)
+    }
+
+    /**
+     * 仅当key当前对应的是[value]时才移除
+     */
+    fun remove(key: Int, value: V): Boolean {
+        val hash = spread(key)
+        return segmentFor(hash).remove(key, hash ushr SEGMENT_SHIFT, value) != null
+    }
+
+    val size: Int
+        get() {
+            var size = 0
+            for (segment in segments) {
+                size += segment.count
+            }
+            return size
+        }
+
+    fun isEmpty(): Boolean = size == 0
+
+    fun clear() {
+        for (segment in segments) {
+            segment.clear()
+        }
+    }
+
+    /**
+     * 遍历所有value。弱一致性: 遍历期间的修改可能不可见
+     */
+    fun forEachValue(action: Consumer<in V>) {
+        for (segment in segments) {
+            val values = segment.table.values
+            for (i in 0 until values.length()) {
+                values.get(i)?.let { action.accept(it) }
+            }
+        }
+    }
+
+    fun forEach(action: IntObjConsumer<in V>) {
+        for (segment in segments) {
+            val table = segment.table
+            val keys = table.keys
+            val values = table.values
+            for (i in 0 until keys.length()) {
+                values.get(i)?.let { action.accept(keys.get(i), it) }
+            }
+        }
+    }
+
+    /**
+     * value的只读视图。遍历时只创建一个迭代器对象, 用于需要[Collection]的场景
+     */
+    val values: Collection<V> = object : AbstractCollection<V>() {
+        override val size: Int
+            get() = this@ConcurrentIntObjectMap.size
+
+        override fun iterator(): Iterator<V> = ValueIterator()
+    }
+
+    private inner class ValueIterator : Iterator<V> {
+        private var segmentIndex = 0
+        private var values = segments[0].table.values
+        private var slotIndex = 0
+        private var next: V? = advance()
+
+        private fun advance(): V? {
+            while (true) {
+                while (slotIndex < values.length()) {
+                    values.get(slotIndex++)?.let { return it }
+                }
+                if (++segmentIndex >= SEGMENT_COUNT) {
+                    return null
+                }
+                values = segments[segmentIndex].table.values
+                slotIndex = 0
+            }
+        }
+
+        override fun hasNext(): Boolean = next != null
+
+        override fun next(): V {
+            val value = next ?: throw NoSuchElementException()
+            next = advance()
+            return value
+        }
+    }
+
+    fun interface IntObjConsumer<V> {
+        fun accept(key: Int, value: V)
+    }
+
+    /* *************************************************************************
+     *                                                                         *
+     * 段                                                                       *
+     *                                                                         *
+     **************************************************************************/
+    private class Table<V>(val capacity: Int) {
+        // 写入顺序: 先写key, 再写value。读取时先比较key, 再读value
+        // key同样以volatile语义读写: 读到某个槽位为空时, 之前已完成的写入一定可见, 探测链不会被提前截断
+        val keys = AtomicIntegerArray(capacity).apply {
+            for (i in 0 until capacity) {
+                set(i, EMPTY_KEY)
+            }
+        }
+        val values = AtomicReferenceArray<V?>(capacity)
+        val mask = capacity - 1
+
+        // 已占用的槽位(包括墓碑)。仅在段锁内访问
+        var usedSlots = 0
+    }
+
+    private class Segment<V : Any>(initialCapacity: Int) {
+        private val lock = ReentrantLock()
+
+        @Volatile
+        var table = Table<V>(initialCapacity)
+            private set
+
+        @Volatile
+        var count = 0
+            private set
+
+        fun get(key: Int, hash: Int): V? {
+            val table = table
+            val keys = table.keys
+            val mask = table.mask
+            var index = hash and mask
+            while (true) {
+                val k = keys.get(index)
+                if (k == key) {
+                    return table.values.get(index)
+                }
+                if (k == EMPTY_KEY) {
+                    return null
+                }
+                index = (index + 1) and mask
+            }
+        }
+
+        /**
+         * 查找key所在的槽位, 不存在时返回可写入的空槽位(取反)。需在段锁内调用
+         */
+        private fun findSlot(table: Table<V>, key: Int, hash: Int): Int {
+            val keys = table.keys
+            val mask = table.mask
+            var index = hash and mask
+            while (true) {
+                val k = keys.get(index)
+                if (k == key) {
+                    return index
+                }
+                if (k == EMPTY_KEY) {
+                    return index.inv()
+                }
+                index = (index + 1) and mask
+            }
+        }
+
+        fun put(key: Int, hash: Int, value: V, onlyIfAbsent: Boolean): V? {
+            lock.withLock {
+                val table = table
+                val slot = findSlot(table, key, hash)
+                if (slot >= 0) {
+                    val old = table.values.get(slot)
+                    if (old == null) {
+                        count++
+                        table.values.set(slot, value)
+                    } else if (!onlyIfAbsent) {
+                        table.values.set(slot, value)
+                    }
+                    return old
+                }
+                insert(table, slot.inv(), key, hash, value)
+                return null
+            }
+        }
+
+        fun computeIfAbsent(key: Int, hash: Int, mappingFunction: IntFunction<out V?>): V? {
+            lock.withLock {
+                table.let { table ->
+                    val slot = findSlot(table, key, hash)
+                    if (slot >= 0) {
+                        table.values.get(slot)?.let { return it }
+                    }
+                }
+                val value = mappingFunction.apply(key) ?: return null
+                // 锁可重入, mappingFunction内若修改了本段, 表可能已被替换。因此重新查找
+                val table = table
+                val slot = findSlot(table, key, hash)
+                if (slot >= 0) {
+                    table.values.get(slot)?.let { return it }
+                    count++
+                    table.values.set(slot, value)
+                } else {
+                    insert(table, slot.inv(), key, hash, value)
+                }
+                return value
+            }
+        }
+
+        private fun insert(table: Table<V>, index: Int, key: Int, hash: Int, value: V) {
+            count++
+            if (table.usedSlots + 1 > (table.capacity * LOAD_FACTOR_PERCENT) / 100) {
+                rehash(table, key, hash, value)
+                return
+            }
+            table.usedSlots++
+            table.keys.set(index, key)
+            table.values.set(index, value)
+        }
+
+        /**
+         * 生成新表并放入[key]。存活数量较少时只清理墓碑, 不扩容
+         */
+        private fun rehash(oldTable: Table<V>, key: Int, hash: Int, value: V) {
+            val oldCapacity = oldTable.capacity
+            val newCapacity = if (count * 100 > (oldCapacity * LOAD_FACTOR_PERCENT) / 2) {
+                oldCapacity shl 1
+            } else {
+                oldCapacity
+            }
+            val newTable = Table<V>(newCapacity)
+            val oldKeys = oldTable.keys
+            for (i in 0 until oldCapacity) {
+                val v = oldTable.values.get(i) ?: continue
+                val k = oldKeys.get(i)
+                putNew(newTable, k, spread(k) ushr SEGMENT_SHIFT, v)
+            }
+            putNew(newTable, key, hash, value)
+            table = newTable
+        }
+
+        private fun putNew(table: Table<V>, key: Int, hash: Int, value: V) {
+            val slot = findSlot(table, key, hash).inv()
+            table.usedSlots++
+            table.keys.set(slot, key)
+            table.values.set(slot, value)
+        }
+
+        fun remove(key: Int, hash: Int, expectedValue: V?): V? {
+            lock.withLock {
+                val table = table
+                val slot = findSlot(table, key, hash)
+                if (slot < 0) {
+                    return null
+                }
+                val old = table.values.get(slot) ?: return null
+                if (expectedValue != null && old !== expectedValue) {
+                    return null
+                }
+                // 保留key作为墓碑, 保证探测链不断开
+                table.values.set(slot, null)
+                count--
+                return old
+            }
+        }
+
+        fun clear() {
+            lock.withLock {
+                table = Table(table.capacity)
+                count = 0
+            }
+        }
+    }
+
+    companion object {
+        private const val EMPTY_KEY = Int.MIN_VALUE
+
+        private const val SEGMENT_SHIFT = 4
+        private const val SEGMENT_COUNT = 1 shl SEGMENT_SHIFT
+        private const val SEGMENT_MASK = SEGMENT_COUNT - 1
+
+        private const val MIN_SEGMENT_CAPACITY = 16
+        private const val LOAD_FACTOR_PERCENT = 75
+
+        // 12~16G设备上存活进程一般为300~800
+        const val DEFAULT_EXPECTED_SIZE = 512
+
+        private fun checkKey(key: Int) {
+            require(key != EMPTY_KEY) { "不支持的key: $key" }
+        }
+
+        /**
+         * pid是近似连续分配的, 打散后再取低位作为段下标, 高位作为段内下标
+         */
+        private fun spread(key: Int): Int {
+            val h = key * -0x61c88647
+            return h xor (h ushr 16)
+        }
+
+        private fun tableSizeFor(expectedSize: Int): Int {
+            // 按负载因子换算后取2的幂
+            val size = (expectedSize * 100 / LOAD_FACTOR_PERCENT).coerceAtLeast(MIN_SEGMENT_CAPACITY)
+            return Integer.highestOneBit(size - 1) shl 1
+        }
+    }
+}
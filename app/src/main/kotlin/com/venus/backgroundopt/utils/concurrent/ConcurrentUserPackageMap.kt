@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) 2023 BackgroundOpt
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.venus.backgroundopt.utils.concurrent
+
+import java.util.concurrent.ConcurrentHashMap
+import java.util.function.Consumer
+import java.util.function.Function
+
+/**
+ * 以(userId, packageName)为key的线程安全Map
+ *
+ * 两级结构: userId -> (packageName -> value)。
+ * 查询时不需要拼接字符串作为key, 包名的hash由String自身缓存, 因此不产生额外对象。
+ * 同时可以按包名精确地移除所有用户下的记录
+ *
+ * @author XingC
+ * @date 2026/10/18
+ */
+class ConcurrentUserPackageMap<V : Any> {
+    private val userMaps = ConcurrentIntObjectMap<ConcurrentHashMap<String, V>>(USER_MAP_EXPECTED_SIZE)
+
+    private fun getUserMap(userId: Int): ConcurrentHashMap<String, V>? = userMaps[userId]
+
+    private fun computeUserMapIfAbsent(userId: Int): ConcurrentHashMap<String, V> {
+        return userMaps.computeIfAbsent(userId) { ConcurrentHashMap() }!!
+    }
+
+    operator fun get(userId: Int, packageName: String): V? = getUserMap(userId)?.get(packageName)
+
+    fun put(userId: Int, packageName: String, value: V): V? {
+        return computeUserMapIfAbsent(userId).put(packageName, value)
+    }
+
+    /**
+     * 不存在时计算并放入
+     *
+     * @param mappingFunction 参数为包名
+     */
+    fun computeIfAbsent(
+        userId: Int,
+        packageName: String,
+        mappingFunction: Function<in String, out V>
+    ): V {
+        getUserMap(userId)?.get(packageName)?.let { return it }
+        return computeUserMapIfAbsent(userId).computeIfAbsent(packageName, mappingFunction)
+    }
+
+    fun remove(userId: Int, packageName: String): V? = getUserMap(userId)?.remove(packageName)
+
+    fun remove(userId: Int, packageName: String, value: V): Boolean {
+        return getUserMap(userId)?.remove(packageName, value) == true
+    }
+
+    /**
+     * 移除所有用户下包名为[packageName]的记录
+     */
+    fun removePackage(packageName: String) {
+        userMaps.forEachValue { userMap -> userMap.remove(packageName) }
+    }
+
+    val size: Int
+        get() {
+            var size = 0
+            userMaps.forEachValue { userMap -> size += userMap.size }
+            return size
+        }
+
+    fun forEachValue(action: Consumer<in V>) {
+        userMaps.forEachValue { userMap -> userMap.values.forEach(action) }
+    }
+
+    /**
+     * value的只读视图。遍历时只创建外层和当前用户的迭代器, 弱一致性
+     */
+    val values: Collection<V> = object : AbstractCollection<V>() {
+        override val size: Int
+            get() = this@ConcurrentUserPackageMap.size
+
+        override fun iterator(): Iterator<V> = ValueIterator()
+    }
+
+    private inner class ValueIterator : Iterator<V> {
+        private val userMapIterator = userMaps.values.iterator()
+        private var valueIterator: Iterator<V>? = null
+
+        override fun hasNext(): Boolean {
+            while (true) {
+                valueIterator?.let { iterator ->
+                    if (iterator.hasNext()) {
+                        return true
+                    }
+                }
+                if (!userMapIterator.hasNext()) {
+                    return false
+                }
+                valueIterator = userMapIterator.next().values.iterator()
+            }
+        }
+
+        override fun next(): V {
+            if (!hasNext()) {
+                throw NoSuchElementException()
+            }
+            return valueIterator!!.next()
+        }
+    }
+
+    companion object {
+        // 一般只有主用户和少量分身用户
+        private const val USER_MAP_EXPECTED_SIZE = 16
+    }
+}
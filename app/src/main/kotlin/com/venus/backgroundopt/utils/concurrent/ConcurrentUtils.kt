@@ -26,6 +26,8 @@ import com.venus.backgroundopt.utils.log.logError
 import java.util.concurrent.ConcurrentHashMap
 import java.util.concurrent.ExecutorService
 import java.util.concurrent.Executors
+import java.util.concurrent.ScheduledExecutorService
+import java.util.concurrent.ScheduledThreadPoolExecutor
 
 /**
  * @author XingC
@@ -93,6 +95,14 @@ inline fun ExecutorService?.executeResult(crossinline block: () -> Unit): Result
  **************************************************************************/
 val commonThreadPoolExecutor: ExecutorService = Executors.newFixedThreadPool(2)
 
+/**
+ * 全局定时线程池。供各模块的周期性采样、延迟测量等短任务使用, 不必每个模块各自持有线程。
+ * 任务不应长时间阻塞, 耗时的工作需转交其他线程池执行
+ */
+val commonScheduledExecutor: ScheduledExecutorService = ScheduledThreadPoolExecutor(2).apply {
+    removeOnCancelPolicy = true
+}
+
 inline fun newThreadTask(crossinline block: () -> Unit) {
     commonThreadPoolExecutor.execute {
         block()
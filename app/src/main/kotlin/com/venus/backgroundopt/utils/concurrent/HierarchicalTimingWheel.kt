@@ -0,0 +1,236 @@
+/*
+ * Copyright (C) 2023 BackgroundOpt
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.venus.backgroundopt.utils.concurrent
+
+import java.util.concurrent.locks.ReentrantLock
+import kotlin.concurrent.withLock
+
+/**
+ * 分层时间轮
+ *
+ * [LEVEL_COUNT]层, 每层[WHEEL_SIZE]个槽位, 第n层每个槽位跨越64^n个tick:
+ * 以1s为tick时, 三层分别覆盖约1分钟、1小时、3天, 更远的到期时间暂存在最高层, 降级时重新计算。
+ *
+ * - 添加、取消、重新调度都是O(1): 条目自身即为槽位中双向链表的节点
+ * - [advance]推进时间, 到期条目进入就绪队列, 每次最多取出[advance]指定的数量, 剩余的留待下次,
+ * 以此削平同一时刻大量到期造成的峰值
+ *
+ * 所有操作在内部锁中进行, 可从任意线程调用
+ *
+ * @author XingC
+ * @date 2026/10/18
+ */
+class HierarchicalTimingWheel<T>(
+    private val tickMillis: Long,
+    startMillis: Long
+) {
+    /**
+     * 时间轮中的条目。同一条目同一时刻只处于一个槽位或就绪队列中
+     */
+    class Entry<T>(val payload: T) {
+        internal var deadlineTick = 0L
+        internal var prev: Entry<T>? = null
+        internal var next: Entry<T>? = null
+        internal var list: EntryList<T>? = null
+
+        /**
+         * 不加锁读取, 结果仅供参考。需要"未调度时才调度"时使用[scheduleIfAbsent]
+         */
+        val isScheduled: Boolean get() = list != null
+    }
+
+    internal class EntryList<T> {
+        var head: Entry<T>? = null
+        var tail: Entry<T>? = null
+
+        fun add(entry: Entry<T>) {
+            entry.list = this
+            entry.prev = tail
+            entry.next = null
+            val oldTail = tail
+            if (oldTail == null) {
+                head = entry
+            } else {
+                oldTail.next = entry
+            }
+            tail = entry
+        }
+
+        fun remove(entry: Entry<T>) {
+            val prev = entry.prev
+            val next = entry.next
+            if (prev == null) {
+                head = next
+            } else {
+                prev.next = next
+            }
+            if (next == null) {
+                tail = prev
+            } else {
+                next.prev = prev
+            }
+            entry.prev = null
+            entry.next = null
+            entry.list = null
+        }
+
+        fun poll(): Entry<T>? = head?.also { remove(it) }
+    }
+
+    private val lock = ReentrantLock()
+
+    private val wheels = Array(LEVEL_COUNT) { Array(WHEEL_SIZE) { EntryList<T>() } }
+
+    // 已到期而尚未取出的条目
+    private val readyList = EntryList<T>()
+
+    private var currentTick = startMillis / tickMillis
+
+    var size = 0
+        private set
+
+    var readyCount = 0
+        private set
+
+    /**
+     * 调度(或重新调度)条目在[deadlineMillis]到期
+     */
+    fun schedule(entry: Entry<T>, deadlineMillis: Long) {
+        lock.withLock {
+            unlink(entry)
+            // 向上取整, 保证不早于指定时间到期
+            entry.deadlineTick = (deadlineMillis + tickMillis - 1) / tickMillis
+            place(entry)
+            size++
+        }
+    }
+
+    /**
+     * 条目不在时间轮中时才调度。判断与调度在同一次加锁内完成
+     *
+     * @return 进行了调度 -> true
+     */
+    fun scheduleIfAbsent(entry: Entry<T>, deadlineMillis: Long): Boolean {
+        lock.withLock {
+            if (entry.isScheduled) {
+                return false
+            }
+            schedule(entry, deadlineMillis)
+            return true
+        }
+    }
+
+    /**
+     * @return 条目原本是否在时间轮中
+     */
+    fun cancel(entry: Entry<T>): Boolean {
+        lock.withLock {
+            if (!entry.isScheduled) {
+                return false
+            }
+            unlink(entry)
+            return true
+        }
+    }
+
+    /**
+     * 推进到[nowMillis], 最多取出[maxExpired]个到期条目放入[out]
+     *
+     * @return 取出的数量
+     */
+    fun advance(nowMillis: Long, maxExpired: Int, out: MutableList<T>): Int {
+        lock.withLock {
+            val targetTick = nowMillis / tickMillis
+            while (currentTick < targetTick) {
+                currentTick++
+                cascade()
+                val bucket = wheels[0][(currentTick and WHEEL_MASK).toInt()]
+                while (true) {
+                    val entry = bucket.poll() ?: break
+                    readyList.add(entry)
+                    readyCount++
+                }
+            }
+
+            var count = 0
+            while (count < maxExpired) {
+                val entry = readyList.poll() ?: break
+                readyCount--
+                size--
+                out.add(entry.payload)
+                count++
+            }
+            return count
+        }
+    }
+
+    private fun unlink(entry: Entry<T>) {
+        val list = entry.list ?: return
+        if (list === readyList) {
+            readyCount--
+        }
+        list.remove(entry)
+        size--
+    }
+
+    /**
+     * 放入对应的层级与槽位。需在锁内调用
+     */
+    private fun place(entry: Entry<T>) {
+        val delta = entry.deadlineTick - currentTick
+        if (delta <= 0) {
+            readyList.add(entry)
+            readyCount++
+            return
+        }
+        var level = 0
+        var span = WHEEL_SIZE.toLong()
+        while (delta >= span && level < LEVEL_COUNT - 1) {
+            level++
+            span = span shl LEVEL_SHIFT
+        }
+        // 超出最高层范围时暂放在最远的槽位, 降级时重新计算
+        val tick = if (delta >= span) currentTick + span - 1 else entry.deadlineTick
+        wheels[level][((tick ushr (LEVEL_SHIFT * level)) and WHEEL_MASK).toInt()].add(entry)
+    }
+
+    /**
+     * 低层转完一圈时, 将高层当前槽位的条目重新放入。需在锁内调用
+     */
+    private fun cascade() {
+        // 先处理高层, 使其条目能继续降级到本次处理的低层槽位
+        for (level in LEVEL_COUNT - 1 downTo 1) {
+            val shift = LEVEL_SHIFT * level
+            if (currentTick and ((1L shl shift) - 1) != 0L) {
+                continue
+            }
+            val bucket = wheels[level][((currentTick ushr shift) and WHEEL_MASK).toInt()]
+            while (true) {
+                val entry = bucket.poll() ?: break
+                place(entry)
+            }
+        }
+    }
+
+    companion object {
+        private const val LEVEL_SHIFT = 6
+        const val WHEEL_SIZE = 1 shl LEVEL_SHIFT
+        private const val WHEEL_MASK = (WHEEL_SIZE - 1).toLong()
+        const val LEVEL_COUNT = 3
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright (C) 2023 BackgroundOpt
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.venus.backgroundopt.utils.message
+
+import java.io.DataInputStream
+import java.io.DataOutputStream
+import java.io.IOException
+import java.nio.ByteBuffer
+
+/**
+ * ui与模块之间socket通信的消息帧
+ *
+ * 一个连接上可同时有多个请求, 响应可以乱序返回, 以[requestId]对应。
+ * 帧格式(大端): | 长度(int, 不含长度字段本身) | 请求id(int) | 数据标记(byte) | UTF-8数据 |
+ *
+ * 请求的数据为[Message]的json, 响应的数据为处理器设置的结果。数据标记为[FLAG_NULL]时没有数据部分
+ *
+ * @author XingC
+ * @date 2026/10/18
+ */
+class MessageFrame(
+    val requestId: Int,
+    val data: String?
+) {
+    /**
+     * 编码为可直接写入channel的buffer
+     *
+     * @throws IllegalArgumentException 帧超过[MAX_FRAME_BYTES]。此时不会写出任何数据, 连接仍可继续使用
+     */
+    fun encode(): ByteBuffer {
+        val bytes = data?.toByteArray(Charsets.UTF_8)
+        val length = BODY_HEADER_BYTES + (bytes?.size ?: 0)
+        require(length <= MAX_FRAME_BYTES) { "消息帧过大: $length" }
+        return ByteBuffer.allocate(LENGTH_BYTES + length).apply {
+            putInt(length)
+            putInt(requestId)
+            if (bytes == null) {
+                put(FLAG_NULL)
+            } else {
+                put(FLAG_DATA)
+                put(bytes)
+            }
+            flip()
+        }
+    }
+
+    fun writeTo(output: DataOutputStream) {
+        output.write(encode().array())
+    }
+
+    companion object {
+        // 模块与ui的协议版本。模块未返回此版本时, ui回退到其他通信方式
+        const val PROTOCOL_VERSION = 1
+
+        const val LENGTH_BYTES = 4
+
+        // 请求id + 数据标记
+        const val BODY_HEADER_BYTES = 5
+
+        // ui与模块间的消息均为配置与运行信息, 远小于此值。超过时视为异常连接, 避免对端声明的长度引发大内存分配
+        const val MAX_FRAME_BYTES = 1024 * 1024
+
+        const val FLAG_NULL: Byte = 0
+        const val FLAG_DATA: Byte = 1
+
+        @JvmStatic
+        fun checkLength(length: Int) {
+            if (length < BODY_HEADER_BYTES || length > MAX_FRAME_BYTES) {
+                throw IOException("非法的消息帧长度: $length")
+            }
+        }
+
+        /**
+         * 从[body]中解码帧。[body]的剩余部分为一个完整的帧体(不含长度字段)
+         */
+        @JvmStatic
+        fun decode(body: ByteBuffer): MessageFrame {
+            val requestId = body.getInt()
+            val flag = body.get()
+            val data = if (flag == FLAG_NULL) {
+                null
+            } else {
+                String(body.array(), body.arrayOffset() + body.position(), body.remaining(), Charsets.UTF_8)
+            }
+            return MessageFrame(requestId, data)
+        }
+
+        /**
+         * 阻塞读取一个帧
+         */
+        @JvmStatic
+        fun readFrom(input: DataInputStream): MessageFrame {
+            val length = input.readInt()
+            checkLength(length)
+            val body = ByteArray(length)
+            input.readFully(body)
+            return decode(ByteBuffer.wrap(body))
+        }
+    }
+}
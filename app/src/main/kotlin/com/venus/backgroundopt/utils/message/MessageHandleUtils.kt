@@ -34,11 +34,14 @@ import com.venus.backgroundopt.utils.log.logError
 import com.venus.backgroundopt.utils.log.logErrorAndroid
 import com.venus.backgroundopt.utils.log.logInfoAndroid
 import com.venus.backgroundopt.utils.log.logWarnAndroid
+import com.venus.backgroundopt.utils.message.handle.ActivityEventStatisticsMessageHandler
 import com.venus.backgroundopt.utils.message.handle.AppCompactListMessageHandler
 import com.venus.backgroundopt.utils.message.handle.AppOptimizePolicyMessageHandler
 import com.venus.backgroundopt.utils.message.handle.AppWebviewProcessProtectMessageHandler
 import com.venus.backgroundopt.utils.message.handle.AutoStopCompactTaskMessageHandler
 import com.venus.backgroundopt.utils.message.handle.BackgroundTasksMessageHandler
+import com.venus.backgroundopt.utils.message.handle.CompactionJobsMessageHandler
+import com.venus.backgroundopt.utils.message.handle.CompactionSchedulerStatisticsMessageHandler
 import com.venus.backgroundopt.utils.message.handle.EnableForegroundProcTrimMemPolicyHandler
 import com.venus.backgroundopt.utils.message.handle.ForegroundProcTrimMemPolicyHandler
 import com.venus.backgroundopt.utils.message.handle.GetInstalledPackagesMessageHandler
@@ -49,21 +52,31 @@ import com.venus.backgroundopt.utils.message.handle.GlobalOomScoreValueMessageHa
 import com.venus.backgroundopt.utils.message.handle.HomePageModuleInfoMessageHandler
 import com.venus.backgroundopt.utils.message.handle.KeepMainProcessAliveHasActivityMessageHandler
 import com.venus.backgroundopt.utils.message.handle.KillAfterRemoveTaskMessageHandler
+import com.venus.backgroundopt.utils.message.handle.LmkdCommandStatisticsMessageHandler
 import com.venus.backgroundopt.utils.message.handle.ModuleRunningMessageHandler
 import com.venus.backgroundopt.utils.message.handle.ProcessRunningInfoMessageHandler
 import com.venus.backgroundopt.utils.message.handle.RunningAppInfoMessageHandler
 import com.venus.backgroundopt.utils.message.handle.SimpleLmkMessageHandler
 import com.venus.backgroundopt.utils.message.handle.SubProcessOomConfigChangeMessageHandler
 import com.venus.backgroundopt.utils.message.handle.TargetAppGroupMessageHandler
+import com.venus.backgroundopt.utils.message.handle.TrimEffectivenessMessageHandler
 import com.venus.backgroundopt.utils.preference.prefBoolean
 import com.venus.backgroundopt.utils.runCatchThrowable
 import de.robv.android.xposed.XC_MethodHook.MethodHookParam
-import java.io.ObjectInputStream
-import java.io.ObjectOutputStream
+import java.io.BufferedInputStream
+import java.io.BufferedOutputStream
+import java.io.DataInputStream
+import java.io.DataOutputStream
+import java.io.IOException
 import java.io.Serializable
 import java.net.InetAddress
 import java.net.Socket
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.ConcurrentHashMap
 import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.TimeoutException
+import java.util.concurrent.atomic.AtomicInteger
 
 /**
  * ui与模块主进程通信工具类
@@ -162,28 +175,122 @@ class DefaultMessageSender(
     }
 }
 
+/**
+ * 使用Socket的消息发送器
+ *
+ * 与模块保持一个长连接, 以[MessageFrame]传输。多个请求可同时进行, 由读取线程按请求id分发响应。
+ * 连接断开时, 等待中的请求返回null, 下一次发送时重新连接
+ */
 class SocketMessageSender(
     val socketPort: Int,
 ) : IMessageSender {
+    private val nextRequestId = AtomicInteger(0)
+
+    @Volatile
+    private var connection: Connection? = null
+
+    private inner class Connection(val socket: Socket) {
+        private val output = DataOutputStream(BufferedOutputStream(socket.getOutputStream()))
+        val pendingRequests = ConcurrentHashMap<Int, CompletableFuture<String?>>()
+
+        @Volatile
+        var isClosed = false
+            private set
+
+        init {
+            Thread({ readLoop() }, "SocketMessageReader").apply {
+                isDaemon = true
+                start()
+            }
+        }
+
+        private fun readLoop() {
+            runCatchThrowable(catchBlock = { throwable ->
+                if (!isClosed) {
+                    logErrorAndroid(
+                        methodName = "${CUR_CLASS_PREFIX}SocketMessageSender.readLoop",
+                        logStr = "读取响应出错",
+                        t = throwable
+                    )
+                }
+            }, finallyBlock = { close() }) {
+                val input = DataInputStream(BufferedInputStream(socket.getInputStream()))
+                while (true) {
+                    val frame = MessageFrame.readFrom(input)
+                    pendingRequests.remove(frame.requestId)?.complete(frame.data)
+                }
+            }
+        }
+
+        fun write(frame: MessageFrame) {
+            synchronized(output) {
+                frame.writeTo(output)
+                output.flush()
+            }
+        }
+
+        fun close() {
+            isClosed = true
+            runCatchThrowable { socket.close() }
+            // 移除后再完成, 防止与读取线程重复完成
+            pendingRequests.keys.forEach { requestId ->
+                pendingRequests.remove(requestId)?.complete(null)
+            }
+        }
+    }
+
+    private fun getConnection(): Connection {
+        connection?.takeIf { !it.isClosed }?.let { return it }
+        synchronized(this) {
+            connection?.takeIf { !it.isClosed }?.let { return it }
+            val socket = Socket(InetAddress.getLocalHost(), socketPort).apply {
+                tcpNoDelay = true
+            }
+            return Connection(socket).also { connection = it }
+        }
+    }
+
     override fun send(key: String, value: Any): String? {
-        val socket = Socket(InetAddress.getLocalHost(), socketPort)
-        val objectOutputStream = ObjectOutputStream(socket.getOutputStream())
-        // 发送消息
-        objectOutputStream.writeObject(
-            Message(
-                key = key,
-                value = JsonUtils.toJsonString(value)
+        val requestId = nextRequestId.incrementAndGet()
+        val future = CompletableFuture<String?>()
+        var curConnection: Connection? = null
+        return try {
+            curConnection = getConnection()
+            curConnection.pendingRequests[requestId] = future
+            // 连接可能在放入后被关闭
+            if (curConnection.isClosed) {
+                curConnection.pendingRequests.remove(requestId)
+                return null
+            }
+            curConnection.write(
+                MessageFrame(
+                    requestId = requestId,
+                    data = JsonUtils.toJsonString(
+                        Message(
+                            key = key,
+                            value = JsonUtils.toJsonString(value)
+                        )
+                    )
+                )
             )
-        )
-        // 获取返回值
-        val objectInputStream = ObjectInputStream(socket.getInputStream())
-        val responseStr = objectInputStream.readObject() as String?
-
-        objectInputStream.close()
-        objectOutputStream.close()
-        socket.close()
+            future.get(SEND_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)
+        } catch (t: Throwable) {
+            curConnection?.pendingRequests?.remove(requestId)
+            // 超时说明模块端已无响应或连接已半开, 关闭后由下一次发送重新连接
+            if (t is IOException || t is TimeoutException) {
+                curConnection?.close()
+            }
+            logErrorAndroid(
+                methodName = "${CUR_CLASS_PREFIX}SocketMessageSender.send",
+                logStr = "消息发送失败。key: $key",
+                t = t
+            )
+            null
+        }
+    }
 
-        return responseStr
+    companion object {
+        const val SEND_TIMEOUT_MILLIS = 30L * 1000
     }
 }
 
@@ -197,6 +304,7 @@ class MessageSender {
     fun init(
         context: Context,
         socketPort: Int?,
+        socketProtocolVersion: Int,
         socketPortText: TextView?
     ) {
         executor.execute {
@@ -216,7 +324,9 @@ class MessageSender {
                 sender = NoImplMessageSender()
             }
             // 支持socket传输
-            else if (SocketModuleMessageHandler.isPortValid(socketPort)) {
+            else if (SocketModuleMessageHandler.isPortValid(socketPort)
+                && socketProtocolVersion == MessageFrame.PROTOCOL_VERSION
+            ) {
                 logInfoAndroid("Socket通信~")
                 sender = SocketMessageSender(socketPort = socketPort)
                 socketPortStr = socketPort.toString()
@@ -296,6 +406,11 @@ val registeredMessageHandler by lazy {
         MessageKeyConstants.getManagedAdjDefaultApps to GetManagedAdjDefaultAppsMessageHandler(),
         MessageKeyConstants.KEEP_MAIN_PROCESS_ALIVE_HAS_ACTIVITY to KeepMainProcessAliveHasActivityMessageHandler(),
         MessageKeyConstants.getProcessRunningInfo to ProcessRunningInfoMessageHandler(),
+        MessageKeyConstants.getLmkdCommandStatistics to LmkdCommandStatisticsMessageHandler(),
+        MessageKeyConstants.getActivityEventStatistics to ActivityEventStatisticsMessageHandler(),
+        MessageKeyConstants.getCompactionSchedulerStatistics to CompactionSchedulerStatisticsMessageHandler(),
+        MessageKeyConstants.getCompactionJobs to CompactionJobsMessageHandler(),
+        MessageKeyConstants.getTrimEffectiveness to TrimEffectivenessMessageHandler(),
     )
 }
 
@@ -47,5 +47,10 @@ interface MessageKeyConstants {
         const val getManagedAdjDefaultApps = "getManagedAdjDefaultApps"
         const val KEEP_MAIN_PROCESS_ALIVE_HAS_ACTIVITY = "KEEP_MAIN_PROCESS_ALIVE_HAS_ACTIVITY"
         const val getProcessRunningInfo = "getProcessRunningInfo"
+        const val getLmkdCommandStatistics = "getLmkdCommandStatistics"
+        const val getActivityEventStatistics = "getActivityEventStatistics"
+        const val getCompactionSchedulerStatistics = "getCompactionSchedulerStatistics"
+        const val getCompactionJobs = "getCompactionJobs"
+        const val getTrimEffectiveness = "getTrimEffectiveness"
     }
 }
\ No newline at end of file
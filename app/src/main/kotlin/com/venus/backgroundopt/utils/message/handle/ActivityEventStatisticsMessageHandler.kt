@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2023 BackgroundOpt
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.venus.backgroundopt.utils.message.handle
+
+import com.venus.backgroundopt.core.RunningInfo
+import com.venus.backgroundopt.utils.LatencyHistogramSnapshot
+import com.venus.backgroundopt.utils.message.IMessage
+import com.venus.backgroundopt.utils.message.MessageHandler
+import com.venus.backgroundopt.utils.message.createResponse
+import de.robv.android.xposed.XC_MethodHook
+
+/**
+ * 获取Activity事件处理的统计信息
+ *
+ * @author XingC
+ * @date 2026/10/18
+ */
+class ActivityEventStatisticsMessageHandler : MessageHandler {
+    override fun handle(
+        runningInfo: RunningInfo,
+        param: XC_MethodHook.MethodHookParam,
+        value: String?
+    ) {
+        createResponse<Any>(
+            param = param,
+            value = value,
+            setJsonData = true
+        ) { _ ->
+            val dispatcher = runningInfo.activityEventDispatcher
+            ActivityEventStatistics().apply {
+                postedCount = dispatcher.postedCount.get()
+                handledCount = dispatcher.handledCount.get()
+                coalescedCount = dispatcher.coalescedCount.get()
+                failedCount = dispatcher.failedCount.get()
+                queueDepth = dispatcher.queueDepth
+                maxMailboxDepth = dispatcher.maxMailboxDepth
+                eventToHandledLatency = dispatcher.eventToHandledLatencyHistogram.snapshot()
+            }
+        }
+    }
+}
+
+class ActivityEventStatistics : IMessage {
+    var postedCount = 0L
+    var handledCount = 0L
+    var coalescedCount = 0L
+    var failedCount = 0L
+    var queueDepth = 0
+    var maxMailboxDepth = 0
+    var eventToHandledLatency: LatencyHistogramSnapshot? = null
+}
@@ -18,7 +18,6 @@
  package com.venus.backgroundopt.utils.message.handle
 
 import com.venus.backgroundopt.core.RunningInfo
-import com.venus.backgroundopt.core.RunningInfo.AppGroupEnum
 import com.venus.backgroundopt.utils.message.MessageHandler
 import com.venus.backgroundopt.utils.message.createResponse
 import de.robv.android.xposed.XC_MethodHook
@@ -36,21 +35,10 @@ class AppCompactListMessageHandler : MessageHandler {
         value: String?
     ) {
         createResponse<Any>(param, value, setJsonData = true) {
-            /*runningInfo.processManager.compactProcessInfos.onEach { process ->
+            runningInfo.processManager.compactProcessInfos.onEach {
                 // 设置真实oom_adj_score
-                process.curAdj = process.getCurAdjNative()
-            }*/
-            runningInfo.runningProcesses.asSequence()
-                .filterNotNull()
-                .filter { processRecord ->
-                    val appInfo = processRecord.appInfo
-                    appInfo.appGroupEnum == AppGroupEnum.IDLE || appInfo.appGroupEnum == AppGroupEnum.NONE
-                }
-                .onEach {
-                    // 设置真实oom_adj_score
-                    it.curAdj = it.getCurAdjNative()
-                }
-                .toList()
+                it.curAdj = it.getCurAdjNative()
+            }
         }
     }
 }
\ No newline at end of file
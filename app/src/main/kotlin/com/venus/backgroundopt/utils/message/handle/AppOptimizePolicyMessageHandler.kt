@@ -24,6 +24,7 @@ import com.venus.backgroundopt.environment.hook.HookCommonProperties
 import com.venus.backgroundopt.hook.handle.android.ProcessListHookKt
 import com.venus.backgroundopt.hook.handle.android.entity.ProcessList
 import com.venus.backgroundopt.hook.handle.android.entity.ProcessRecord
+import com.venus.backgroundopt.manager.process.CompactAggressivenessLevel
 import com.venus.backgroundopt.utils.message.MessageFlag
 import com.venus.backgroundopt.utils.message.MessageHandler
 import com.venus.backgroundopt.utils.message.createResponse
@@ -59,6 +60,7 @@ class AppOptimizePolicyMessageHandler : MessageHandler {
                         }
                     }.apply {
                         initMainProcessAdjManagePolicyUiText(this)
+                        initCompactAggressivenessUiText(runningInfo, this)
                     }
                 }
 
@@ -74,13 +76,18 @@ class AppOptimizePolicyMessageHandler : MessageHandler {
                         .filter { appInfo -> appInfo.packageName == appOptimizePolicy.packageName }
                         .forEach { appInfo -> appInfo.setAdjHandleFunction(appOptimizePolicy) }
 
-                    if (old?.enableCustomMainProcessOomScore != appOptimizePolicy.enableCustomMainProcessOomScore) {
+                    // 自定义主进程adj在确定adj处理方式时一并取出, 因此值改变时也需重新计算
+                    if (old?.enableCustomMainProcessOomScore != appOptimizePolicy.enableCustomMainProcessOomScore
+                        || old?.customMainProcessFgAdj != appOptimizePolicy.customMainProcessFgAdj
+                        || old?.customMainProcessOomScore != appOptimizePolicy.customMainProcessOomScore
+                    ) {
                         ProcessRecord.resetAdjHandleType(
                             packageName = packageName
                         )
                     }
 
                     initMainProcessAdjManagePolicyUiText(appOptimizePolicy)
+                    initCompactAggressivenessUiText(runningInfo, appOptimizePolicy)
                     returnValue = appOptimizePolicy
                 }
 
@@ -99,6 +106,17 @@ class AppOptimizePolicyMessageHandler : MessageHandler {
             }
     }
 
+    private fun initCompactAggressivenessUiText(
+        runningInfo: RunningInfo,
+        appOptimizePolicy: AppOptimizePolicy
+    ) {
+        appOptimizePolicy.compactAggressivenessUiText =
+            runningInfo.processManager.appCompactManager2.compactAggressivenessManager
+                .get(appOptimizePolicy.packageName)
+                ?.getUiText()
+                ?: CompactAggressivenessLevel.NORMAL.uiText
+    }
+
     class AppOptimizePolicy : MessageFlag {
         lateinit var packageName: String
 
@@ -179,6 +197,9 @@ class AppOptimizePolicyMessageHandler : MessageHandler {
         var mainProcessAdjManagePolicy = MainProcessAdjManagePolicy.MAIN_PROC_ADJ_MANAGE_DEFAULT
         var defaultMainProcessAdjManagePolicyUiText = "invalid"
 
+        // 模块根据压缩后的重新缺页自动调整的压缩激进程度。仅用于ui显示
+        var compactAggressivenessUiText = "invalid"
+
         enum class MainProcessAdjManagePolicy(val code: Int, val uiText: String) {
             MAIN_PROC_ADJ_MANAGE_DEFAULT(0, "重置"),
             MAIN_PROC_ADJ_MANAGE_NEVER(1, "从不"),
@@ -0,0 +1,45 @@
+/*
+ * Copyright (C) 2023 BackgroundOpt
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.venus.backgroundopt.utils.message.handle
+
+import com.venus.backgroundopt.core.RunningInfo
+import com.venus.backgroundopt.utils.message.MessageHandler
+import com.venus.backgroundopt.utils.message.createResponse
+import de.robv.android.xposed.XC_MethodHook
+
+/**
+ * 获取等待中、排队中、执行中以及最近完成的内存压缩任务
+ *
+ * @author XingC
+ * @date 2026/10/18
+ */
+class CompactionJobsMessageHandler : MessageHandler {
+    override fun handle(
+        runningInfo: RunningInfo,
+        param: XC_MethodHook.MethodHookParam,
+        value: String?
+    ) {
+        createResponse<Any>(
+            param = param,
+            value = value,
+            setJsonData = true
+        ) { _ ->
+            runningInfo.processManager.appCompactManager2?.getCompactionJobsSnapshot()
+        }
+    }
+}
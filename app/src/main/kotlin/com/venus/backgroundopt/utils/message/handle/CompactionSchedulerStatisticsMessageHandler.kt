@@ -0,0 +1,215 @@
+/*
+ * Copyright (C) 2023 BackgroundOpt
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.venus.backgroundopt.utils.message.handle
+
+import com.venus.backgroundopt.core.RunningInfo
+import com.venus.backgroundopt.manager.process.MemoryPressureSample
+import com.venus.backgroundopt.manager.process.SwapHeadroomSample
+import com.venus.backgroundopt.utils.LatencyHistogramSnapshot
+import com.venus.backgroundopt.utils.ReclaimChannelCache
+import com.venus.backgroundopt.utils.message.IMessage
+import com.venus.backgroundopt.utils.message.MessageHandler
+import com.venus.backgroundopt.utils.message.createResponse
+import de.robv.android.xposed.XC_MethodHook
+
+/**
+ * 获取全局内存压缩调度的统计信息
+ *
+ * @author XingC
+ * @date 2026/10/18
+ */
+class CompactionSchedulerStatisticsMessageHandler : MessageHandler {
+    override fun handle(
+        runningInfo: RunningInfo,
+        param: XC_MethodHook.MethodHookParam,
+        value: String?
+    ) {
+        createResponse<Any>(
+            param = param,
+            value = value,
+            setJsonData = true
+        ) { _ ->
+            val appCompactManager = runningInfo.processManager.appCompactManager2
+                ?: return@createResponse null
+            val scheduler = appCompactManager.compactionScheduler
+            CompactionSchedulerStatistics().apply {
+                maxConcurrentJobs = scheduler.maxConcurrentJobs
+                bytesPerSecond = scheduler.bytesPerSecond
+                availableBudgetBytes = scheduler.availableBudgetBytes
+                runningJobCount = scheduler.runningJobCount
+                queueDepth = scheduler.queueDepth
+                maxQueueDepth = scheduler.maxQueueDepth
+                submittedCount = scheduler.submittedCount.get()
+                completedCount = scheduler.completedCount.get()
+                failedCount = scheduler.failedCount.get()
+                cancelledCount = scheduler.cancelledCount.get()
+                pendingCompactTaskCount = appCompactManager.pendingCompactTaskCount
+                pidReusedSkipCount = appCompactManager.pidReusedSkipCount.get()
+                autoStopCompactTask = appCompactManager.autoStopCompactTask
+                autoStoppedSkipCount = appCompactManager.autoStoppedSkipCount.get()
+                refaultDowngradeCount = appCompactManager.refaultDowngradeCount.get()
+                fullCompactCount = appCompactManager.fullCompactCount.get()
+                anonCompactCount = appCompactManager.anonCompactCount.get()
+                fileCompactCount = appCompactManager.fileCompactCount.get()
+                anonSkippedForSwapCount = appCompactManager.anonSkippedForSwapCount.get()
+                noFilePagesSkipCount = appCompactManager.noFilePagesSkipCount.get()
+                memoryPressureLevel = appCompactManager.memoryPressureLevel.name
+                pressurePullForwardCount = appCompactManager.pressurePullForwardCount.get()
+                runningInfo.activityManagerService.oomAdjuster.cachedAppOptimizer.reclaimChannelCache.let { cache ->
+                    reclaimChannelCacheSize = cache.maxSize
+                    reclaimChannelOpenCount = cache.openChannelCount
+                    reclaimChannelMaxOpenCount = cache.maxOpenChannelCount
+                    reclaimChannelOpenedCount = cache.openedCount.get()
+                    reclaimChannelClosedCount = cache.closedCount.get()
+                    reclaimChannelEvictedCount = cache.evictedCount.get()
+                    reclaimChannelOpenFailedCount = cache.openFailedCount.get()
+                    reclaimChannelWriteErrorCount = cache.writeErrorCount.get()
+                    reclaimChannelStaleCount = cache.staleCount.get()
+                }
+                processFdCount = ReclaimChannelCache.readProcessFdCount()
+                runningInfo.processManager.swapHeadroomGuard.let { guard ->
+                    swapHeadroomLevel = guard.level.name
+                    swapHeadroomSample = guard.lastSample
+                }
+                swapGcSkipCount = runningInfo.processManager.appMemoryTrimManager.swapGcSkipCount.get()
+                runningInfo.processManager.gcCoordinator.let { coordinator ->
+                    gcSignaledCount = coordinator.signaledCount.get()
+                    gcRateLimitedCount = coordinator.rateLimitedCount.get()
+                    gcDelayedCount = coordinator.delayedCount.get()
+                    gcDisabledSkipCount = coordinator.disabledSkipCount.get()
+                    gcFailedCount = coordinator.failedCount.get()
+                    gcMeasuredCount = coordinator.measuredCount.get()
+                    gcReclaimedKb = coordinator.reclaimedKb.get()
+                    gcAutoDisableCount = coordinator.autoDisableCount.get()
+                    gcDisabledAppCount = coordinator.disabledAppCount
+                }
+                runningInfo.processManager.memoryPressureMonitor.let { monitor ->
+                    memoryPressureTriggerMode = monitor.isTriggerMode
+                    memoryPressureTriggerEventCount = monitor.triggerEventCount.get()
+                    memoryPressureSample = monitor.lastSample
+                }
+                deferredFullCompactCount = appCompactManager.deferredFullCompactCount.get()
+                overdueFullCompactCount = appCompactManager.overdueFullCompactCount.get()
+                deferredFullCompactProcessCount = appCompactManager.deferredFullCompactProcessCount
+                runningInfo.processManager.appMemoryTrimManager.let { trimManager ->
+                    trimInteractiveDeferredRunCount = trimManager.interactiveDeferredRunCount.get()
+                    trimMaintenanceRecentSkipCount = trimManager.maintenanceRecentSkipCount.get()
+                    trimScheduledTimerCount = trimManager.scheduledTimerCount
+                    trimReadyTimerCount = trimManager.readyTimerCount
+                    trimMaxReadyTimerCount = trimManager.maxReadyTimerCount
+                    trimExecutedTimerCount = trimManager.executedTimerCount.get()
+                    trimCapHitTickCount = trimManager.capHitTickCount.get()
+                }
+                runningInfo.processManager.maintenanceWindowCoordinator.let { coordinator ->
+                    userInteracting = coordinator.isUserInteracting
+                    charging = coordinator.isCharging
+                    maintenanceWindowCount = coordinator.windowCount.get()
+                    maintenanceWorkCount = coordinator.workCount.get()
+                    maintenanceAbortedWindowCount = coordinator.abortedWindowCount.get()
+                    lastMaintenanceWindowWorkCount = coordinator.lastWindowWorkCount
+                    lastMaintenanceWindowDurationMillis = coordinator.lastWindowDurationMillis
+                }
+                launchDeferCount = scheduler.launchDeferCount.get()
+                dispatchedBytes = scheduler.dispatchedBytes.get()
+                queueWait = scheduler.queueWaitHistogram.snapshot()
+                jobWallTime = scheduler.jobWallTimeHistogram.snapshot()
+            }
+        }
+    }
+}
+
+class CompactionSchedulerStatistics : IMessage {
+    var maxConcurrentJobs = 0
+    var bytesPerSecond = 0L
+    var availableBudgetBytes = 0L
+    var runningJobCount = 0
+    var queueDepth = 0
+    var maxQueueDepth = 0
+    var submittedCount = 0L
+    var completedCount = 0L
+    var failedCount = 0L
+    var cancelledCount = 0L
+    var pendingCompactTaskCount = 0
+    var pidReusedSkipCount = 0L
+    var autoStopCompactTask = false
+    var autoStoppedSkipCount = 0L
+    var refaultDowngradeCount = 0L
+    var fullCompactCount = 0L
+    var anonCompactCount = 0L
+    var fileCompactCount = 0L
+    var anonSkippedForSwapCount = 0L
+    var noFilePagesSkipCount = 0L
+    var memoryPressureLevel: String? = null
+    var pressurePullForwardCount = 0L
+    var swapHeadroomLevel: String? = null
+    var swapHeadroomSample: SwapHeadroomSample? = null
+    var swapGcSkipCount = 0L
+
+    // 后台gc
+    var gcSignaledCount = 0L
+    var gcRateLimitedCount = 0L
+    var gcDelayedCount = 0L
+    var gcDisabledSkipCount = 0L
+    var gcFailedCount = 0L
+    var gcMeasuredCount = 0L
+    var gcReclaimedKb = 0L
+    var gcAutoDisableCount = 0L
+    var gcDisabledAppCount = 0
+    var memoryPressureTriggerMode = false
+    var memoryPressureTriggerEventCount = 0L
+    var memoryPressureSample: MemoryPressureSample? = null
+    var reclaimChannelCacheSize = 0
+    var reclaimChannelOpenCount = 0
+    var reclaimChannelMaxOpenCount = 0
+    var reclaimChannelOpenedCount = 0L
+    var reclaimChannelClosedCount = 0L
+    var reclaimChannelEvictedCount = 0L
+    var reclaimChannelOpenFailedCount = 0L
+    var reclaimChannelWriteErrorCount = 0L
+
+    // 因pid被复用而放弃的通道
+    var reclaimChannelStaleCount = 0L
+
+    // system_server打开的fd总数
+    var processFdCount = 0
+
+    // 维护窗口
+    var deferredFullCompactCount = 0L
+    var overdueFullCompactCount = 0L
+    var deferredFullCompactProcessCount = 0
+    var trimInteractiveDeferredRunCount = 0L
+    var trimMaintenanceRecentSkipCount = 0L
+
+    // 内存回收时间轮
+    var trimScheduledTimerCount = 0
+    var trimReadyTimerCount = 0
+    var trimMaxReadyTimerCount = 0
+    var trimExecutedTimerCount = 0L
+    var trimCapHitTickCount = 0L
+    var userInteracting = false
+    var charging = false
+    var maintenanceWindowCount = 0L
+    var maintenanceWorkCount = 0L
+    var maintenanceAbortedWindowCount = 0L
+    var lastMaintenanceWindowWorkCount = 0
+    var lastMaintenanceWindowDurationMillis = 0L
+    var launchDeferCount = 0L
+    var dispatchedBytes = 0L
+    var queueWait: LatencyHistogramSnapshot? = null
+    var jobWallTime: LatencyHistogramSnapshot? = null
+}
@@ -20,6 +20,7 @@ package com.venus.backgroundopt.utils.message.handle
 import com.venus.backgroundopt.core.RunningInfo
 import com.venus.backgroundopt.hook.handle.android.entity.ProcessRecord
 import com.venus.backgroundopt.utils.message.IMessage
+import com.venus.backgroundopt.utils.message.MessageFrame
 import com.venus.backgroundopt.utils.message.MessageHandler
 import com.venus.backgroundopt.utils.message.createResponse
 import de.robv.android.xposed.XC_MethodHook
@@ -43,6 +44,7 @@ class HomePageModuleInfoMessageHandler : MessageHandler {
                 defaultMaxAdjStr = ProcessRecord.defaultMaxAdjStr
                 minOptimizeRssInMBytesStr = ProcessRecord.minOptimizeRssInMBytesStr
                 socketPort = runningInfo.moduleMessageManager.socketPort
+                socketProtocolVersion = MessageFrame.PROTOCOL_VERSION
             }
         }
     }
@@ -52,4 +54,7 @@ class HomePageModuleInfoMessage : IMessage {
     var defaultMaxAdjStr: String? = null
     var minOptimizeRssInMBytesStr: String? = null
     var socketPort: Int = Int.MIN_VALUE
+
+    // 旧版本模块没有此字段(= 0), 其socket不支持[MessageFrame]
+    var socketProtocolVersion: Int = 0
 }
\ No newline at end of file
@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2023 BackgroundOpt
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.venus.backgroundopt.utils.message.handle
+
+import com.venus.backgroundopt.core.RunningInfo
+import com.venus.backgroundopt.hook.base.IHook
+import com.venus.backgroundopt.hook.handle.android.ProcessListHookKt
+import com.venus.backgroundopt.manager.process.LmkdCommandBatcher
+import com.venus.backgroundopt.utils.LatencyHistogramSnapshot
+import com.venus.backgroundopt.utils.message.IMessage
+import com.venus.backgroundopt.utils.message.MessageHandler
+import com.venus.backgroundopt.utils.message.createResponse
+import de.robv.android.xposed.XC_MethodHook
+
+/**
+ * 获取lmkd命令写入的统计信息
+ *
+ * @author XingC
+ * @date 2026/10/18
+ */
+class LmkdCommandStatisticsMessageHandler : MessageHandler {
+    override fun handle(
+        runningInfo: RunningInfo,
+        param: XC_MethodHook.MethodHookParam,
+        value: String?
+    ) {
+        createResponse<Any>(
+            param = param,
+            value = value,
+            setJsonData = true
+        ) { _ ->
+            val batcher = IHook.getHookInstance(ProcessListHookKt::class.java)
+                ?.lmkdCommandBatcher
+                ?: return@createResponse null
+            LmkdCommandStatistics().apply {
+                dedupeHitCount = batcher.dedupeHitCount.get()
+                skippedWriteCount = batcher.skippedWriteCount.get()
+                writeCount = batcher.writeCount.get()
+                protectiveLaneWriteCount =
+                    batcher.laneWriteCounts[LmkdCommandBatcher.Lane.PROTECTIVE.ordinal].get()
+                coalescedLaneWriteCount =
+                    batcher.laneWriteCounts[LmkdCommandBatcher.Lane.COALESCED.ordinal].get()
+                protectiveLaneDelayMillis =
+                    batcher.getLaneDelayMillis(LmkdCommandBatcher.Lane.PROTECTIVE)
+                coalescedLaneDelayMillis =
+                    batcher.getLaneDelayMillis(LmkdCommandBatcher.Lane.COALESCED)
+                coalescedLaneMinDelayMillis = batcher.getCoalescedLaneMinDelayMillis()
+                queueDepth = batcher.queueDepth
+                maxQueueDepth = batcher.maxQueueDepth
+                setOomAdjToWriteLatency = batcher.setOomAdjToWriteLatencyHistogram.snapshot()
+            }
+        }
+    }
+}
+
+class LmkdCommandStatistics : IMessage {
+    var dedupeHitCount = 0L
+    var skippedWriteCount = 0L
+    var writeCount = 0L
+    var protectiveLaneWriteCount = 0L
+    var coalescedLaneWriteCount = 0L
+    var protectiveLaneDelayMillis = 0L
+    var coalescedLaneDelayMillis = 0L
+    var coalescedLaneMinDelayMillis = 0L
+    var queueDepth = 0
+    var maxQueueDepth = 0
+    var setOomAdjToWriteLatency: LatencyHistogramSnapshot? = null
+}
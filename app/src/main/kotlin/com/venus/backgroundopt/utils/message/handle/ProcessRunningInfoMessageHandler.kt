@@ -18,9 +18,13 @@
 package com.venus.backgroundopt.utils.message.handle
 
 import com.venus.backgroundopt.core.RunningInfo
+import com.venus.backgroundopt.hook.base.IHook
+import com.venus.backgroundopt.hook.handle.android.ProcessListHookKt
+import com.venus.backgroundopt.manager.process.LmkdCommandBatcher
 import com.venus.backgroundopt.utils.message.MessageHandler
 import com.venus.backgroundopt.utils.message.createJsonResponse
 import de.robv.android.xposed.XC_MethodHook
+import java.util.concurrent.TimeUnit
 
 /**
  * @author XingC
@@ -37,10 +41,17 @@ class ProcessRunningInfoMessageHandler : MessageHandler {
             value = value
         ) { pid ->
             val processRecord = runningInfo.getRunningProcess(pid) ?: return
+            val nowNanos = System.nanoTime()
             ProcessRunningInfo().apply {
                 rssInBytes = processRecord.getCurRssInBytes()
                 adj = processRecord.getCurAdjNative()
                 originalAdj = processRecord.oomAdjScore
+                adjChurnRate = processRecord.getAdjChurnRate(nowNanos)
+                adjApplyWindowMillis = IHook.getHookInstance(ProcessListHookKt::class.java)
+                    ?.lmkdCommandBatcher
+                    ?.computeDelayNanos(processRecord, LmkdCommandBatcher.Lane.COALESCED, nowNanos)
+                    ?.let { TimeUnit.NANOSECONDS.toMillis(it) }
+                    ?: Long.MIN_VALUE
             }
         }
     }
@@ -50,6 +61,12 @@ class ProcessRunningInfoMessageHandler : MessageHandler {
         var adj: Int = Int.MIN_VALUE
         var originalAdj: Int = Int.MIN_VALUE
 
+        // adj设置频率(次/秒)
+        var adjChurnRate: Double = 0.0
+
+        // 当前的合并写入窗口
+        var adjApplyWindowMillis: Long = Long.MIN_VALUE
+
         companion object {
             @JvmStatic
             val singleton by lazy {
@@ -35,9 +35,7 @@ class RunningAppInfoMessageHandler : MessageHandler {
         value: String?
     ) {
         createResponse(param, value) { uid: Int ->
-            runningInfo.runningAppInfos.find {
-                it.uid == uid
-            }
+            runningInfo.getRunningAppInfo(uid)
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,61 @@
+/*
+ * Copyright (C) 2023 BackgroundOpt
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.venus.backgroundopt.utils.message.handle
+
+import com.venus.backgroundopt.core.RunningInfo
+import com.venus.backgroundopt.manager.process.AppTrimEffectiveness
+import com.venus.backgroundopt.utils.message.IMessage
+import com.venus.backgroundopt.utils.message.MessageHandler
+import com.venus.backgroundopt.utils.message.createResponse
+import de.robv.android.xposed.XC_MethodHook
+
+/**
+ * 获取各app的内存回收(trim)与gc效果
+ *
+ * @author XingC
+ * @date 2026/10/18
+ */
+class TrimEffectivenessMessageHandler : MessageHandler {
+    override fun handle(
+        runningInfo: RunningInfo,
+        param: XC_MethodHook.MethodHookParam,
+        value: String?
+    ) {
+        createResponse<Any>(
+            param = param,
+            value = value,
+            setJsonData = true
+        ) { _ ->
+            val tracker = runningInfo.processManager.trimEffectivenessTracker
+            TrimEffectivenessStatistics().apply {
+                measureFailedCount = tracker.measureFailedCount.get()
+                unsampledCount = tracker.unsampledCount.get()
+                apps = tracker.snapshot()
+            }
+        }
+    }
+}
+
+class TrimEffectivenessStatistics : IMessage {
+    var measureFailedCount = 0L
+
+    // 因抽样而未测量的trim次数
+    var unsampledCount = 0L
+
+    var apps: List<AppTrimEffectiveness> = emptyList()
+}
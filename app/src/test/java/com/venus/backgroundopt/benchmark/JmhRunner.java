@@ -0,0 +1,53 @@
+/*
+ * Copyright (C) 2023 BackgroundOpt
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.venus.backgroundopt.benchmark;
+
+import org.junit.Assume;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+/**
+ * 在单元测试中运行JMH基准测试
+ * <p>
+ * 仅在系统属性jmh为true时运行(见app/build.gradle中的testOptions), 否则跳过。
+ * Gradle的测试进程无法可靠地重建classpath, 因此不fork, 结果仅用于同一环境下的横向对比
+ *
+ * @author XingC
+ * @date 2026/10/18
+ */
+public final class JmhRunner {
+    private JmhRunner() {
+    }
+
+    public static void run(Class<?> benchmarkClass) throws RunnerException {
+        Assume.assumeTrue("未指定-Pjmh, 跳过基准测试", Boolean.getBoolean("jmh"));
+
+        new Runner(new OptionsBuilder()
+                .include(benchmarkClass.getName())
+                .forks(0)
+                .warmupIterations(3)
+                .warmupTime(TimeValue.seconds(1))
+                .measurementIterations(5)
+                .measurementTime(TimeValue.seconds(1))
+                .shouldFailOnError(true)
+                .build()
+        ).run();
+    }
+}
@@ -0,0 +1,347 @@
+/*
+ * Copyright (C) 2023 BackgroundOpt
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.venus.backgroundopt.hook.handle.android;
+
+import com.venus.backgroundopt.benchmark.JmhRunner;
+import com.venus.backgroundopt.core.RunningInfo.AppGroupEnum;
+import com.venus.backgroundopt.hook.handle.android.entity.ProcessList;
+import com.venus.backgroundopt.hook.handle.android.entity.ProcessRecord.AdjHandleActionType;
+
+import org.junit.Test;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+
+/**
+ * {@link AdjDecisionTable}与原先逐级判断的处理链(autoApplyAdjHandleAction -> doCustomMainProcessAdj / doGlobalOomScoreAdj -> doOther)的对比
+ * <p>
+ * 两边都只走到叶子决策为止: 叶子中的计算(设置最大adj、oom adj处理器换算等)两者相同, 且需要真实的ProcessRecord,
+ * 而ProcessRecord的类初始化会读取Xposed配置, 无法在JVM中加载。
+ * 因此决策表一侧为{@link AdjDecisionTable#strategyOf}加上管理状态的计算, 处理链一侧为原代码的移植, 返回到达的叶子编号。
+ * 处理链每次都会按包名查询app优化策略(shouldHandleAdj以及自定义主进程adj), 这部分开销保留。
+ * <p>
+ * 进程样本按实际分布生成: 多数为后台分组的子进程, 主进程均为高优先级, 少量子进程为高优先级;
+ * 处理方式以OTHER为主, 少量自定义主进程adj、全局oom以及持有wakelock的进程
+ *
+ * @author XingC
+ * @date 2026/10/18
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class AdjDecisionTableBenchmark {
+    private static final int SAMPLE_COUNT = 4096;
+    private static final int PACKAGE_COUNT = 200;
+
+    /*
+     * 处理链到达的叶子
+     */
+    private static final int LEAF_IDENTITY = 0;
+    private static final int LEAF_SUB_PROCESS = 1;
+    private static final int LEAF_NOT_HAS_ACTIVITY = 2;
+    private static final int LEAF_DEFAULT_MAIN_ADJ = 3;
+    private static final int LEAF_CUSTOM_ADJ = 4;
+    private static final int LEAF_GLOBAL_OOM_SCORE = 5;
+    private static final int LEAF_OOM_ADJ_HANDLER = 6;
+
+    // 与AppInfo中的处理函数对应
+    private static final BiFunction<Sample, Policy, Boolean> handleAdjAlways = (sample, policy) -> true;
+    private static final BiFunction<Sample, Policy, Boolean> handleAdjNever = (sample, policy) -> false;
+    private static final BiFunction<Sample, Policy, Boolean> handleAdjIfHasActivity = (sample, policy) -> sample.hasActivity;
+
+    /**
+     * app优化策略中与adj相关的部分
+     */
+    private static final class Policy {
+        private final Integer customMainProcessFgAdj;
+        private final Integer customMainProcessBgAdj;
+
+        private Policy(Integer customMainProcessFgAdj, Integer customMainProcessBgAdj) {
+            this.customMainProcessFgAdj = customMainProcessFgAdj;
+            this.customMainProcessBgAdj = customMainProcessBgAdj;
+        }
+    }
+
+    /**
+     * 一次setOomAdj调用时进程的状态
+     */
+    private static final class Sample {
+        private final String packageName;
+        private final int adj;
+        private final int actionType;
+        private final AppGroupEnum appGroupEnum;
+        private final boolean mainProcess;
+        private final boolean isHighPriorityProcess;
+        private final boolean hasActivity;
+        private final BiFunction<Sample, Policy, Boolean> adjHandleFunction;
+
+        private Sample(
+                String packageName,
+                int adj,
+                int actionType,
+                AppGroupEnum appGroupEnum,
+                boolean mainProcess,
+                boolean isHighPriorityProcess,
+                boolean hasActivity,
+                BiFunction<Sample, Policy, Boolean> adjHandleFunction
+        ) {
+            this.packageName = packageName;
+            this.adj = adj;
+            this.actionType = actionType;
+            this.appGroupEnum = appGroupEnum;
+            this.mainProcess = mainProcess;
+            this.isHighPriorityProcess = isHighPriorityProcess;
+            this.hasActivity = hasActivity;
+            this.adjHandleFunction = adjHandleFunction;
+        }
+    }
+
+    private final GlobalOomScoreAdjHandler globalOomScoreAdjHandler = new GlobalOomScoreAdjHandler() {
+        @Override
+        public boolean isShouldHandle(boolean isUserSpaceAdj, boolean isMainProcess, boolean isHighPriorityProcess) {
+            return isMainProcess && isUserSpaceAdj;
+        }
+    };
+    private final boolean isNegativeMode = false;
+
+    private AdjDecisionTable adjDecisionTable;
+    private Map<String, Policy> appOptimizePolicyMap;
+    private Sample[] samples;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        adjDecisionTable = new AdjDecisionTable(
+                new OomScoreAdjHandler().buildAdjTables(),
+                globalOomScoreAdjHandler,
+                0,
+                isNegativeMode,
+                (processRecord, adj) -> adj,
+                (processRecord, adj) -> adj
+        );
+
+        Random random = new Random(42);
+        String[] packageNames = new String[PACKAGE_COUNT];
+        appOptimizePolicyMap = new ConcurrentHashMap<>();
+        for (int i = 0; i < PACKAGE_COUNT; i++) {
+            packageNames[i] = "com.example.app" + i;
+            // 约三成的app配置过优化策略, 其中少数设置了自定义主进程adj
+            if (random.nextInt(10) < 3) {
+                boolean hasCustomAdj = random.nextInt(5) == 0;
+                appOptimizePolicyMap.put(packageNames[i], new Policy(
+                        hasCustomAdj ? ProcessList.FOREGROUND_APP_ADJ : null,
+                        hasCustomAdj ? ProcessList.VISIBLE_APP_ADJ : null
+                ));
+            }
+        }
+
+        int[] fixedAdjs = {
+                ProcessList.FOREGROUND_APP_ADJ,
+                ProcessList.VISIBLE_APP_ADJ,
+                ProcessList.PERCEPTIBLE_APP_ADJ,
+                ProcessList.SERVICE_ADJ,
+                ProcessList.PREVIOUS_APP_ADJ,
+                ProcessList.PERSISTENT_SERVICE_ADJ,
+        };
+        samples = new Sample[SAMPLE_COUNT];
+        for (int i = 0; i < SAMPLE_COUNT; i++) {
+            String packageName = packageNames[random.nextInt(PACKAGE_COUNT)];
+            boolean mainProcess = random.nextInt(10) < 4;
+            boolean isHighPriorityProcess = mainProcess || random.nextInt(5) == 0;
+
+            int group = random.nextInt(100);
+            AppGroupEnum appGroupEnum = group < 15 ? AppGroupEnum.ACTIVE
+                    : group < 85 ? AppGroupEnum.IDLE
+                    : AppGroupEnum.NONE;
+
+            int action = random.nextInt(100);
+            int actionType = action < 75 ? AdjHandleActionType.OTHER
+                    : action < 85 ? AdjHandleActionType.GLOBAL_OOM_ADJ
+                    : action < 93 ? AdjHandleActionType.CUSTOM_MAIN_PROCESS
+                    : AdjHandleActionType.DO_NOTHING;
+            if (random.nextInt(20) == 0) {
+                actionType ^= AdjHandleActionType.WAKE_LOCK;
+            }
+
+            int manage = random.nextInt(10);
+            BiFunction<Sample, Policy, Boolean> adjHandleFunction = manage < 8 ? handleAdjIfHasActivity
+                    : manage < 9 ? handleAdjAlways
+                    : handleAdjNever;
+
+            int adj;
+            if (appGroupEnum == AppGroupEnum.ACTIVE) {
+                adj = fixedAdjs[random.nextInt(2)];
+            } else if (random.nextInt(10) < 7) {
+                adj = ProcessList.CACHED_APP_MIN_ADJ + random.nextInt(ProcessList.UNKNOWN_ADJ - ProcessList.CACHED_APP_MIN_ADJ);
+            } else if (random.nextInt(20) == 0) {
+                adj = ProcessList.PERSISTENT_PROC_ADJ;
+            } else {
+                adj = fixedAdjs[random.nextInt(fixedAdjs.length)];
+            }
+
+            samples[i] = new Sample(
+                    packageName,
+                    adj,
+                    actionType,
+                    appGroupEnum,
+                    mainProcess,
+                    isHighPriorityProcess,
+                    appGroupEnum == AppGroupEnum.ACTIVE || random.nextInt(10) < 3,
+                    adjHandleFunction
+            );
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int index;
+
+        Sample next(Sample[] samples) {
+            int i = index;
+            index = (i + 1) & (SAMPLE_COUNT - 1);
+            return samples[i];
+        }
+    }
+
+    /* *************************************************************************
+     *                                                                         *
+     * 决策表                                                                   *
+     *                                                                         *
+     **************************************************************************/
+    // AppInfo.getAdjManageState()
+    private static int getAdjManageState(Sample sample) {
+        BiFunction<Sample, Policy, Boolean> adjHandleFunction = sample.adjHandleFunction;
+        if (adjHandleFunction == handleAdjAlways) {
+            return AdjDecisionTable.MANAGE_STATE_MANAGED;
+        } else if (adjHandleFunction == handleAdjNever) {
+            return AdjDecisionTable.MANAGE_STATE_NEVER;
+        } else if (adjHandleFunction == handleAdjIfHasActivity) {
+            return sample.hasActivity ? AdjDecisionTable.MANAGE_STATE_MANAGED : AdjDecisionTable.MANAGE_STATE_NOT_HAS_ACTIVITY;
+        }
+        return AdjDecisionTable.MANAGE_STATE_NOT_HAS_ACTIVITY;
+    }
+
+    @Benchmark
+    public AdjDecisionStrategy adjDecisionTable(Cursor cursor) {
+        Sample sample = cursor.next(samples);
+        int actionType = sample.actionType;
+        if (actionType < 0 || actionType >= AdjDecisionTable.ACTION_TYPE_COUNT) {
+            return null;
+        }
+        return adjDecisionTable.strategyOf(
+                actionType,
+                sample.appGroupEnum,
+                sample.mainProcess,
+                sample.isHighPriorityProcess,
+                sample.adj >= 0,
+                getAdjManageState(sample)
+        );
+    }
+
+    /* *************************************************************************
+     *                                                                         *
+     * 原处理链                                                                  *
+     *                                                                         *
+     **************************************************************************/
+    @Benchmark
+    public int handlerChain(Cursor cursor) {
+        Sample sample = cursor.next(samples);
+        // appInfo.shouldHandleAdj()
+        boolean shouldHandleAdj = sample.adjHandleFunction.apply(sample, appOptimizePolicyMap.get(sample.packageName));
+        return autoApplyAdjHandleAction(sample, sample.adj >= 0, shouldHandleAdj);
+    }
+
+    private int autoApplyAdjHandleAction(Sample sample, boolean isUserSpaceAdj, boolean shouldHandleAdj) {
+        switch (sample.actionType) {
+            case AdjHandleActionType.CUSTOM_MAIN_PROCESS:
+                return doCustomMainProcessAdj(sample, isUserSpaceAdj, shouldHandleAdj);
+            case AdjHandleActionType.GLOBAL_OOM_ADJ:
+                return doGlobalOomScoreAdj(sample, isUserSpaceAdj, shouldHandleAdj);
+            case AdjHandleActionType.OTHER:
+                return doOther(sample, isUserSpaceAdj, shouldHandleAdj);
+            default:
+                return LEAF_IDENTITY;
+        }
+    }
+
+    private int doCustomMainProcessAdj(Sample sample, boolean isUserSpaceAdj, boolean shouldHandleAdj) {
+        Policy policy = appOptimizePolicyMap.get(sample.packageName);
+        Integer possibleAdj = null;
+        if (policy != null) {
+            if (sample.appGroupEnum == AppGroupEnum.ACTIVE) {
+                possibleAdj = policy.customMainProcessFgAdj;
+            } else if (sample.appGroupEnum == AppGroupEnum.IDLE) {
+                possibleAdj = policy.customMainProcessBgAdj;
+            }
+        }
+        if (possibleAdj == null) {
+            return doOther(sample, isUserSpaceAdj, shouldHandleAdj);
+        }
+        return applyHighPriorityProcessFinalAdj(sample, shouldHandleAdj, LEAF_CUSTOM_ADJ);
+    }
+
+    private int doGlobalOomScoreAdj(Sample sample, boolean isUserSpaceAdj, boolean shouldHandleAdj) {
+        if (globalOomScoreAdjHandler.isShouldHandle(isUserSpaceAdj, sample.mainProcess, sample.isHighPriorityProcess)) {
+            return applyHighPriorityProcessFinalAdj(sample, shouldHandleAdj, LEAF_GLOBAL_OOM_SCORE);
+        }
+        return doOther(sample, isUserSpaceAdj, shouldHandleAdj);
+    }
+
+    private int doOther(Sample sample, boolean isUserSpaceAdj, boolean shouldHandleAdj) {
+        if (!isUserSpaceAdj) {
+            return LEAF_IDENTITY;
+        }
+        if (!sample.isHighPriorityProcess) {
+            return LEAF_SUB_PROCESS;
+        }
+        if (sample.appGroupEnum == AppGroupEnum.ACTIVE) {
+            return LEAF_DEFAULT_MAIN_ADJ;
+        }
+        if (isNegativeMode) {
+            return LEAF_IDENTITY;
+        }
+        return applyHighPriorityProcessFinalAdj(sample, shouldHandleAdj, LEAF_OOM_ADJ_HANDLER);
+    }
+
+    private static int applyHighPriorityProcessFinalAdj(Sample sample, boolean shouldHandleAdj, int leaf) {
+        BiFunction<Sample, Policy, Boolean> adjHandleFunction = sample.adjHandleFunction;
+        if (adjHandleFunction == handleAdjIfHasActivity) {
+            return shouldHandleAdj ? leaf : LEAF_NOT_HAS_ACTIVITY;
+        } else if (adjHandleFunction == handleAdjAlways) {
+            return leaf;
+        } else if (adjHandleFunction == handleAdjNever) {
+            return LEAF_IDENTITY;
+        }
+        return LEAF_NOT_HAS_ACTIVITY;
+    }
+
+    @Test
+    public void benchmark() throws Exception {
+        JmhRunner.run(AdjDecisionTableBenchmark.class);
+    }
+}
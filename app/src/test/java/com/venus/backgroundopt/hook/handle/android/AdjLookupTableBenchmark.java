@@ -0,0 +1,115 @@
+/*
+ * Copyright (C) 2023 BackgroundOpt
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.venus.backgroundopt.hook.handle.android;
+
+import com.venus.backgroundopt.benchmark.JmhRunner;
+import com.venus.backgroundopt.hook.handle.android.entity.ProcessList;
+
+import org.junit.Test;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link AdjLookupTable}与原先以{@link ConcurrentHashMap#computeIfAbsent}记忆化(装箱的adj作为key)的对比
+ * <p>
+ * 映射规则与Simple Lmk的普通进程相同。查询的adj按系统实际下发的分布循环: 多数为缓存进程的900~999, 其余为前台、可见、服务等固定档位
+ *
+ * @author XingC
+ * @date 2026/10/18
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class AdjLookupTableBenchmark {
+    private static final int SIMPLE_LMK_CONVERT_DIVISOR =
+            (ProcessList.UNKNOWN_ADJ - 1) / ProcessList.PERCEPTIBLE_RECENT_FOREGROUND_APP_ADJ;
+    private static final int SIMPLE_LMK_MIN_ADJ = 4;
+
+    private AdjLookupTable adjLookupTable;
+    private ConcurrentHashMap<Integer, Integer> boxedMemo;
+    private int[] adjs;
+
+    private static int map(int oomScoreAdj) {
+        return Math.max(oomScoreAdj / SIMPLE_LMK_CONVERT_DIVISOR, SIMPLE_LMK_MIN_ADJ);
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        adjLookupTable = new AdjLookupTable(AdjLookupTableBenchmark::map);
+        boxedMemo = new ConcurrentHashMap<>(8);
+
+        int[] fixedAdjs = {
+                ProcessList.FOREGROUND_APP_ADJ,
+                ProcessList.PERCEPTIBLE_RECENT_FOREGROUND_APP_ADJ,
+                ProcessList.VISIBLE_APP_ADJ,
+                ProcessList.PERCEPTIBLE_APP_ADJ,
+                ProcessList.SERVICE_ADJ,
+                ProcessList.HOME_APP_ADJ,
+                ProcessList.PREVIOUS_APP_ADJ,
+                ProcessList.PERSISTENT_SERVICE_ADJ,
+        };
+        int cachedAdjCount = ProcessList.UNKNOWN_ADJ - ProcessList.CACHED_APP_MIN_ADJ - 1;
+        adjs = new int[fixedAdjs.length + cachedAdjCount];
+        System.arraycopy(fixedAdjs, 0, adjs, 0, fixedAdjs.length);
+        for (int i = 0; i < cachedAdjCount; i++) {
+            adjs[fixedAdjs.length + i] = ProcessList.CACHED_APP_MIN_ADJ + i;
+        }
+        // 与hook中的表一样, 先让记忆化的结果全部命中
+        for (int adj : adjs) {
+            boxedMemo.computeIfAbsent(adj, AdjLookupTableBenchmark::map);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int index;
+
+        int next(int[] adjs) {
+            int i = index;
+            index = i + 1 == adjs.length ? 0 : i + 1;
+            return adjs[i];
+        }
+    }
+
+    @Benchmark
+    @Threads(4)
+    public int adjLookupTable(Cursor cursor) {
+        return adjLookupTable.get(cursor.next(adjs));
+    }
+
+    @Benchmark
+    @Threads(4)
+    public int boxedComputeIfAbsent(Cursor cursor) {
+        return boxedMemo.computeIfAbsent(cursor.next(adjs), AdjLookupTableBenchmark::map);
+    }
+
+    @Test
+    public void benchmark() throws Exception {
+        JmhRunner.run(AdjLookupTableBenchmark.class);
+    }
+}
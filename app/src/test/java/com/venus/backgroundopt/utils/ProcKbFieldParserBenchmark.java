@@ -0,0 +1,138 @@
+/*
+ * Copyright (C) 2023 BackgroundOpt
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.venus.backgroundopt.utils;
+
+import com.venus.backgroundopt.benchmark.JmhRunner;
+
+import org.junit.Test;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link ProcKbFieldParser}与按行读取、拆分字符串的解析方式的对比, 以及{@link ProcPidPaths}与每次拼接路径的对比
+ * <p>
+ * 样本复制到临时文件中读取, 只比较解析本身, 不包含内核生成/proc内容的开销
+ * <p>
+ * 原先的实现经反射调用系统的{@code com.android.server.am.MemoryStatUtil}。它是system_server中的隐藏API, 只能在hook后的进程中调用,
+ * JVM中并不存在, 因此以{@link #readLinesAndSplit()}代替: 与其相同, 先把内容读成字符串再拆分解析。
+ * 结果不包含反射调用本身的开销, 实际的差距只会更大
+ *
+ * @author XingC
+ * @date 2026/10/18
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class ProcKbFieldParserBenchmark {
+    private static final String[] KEYS = {"Rss", "Pss", "Anonymous", "Swap", "SwapPss"};
+
+    @Param({"smaps_rollup", "status"})
+    public String fixture;
+
+    private File file;
+    private String path;
+    private ProcKbFieldParser parser;
+    private final ProcKbFieldParser.ParseBuffers buffers = new ProcKbFieldParser.ParseBuffers();
+    private final long[] out = new long[KEYS.length];
+    private int pid = 1000;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        file = File.createTempFile("proc_" + fixture, null);
+        try (InputStream input = ProcKbFieldParserBenchmark.class.getResourceAsStream("/proc/" + fixture)) {
+            Files.copy(input, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        path = file.getPath();
+        parser = "status".equals(fixture)
+                ? new ProcKbFieldParser("VmRSS", "RssAnon", "RssFile", "VmSwap")
+                : new ProcKbFieldParser(KEYS);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Benchmark
+    public long[] byteParser() {
+        parser.parse(path, out, buffers);
+        return out;
+    }
+
+    /**
+     * 代替MemoryStatUtil的字符串解析方式
+     */
+    @Benchmark
+    public long[] readLinesAndSplit() throws IOException {
+        String[] keys = "status".equals(fixture)
+                ? new String[]{"VmRSS", "RssAnon", "RssFile", "VmSwap"}
+                : KEYS;
+        long[] result = new long[keys.length];
+        try (BufferedReader reader = new BufferedReader(new FileReader(path))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int colon = line.indexOf(':');
+                if (colon < 0) {
+                    continue;
+                }
+                String key = line.substring(0, colon);
+                for (int i = 0; i < keys.length; i++) {
+                    if (keys[i].equals(key)) {
+                        String[] parts = line.substring(colon + 1).trim().split("\\s+");
+                        result[i] += Long.parseLong(parts[0]);
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    @Benchmark
+    public String cachedPath() {
+        pid = pid == 1300 ? 1000 : pid + 1;
+        return ProcPidPaths.of(pid).getSmapsRollup();
+    }
+
+    @Benchmark
+    public String concatenatedPath() {
+        pid = pid == 1300 ? 1000 : pid + 1;
+        return "/proc/" + pid + "/smaps_rollup";
+    }
+
+    @Test
+    public void benchmark() throws Exception {
+        JmhRunner.run(ProcKbFieldParserBenchmark.class);
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2023 BackgroundOpt
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.venus.backgroundopt.utils.concurrent;
+
+import com.venus.backgroundopt.benchmark.JmhRunner;
+
+import org.junit.Test;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link ConcurrentIntObjectMap}与{@link ConcurrentHashMap}(装箱的pid作为key)的对比
+ * <p>
+ * key为近似连续分配的pid, 数量与12~16G设备上的存活进程数相当
+ *
+ * @author XingC
+ * @date 2026/10/18
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class ConcurrentIntObjectMapBenchmark {
+    private static final int FIRST_PID = 1000;
+
+    @Param({"300", "800"})
+    public int processCount;
+
+    private ConcurrentIntObjectMap<Object> intObjectMap;
+    private ConcurrentHashMap<Integer, Object> concurrentHashMap;
+    private int[] pids;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        intObjectMap = new ConcurrentIntObjectMap<>();
+        concurrentHashMap = new ConcurrentHashMap<>();
+        pids = new int[processCount];
+        for (int i = 0; i < processCount; i++) {
+            int pid = FIRST_PID + i * 3;
+            Object value = new Object();
+            pids[i] = pid;
+            intObjectMap.put(pid, value);
+            concurrentHashMap.put(pid, value);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int index;
+
+        int next(int[] pids) {
+            int i = index;
+            index = i + 1 == pids.length ? 0 : i + 1;
+            return pids[i];
+        }
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Object intObjectMapGet(Cursor cursor) {
+        return intObjectMap.get(cursor.next(pids));
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Object concurrentHashMapGet(Cursor cursor) {
+        return concurrentHashMap.get(cursor.next(pids));
+    }
+
+    @Benchmark
+    public Object intObjectMapPutRemove(Cursor cursor) {
+        int pid = cursor.next(pids);
+        Object value = intObjectMap.remove(pid);
+        intObjectMap.put(pid, value);
+        return value;
+    }
+
+    @Benchmark
+    public Object concurrentHashMapPutRemove(Cursor cursor) {
+        int pid = cursor.next(pids);
+        Object value = concurrentHashMap.remove(pid);
+        concurrentHashMap.put(pid, value);
+        return value;
+    }
+
+    @Benchmark
+    public void intObjectMapForEachValue(Blackhole blackhole) {
+        intObjectMap.forEachValue(blackhole::consume);
+    }
+
+    @Benchmark
+    public void concurrentHashMapForEachValue(Blackhole blackhole) {
+        concurrentHashMap.values().forEach(blackhole::consume);
+    }
+
+    @Test
+    public void benchmark() throws Exception {
+        JmhRunner.run(ConcurrentIntObjectMapBenchmark.class);
+    }
+}
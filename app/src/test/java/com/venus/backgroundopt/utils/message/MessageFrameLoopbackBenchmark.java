@@ -0,0 +1,312 @@
+/*
+ * Copyright (C) 2023 BackgroundOpt
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.venus.backgroundopt.utils.message;
+
+import com.alibaba.fastjson2.JSON;
+import com.venus.backgroundopt.benchmark.JmhRunner;
+import com.venus.backgroundopt.core.RunningInfo;
+import com.venus.backgroundopt.entity.base.BaseProcessInfoKt;
+import com.venus.backgroundopt.manager.message.SocketModuleMessageHandler;
+import com.venus.backgroundopt.utils.JsonUtils;
+import com.venus.backgroundopt.utils.message.handle.AppOptimizePolicyMessageHandler.AppOptimizePolicy;
+import com.venus.backgroundopt.utils.message.handle.BackgroundTasksMessageHandler.BackgroundTaskMessage;
+
+import org.junit.Test;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import de.robv.android.xposed.XC_MethodHook.MethodHookParam;
+
+/**
+ * 本机回环上ui与模块通信的往返耗时:
+ * {@link SocketMessageSender}通过{@link MessageFrame}长连接访问{@link SocketModuleMessageHandler}(NIO Selector),
+ * 与原实现(每次请求新建连接, 以对象流传输{@link Message})对比
+ * <p>
+ * 两端使用同一组处理器, 响应getBackgroundTasks与getRunningAppInfo, 数据量与实际相当。
+ * 带Concurrent后缀的方法以多个线程同时发送, 长连接上会有多个请求同时等待响应
+ *
+ * @author XingC
+ * @date 2026/10/18
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class MessageFrameLoopbackBenchmark {
+    private static final int CONCURRENT_THREADS = 8;
+
+    // 12~16G设备上的后台进程数
+    private static final int BACKGROUND_PROCESS_COUNT = 120;
+
+    private static final String[] PACKAGE_NAMES = {
+            "com.tencent.mm",
+            "com.tencent.mobileqq",
+            "com.ss.android.ugc.aweme",
+            "com.taobao.taobao",
+            "com.eg.android.AlipayGphone",
+            "com.xunmeng.pinduoduo",
+            "com.sankuai.meituan",
+            "com.sina.weibo",
+            "com.zhihu.android",
+            "com.xingin.xhs",
+            "tv.danmaku.bili",
+            "com.netease.cloudmusic",
+            "com.autonavi.minimap",
+            "com.jingdong.app.mall",
+            "com.kuaishou.nebula",
+            "com.coolapk.market",
+            "org.telegram.messenger",
+            "com.android.chrome",
+            "com.alibaba.android.rimet",
+            "com.baidu.netdisk",
+    };
+
+    private static final String[] PROCESS_SUFFIXES = {
+            "", ":push", ":tools", ":remote", ":sandboxed_process0", ":appbrand0"
+    };
+
+    @Param({MessageKeyConstants.getBackgroundTasks, MessageKeyConstants.getRunningAppInfo})
+    public String key;
+
+    private Object value;
+
+    /**
+     * 两种实现的服务端与ui端在整个进程中只创建一次。
+     * 模块端限制了同时存在的连接数, 各次试验共用同一个{@link SocketMessageSender}
+     */
+    private static final class Loopback {
+        static final Loopback INSTANCE = new Loopback();
+
+        final SocketMessageSender frameSender;
+        final int legacyPort;
+
+        private Loopback() {
+            try {
+                RunningInfo runningInfo = allocateRunningInfo();
+                Map<String, MessageHandler> handlers = createMessageHandlers();
+
+                SocketModuleMessageHandler socketModuleMessageHandler =
+                        new SocketModuleMessageHandler(runningInfo, handlers);
+                socketModuleMessageHandler.start();
+                frameSender = new SocketMessageSender(socketModuleMessageHandler.getPort());
+
+                ServerSocket legacyServer = new ServerSocket(0, 50, InetAddress.getLocalHost());
+                legacyPort = legacyServer.getLocalPort();
+                startLegacyServer(legacyServer, runningInfo, handlers);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        value = MessageKeyConstants.getRunningAppInfo.equals(key) ? 10_000 + BACKGROUND_PROCESS_COUNT / 2 : "";
+
+        // 确认两种实现都经过了处理器
+        Loopback loopback = Loopback.INSTANCE;
+        String frameResponse = loopback.frameSender.send(key, value);
+        String legacyResponse = sendLegacy(loopback.legacyPort, key, value);
+        if (frameResponse == null || !frameResponse.equals(legacyResponse)) {
+            throw new IllegalStateException("响应不一致: " + frameResponse + ", " + legacyResponse);
+        }
+    }
+
+    @Benchmark
+    public String persistentFrameConnection() {
+        return Loopback.INSTANCE.frameSender.send(key, value);
+    }
+
+    @Benchmark
+    @Threads(CONCURRENT_THREADS)
+    public String persistentFrameConnectionConcurrent() {
+        return Loopback.INSTANCE.frameSender.send(key, value);
+    }
+
+    @Benchmark
+    public String connectionPerRequest() throws Exception {
+        return sendLegacy(Loopback.INSTANCE.legacyPort, key, value);
+    }
+
+    @Benchmark
+    @Threads(CONCURRENT_THREADS)
+    public String connectionPerRequestConcurrent() throws Exception {
+        return sendLegacy(Loopback.INSTANCE.legacyPort, key, value);
+    }
+
+    /* *************************************************************************
+     *                                                                         *
+     * 处理器                                                                    *
+     *                                                                         *
+     **************************************************************************/
+    private static Map<String, MessageHandler> createMessageHandlers() {
+        BackgroundTaskMessage backgroundTaskMessage = createBackgroundTaskMessage();
+
+        Map<String, MessageHandler> handlers = new HashMap<>();
+        // 与BackgroundTasksMessageHandler相同, 每次请求重新序列化
+        handlers.put(MessageKeyConstants.getBackgroundTasks, (runningInfo, param, value) ->
+                param.setResult(JSON.toJSONString(backgroundTaskMessage)));
+        // 与RunningAppInfoMessageHandler相同, 以uid查找并返回AppInfo.toString()
+        handlers.put(MessageKeyConstants.getRunningAppInfo, (runningInfo, param, value) -> {
+            int uid = JSON.parseObject(value, Integer.class);
+            BaseProcessInfoKt processInfo = backgroundTaskMessage.getProcessInfos().get(uid - 10_000);
+            param.setResult("AppInfo{uid=" + uid
+                    + ", packageName='" + processInfo.getPackageName() + '\''
+                    + ", userId=0, appGroupEnum=IDLE, mPid=" + processInfo.getPid() + '}');
+        });
+        return handlers;
+    }
+
+    private static BackgroundTaskMessage createBackgroundTaskMessage() {
+        List<BaseProcessInfoKt> processInfos = new ArrayList<>(BACKGROUND_PROCESS_COUNT);
+        Map<String, AppOptimizePolicy> appOptimizePolicyMap = new HashMap<>();
+        int pid = 2_143;
+        for (int i = 0; i < BACKGROUND_PROCESS_COUNT; i++) {
+            String packageName = PACKAGE_NAMES[i % PACKAGE_NAMES.length];
+            String suffix = PROCESS_SUFFIXES[(i / PACKAGE_NAMES.length) % PROCESS_SUFFIXES.length];
+            pid += 1 + (i * 7) % 23;
+
+            BaseProcessInfoKt processInfo = new BaseProcessInfoKt(10_000 + i, pid, 0);
+            processInfo.setPackageName(packageName);
+            processInfo.setProcessName(packageName + suffix);
+            processInfo.setMainProcess(suffix.isEmpty());
+            processInfo.setRssInBytes((40L + (i * 37L) % 360) * 1024 * 1024);
+            processInfo.setOomAdjScore(suffix.isEmpty() ? 700 + i % 200 : 900 + i % 100);
+            processInfo.setCurAdj(processInfo.getOomAdjScore());
+            processInfos.add(processInfo);
+
+            appOptimizePolicyMap.computeIfAbsent(packageName, name -> {
+                AppOptimizePolicy policy = new AppOptimizePolicy();
+                policy.setPackageName(name);
+                return policy;
+            });
+        }
+
+        BackgroundTaskMessage message = new BackgroundTaskMessage();
+        message.setProcessInfos(processInfos);
+        message.setAppOptimizePolicyMap(appOptimizePolicyMap);
+        return message;
+    }
+
+    /**
+     * 消息处理器不使用{@link RunningInfo}, 而它的构造依赖Xposed与系统服务, 因此跳过构造方法创建
+     */
+    private static RunningInfo allocateRunningInfo() throws ReflectiveOperationException {
+        Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+        Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+        theUnsafe.setAccessible(true);
+        return (RunningInfo) unsafeClass.getMethod("allocateInstance", Class.class)
+                .invoke(theUnsafe.get(null), RunningInfo.class);
+    }
+
+    /* *************************************************************************
+     *                                                                         *
+     * 原实现                                                                    *
+     *                                                                         *
+     **************************************************************************/
+    /**
+     * 原模块端: 每个连接读取一个{@link Message}, 交给3个线程的线程池处理后写回并关闭
+     * <p>
+     * 原实现所有请求共用一个{@link MethodHookParam}, 并发时结果会互相覆盖, 这里改为每个请求一个
+     */
+    private static void startLegacyServer(
+            ServerSocket server,
+            RunningInfo runningInfo,
+            Map<String, MessageHandler> handlers
+    ) throws ReflectiveOperationException {
+        ExecutorService executor = Executors.newFixedThreadPool(3, runnable -> {
+            Thread thread = new Thread(runnable, "LegacyMessageHandler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        Constructor<MethodHookParam> paramConstructor = MethodHookParam.class.getDeclaredConstructor();
+        paramConstructor.setAccessible(true);
+
+        Thread acceptThread = new Thread(() -> {
+            while (true) {
+                Socket accept;
+                ObjectInputStream input;
+                try {
+                    accept = server.accept();
+                    input = new ObjectInputStream(accept.getInputStream());
+                } catch (IOException e) {
+                    continue;
+                }
+                executor.execute(() -> {
+                    try (Socket socket = accept; ObjectInputStream objectInputStream = input) {
+                        Message message = (Message) objectInputStream.readObject();
+                        MethodHookParam param = paramConstructor.newInstance();
+                        MessageHandler handler = handlers.get(message.getKey());
+                        if (handler != null) {
+                            handler.handle(runningInfo, param, String.valueOf(message.getValue()));
+                        }
+                        try (ObjectOutputStream output = new ObjectOutputStream(socket.getOutputStream())) {
+                            output.writeObject(param.getResult());
+                        }
+                    } catch (Exception ignored) {
+                        // 连接异常, 由ui端处理
+                    }
+                });
+            }
+        }, "LegacyMessageServer");
+        acceptThread.setDaemon(true);
+        acceptThread.start();
+    }
+
+    /**
+     * 原ui端的SocketMessageSender.send
+     */
+    private static String sendLegacy(int port, String key, Object value) throws Exception {
+        try (Socket socket = new Socket(InetAddress.getLocalHost(), port);
+             ObjectOutputStream output = new ObjectOutputStream(socket.getOutputStream())) {
+            output.writeObject(new Message(JsonUtils.toJsonString(value), key));
+            output.flush();
+            try (ObjectInputStream input = new ObjectInputStream(socket.getInputStream())) {
+                return (String) input.readObject();
+            }
+        }
+    }
+
+    @Test
+    public void benchmark() throws Exception {
+        JmhRunner.run(MessageFrameLoopbackBenchmark.class);
+    }
+}
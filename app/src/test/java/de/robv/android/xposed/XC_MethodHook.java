@@ -0,0 +1,26 @@
+package de.robv.android.xposed;
+
+/**
+ * 单元测试中代替Xposed框架的{@link MethodHookParam}
+ * <p>
+ * 模块的消息处理器只通过它传递结果, 这里只保留result
+ *
+ * @author XingC
+ * @date 2026/10/18
+ */
+public abstract class XC_MethodHook {
+    public static final class MethodHookParam {
+        private Object result;
+
+        private MethodHookParam() {
+        }
+
+        public Object getResult() {
+            return result;
+        }
+
+        public void setResult(Object result) {
+            this.result = result;
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package de.robv.android.xposed;
+
+/**
+ * 单元测试中代替Xposed框架的日志输出
+ * <p>
+ * Xposed api仅在编译期存在, 本地JVM上运行到日志的代码时需要此类
+ *
+ * @author XingC
+ * @date 2026/10/18
+ */
+public final class XposedBridge {
+    private XposedBridge() {
+    }
+
+    public static void log(String text) {
+        System.out.println(text);
+    }
+
+    public static void log(Throwable t) {
+        t.printStackTrace(System.out);
+    }
+}
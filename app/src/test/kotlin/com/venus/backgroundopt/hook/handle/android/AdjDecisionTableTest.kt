@@ -0,0 +1,249 @@
+/*
+ * Copyright (C) 2023 BackgroundOpt
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.venus.backgroundopt.hook.handle.android
+
+import com.venus.backgroundopt.core.RunningInfo.AppGroupEnum
+import com.venus.backgroundopt.hook.handle.android.entity.ProcessRecord.AdjHandleActionType
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNotSame
+import org.junit.Assert.assertSame
+import org.junit.Assert.assertTrue
+import org.junit.Test
+
+/**
+ * [AdjDecisionTable]的下标布局与策略编译
+ *
+ * @author XingC
+ * @date 2026/10/18
+ */
+class AdjDecisionTableTest {
+    private val subProcessStrategy = AdjDecisionStrategy { _, adj -> adj + 1 }
+    private val notHasActivityStrategy = AdjDecisionStrategy { _, adj -> adj + 2 }
+
+    // 主进程在用户空间adj时使用全局oom分数
+    private val globalOomScoreAdjHandler = object : GlobalOomScoreAdjHandler() {
+        override fun isShouldHandle(
+            isUserSpaceAdj: Boolean,
+            isMainProcess: Boolean,
+            isHighPriorityProcess: Boolean
+        ): Boolean = isUserSpaceAdj && isMainProcess
+    }
+
+    private fun createTable(isNegativeMode: Boolean = false): AdjDecisionTable = AdjDecisionTable(
+        oomAdjHandler = OomScoreAdjHandler().buildAdjTables(),
+        globalOomScoreAdjHandler = globalOomScoreAdjHandler,
+        customGlobalOomScore = 0,
+        isNegativeMode = isNegativeMode,
+        subProcessStrategy = subProcessStrategy,
+        notHasActivityStrategy = notHasActivityStrategy
+    )
+
+    private val booleans = booleanArrayOf(false, true)
+
+    private inline fun forEachCell(
+        block: (
+            actionType: Int,
+            appGroupEnum: AppGroupEnum,
+            mainProcess: Boolean,
+            isHighPriorityProcess: Boolean,
+            isUserSpaceAdj: Boolean,
+            manageState: Int
+        ) -> Unit
+    ) {
+        for (actionType in 0 until AdjDecisionTable.ACTION_TYPE_COUNT) {
+            for (appGroupEnum in AppGroupEnum.entries) {
+                for (mainProcess in booleans) {
+                    for (isHighPriorityProcess in booleans) {
+                        for (isUserSpaceAdj in booleans) {
+                            for (manageState in 0 until AdjDecisionTable.MANAGE_STATE_COUNT) {
+                                block(
+                                    actionType,
+                                    appGroupEnum,
+                                    mainProcess,
+                                    isHighPriorityProcess,
+                                    isUserSpaceAdj,
+                                    manageState
+                                )
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    fun indexIsDenseAndUnique() {
+        val used = BooleanArray(AdjDecisionTable.TABLE_SIZE)
+        var count = 0
+        forEachCell { actionType, appGroupEnum, mainProcess, isHighPriorityProcess, isUserSpaceAdj, manageState ->
+            val index = AdjDecisionTable.indexOf(
+                actionType = actionType,
+                appGroupEnum = appGroupEnum,
+                mainProcess = mainProcess,
+                isHighPriorityProcess = isHighPriorityProcess,
+                isUserSpaceAdj = isUserSpaceAdj,
+                manageState = manageState
+            )
+            assertTrue("index: $index", index in 0 until AdjDecisionTable.TABLE_SIZE)
+            assertTrue("index: $index", !used[index])
+            used[index] = true
+            count++
+        }
+        assertEquals(AdjDecisionTable.TABLE_SIZE, count)
+    }
+
+    @Test
+    fun doNothingAndWakeLockKeepAdj() {
+        val table = createTable()
+        forEachCell { actionType, appGroupEnum, mainProcess, isHighPriorityProcess, isUserSpaceAdj, manageState ->
+            if (actionType != AdjHandleActionType.DO_NOTHING && actionType and AdjHandleActionType.WAKE_LOCK == 0) {
+                return@forEachCell
+            }
+            assertSame(
+                AdjDecisionTable.identityStrategy,
+                table.strategyOf(
+                    actionType = actionType,
+                    appGroupEnum = appGroupEnum,
+                    mainProcess = mainProcess,
+                    isHighPriorityProcess = isHighPriorityProcess,
+                    isUserSpaceAdj = isUserSpaceAdj,
+                    manageState = manageState
+                )
+            )
+        }
+    }
+
+    @Test
+    fun otherStrategyCompilation() {
+        val table = createTable()
+        for (appGroupEnum in AppGroupEnum.entries) {
+            for (mainProcess in booleans) {
+                for (manageState in 0 until AdjDecisionTable.MANAGE_STATE_COUNT) {
+                    // 系统空间的adj不做处理
+                    for (isHighPriorityProcess in booleans) {
+                        assertSame(
+                            AdjDecisionTable.identityStrategy,
+                            table.strategyOf(
+                                AdjHandleActionType.OTHER,
+                                appGroupEnum,
+                                mainProcess,
+                                isHighPriorityProcess,
+                                false,
+                                manageState
+                            )
+                        )
+                    }
+                    // 普通子进程
+                    assertSame(
+                        subProcessStrategy,
+                        table.strategyOf(
+                            AdjHandleActionType.OTHER,
+                            appGroupEnum,
+                            mainProcess,
+                            false,
+                            true,
+                            manageState
+                        )
+                    )
+
+                    if (appGroupEnum == AppGroupEnum.ACTIVE) {
+                        continue
+                    }
+                    val strategy = table.strategyOf(
+                        AdjHandleActionType.OTHER,
+                        appGroupEnum,
+                        mainProcess,
+                        true,
+                        true,
+                        manageState
+                    )
+                    when (manageState) {
+                        AdjDecisionTable.MANAGE_STATE_NEVER ->
+                            assertSame(AdjDecisionTable.identityStrategy, strategy)
+
+                        AdjDecisionTable.MANAGE_STATE_NOT_HAS_ACTIVITY ->
+                            assertSame(notHasActivityStrategy, strategy)
+
+                        else -> {
+                            assertNotSame(AdjDecisionTable.identityStrategy, strategy)
+                            assertNotSame(notHasActivityStrategy, strategy)
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    fun negativeModeKeepsBackgroundHighPriorityAdj() {
+        val table = createTable(isNegativeMode = true)
+        for (manageState in 0 until AdjDecisionTable.MANAGE_STATE_COUNT) {
+            assertSame(
+                AdjDecisionTable.identityStrategy,
+                table.strategyOf(
+                    AdjHandleActionType.OTHER,
+                    AppGroupEnum.IDLE,
+                    true,
+                    true,
+                    true,
+                    manageState
+                )
+            )
+        }
+    }
+
+    @Test
+    fun globalOomScoreFallsBackToOther() {
+        val table = createTable()
+        // 子进程不在全局oom的作用范围内, 与OTHER编译出相同的策略
+        assertSame(
+            subProcessStrategy,
+            table.strategyOf(
+                AdjHandleActionType.GLOBAL_OOM_ADJ,
+                AppGroupEnum.IDLE,
+                false,
+                false,
+                true,
+                AdjDecisionTable.MANAGE_STATE_MANAGED
+            )
+        )
+        assertSame(
+            notHasActivityStrategy,
+            table.strategyOf(
+                AdjHandleActionType.GLOBAL_OOM_ADJ,
+                AppGroupEnum.IDLE,
+                true,
+                true,
+                true,
+                AdjDecisionTable.MANAGE_STATE_NOT_HAS_ACTIVITY
+            )
+        )
+        assertSame(
+            AdjDecisionTable.identityStrategy,
+            table.strategyOf(
+                AdjHandleActionType.GLOBAL_OOM_ADJ,
+                AppGroupEnum.IDLE,
+                true,
+                true,
+                false,
+                AdjDecisionTable.MANAGE_STATE_MANAGED
+            )
+        )
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2023 BackgroundOpt
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.venus.backgroundopt.hook.handle.android
+
+import com.venus.backgroundopt.hook.handle.android.entity.ProcessList
+import org.junit.Assert.assertEquals
+import org.junit.Test
+
+/**
+ * [AdjLookupTable]与[OomScoreAdjHandler]查找表的正确性
+ *
+ * @author XingC
+ * @date 2026/10/18
+ */
+class AdjLookupTableTest {
+    private val adjRange = ProcessList.NATIVE_ADJ..ProcessList.UNKNOWN_ADJ
+
+    @Test
+    fun lookupMatchesMapperOverWholeRange() {
+        val mapper = AdjLookupTable.AdjMapper { oomScoreAdj -> oomScoreAdj / 7 + 3 }
+        val table = AdjLookupTable(mapper)
+        for (adj in adjRange) {
+            assertEquals("adj: $adj", mapper.map(adj), table[adj])
+        }
+    }
+
+    @Test
+    fun outOfRangeFallsBackToMapper() {
+        val table = AdjLookupTable { oomScoreAdj -> -oomScoreAdj }
+        for (adj in intArrayOf(ProcessList.NATIVE_ADJ - 1, ProcessList.UNKNOWN_ADJ + 1, Int.MIN_VALUE + 1, Int.MAX_VALUE)) {
+            assertEquals(-adj, table[adj])
+        }
+    }
+
+    @Test
+    fun mapperIsOnlyCalledWhileBuilding() {
+        var calls = 0
+        val table = AdjLookupTable { oomScoreAdj ->
+            calls++
+            oomScoreAdj
+        }
+        assertEquals(AdjLookupTable.TABLE_SIZE, calls)
+        for (adj in adjRange) {
+            table[adj]
+        }
+        assertEquals(AdjLookupTable.TABLE_SIZE, calls)
+    }
+
+    @Test
+    fun handlerTablesMatchComputeValues() {
+        val handlers = listOf(
+            // 与Simple Lmk的参数形式相同
+            ReferenceAdjHandler(
+                highPrioritySubProcessAdjOffset = ProcessList.PERCEPTIBLE_RECENT_FOREGROUND_APP_ADJ,
+                minAdj = 1,
+                maxAdj = ProcessList.PERCEPTIBLE_RECENT_FOREGROUND_APP_ADJ - 1,
+                adjConvertDivisor = ProcessList.UNKNOWN_ADJ / ProcessList.PERCEPTIBLE_RECENT_FOREGROUND_APP_ADJ,
+                minImportAppAdj = 1,
+                maxImportAppAdj = 20
+            ),
+            ReferenceAdjHandler(),
+        )
+        handlers.forEach { handler ->
+            handler.buildAdjTables()
+            for (adj in adjRange) {
+                assertEquals("adj: $adj", handler.referenceAdj(adj), handler.computeAdj(adj))
+                assertEquals(
+                    "adj: $adj",
+                    handler.referenceHighPrioritySubProcessAdj(adj),
+                    handler.computeHighPrioritySubProcessAdj(adj)
+                )
+                assertEquals("adj: $adj", handler.referenceImportAppAdj(adj), handler.computeImportAppAdj(adj))
+            }
+        }
+    }
+
+    private class ReferenceAdjHandler(
+        highPrioritySubProcessAdjOffset: Int = 1,
+        minAdj: Int = 0,
+        maxAdj: Int = minAdj,
+        adjConvertDivisor: Int = 1,
+        minImportAppAdj: Int = minAdj,
+        maxImportAppAdj: Int = maxAdj,
+    ) : OomScoreAdjHandler(
+        highPrioritySubProcessAdjOffset = highPrioritySubProcessAdjOffset,
+        minAdj = minAdj,
+        maxAdj = maxAdj,
+        adjConvertDivisor = adjConvertDivisor,
+        minImportAppAdj = minImportAppAdj,
+        maxImportAppAdj = maxImportAppAdj
+    ) {
+        fun referenceAdj(oomScoreAdj: Int): Int = computeAdjValue(oomScoreAdj)
+
+        fun referenceHighPrioritySubProcessAdj(oomScoreAdj: Int): Int =
+            computeHighPrioritySubProcessAdjValue(oomScoreAdj)
+
+        fun referenceImportAppAdj(oomScoreAdj: Int): Int = computeImportAppAdjValue(oomScoreAdj)
+    }
+}
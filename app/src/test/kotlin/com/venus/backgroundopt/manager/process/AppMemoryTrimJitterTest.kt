@@ -0,0 +1,249 @@
+/*
+ * Copyright (C) 2023 BackgroundOpt
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.venus.backgroundopt.manager.process
+
+import com.venus.backgroundopt.manager.process.AppMemoryTrimManagerKt.Companion.JITTER_RATIO
+import com.venus.backgroundopt.manager.process.AppMemoryTrimManagerKt.Companion.MAX_TRIMS_PER_TICK
+import com.venus.backgroundopt.manager.process.AppMemoryTrimManagerKt.Companion.TICK_MILLIS
+import com.venus.backgroundopt.manager.process.AppMemoryTrimManagerKt.Companion.backgroundDelay
+import com.venus.backgroundopt.manager.process.AppMemoryTrimManagerKt.Companion.backgroundTimeUnit
+import com.venus.backgroundopt.manager.process.AppMemoryTrimManagerKt.Companion.jitterFractionOf
+import com.venus.backgroundopt.utils.concurrent.HierarchicalTimingWheel
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.util.Random
+
+/**
+ * [AppMemoryTrimManagerKt.jitterFractionOf]在真实包名与pid下的错峰效果
+ *
+ * 300个进程同时进入后台, 按管理器的方式(间隔 + 偏移, 执行后从当前时间重新调度)在时间轮中运行多个周期,
+ * 统计每秒到期的回收数量
+ *
+ * @author XingC
+ * @date 2026/10/18
+ */
+class AppMemoryTrimJitterTest {
+    private class Proc(val packageName: String, val pid: Int) {
+        val entry = HierarchicalTimingWheel.Entry(this)
+        val jitterFraction = jitterFractionOf(packageName, pid)
+        var deadlineMillis = 0L
+        var runCount = 0
+        var firstLatenessMillis = 0L
+        var maxLatenessMillis = 0L
+    }
+
+    /**
+     * 按开机后依次启动的方式生成进程: 每个app有主进程与若干子进程, pid递增且间隔较小
+     */
+    private fun createProcs(): List<Proc> {
+        val random = Random(20261018L)
+        val procs = ArrayList<Proc>(PROC_COUNT)
+        var pid = 2_143
+        var round = 0
+        while (procs.size < PROC_COUNT) {
+            PACKAGE_NAMES.forEach { packageName ->
+                if (procs.size >= PROC_COUNT) {
+                    return@forEach
+                }
+                // 第一轮是各app的主进程, 之后是:push、:remote等子进程
+                if (round == 0 || random.nextInt(3) == 0) {
+                    pid += 1 + random.nextInt(24)
+                    procs.add(Proc(packageName, pid))
+                }
+            }
+            round++
+        }
+        return procs
+    }
+
+    private val backgroundIntervalMillis = backgroundTimeUnit.toMillis(backgroundDelay)
+
+    private fun deadlineMillis(proc: Proc, nowMillis: Long): Long {
+        return nowMillis + backgroundIntervalMillis +
+                (backgroundIntervalMillis * JITTER_RATIO * proc.jitterFraction).toLong()
+    }
+
+    @Test
+    fun phasesAreSpreadAcrossJitterRange() {
+        val procs = createProcs()
+        val buckets = IntArray(10)
+        procs.forEach { proc ->
+            assertTrue(proc.jitterFraction >= 0.0 && proc.jitterFraction < 1.0)
+            buckets[(proc.jitterFraction * buckets.size).toInt()]++
+        }
+        // 期望每个区间30个
+        buckets.forEach { count ->
+            assertTrue("相位分布不均: ${buckets.contentToString()}", count in 15..45)
+        }
+    }
+
+    @Test
+    fun noPeriodicSpikesInTrimsPerSecond() {
+        val procs = createProcs()
+        val wheel = HierarchicalTimingWheel<Proc>(TICK_MILLIS, 0L)
+        // 全部在同一时刻进入后台(如灭屏), 是最容易形成尖峰的情况
+        procs.forEach { proc ->
+            proc.deadlineMillis = deadlineMillis(proc, 0L)
+            wheel.schedule(proc.entry, proc.deadlineMillis)
+        }
+
+        // 最长周期为间隔 * (1 + JITTER_RATIO), 多留一个间隔用于顺延
+        val endMillis = (backgroundIntervalMillis * (1 + JITTER_RATIO)).toLong() * PERIOD_COUNT +
+                backgroundIntervalMillis
+        val seconds = (endMillis / TICK_MILLIS).toInt() + 1
+        // 每秒到期的数量(不受每tick上限影响)与实际执行的数量
+        val duePerSecond = IntArray(seconds)
+        val runPerSecond = IntArray(seconds)
+        duePerSecond.addDeadlines(procs)
+
+        // 首个周期之后的就绪队列最大长度
+        val firstPeriodEndMillis =
+            (backgroundIntervalMillis * (1 + JITTER_RATIO)).toLong() + FIRST_PERIOD_MAX_LATENESS_MILLIS
+        var maxReadyCount = 0
+        val expired = ArrayList<Proc>(MAX_TRIMS_PER_TICK)
+        var now = TICK_MILLIS
+        while (now <= endMillis) {
+            expired.clear()
+            wheel.advance(now, MAX_TRIMS_PER_TICK, expired)
+            if (now > firstPeriodEndMillis) {
+                maxReadyCount = maxOf(maxReadyCount, wheel.readyCount)
+            }
+            val second = (now / TICK_MILLIS).toInt()
+            runPerSecond[second] = expired.size
+            expired.forEach { proc ->
+                val latenessMillis = now - proc.deadlineMillis
+                if (proc.runCount++ == 0) {
+                    proc.firstLatenessMillis = latenessMillis
+                } else {
+                    proc.maxLatenessMillis = maxOf(proc.maxLatenessMillis, latenessMillis)
+                }
+                proc.deadlineMillis = deadlineMillis(proc, now)
+                wheel.schedule(proc.entry, proc.deadlineMillis)
+                if (proc.deadlineMillis < endMillis) {
+                    duePerSecond[(proc.deadlineMillis / TICK_MILLIS).toInt()]++
+                }
+            }
+            now += TICK_MILLIS
+        }
+
+        // 每个进程都执行了多个周期
+        procs.forEach { proc -> assertTrue(proc.runCount >= PERIOD_COUNT) }
+        assertEquals(procs.size, wheel.size)
+
+        // 平均每秒不到2个(300个分布在150s内), 没有同一秒集中到期的尖峰
+        val maxDue = duePerSecond.max()
+        assertTrue("每秒到期数量出现尖峰: $maxDue", maxDue <= MAX_DUE_PER_SECOND)
+        assertTrue(runPerSecond.max() <= MAX_TRIMS_PER_TICK)
+
+        // 以10s为窗口, 各周期中的执行数量都不超过均匀分布时的2倍
+        val windowSeconds = 10
+        val maxPerWindow = (2.0 * procs.size * windowSeconds /
+                (backgroundIntervalMillis * JITTER_RATIO / TICK_MILLIS)).toInt()
+        for (start in 0 until seconds - windowSeconds) {
+            var count = 0
+            for (i in start until start + windowSeconds) {
+                count += duePerSecond[i]
+            }
+            assertTrue("${start}s起的${windowSeconds}s内到期$count", count <= maxPerWindow)
+        }
+
+        // 首个周期平均每秒2个, 与每tick上限相当, 会有少量积压, 但在偏移范围内就能消化
+        // 之后各进程的周期不同, 相位逐渐分散, 积压不会周期性地重现
+        procs.forEach { proc ->
+            assertTrue(proc.firstLatenessMillis <= FIRST_PERIOD_MAX_LATENESS_MILLIS)
+            assertTrue(proc.maxLatenessMillis <= MAX_READY_COUNT * TICK_MILLIS)
+        }
+        assertTrue("就绪队列积压: $maxReadyCount", maxReadyCount <= MAX_READY_COUNT)
+    }
+
+    private fun IntArray.addDeadlines(procs: List<Proc>) {
+        procs.forEach { proc -> this[(proc.deadlineMillis / TICK_MILLIS).toInt()]++ }
+    }
+
+    companion object {
+        private const val PROC_COUNT = 300
+        private const val PERIOD_COUNT = 6
+        private const val MAX_DUE_PER_SECOND = 8
+        private const val MAX_READY_COUNT = 4
+        private const val FIRST_PERIOD_MAX_LATENESS_MILLIS = 20L * 1000
+
+        private val PACKAGE_NAMES = listOf(
+            "com.tencent.mm",
+            "com.tencent.mobileqq",
+            "com.tencent.tim",
+            "com.tencent.wework",
+            "com.tencent.qqmusic",
+            "com.tencent.qqlive",
+            "com.tencent.mtt",
+            "com.tencent.tmgp.sgame",
+            "com.tencent.tmgp.pubgmhd",
+            "com.ss.android.ugc.aweme",
+            "com.ss.android.article.news",
+            "com.ss.android.lark",
+            "com.ss.android.ugc.aweme.lite",
+            "com.kuaishou.nebula",
+            "com.smile.gifmaker",
+            "com.sina.weibo",
+            "com.taobao.taobao",
+            "com.taobao.idlefish",
+            "com.tmall.wireless",
+            "com.eg.android.AlipayGphone",
+            "com.alibaba.android.rimet",
+            "com.jingdong.app.mall",
+            "com.xunmeng.pinduoduo",
+            "com.sankuai.meituan",
+            "com.sankuai.meituan.takeoutnew",
+            "me.ele",
+            "com.dianping.v1",
+            "com.sdu.didi.psnger",
+            "com.autonavi.minimap",
+            "com.baidu.BaiduMap",
+            "com.baidu.searchbox",
+            "com.baidu.netdisk",
+            "com.netease.cloudmusic",
+            "com.netease.mail",
+            "com.zhihu.android",
+            "com.xingin.xhs",
+            "tv.danmaku.bili",
+            "com.youku.phone",
+            "com.qiyi.video",
+            "com.hunantv.imgo.activity",
+            "com.dragon.read",
+            "com.UCMobile",
+            "com.quark.browser",
+            "com.MobileTicket",
+            "ctrip.android.view",
+            "com.cainiao.wireless",
+            "com.unionpay",
+            "cmb.pb",
+            "com.chinamworld.main",
+            "com.icbc",
+            "com.coolapk.market",
+            "com.github.android",
+            "org.telegram.messenger",
+            "com.google.android.youtube",
+            "com.android.chrome",
+            "com.miui.home",
+            "com.android.systemui",
+            "com.miui.securitycenter",
+            "com.xiaomi.market",
+            "com.android.settings",
+        )
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright (C) 2023 BackgroundOpt
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.venus.backgroundopt.manager.process
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+
+/**
+ * [CompactionScheduler.computePriority]
+ *
+ * @author XingC
+ * @date 2026/10/18
+ */
+class CompactionSchedulerPriorityTest {
+    private val mb = 1024L * 1024
+
+    @Test
+    fun idleDurationAddsBonus() {
+        val now = 10 * 60_000L
+        val priority = CompactionScheduler.computePriority(
+            rssInBytes = 100 * mb,
+            idleSinceMillis = now - 5 * 60_000L,
+            processCompactEnum = ProcessCompactEnum.SOME,
+            nowMillis = now
+        )
+        assertEquals(105.0, priority, 1e-9)
+    }
+
+    @Test
+    fun unknownIdleSinceHasNoBonus() {
+        val priority = CompactionScheduler.computePriority(
+            rssInBytes = 100 * mb,
+            idleSinceMillis = 0L,
+            processCompactEnum = ProcessCompactEnum.SOME,
+            nowMillis = 24 * 3600_000L
+        )
+        assertEquals(100.0, priority, 1e-9)
+    }
+
+    @Test
+    fun longerIdleRanksHigher() {
+        val now = 3600_000L
+        val recent = CompactionScheduler.computePriority(64 * mb, now - 60_000L, ProcessCompactEnum.SOME, now)
+        val old = CompactionScheduler.computePriority(64 * mb, now - 30 * 60_000L, ProcessCompactEnum.SOME, now)
+        assertTrue(old > recent)
+        // 越久进入后台的进程优先级越高, 但不会因为开机时间长而变为负数
+        assertTrue(recent > 0.0)
+    }
+}
@@ -0,0 +1,262 @@
+/*
+ * Copyright (C) 2023 BackgroundOpt
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.venus.backgroundopt.manager.process
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertSame
+import org.junit.Assert.assertTrue
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import java.io.File
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Delayed
+import java.util.concurrent.ScheduledExecutorService
+import java.util.concurrent.ScheduledThreadPoolExecutor
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * [MemoryPressureMonitor]: 以临时文件代替/proc/pressure/memory(不注册触发器), 时间由测试控制
+ *
+ * @author XingC
+ * @date 2026/10/18
+ */
+class MemoryPressureMonitorTest {
+    @get:Rule
+    val temporaryFolder = TemporaryFolder()
+
+    private var now = 1_000L
+    private val clock = { now }
+
+    private val calls = mutableListOf<Pair<MemoryPressureLevel, MemoryPressureSample>>()
+
+    private lateinit var pressureFile: File
+
+    private fun newMonitor(
+        listener: MemoryPressureMonitor.MemoryPressureListener = MemoryPressureMonitor.MemoryPressureListener { level, sample ->
+            calls.add(level to sample)
+        },
+        executor: ScheduledExecutorService = ScheduledThreadPoolExecutor(1)
+    ): MemoryPressureMonitor {
+        pressureFile = temporaryFolder.newFile("memory")
+        return MemoryPressureMonitor(
+            listener = listener,
+            someHighPercent = SOME_HIGH,
+            fullHighPercent = FULL_HIGH,
+            someLowPercent = SOME_LOW,
+            pressureFilePath = pressureFile.path,
+            triggerEnabled = false,
+            sampleIntervalMillis = 1L,
+            clock = clock,
+            executor = executor
+        )
+    }
+
+    private fun writePressure(someAvg10: String, fullAvg10: String = "0.00") {
+        pressureFile.writeText(
+            "some avg10=$someAvg10 avg60=1.00 avg300=0.50 total=1000\n" +
+                    "full avg10=$fullAvg10 avg60=0.20 avg300=0.10 total=100\n"
+        )
+    }
+
+    private fun MemoryPressureMonitor.sampleAt(millis: Long) {
+        now = millis
+        sample(triggered = false)
+    }
+
+    @Test
+    fun levelTransitionsAndListenerCalls() {
+        val monitor = newMonitor()
+
+        // NORMAL -> NORMAL: 不通知
+        writePressure(someAvg10 = "5.00")
+        monitor.sampleAt(1_000L)
+        assertEquals(MemoryPressureLevel.NORMAL, monitor.level)
+        assertTrue(calls.isEmpty())
+
+        // NORMAL -> LOW
+        writePressure(someAvg10 = "0.50")
+        monitor.sampleAt(2_000L)
+        assertEquals(MemoryPressureLevel.LOW, monitor.level)
+        assertEquals(1, calls.size)
+        assertSame(MemoryPressureLevel.LOW, calls[0].first)
+        assertEquals(0.5, calls[0].second.someAvg10, 0.0)
+        assertEquals(2_000L, calls[0].second.uptimeMillis)
+
+        // LOW -> LOW: 不通知
+        monitor.sampleAt(3_000L)
+        assertEquals(1, calls.size)
+
+        // LOW -> HIGH(some)
+        writePressure(someAvg10 = "25.00")
+        monitor.sampleAt(4_000L)
+        assertEquals(MemoryPressureLevel.HIGH, monitor.level)
+        assertEquals(2, calls.size)
+
+        // HIGH时的每次采样都通知
+        monitor.sampleAt(5_000L)
+        assertEquals(3, calls.size)
+        assertEquals(5_000L, calls[2].second.uptimeMillis)
+
+        // HIGH(full): some低于高阈值, full达到高阈值
+        writePressure(someAvg10 = "5.00", fullAvg10 = "6.00")
+        monitor.sampleAt(6_000L)
+        assertEquals(MemoryPressureLevel.HIGH, monitor.level)
+        assertEquals(4, calls.size)
+
+        // HIGH -> NORMAL
+        writePressure(someAvg10 = "5.00")
+        monitor.sampleAt(7_000L)
+        assertEquals(MemoryPressureLevel.NORMAL, monitor.level)
+        assertEquals(5, calls.size)
+        assertSame(MemoryPressureLevel.NORMAL, calls[4].first)
+
+        assertEquals(7L, monitor.sampleCount.get())
+        assertSame(calls[4].second, monitor.lastSample)
+        assertEquals(0L, monitor.triggerEventCount.get())
+    }
+
+    @Test
+    fun unreadableSampleIsSkipped() {
+        val monitor = newMonitor()
+        writePressure(someAvg10 = "25.00")
+        monitor.sampleAt(1_000L)
+        assertEquals(MemoryPressureLevel.HIGH, monitor.level)
+
+        assertTrue(pressureFile.delete())
+        monitor.sampleAt(2_000L)
+        assertEquals(MemoryPressureLevel.HIGH, monitor.level)
+        assertEquals(1L, monitor.sampleCount.get())
+        assertEquals(1, calls.size)
+    }
+
+    @Test
+    fun startSamplesOnExecutorUntilStopped() {
+        val executor = ScheduledThreadPoolExecutor(1)
+        lateinit var monitor: MemoryPressureMonitor
+        val callCount = AtomicInteger()
+        val stopped = CountDownLatch(1)
+        monitor = newMonitor(listener = { level, _ ->
+            assertSame(MemoryPressureLevel.HIGH, level)
+            // 第3次采样后停止
+            if (callCount.incrementAndGet() == 3) {
+                monitor.stop()
+                stopped.countDown()
+            }
+        }, executor = executor)
+        writePressure(someAvg10 = "25.00")
+        monitor.start()
+
+        assertTrue(stopped.await(5, TimeUnit.SECONDS))
+        executor.shutdown()
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS))
+        assertEquals(3, callCount.get())
+        assertEquals(3L, monitor.sampleCount.get())
+        assertFalse(monitor.isTriggerMode)
+
+        // 只能启动一次
+        monitor.start()
+        assertEquals(3, callCount.get())
+    }
+
+    /**
+     * 与[AppCompactManager2.onMemoryPressure]相同的组合: 高压力时提前执行等待中的压缩任务(每分钟至多一次),
+     * 提交任务时的延迟按压力等级缩放
+     */
+    @Test
+    fun pullForwardAndBackOff() {
+        val executor = ScheduledThreadPoolExecutor(1).apply {
+            removeOnCancelPolicy = true
+        }
+        val tasks = PendingCompactTasks(executor, COMPACT_TASK_DELAY)
+        val limiter = PullForwardLimiter(clock = clock)
+        var level = MemoryPressureLevel.NORMAL
+        var pullForwardCount = 0
+        val monitor = newMonitor(listener = { newLevel, _ ->
+            level = newLevel
+            if (newLevel == MemoryPressureLevel.HIGH && limiter.tryAcquire()) {
+                pullForwardCount += tasks.runAllNow()
+            }
+        })
+
+        fun submit(pid: Int, ran: CountDownLatch) =
+            tasks.schedule(pid, level.scale(COMPACT_TASK_DELAY)) { ran.countDown() }
+        fun queuedDelayMillis() = executor.queue.map {
+            (it as Delayed).getDelay(TimeUnit.MILLISECONDS)
+        }.single()
+
+        // 低压力: 延迟加倍
+        writePressure(someAvg10 = "0.50")
+        monitor.sampleAt(1_000L)
+        submit(1, CountDownLatch(1))
+        assertTrue(queuedDelayMillis() in (COMPACT_TASK_DELAY + 1)..(COMPACT_TASK_DELAY * 2))
+        tasks.cancel(1)
+
+        // 普通压力: 原延迟
+        writePressure(someAvg10 = "5.00")
+        monitor.sampleAt(2_000L)
+        val firstRan = CountDownLatch(1)
+        submit(1, firstRan)
+        assertTrue(queuedDelayMillis() in (COMPACT_TASK_DELAY / 2 + 1)..COMPACT_TASK_DELAY)
+
+        // 高压力: 等待中的任务立即执行
+        writePressure(someAvg10 = "25.00")
+        monitor.sampleAt(3_000L)
+        assertEquals(1, pullForwardCount)
+        assertTrue(firstRan.await(5, TimeUnit.SECONDS))
+
+        // 高压力下提交的任务延迟减半, 一分钟内的后续高压力采样不再提前执行
+        val secondRan = CountDownLatch(1)
+        submit(2, secondRan)
+        assertTrue(queuedDelayMillis() <= COMPACT_TASK_DELAY / 2)
+        monitor.sampleAt(3_000L + MemoryPressureMonitor.PULL_FORWARD_MIN_INTERVAL_MILLIS - 1)
+        assertEquals(1, pullForwardCount)
+        assertEquals(1, tasks.size)
+
+        // 间隔达到一分钟后再次提前执行
+        monitor.sampleAt(3_000L + MemoryPressureMonitor.PULL_FORWARD_MIN_INTERVAL_MILLIS)
+        assertEquals(2, pullForwardCount)
+
+        assertTrue(secondRan.await(5, TimeUnit.SECONDS))
+        executor.shutdown()
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS))
+        assertEquals(0, tasks.size)
+    }
+
+    @Test
+    fun limiterWithoutHistoryAllowsFirstPullForward() {
+        now = 0L
+        val limiter = PullForwardLimiter(minIntervalMillis = 100L, clock = clock)
+        assertTrue(limiter.tryAcquire())
+        assertFalse(limiter.tryAcquire())
+        now = 99L
+        assertFalse(limiter.tryAcquire())
+        now = 100L
+        assertTrue(limiter.tryAcquire())
+    }
+
+    private companion object {
+        const val SOME_HIGH = 20.0
+        const val FULL_HIGH = 5.0
+        const val SOME_LOW = 1.0
+
+        const val COMPACT_TASK_DELAY = 100_000L
+    }
+}
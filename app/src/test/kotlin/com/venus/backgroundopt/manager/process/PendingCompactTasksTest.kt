@@ -0,0 +1,128 @@
+/*
+ * Copyright (C) 2023 BackgroundOpt
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.venus.backgroundopt.manager.process
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.util.concurrent.ScheduledThreadPoolExecutor
+import java.util.concurrent.ThreadLocalRandom
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+import kotlin.concurrent.thread
+
+/**
+ * [PendingCompactTasks]: 以与[AppCompactManager2]相同的方式(adj变化时提交/取消, 进程移除时取消)驱动
+ *
+ * @author XingC
+ * @date 2026/10/18
+ */
+class PendingCompactTasksTest {
+    private fun newExecutor() = ScheduledThreadPoolExecutor(2).apply {
+        removeOnCancelPolicy = true
+    }
+
+    @Test
+    fun latestTaskReplacesPrevious() {
+        val executor = newExecutor()
+        val tasks = PendingCompactTasks(executor, delayMillis = 50L)
+        val ran = AtomicInteger()
+        tasks.schedule(1, Runnable { ran.addAndGet(1) })
+        tasks.schedule(1, Runnable { ran.addAndGet(10) })
+        assertEquals(1, tasks.size)
+
+        executor.shutdown()
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS))
+        assertEquals(10, ran.get())
+        assertEquals(0, tasks.size)
+    }
+
+    @Test
+    fun cancelledTaskNeverRuns() {
+        val executor = newExecutor()
+        val tasks = PendingCompactTasks(executor, delayMillis = 50L)
+        val ran = AtomicInteger()
+        tasks.schedule(1, Runnable { ran.incrementAndGet() })
+        tasks.cancel(1)
+        // 没有等待中的任务时取消不产生影响
+        tasks.cancel(2)
+        assertEquals(0, tasks.size)
+        assertEquals(0, executor.queue.size)
+
+        executor.shutdown()
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS))
+        assertEquals(0, ran.get())
+    }
+
+    /**
+     * 10k个进程并发地经历: 多次adj变化(提交/替换)、离开后台(取消)、执行以及进程移除。
+     * 结束后表与线程池队列都必须为空, 且未被取消的进程最后提交的任务一定已执行
+     */
+    @Test
+    fun pidChurnDrainsToZero() {
+        val executor = newExecutor()
+        val tasks = PendingCompactTasks(executor, delayMillis = 1L)
+        val processCount = 10_000
+        val workers = 4
+        // 每个pid最后一次提交且未被取消的任务编号(0 = 已取消), 以及已执行的最大任务编号
+        val lastScheduled = IntArray(processCount + 1)
+        val executed = Array(processCount + 1) { AtomicInteger() }
+
+        List(workers) { worker ->
+            thread {
+                val random = ThreadLocalRandom.current()
+                var pid = worker + 1
+                while (pid <= processCount) {
+                    repeat(1 + random.nextInt(4)) { round ->
+                        val id = round + 1
+                        val target = pid
+                        lastScheduled[pid] = id
+                        tasks.schedule(pid, Runnable {
+                            executed[target].accumulateAndGet(id, Math::max)
+                        })
+                        when (random.nextInt(4)) {
+                            // 离开后台
+                            0 -> {
+                                tasks.cancel(pid)
+                                lastScheduled[pid] = 0
+                            }
+                            // 让任务有机会在下一次变化前执行
+                            1 -> Thread.sleep(0L, random.nextInt(1_000_000))
+                        }
+                    }
+                    // 进程被移除
+                    if (random.nextBoolean()) {
+                        tasks.cancel(pid)
+                        lastScheduled[pid] = 0
+                    }
+                    pid += workers
+                }
+            }
+        }.forEach { it.join() }
+
+        executor.shutdown()
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS))
+        assertEquals(0, tasks.size)
+        assertEquals(0, executor.queue.size)
+        for (pid in 1..processCount) {
+            if (lastScheduled[pid] != 0) {
+                assertEquals("pid: $pid", lastScheduled[pid], executed[pid].get())
+            }
+        }
+    }
+}
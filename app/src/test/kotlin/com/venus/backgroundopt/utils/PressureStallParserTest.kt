@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2023 BackgroundOpt
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.venus.backgroundopt.utils
+
+import org.junit.Assert.assertArrayEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import java.io.File
+
+/**
+ * [PressureStallParser]对伪造PSI文件的解析
+ *
+ * @author XingC
+ * @date 2026/10/18
+ */
+class PressureStallParserTest {
+    @get:Rule
+    val temporaryFolder = TemporaryFolder()
+
+    private val buffers = ProcKbFieldParser.ParseBuffers(256)
+
+    private fun psiFile(content: String): String = temporaryFolder.newFile().apply { writeText(content) }.path
+
+    private fun assertParsed(path: String, vararg expected: Long) {
+        val out = LongArray(PressureStallParser.FIELD_COUNT)
+        assertTrue(PressureStallParser.parse(path, out, buffers))
+        assertArrayEquals(expected, out)
+    }
+
+    @Test
+    fun memoryPressure() {
+        assertParsed(
+            File(javaClass.getResource("/proc/pressure_memory")!!.toURI()).path,
+            1234L, 560L, 307L, 89L
+        )
+    }
+
+    @Test
+    fun someOnly() {
+        // 4.20之前的部分内核没有full行
+        assertParsed(psiFile("some avg10=0.50 avg60=1.00 avg300=0.00 total=10\n"), 50L, 100L, 0L, 0L)
+    }
+
+    @Test
+    fun noTrailingNewLineAndFieldOrder() {
+        assertParsed(
+            psiFile("full avg60=2.00 avg10=99.99 total=1\nsome avg300=1.00 avg60=3 avg10=7.5"),
+            750L, 300L, 9999L, 200L
+        )
+    }
+
+    @Test
+    fun extraFractionDigitsTruncated() {
+        assertParsed(psiFile("some avg10=1.239 avg60=0.001\n"), 123L, 0L, 0L, 0L)
+    }
+
+    @Test
+    fun malformedValuesAndLines() {
+        assertParsed(
+            psiFile("garbage line without fields\nsome avg10=abc avg60=4.00\nsomething avg10=50.00\nfull avg10=1.0.0\n"),
+            0L, 400L, 100L, 0L
+        )
+    }
+
+    @Test
+    fun resultsAreResetBetweenReads() {
+        val out = LongArray(PressureStallParser.FIELD_COUNT)
+        assertTrue(PressureStallParser.parse(psiFile("some avg10=1.00 avg60=1.00\nfull avg10=1.00 avg60=1.00\n"), out, buffers))
+        assertTrue(PressureStallParser.parse(psiFile("some avg10=2.00 avg60=2.00\n"), out, buffers))
+        assertArrayEquals(longArrayOf(200L, 200L, 0L, 0L), out)
+    }
+
+    @Test
+    fun missingFile() {
+        val out = LongArray(PressureStallParser.FIELD_COUNT)
+        assertFalse(PressureStallParser.parse(File(temporaryFolder.root, "memory").path, out, buffers))
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright (C) 2023 BackgroundOpt
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.venus.backgroundopt.utils
+
+import org.junit.Assert.assertArrayEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import java.io.File
+
+/**
+ * [ProcKbFieldParser]对/proc文件样本的解析
+ *
+ * 样本位于test/resources/proc, 取自真实设备并做了删减
+ *
+ * @author XingC
+ * @date 2026/10/18
+ */
+class ProcKbFieldParserTest {
+    @get:Rule
+    val temporaryFolder = TemporaryFolder()
+
+    // 覆盖跨越读取缓冲区边界的情况
+    private val bufferSizes = intArrayOf(1, 3, 7, 64, ProcKbFieldParser.DEFAULT_BUFFER_SIZE)
+
+    private fun fixture(name: String): String = File(javaClass.getResource("/proc/$name")!!.toURI()).path
+
+    private fun assertParsed(parser: ProcKbFieldParser, path: String, vararg expected: Long) {
+        for (bufferSize in bufferSizes) {
+            val out = LongArray(parser.fieldCount)
+            assertTrue(parser.parse(path, out, ProcKbFieldParser.ParseBuffers(bufferSize)))
+            assertArrayEquals("bufferSize: $bufferSize", expected, out)
+        }
+    }
+
+    @Test
+    fun smapsRollup() {
+        assertParsed(
+            ProcKbFieldParser("Rss", "Pss", "Anonymous", "Swap", "SwapPss"),
+            fixture("smaps_rollup"),
+            412376L, 198544L, 152064L, 88512L, 80140L
+        )
+    }
+
+    @Test
+    fun smapsSumsAllMappings() {
+        // 映射区首行(含冒号的[anon:...])与VmFlags等非数值行被跳过
+        assertParsed(
+            ProcKbFieldParser("Rss", "Pss", "Anonymous", "Swap", "SwapPss"),
+            fixture("smaps"),
+            1024L + 2048L + 36L, 1000L + 150L + 36L, 1024L + 36L, 512L + 4L, 500L + 4L
+        )
+    }
+
+    @Test
+    fun statusWithTabs() {
+        assertParsed(
+            ProcKbFieldParser("VmRSS", "RssAnon", "RssFile", "VmSwap"),
+            fixture("status"),
+            214572L, 96340L, 113980L, 41220L
+        )
+    }
+
+    @Test
+    fun meminfo() {
+        assertParsed(
+            ProcKbFieldParser("SwapTotal", "SwapFree"),
+            fixture("meminfo"),
+            8388604L, 5096120L
+        )
+    }
+
+    @Test
+    fun missingFieldAndLastLineWithoutNewLine() {
+        val file = temporaryFolder.newFile("status")
+        file.writeText("VmRSS:\t  1234 kB\nVmSwap:\t42")
+        assertParsed(
+            ProcKbFieldParser("VmRSS", "RssAnon", "VmSwap"),
+            file.path,
+            1234L, -1L, 42L
+        )
+    }
+
+    @Test
+    fun prefixOfKeyDoesNotMatch() {
+        val file = temporaryFolder.newFile("smaps")
+        file.writeText("SwapPss: 7 kB\nPss_Anon: 9 kB\nRss: 3 kB\n")
+        assertParsed(ProcKbFieldParser("Swap", "Pss", "Rss"), file.path, -1L, -1L, 3L)
+    }
+
+    @Test
+    fun missingFileFails() {
+        val out = LongArray(1)
+        assertFalse(
+            ProcKbFieldParser("Rss").parse(
+                File(temporaryFolder.root, "missing").path,
+                out,
+                ProcKbFieldParser.ParseBuffers()
+            )
+        )
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2023 BackgroundOpt
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.venus.backgroundopt.utils
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Assume.assumeTrue
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import java.io.File
+import java.util.Random
+
+/**
+ * [ProcStatParser]
+ *
+ * @author XingC
+ * @date 2026/10/18
+ */
+class ProcStatParserTest {
+    @get:Rule
+    val temporaryFolder = TemporaryFolder()
+
+    private fun statLine(pid: Int, comm: String, startTime: Long): String {
+        // 第3~21项的取值不影响解析, 以递增的数填充
+        val middle = (4..21).joinToString(" ") { it.toString() }
+        return "$pid ($comm) S $middle $startTime 123456 789 18446744073709551615\n"
+    }
+
+    private fun parse(line: String, field: Int = ProcStatParser.FIELD_START_TIME): Long {
+        val bytes = line.toByteArray(Charsets.US_ASCII)
+        return ProcStatParser.parseField(bytes, bytes.size, field)
+    }
+
+    @Test
+    fun parsesStartTime() {
+        assertEquals(987654L, parse(statLine(1234, "system_server", 987654L)))
+        assertEquals(5L, parse(statLine(1234, "system_server", 987654L), field = 5))
+    }
+
+    @Test
+    fun commWithSpacesAndParens() {
+        for (comm in listOf("a b", "(a) b)", ")", "((", "com.android.chrome:sandboxed_process0")) {
+            assertEquals(comm, 42L, parse(statLine(1, comm, 42L)))
+        }
+    }
+
+    @Test
+    fun malformedContentReturnsZero() {
+        assertEquals(0L, parse(""))
+        assertEquals(0L, parse("1234 (truncated"))
+        assertEquals(0L, parse("1234 (a) S 1 2 3"))
+        assertEquals(0L, parse(statLine(1, "a", 42L).replace(" 42 ", " 4x2 ")))
+        assertEquals(0L, ProcStatParser.readStartTime(File(temporaryFolder.root, "missing").path))
+    }
+
+    /**
+     * 300个pid槽位上发生10000次进程退出与pid复用。
+     * 持有旧记录的一方必须识别出pid已被复用或进程已退出, 持有当前记录的一方不能误判
+     */
+    @Test
+    fun detectsPidReuseUnderChurn() {
+        val slotCount = 300
+        val random = Random(20261018L)
+        val statFiles = Array(slotCount) { File(temporaryFolder.root, "stat_$it") }
+        val recordedStartTimes = LongArray(slotCount)
+        var clockTicks = 1000L
+
+        fun spawn(slot: Int) {
+            clockTicks += 1 + random.nextInt(50)
+            statFiles[slot].writeText(statLine(10000 + slot, "proc $slot", clockTicks))
+            recordedStartTimes[slot] = ProcStatParser.readStartTime(statFiles[slot].path)
+            assertEquals(clockTicks, recordedStartTimes[slot])
+        }
+
+        for (slot in 0 until slotCount) {
+            spawn(slot)
+        }
+        repeat(10_000) {
+            val slot = random.nextInt(slotCount)
+            val staleStartTime = recordedStartTimes[slot]
+            assertTrue(ProcStatParser.isSameProcess(statFiles[slot].path, staleStartTime))
+
+            if (random.nextInt(4) == 0) {
+                // 进程退出, pid尚未被复用
+                statFiles[slot].delete()
+                assertFalse(ProcStatParser.isSameProcess(statFiles[slot].path, staleStartTime))
+            }
+            spawn(slot)
+            assertFalse(ProcStatParser.isSameProcess(statFiles[slot].path, staleStartTime))
+            assertTrue(ProcStatParser.isSameProcess(statFiles[slot].path, recordedStartTimes[slot]))
+            // 未记录启动时间时无法判断
+            assertTrue(ProcStatParser.isSameProcess(statFiles[slot].path, 0L))
+        }
+    }
+
+    @Test
+    fun readsOwnProcess() {
+        val self = File("/proc/self/stat")
+        assumeTrue(self.canRead())
+        val startTime = ProcStatParser.readStartTime(self.path)
+        assertTrue(startTime > 0)
+        assertEquals(startTime, ProcStatParser.readStartTime(self.path))
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright (C) 2023 BackgroundOpt
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.venus.backgroundopt.utils
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import java.io.File
+import java.nio.ByteBuffer
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.ThreadLocalRandom
+import java.util.concurrent.atomic.AtomicLong
+import kotlin.concurrent.thread
+
+/**
+ * [ReclaimChannelCache]的fd上限、淘汰与pid复用
+ *
+ * 以/dev/null或临时文件代替/proc/<pid>/reclaim
+ *
+ * @author XingC
+ * @date 2026/10/18
+ */
+class ReclaimChannelCacheTest {
+    @get:Rule
+    val temporaryFolder = TemporaryFolder()
+
+    private val payload = ByteBuffer.wrap("anon".toByteArray()).asReadOnlyBuffer()
+
+    private fun assertAllClosed(cache: ReclaimChannelCache) {
+        assertEquals(0, cache.openChannelCount)
+        assertEquals(cache.openedCount.get(), cache.closedCount.get())
+    }
+
+    @Test
+    fun fiftyThousandPidsStayWithinMaxSize() {
+        val maxSize = 64
+        val cache = ReclaimChannelCache(maxSize, reclaimPathOf = { "/dev/null" }, isSameProcess = { _, _ -> true })
+        val baselineFdCount = ReclaimChannelCache.readProcessFdCount()
+        var maxFdCount = baselineFdCount
+
+        for (pid in 1..PID_COUNT) {
+            assertTrue(cache.write(pid, payload, startTime = pid.toLong()))
+            if (pid % 1000 == 0) {
+                maxFdCount = maxOf(maxFdCount, ReclaimChannelCache.readProcessFdCount())
+            }
+        }
+
+        assertEquals(PID_COUNT.toLong(), cache.openedCount.get())
+        assertEquals(maxSize, cache.maxOpenChannelCount)
+        assertEquals((PID_COUNT - maxSize).toLong(), cache.evictedCount.get())
+        if (baselineFdCount >= 0) {
+            // 少量余量留给JVM自身
+            assertTrue("fd: $baselineFdCount -> $maxFdCount", maxFdCount - baselineFdCount <= maxSize + 16)
+        }
+        for (pid in 1..PID_COUNT) {
+            cache.remove(pid)
+        }
+        assertAllClosed(cache)
+    }
+
+    @Test
+    fun concurrentWritesNeverSeeEvictedChannels() {
+        val maxSize = 16
+        val cache = ReclaimChannelCache(maxSize, reclaimPathOf = { "/dev/null" }, isSameProcess = { _, _ -> true })
+        val threadCount = 8
+        val failedCount = AtomicLong(0)
+        val start = CountDownLatch(1)
+        val threads = List(threadCount) {
+            thread {
+                start.await()
+                val random = ThreadLocalRandom.current()
+                repeat(PID_COUNT / threadCount) {
+                    // 少量pid之间频繁切换, 写入与淘汰大量交错
+                    val pid = random.nextInt(maxSize * 4)
+                    if (!cache.write(pid, payload)) {
+                        failedCount.incrementAndGet()
+                    }
+                }
+            }
+        }
+        start.countDown()
+        threads.forEach { it.join() }
+
+        assertEquals(0L, failedCount.get())
+        assertEquals(0L, cache.writeErrorCount.get())
+        assertTrue(cache.evictedCount.get() > 0)
+        for (pid in 0 until maxSize * 4) {
+            cache.remove(pid)
+        }
+        assertAllClosed(cache)
+    }
+
+    @Test
+    fun removeWhileWritingClosesAfterWrite() {
+        val cache = ReclaimChannelCache(4, reclaimPathOf = { "/dev/null" }, isSameProcess = { _, _ -> true })
+        assertTrue(cache.write(1, payload))
+        val writer = thread {
+            repeat(10_000) {
+                cache.write(1, payload)
+            }
+        }
+        repeat(10_000) {
+            cache.remove(1)
+        }
+        writer.join()
+        cache.remove(1)
+        assertEquals(0L, cache.writeErrorCount.get())
+        assertAllClosed(cache)
+    }
+
+    @Test
+    fun missingProcessIsNotReopened() {
+        val openedPaths = ConcurrentHashMap<Int, Int>()
+        val cache = ReclaimChannelCache(4, reclaimPathOf = { pid ->
+            openedPaths.merge(pid, 1, Int::plus)
+            File(temporaryFolder.root, "missing/$pid").path
+        }, isSameProcess = { _, _ -> true })
+
+        assertFalse(cache.write(1, payload))
+        assertEquals(1, openedPaths[1])
+        assertEquals(1L, cache.openFailedCount.get())
+        assertAllClosed(cache)
+    }
+
+    @Test
+    fun reusedPidIsNotWritten() {
+        val file = temporaryFolder.newFile()
+        // pid 1的当前进程启动时间
+        var currentStartTime = 100L
+        val cache = ReclaimChannelCache(4, reclaimPathOf = { file.path }, isSameProcess = { _, startTime ->
+            startTime == 0L || startTime == currentStartTime
+        })
+
+        assertTrue(cache.write(1, payload, startTime = 100L))
+        assertEquals(1L, cache.openedCount.get())
+
+        // pid被复用: 缓存的通道属于旧进程, 旧进程的记录也不能再打开
+        currentStartTime = 200L
+        assertFalse(cache.write(1, payload, startTime = 300L))
+        assertEquals(0, cache.openChannelCount)
+
+        // 新进程重新打开
+        assertTrue(cache.write(1, payload, startTime = 200L))
+        assertEquals(1, cache.openChannelCount)
+        assertTrue(cache.write(1, payload, startTime = 200L))
+        assertEquals(3L, cache.openedCount.get())
+        // 打开时截断, 只留下新进程的两次写入
+        assertEquals("anon".repeat(2), file.readText())
+
+        cache.remove(1)
+        assertAllClosed(cache)
+    }
+
+    companion object {
+        private const val PID_COUNT = 50_000
+    }
+}
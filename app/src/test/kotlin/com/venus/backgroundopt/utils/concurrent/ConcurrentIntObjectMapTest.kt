@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2023 BackgroundOpt
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.venus.backgroundopt.utils.concurrent
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertSame
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.ThreadLocalRandom
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicReference
+import kotlin.concurrent.thread
+
+/**
+ * @author XingC
+ * @date 2026/10/18
+ */
+class ConcurrentIntObjectMapTest {
+    @Test
+    fun putGetRemove() {
+        val map = ConcurrentIntObjectMap<String>()
+        assertNull(map.put(1000, "a"))
+        assertEquals("a", map.put(1000, "b"))
+        assertEquals("b", map.putIfAbsent(1000, "c"))
+        assertEquals("b", map[1000])
+        assertEquals(1, map.size)
+
+        assertFalse(map.remove(1000, "a"))
+        assertTrue(map.remove(1000, "b"))
+        assertNull(map[1000])
+        assertTrue(map.isEmpty())
+    }
+
+    @Test
+    fun zeroAndNegativeKeys() {
+        val map = ConcurrentIntObjectMap<Int>()
+        for (key in intArrayOf(0, -1, Int.MAX_VALUE, Int.MIN_VALUE + 1)) {
+            assertNull(map[key])
+            map.put(key, key)
+            assertEquals(key, map[key])
+        }
+        assertEquals(4, map.size)
+        assertEquals(0, map.remove(0))
+        assertNull(map[0])
+    }
+
+    @Test(expected = IllegalArgumentException::class)
+    fun emptyKeyIsRejected() {
+        ConcurrentIntObjectMap<Int>().put(Int.MIN_VALUE, 0)
+    }
+
+    @Test
+    fun churnKeepsContentsAcrossRehash() {
+        val map = ConcurrentIntObjectMap<Int>(expectedSize = 16)
+        val expected = HashMap<Int, Int>()
+        val random = ThreadLocalRandom.current()
+        repeat(200_000) {
+            val key = random.nextInt(4096)
+            if (random.nextBoolean()) {
+                assertEquals(expected.put(key, it), map.put(key, it))
+            } else {
+                assertEquals(expected.remove(key), map.remove(key))
+            }
+        }
+        assertEquals(expected.size, map.size)
+        expected.forEach { (key, value) -> assertEquals(value, map[key]) }
+
+        val iterated = HashMap<Int, Int>()
+        map.forEach { key, value -> iterated[key] = value }
+        assertEquals(expected, iterated)
+        assertEquals(expected.values.sorted(), map.values.sorted())
+    }
+
+    @Test
+    fun computeIfAbsentOnlyComputesOnce() {
+        val map = ConcurrentIntObjectMap<Any>()
+        val value = Any()
+        assertSame(value, map.computeIfAbsent(1) { value })
+        assertSame(value, map.computeIfAbsent(1) { Any() })
+        assertNull(map.computeIfAbsent(2) { null })
+        assertFalse(map.containsKey(2))
+    }
+
+    /**
+     * 写入线程按顺序插入并发布已插入的最大key, 读取线程不加锁地读取。
+     * 已发布的key必须总能被读到, 即使读取期间发生了扩容或其他槽位的写入
+     */
+    @Test
+    fun publishedKeysAreAlwaysVisible() {
+        val map = ConcurrentIntObjectMap<Int>(expectedSize = 16)
+        val published = AtomicInteger(-1)
+        val failure = AtomicReference<String>()
+        val keyCount = 100_000
+        val readers = 3
+        val started = CountDownLatch(readers)
+
+        val readerThreads = List(readers) {
+            thread {
+                val random = ThreadLocalRandom.current()
+                started.countDown()
+                while (true) {
+                    val max = published.get()
+                    if (max >= 0) {
+                        val key = random.nextInt(max + 1)
+                        if (map[key] != key) {
+                            failure.compareAndSet(null, "key: $key, published: $max")
+                        }
+                    }
+                    if (max == keyCount - 1 || failure.get() != null) {
+                        break
+                    }
+                }
+            }
+        }
+        started.await()
+        for (key in 0 until keyCount) {
+            map.put(key, key)
+            published.set(key)
+        }
+        readerThreads.forEach { it.join() }
+        assertNull(failure.get(), failure.get())
+    }
+}
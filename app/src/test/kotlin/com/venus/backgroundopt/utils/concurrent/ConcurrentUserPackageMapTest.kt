@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2023 BackgroundOpt
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.venus.backgroundopt.utils.concurrent
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertNull
+import org.junit.Test
+
+/**
+ * @author XingC
+ * @date 2026/10/18
+ */
+class ConcurrentUserPackageMapTest {
+    @Test
+    fun valuesIterateAllUsers() {
+        val map = ConcurrentUserPackageMap<String>()
+        assertFalse(map.values.iterator().hasNext())
+
+        map.put(0, "a", "0:a")
+        map.put(0, "b", "0:b")
+        map.put(10, "a", "10:a")
+        // 空的用户表应被跳过
+        map.put(999, "c", "999:c")
+        map.remove(999, "c")
+
+        assertEquals(listOf("0:a", "0:b", "10:a"), map.values.sorted())
+        assertEquals(3, map.values.size)
+    }
+
+    @Test(expected = NoSuchElementException::class)
+    fun nextPastEndThrows() {
+        val map = ConcurrentUserPackageMap<String>()
+        map.put(0, "a", "0:a")
+        val iterator = map.values.iterator()
+        iterator.next()
+        iterator.next()
+    }
+
+    @Test
+    fun removePackageRemovesAllUsers() {
+        val map = ConcurrentUserPackageMap<String>()
+        map.put(0, "a", "0:a")
+        map.put(10, "a", "10:a")
+        map.put(10, "b", "10:b")
+        map.removePackage("a")
+        assertNull(map[0, "a"])
+        assertNull(map[10, "a"])
+        assertEquals(listOf("10:b"), map.values.toList())
+    }
+}
@@ -0,0 +1,224 @@
+/*
+ * Copyright (C) 2023 BackgroundOpt
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.venus.backgroundopt.utils.concurrent
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.CyclicBarrier
+import java.util.concurrent.ThreadLocalRandom
+import java.util.concurrent.atomic.AtomicInteger
+import kotlin.concurrent.thread
+
+/**
+ * [HierarchicalTimingWheel]在300个app同时调度时的负载
+ *
+ * 以1s为tick, 每个tick最多取出[MAX_PER_TICK]个, 与内存回收管理器的用法一致
+ *
+ * @author XingC
+ * @date 2026/10/18
+ */
+class HierarchicalTimingWheelTest {
+    private class App(val index: Int) {
+        val entry = HierarchicalTimingWheel.Entry(this)
+        var deadlineMillis = 0L
+        var firedCount = 0
+        var firedMillis = 0L
+    }
+
+    private val apps = List(APP_COUNT) { App(it) }
+
+    private fun newWheel() = HierarchicalTimingWheel<App>(TICK_MILLIS, 0L)
+
+    /**
+     * 逐tick推进直到[endMillis]
+     *
+     * @return 单个tick取出的最大数量
+     */
+    private fun runUntil(wheel: HierarchicalTimingWheel<App>, startMillis: Long, endMillis: Long): Int {
+        val out = ArrayList<App>()
+        var maxPerTick = 0
+        var now = startMillis
+        while (now <= endMillis) {
+            out.clear()
+            wheel.advance(now, MAX_PER_TICK, out)
+            maxPerTick = maxOf(maxPerTick, out.size)
+            out.forEach { app ->
+                app.firedCount++
+                app.firedMillis = now
+            }
+            now += TICK_MILLIS
+        }
+        return maxPerTick
+    }
+
+    @Test
+    fun jitteredIntervalsFireOnceAndNeverEarly() {
+        val wheel = newWheel()
+        val intervalMillis = 10L * 60 * 1000
+        apps.forEach { app ->
+            // 与内存回收管理器相同: 间隔 + [0, 25%)的偏移
+            app.deadlineMillis = intervalMillis + (intervalMillis * 0.25 * app.index / APP_COUNT).toLong()
+            wheel.schedule(app.entry, app.deadlineMillis)
+        }
+        assertEquals(APP_COUNT, wheel.size)
+
+        val maxPerTick = runUntil(wheel, TICK_MILLIS, intervalMillis * 2)
+
+        assertTrue(maxPerTick <= MAX_PER_TICK)
+        assertEquals(0, wheel.size)
+        assertEquals(0, wheel.readyCount)
+        apps.forEach { app ->
+            assertEquals(1, app.firedCount)
+            assertTrue(app.firedMillis >= app.deadlineMillis)
+            // 300个分布在150s内, 每tick取2个, 不会积压
+            assertTrue(app.firedMillis - app.deadlineMillis <= 2 * TICK_MILLIS)
+        }
+    }
+
+    @Test
+    fun sameDeadlineBurstIsDrainedAtCap() {
+        val wheel = newWheel()
+        val deadlineMillis = 30L * 1000
+        apps.forEach { app ->
+            app.deadlineMillis = deadlineMillis
+            wheel.schedule(app.entry, deadlineMillis)
+        }
+
+        val out = ArrayList<App>()
+        assertEquals(MAX_PER_TICK, wheel.advance(deadlineMillis, MAX_PER_TICK, out))
+        assertEquals(APP_COUNT - MAX_PER_TICK, wheel.readyCount)
+
+        runUntil(wheel, deadlineMillis + TICK_MILLIS, deadlineMillis + APP_COUNT * TICK_MILLIS)
+        assertEquals(0, wheel.size)
+        // 先到先出, 全部在APP_COUNT / MAX_PER_TICK个tick内取完
+        out.forEach { it.firedCount++ }
+        apps.forEach { app -> assertEquals(1, app.firedCount) }
+        assertEquals(deadlineMillis + (APP_COUNT / MAX_PER_TICK - 1) * TICK_MILLIS, apps.last().firedMillis)
+    }
+
+    @Test
+    fun farDeadlinesCascadeAcrossLevels() {
+        val wheel = newWheel()
+        val random = ThreadLocalRandom.current()
+        apps.forEach { app ->
+            // 覆盖各层以及超出最高层范围(约3天)的到期时间
+            app.deadlineMillis = when (app.index % 4) {
+                0 -> random.nextLong(1, 64) * TICK_MILLIS
+                1 -> random.nextLong(64, 4096) * TICK_MILLIS
+                2 -> random.nextLong(4096, 262_144) * TICK_MILLIS
+                else -> random.nextLong(262_144, 600_000) * TICK_MILLIS
+            }
+            wheel.schedule(app.entry, app.deadlineMillis)
+        }
+
+        runUntil(wheel, TICK_MILLIS, 600_000 * TICK_MILLIS + APP_COUNT * TICK_MILLIS)
+
+        assertEquals(0, wheel.size)
+        apps.forEach { app ->
+            assertEquals(1, app.firedCount)
+            assertTrue(app.firedMillis >= app.deadlineMillis)
+        }
+    }
+
+    @Test
+    fun rescheduleAndCancelFromOtherThreadsWhileAdvancing() {
+        val wheel = newWheel()
+        apps.forEach { app -> wheel.schedule(app.entry, 60L * 1000) }
+
+        val threadCount = 4
+        val done = CountDownLatch(threadCount)
+        val firedCount = AtomicInteger()
+        val advancer = thread {
+            val out = ArrayList<App>()
+            var now = 0L
+            while (done.count > 0) {
+                now += TICK_MILLIS
+                out.clear()
+                firedCount.addAndGet(wheel.advance(now, MAX_PER_TICK, out))
+            }
+        }
+        val workers = List(threadCount) { worker ->
+            thread {
+                val random = ThreadLocalRandom.current()
+                repeat(50_000) {
+                    // 每个线程只操作自己的一组app, 模拟前后台切换时的重新调度与移除
+                    val app = apps[worker + threadCount * random.nextInt(APP_COUNT / threadCount)]
+                    if (random.nextInt(8) == 0) {
+                        wheel.cancel(app.entry)
+                    } else {
+                        wheel.schedule(app.entry, random.nextLong(1, 3600) * TICK_MILLIS)
+                    }
+                }
+                done.countDown()
+            }
+        }
+        workers.forEach { it.join() }
+        advancer.join()
+
+        // 计数与条目状态一致
+        val scheduledCount = apps.count { it.entry.isScheduled }
+        assertEquals(scheduledCount, wheel.size)
+        assertTrue(wheel.readyCount <= wheel.size)
+        assertTrue(firedCount.get() > 0)
+
+        // 剩余条目全部能够到期
+        val out = ArrayList<App>()
+        var now = 10_000L * TICK_MILLIS
+        while (wheel.size > 0) {
+            wheel.advance(now, APP_COUNT, out)
+            now += TICK_MILLIS
+        }
+        assertEquals(scheduledCount, out.size)
+        assertEquals(scheduledCount, out.toSet().size)
+    }
+
+    @Test
+    fun scheduleIfAbsentIsAtomic() {
+        val wheel = newWheel()
+        val threadCount = 8
+        apps.forEach { app ->
+            val barrier = CyclicBarrier(threadCount)
+            val scheduledCount = AtomicInteger()
+            List(threadCount) {
+                thread {
+                    barrier.await()
+                    if (wheel.scheduleIfAbsent(app.entry, 60L * 1000)) {
+                        scheduledCount.incrementAndGet()
+                    }
+                }
+            }.forEach { it.join() }
+            assertEquals(1, scheduledCount.get())
+        }
+        assertEquals(APP_COUNT, wheel.size)
+
+        // 已调度的条目不会被推迟
+        assertFalse(wheel.scheduleIfAbsent(apps[0].entry, 3600L * 1000))
+        val out = ArrayList<App>()
+        wheel.advance(60L * 1000, APP_COUNT, out)
+        assertEquals(APP_COUNT, out.size)
+    }
+
+    companion object {
+        private const val APP_COUNT = 300
+        private const val TICK_MILLIS = 1000L
+        private const val MAX_PER_TICK = 2
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2023 BackgroundOpt
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.venus.backgroundopt.utils.message
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNull
+import org.junit.Test
+import java.io.ByteArrayInputStream
+import java.io.ByteArrayOutputStream
+import java.io.DataInputStream
+import java.io.DataOutputStream
+import java.io.IOException
+import java.nio.ByteBuffer
+
+/**
+ * @author XingC
+ * @date 2026/10/18
+ */
+class MessageFrameTest {
+    private fun roundTrip(frame: MessageFrame): MessageFrame {
+        val output = ByteArrayOutputStream()
+        frame.writeTo(DataOutputStream(output))
+        return MessageFrame.readFrom(DataInputStream(ByteArrayInputStream(output.toByteArray())))
+    }
+
+    @Test
+    fun roundTripKeepsRequestIdAndData() {
+        val frame = roundTrip(MessageFrame(42, "{\"key\":\"中文\"}"))
+        assertEquals(42, frame.requestId)
+        assertEquals("{\"key\":\"中文\"}", frame.data)
+
+        val nullFrame = roundTrip(MessageFrame(7, null))
+        assertEquals(7, nullFrame.requestId)
+        assertNull(nullFrame.data)
+        assertEquals("", roundTrip(MessageFrame(8, "")).data)
+    }
+
+    @Test
+    fun encodeAcceptsLargestFrame() {
+        val data = "a".repeat(MessageFrame.MAX_FRAME_BYTES - MessageFrame.BODY_HEADER_BYTES)
+        assertEquals(data.length, roundTrip(MessageFrame(1, data)).data!!.length)
+    }
+
+    @Test(expected = IllegalArgumentException::class)
+    fun encodeRejectsOversizedFrame() {
+        MessageFrame(1, "a".repeat(MessageFrame.MAX_FRAME_BYTES)).encode()
+    }
+
+    @Test(expected = IOException::class)
+    fun readRejectsOversizedLength() {
+        val bytes = ByteBuffer.allocate(MessageFrame.LENGTH_BYTES)
+            .putInt(MessageFrame.MAX_FRAME_BYTES + 1)
+            .array()
+        MessageFrame.readFrom(DataInputStream(ByteArrayInputStream(bytes)))
+    }
+
+    @Test(expected = IOException::class)
+    fun readRejectsTruncatedHeader() {
+        val bytes = ByteBuffer.allocate(MessageFrame.LENGTH_BYTES).putInt(1).array()
+        MessageFrame.readFrom(DataInputStream(ByteArrayInputStream(bytes)))
+    }
+}